@@ -68,6 +68,7 @@ export default createStore({
     currentUser: safeParseJSON("currentUser", {}),
     sysConfig: safeParseJSON("sysConfig", {}),
     onlineUserCount: {},  // 存储各群组的在线用户数 {groupId: count}
+    userPresence: {},     // 用户在线状态 {userId: true/false}
     
     // 聊天相关数据（聊天列表从后端获取，不再持久化到localStorage）
     imChats: [],           // 私聊列表（从后端同步）
@@ -91,6 +92,10 @@ export default createStore({
     updateOnlineUserCount(state, {groupId, count}) {
       state.onlineUserCount[groupId] = count;
     },
+    updateUserPresence(state, {onlineUserIds = [], offlineUserIds = []}) {
+      onlineUserIds.forEach(userId => state.userPresence[userId] = true);
+      offlineUserIds.forEach(userId => state.userPresence[userId] = false);
+    },
     
     // 聊天列表相关mutations（不再持久化到localStorage，从后端同步）
     updateImChats(state, chats) {
@@ -2,12 +2,14 @@ package com.ld.poetry.aop;
 
 import com.ld.poetry.config.PoetryResult;
 import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.constants.CommonConst;
 import com.ld.poetry.entity.User;
 import com.ld.poetry.enums.CodeMsg;
 import com.ld.poetry.enums.PoetryEnum;
 import com.ld.poetry.handle.PoetryLoginException;
 import com.ld.poetry.handle.PoetryRuntimeException;
 import com.ld.poetry.service.CacheService;
+import com.ld.poetry.service.TokenSessionCache;
 import com.ld.poetry.utils.*;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -34,6 +36,9 @@ public class LoginCheckAspect {
     
     @Autowired
     private LockManager lockManager;
+
+    @Autowired
+    private TokenSessionCache tokenSessionCache;
     
     /**
      * 管理员请求日志限流缓存
@@ -113,17 +118,23 @@ public class LoginCheckAspect {
         }
 
         // 重置过期时间 - 使用Redis缓存替换PoetryCache
+        // 无状态token自带过期时间，无需续期会话
+        if (SecureTokenGenerator.isStatelessToken(token)) {
+            request.setAttribute("currentUser", user);
+            return joinPoint.proceed();
+        }
         try {
             Integer userId = user.getId();
             boolean needRefresh = false;
 
-            // 检查是否需要刷新token间隔
-            if (TokenValidationUtil.isUserToken(token)) {
-                String intervalKey = CacheConstants.buildUserTokenIntervalKey(userId);
-                needRefresh = cacheService.get(intervalKey) == null;
-            } else if (TokenValidationUtil.isAdminToken(token)) {
-                String intervalKey = CacheConstants.buildAdminTokenIntervalKey(userId);
-                needRefresh = cacheService.get(intervalKey) == null;
+            // 检查是否需要刷新token间隔：标记的有效期随token会话缓存在本地，本地过期后才查询Redis
+            if (!tokenSessionCache.isIntervalMarked(token)) {
+                long intervalExpire = cacheService.getTokenIntervalExpire(userId, TokenValidationUtil.isAdminToken(token));
+                if (intervalExpire > 0) {
+                    tokenSessionCache.markInterval(token, intervalExpire);
+                } else {
+                    needRefresh = true;
+                }
             }
 
             if (needRefresh) {
@@ -158,6 +169,7 @@ public class LoginCheckAspect {
                             cacheService.cacheTokenInterval(userId, true);
                         }
                     }
+                    tokenSessionCache.markInterval(token, CommonConst.TOKEN_EXPIRE);
                 });
             }
         } catch (Exception e) {
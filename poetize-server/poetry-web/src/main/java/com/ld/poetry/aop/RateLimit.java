@@ -0,0 +1,60 @@
+package com.ld.poetry.aop;
+
+import com.ld.poetry.utils.ratelimit.RateLimitAlgorithm;
+import com.ld.poetry.utils.ratelimit.RateLimitKey;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流
+ * <p>
+ * 可重复声明，按声明顺序依次判定；也可作为元注解组合出业务注解（如 {@link SaveCheck}）。
+ * 放行时返回剩余最少的规则对应的 X-RateLimit-* 响应头，拒绝时额外返回 Retry-After。
+ * </p>
+ */
+@Target({ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+
+    /**
+     * 规则名称，同名规则共享计数，默认 类名.方法名
+     */
+    String name() default "";
+
+    /**
+     * 限流键维度，多个维度组合成一个键
+     */
+    RateLimitKey[] key() default RateLimitKey.IP;
+
+    RateLimitAlgorithm algorithm() default RateLimitAlgorithm.SLIDING_WINDOW;
+
+    /**
+     * 窗口内允许次数（令牌桶为桶容量）
+     */
+    int limit();
+
+    /**
+     * 窗口时长，单位秒（令牌桶为补满整桶所需时长）
+     */
+    long window() default 60;
+
+    /**
+     * 管理员是否不受限制
+     */
+    boolean exemptAdmin() default false;
+
+    /**
+     * 是否启用本地预检
+     */
+    boolean localPreCheck() default false;
+
+    /**
+     * 被限流时的提示信息
+     */
+    String message() default "操作过于频繁，请稍后再试！";
+}
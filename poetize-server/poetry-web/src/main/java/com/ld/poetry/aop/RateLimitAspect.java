@@ -0,0 +1,121 @@
+package com.ld.poetry.aop;
+
+import com.ld.poetry.entity.User;
+import com.ld.poetry.handle.PoetryRuntimeException;
+import com.ld.poetry.utils.PoetryUtil;
+import com.ld.poetry.utils.ratelimit.RateLimitKey;
+import com.ld.poetry.utils.ratelimit.RateLimitResult;
+import com.ld.poetry.utils.ratelimit.RateLimitRule;
+import com.ld.poetry.utils.ratelimit.RedisRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 处理 {@link RateLimit}（包括以其为元注解的 {@link SaveCheck}）声明的限流规则
+ */
+@Aspect
+@Component
+@Order(1)
+@Slf4j
+public class RateLimitAspect {
+
+    @Autowired
+    private RedisRateLimiter redisRateLimiter;
+
+    /**
+     * 方法上解析出的限流规则，注解在运行期不变，只解析一次
+     */
+    private final ConcurrentHashMap<Method, List<DeclaredLimit>> declaredLimits = new ConcurrentHashMap<>();
+
+    @Around("@annotation(com.ld.poetry.aop.RateLimit) || @annotation(com.ld.poetry.aop.RateLimits) || @annotation(com.ld.poetry.aop.SaveCheck)")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        List<DeclaredLimit> limits = declaredLimits.computeIfAbsent(method, RateLimitAspect::resolve);
+
+        HttpServletRequest request = PoetryUtil.getRequest();
+        User user = null;
+        boolean admin = false;
+        try {
+            user = PoetryUtil.getCurrentUser();
+            User adminUser = user != null ? PoetryUtil.getAdminUser() : null;
+            admin = adminUser != null && user.getId().intValue() == adminUser.getId().intValue();
+        } catch (Exception e) {
+            log.error("限流获取当前用户时发生错误", e);
+        }
+
+        RateLimitResult tightest = null;
+        for (DeclaredLimit limit : limits) {
+            if (admin && limit.exemptAdmin()) {
+                continue;
+            }
+            String key = buildKey(limit, method, user, request);
+            if (key == null) {
+                continue;
+            }
+            RateLimitResult result = redisRateLimiter.acquire(limit.rule(), key);
+            if (!result.allowed()) {
+                log.info("请求被限流：rule={}, key={}, 已用次数：{}", limit.rule().name(), key, result.used());
+                result.applyHeaders(PoetryUtil.getResponse());
+                throw new PoetryRuntimeException(limit.message());
+            }
+            if (tightest == null || result.remaining() < tightest.remaining()) {
+                tightest = result;
+            }
+        }
+        if (tightest != null) {
+            tightest.applyHeaders(PoetryUtil.getResponse());
+        }
+
+        return joinPoint.proceed();
+    }
+
+    /**
+     * 按维度拼接限流键，缺少必要维度（如未登录用户的 USER 维度）时返回null，跳过该规则
+     */
+    private String buildKey(DeclaredLimit limit, Method method, User user, HttpServletRequest request) {
+        StringBuilder key = new StringBuilder();
+        for (RateLimitKey dimension : limit.key()) {
+            String part = switch (dimension) {
+                case USER -> user != null ? dimension.of(user.getId()) : null;
+                case IP -> request != null ? dimension.of(PoetryUtil.getIpAddr(request)) : null;
+                case ENDPOINT -> dimension.of(method.getDeclaringClass().getSimpleName() + "." + method.getName());
+            };
+            if (part == null) {
+                return null;
+            }
+            if (!key.isEmpty()) {
+                key.append(':');
+            }
+            key.append(part);
+        }
+        return key.toString();
+    }
+
+    private static List<DeclaredLimit> resolve(Method method) {
+        return AnnotatedElementUtils.findMergedRepeatableAnnotations(method, RateLimit.class).stream()
+                .map(annotation -> {
+                    String name = annotation.name().isEmpty()
+                            ? method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                            : annotation.name();
+                    RateLimitRule rule = new RateLimitRule(name, annotation.algorithm(), annotation.limit(),
+                            annotation.window(), annotation.localPreCheck());
+                    return new DeclaredLimit(rule, annotation.key(), annotation.exemptAdmin(), annotation.message());
+                })
+                .toList();
+    }
+
+    private record DeclaredLimit(RateLimitRule rule, RateLimitKey[] key, boolean exemptAdmin, String message) {
+    }
+}
@@ -1,11 +1,21 @@
 package com.ld.poetry.aop;
 
+import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.utils.ratelimit.RateLimitKey;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * 保存频率限制：每个用户、每个IP一天内的提交次数，管理员不受限制
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
+@RateLimit(name = "save", key = RateLimitKey.USER, limit = CommonConst.SAVE_MAX_COUNT, window = CommonConst.SAVE_EXPIRE,
+        exemptAdmin = true, message = "今日提交次数已用尽，请一天后再来！")
+@RateLimit(name = "save", key = RateLimitKey.IP, limit = CommonConst.SAVE_MAX_COUNT + 1, window = CommonConst.SAVE_EXPIRE,
+        exemptAdmin = true, localPreCheck = true, message = "今日提交次数已用尽，请一天后再来！")
 public @interface SaveCheck {
 }
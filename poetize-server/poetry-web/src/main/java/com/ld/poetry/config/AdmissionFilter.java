@@ -0,0 +1,77 @@
+package com.ld.poetry.config;
+
+import com.alibaba.fastjson.JSON;
+import com.ld.poetry.enums.CodeMsg;
+import com.ld.poetry.utils.admission.AdmissionController;
+import com.ld.poetry.utils.admission.RequestClass;
+import com.ld.poetry.utils.route.RouteClassification;
+import com.ld.poetry.utils.route.RouteClassifier;
+import com.ld.poetry.utils.route.RouteType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 准入控制过滤器 - 按请求类别限制并发，过载时以503拒绝低优先级请求
+ * 位于安全过滤器之后、访问统计过滤器之前，被拒绝的请求不再记录访问和查询数据库
+ */
+@Component
+@Slf4j
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private AdmissionPolicy policy;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private RouteClassifier routeClassifier;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!policy.isEnabled() || "OPTIONS".equals(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // 内部服务请求和静态资源不占用数据库，不做限制
+        RouteClassification classification = routeClassifier.classify(request);
+        if (classification.internal() || classification.type() == RouteType.STATIC) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RequestClass requestClass = admissionController.classify(request);
+        AdmissionController.Permit permit = admissionController.tryAcquire(requestClass);
+        if (permit == null) {
+            log.debug("准入控制拒绝请求 - 类别: {}, URI: {}", requestClass, request.getRequestURI());
+            reject(response);
+            return;
+        }
+
+        // 异步请求（SSE流式响应等）在本次分派结束时即释放，长连接不占用并发名额、也不计入延迟
+        boolean dropped = true;
+        try {
+            filterChain.doFilter(request, response);
+            dropped = response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        } finally {
+            permit.release(dropped);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(admissionController.getRetryAfterSeconds()));
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(JSON.toJSONString(PoetryResult.fail(CodeMsg.SERVICE_BUSY.getCode(), CodeMsg.SERVICE_BUSY.getMsg())));
+    }
+}
@@ -0,0 +1,93 @@
+package com.ld.poetry.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 准入控制配置：按请求类别限制并发，过载时优先拒绝低优先级流量
+ */
+@Component
+@ConfigurationProperties(prefix = "poetize.admission")
+@Data
+public class AdmissionPolicy {
+
+    /**
+     * 是否启用准入控制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 拒绝时建议客户端等待的秒数
+     */
+    private long retryAfterSeconds = 2;
+
+    /**
+     * 数据库连接池使用率的采样间隔（毫秒）
+     */
+    private long poolSampleIntervalMs = 250;
+
+    /**
+     * 按匿名搜索处理的路径前缀（开销大、需查库的公开接口）
+     */
+    private List<String> searchPaths = new ArrayList<>(List.of("/article/listArticle", "/sitemap", "/search"));
+
+    /**
+     * 带这些查询参数（非空）的匿名请求按匿名搜索处理
+     */
+    private List<String> searchParams = new ArrayList<>(List.of("articleSearch", "searchKey", "keyword"));
+
+    /**
+     * 按爬虫处理的 User-Agent 特征（不区分大小写的正则），User-Agent 为空同样视为爬虫
+     */
+    private String crawlerUserAgentPattern = "bot|spider|crawl|slurp|scrapy|curl|wget|python|java/|go-http-client|okhttp|httpclient|headless|phantomjs";
+
+    private ClassLimit admin = new ClassLimit(50, 10, 500, 2000, 0);
+
+    private ClassLimit authenticated = new ClassLimit(100, 10, 1000, 1000, 0);
+
+    private ClassLimit anonymousPage = new ClassLimit(100, 10, 1000, 500, 0.9);
+
+    private ClassLimit anonymousSearch = new ClassLimit(20, 2, 200, 500, 0.7);
+
+    private ClassLimit crawler = new ClassLimit(10, 1, 100, 500, 0.6);
+
+    /**
+     * 单个类别的并发限制（AIMD）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ClassLimit {
+
+        /**
+         * 初始并发上限
+         */
+        private int initialLimit;
+
+        /**
+         * 并发上限的下限，持续过载时也至少保留这么多并发
+         */
+        private int minLimit;
+
+        /**
+         * 并发上限的上限
+         */
+        private int maxLimit;
+
+        /**
+         * 延迟阈值（毫秒），请求耗时超过该值或失败（5xx/异常）时按比例降低上限，否则逐步加一
+         */
+        private long latencyThresholdMs;
+
+        /**
+         * 数据库连接池使用率达到该值时拒绝此类请求，0 表示不按连接池拒绝
+         */
+        private double shedAtPoolUsage;
+    }
+}
@@ -1,6 +1,7 @@
 package com.ld.poetry.config;
 
 import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
 import com.ld.poetry.utils.PoetryUtil;
 import org.apache.ibatis.reflection.MetaObject;
 import org.springframework.stereotype.Component;
@@ -12,6 +13,11 @@ public class DataAutoFill implements MetaObjectHandler {
     @Override
     public void insertFill(MetaObject metaObject) {
         this.strictInsertFill(metaObject, "createBy", String.class, !StringUtils.hasText(PoetryUtil.getUsername()) ? "Sara" : PoetryUtil.getUsername());
+        if (metaObject.getOriginalObject() instanceof ImChatUserMessage message
+                && message.getFromId() != null && message.getToId() != null) {
+            this.strictInsertFill(metaObject, "conversationKey", Long.class,
+                    ImChatUserMessage.conversationKey(message.getFromId(), message.getToId()));
+        }
     }
 
     @Override
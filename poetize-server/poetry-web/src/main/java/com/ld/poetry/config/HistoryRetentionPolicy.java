@@ -0,0 +1,39 @@
+package com.ld.poetry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 访问记录（history_info）分区与保留策略配置
+ */
+@Component
+@ConfigurationProperties(prefix = "poetize.history")
+@Data
+public class HistoryRetentionPolicy {
+
+    /**
+     * 是否由应用维护 history_info 的按月分区
+     */
+    private boolean partitionEnabled = true;
+
+    /**
+     * 提前创建的未来月份分区数
+     */
+    private int partitionAheadMonths = 3;
+
+    /**
+     * 原始访问记录保留月数（不含当月），超过的整月分区会被归档后删除；0 表示永久保留
+     */
+    private int retentionMonths = 12;
+
+    /**
+     * 删除分区前是否归档原始记录
+     */
+    private boolean archiveEnabled = true;
+
+    /**
+     * 归档文件目录（gzip压缩的NDJSON，每个分区一个文件）
+     */
+    private String archiveDir = "archive/history_info";
+}
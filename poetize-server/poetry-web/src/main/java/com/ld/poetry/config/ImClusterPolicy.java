@@ -0,0 +1,38 @@
+package com.ld.poetry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * IM集群配置
+ * <p>
+ * 多个后端实例部署在负载均衡之后时开启：用户所在节点登记在Redis中，私聊消息、踢下线等通过Redis pub/sub
+ * 转发到用户所在节点，群消息广播到所有节点后由各节点向本地成员推送。
+ * </p>
+ */
+@Component
+@ConfigurationProperties(prefix = "poetize.im.cluster")
+@Data
+public class ImClusterPolicy {
+
+    /**
+     * 是否启用集群模式，单实例部署无需开启
+     */
+    private boolean enabled = false;
+
+    /**
+     * 节点ID，为空时使用主机名加随机后缀（每次启动不同）
+     */
+    private String nodeId = "";
+
+    /**
+     * 节点心跳间隔（毫秒）
+     */
+    private long heartbeatIntervalMs = 10000;
+
+    /**
+     * 超过该时间没有心跳的节点视为已下线（毫秒），其登记的用户和在线人数不再计入
+     */
+    private long nodeTimeoutMs = 30000;
+}
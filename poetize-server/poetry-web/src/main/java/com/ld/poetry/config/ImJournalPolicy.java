@@ -0,0 +1,61 @@
+package com.ld.poetry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * IM消息预写日志配置
+ */
+@Component
+@ConfigurationProperties(prefix = "poetize.im.journal")
+@Data
+public class ImJournalPolicy {
+
+    /**
+     * 日志目录，Docker部署时需挂载持久化卷
+     */
+    private String dir = "data/im-journal";
+
+    /**
+     * 单个日志段大小（MB），段文件内存映射后顺序追加
+     */
+    private int segmentSizeMb = 64;
+
+    /**
+     * 每条消息是否等待刷盘后再返回（组提交，同一时刻的写入共用一次刷盘）
+     * 关闭时消息写入映射内存即返回，进程崩溃不丢失，只有操作系统崩溃或断电才可能丢失最近一个刷盘周期的消息
+     */
+    private boolean syncOnAppend = false;
+
+    /**
+     * 未开启 syncOnAppend 时的定时刷盘间隔（毫秒）
+     */
+    private long commitIntervalMs = 100;
+
+    /**
+     * 写入数据库的间隔（毫秒）
+     */
+    private long flushIntervalMs = 1000;
+
+    /**
+     * 每批写入数据库的消息数
+     */
+    private int flushBatchSize = 500;
+
+    /**
+     * 日志中未写入数据库的段数上限，超出时（如数据库长时间不可用）最早的段移入溢出目录，待数据库恢复后补写
+     */
+    private int maxSegments = 8;
+
+    /**
+     * 溢出目录总大小上限（MB），超出时最早的溢出文件移入死信目录并记录错误日志，移回溢出目录即可补写
+     */
+    private long maxSpillMb = 2048;
+
+    /**
+     * 单条消息写入失败的最大次数，仅在同批其他消息写入成功（数据库可用）时累计，达到后移入死信文件
+     * 超长、违反约束等数据错误不重试，直接移入死信文件
+     */
+    private int maxRecordAttempts = 5;
+}
@@ -0,0 +1,38 @@
+package com.ld.poetry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * IM下行发送配置
+ * <p>
+ * 每个连接已提交给 t-io 但尚未写出的帧数、字节数有上限：在线人数等非关键帧在积压时按群合并，只保留最新状态；
+ * 聊天消息等关键帧超过上限时断开该连接（客户端重连后按游标拉取离线消息），避免一个卡住的客户端占用大量堆内存。
+ * </p>
+ */
+@Component
+@ConfigurationProperties(prefix = "poetize.im.outbound")
+@Data
+public class ImOutboundPolicy {
+
+    /**
+     * 是否启用下行积压限制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单个连接最多积压的帧数，超过时断开
+     */
+    private int maxPendingFrames = 1000;
+
+    /**
+     * 单个连接最多积压的字节数，超过时断开（积压为空时单帧不受限制）
+     */
+    private long maxPendingBytes = 4 * 1024 * 1024;
+
+    /**
+     * 积压达到该帧数后，非关键帧暂存合并，积压降到一半以下时再发送
+     */
+    private int coalesceAfterFrames = 32;
+}
@@ -0,0 +1,39 @@
+package com.ld.poetry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * IM未读数后台校对配置
+ */
+@Component
+@ConfigurationProperties(prefix = "poetize.im.unread")
+@Data
+public class ImUnreadPolicy {
+
+    /**
+     * 是否启用后台校对
+     */
+    private boolean reconcileEnabled = true;
+
+    /**
+     * 校对间隔（毫秒）
+     */
+    private long reconcileIntervalMs = 600000;
+
+    /**
+     * 每条校对语句处理的会话ID区间大小
+     */
+    private int batchSize = 500;
+
+    /**
+     * 只校对该时间内有过更新（私聊）或查看（群聊）的会话，长期不活跃的会话不会产生偏差
+     */
+    private int activeWindowHours = 24;
+
+    /**
+     * 最近该时间内有写入的会话本轮跳过，避免与正在写入的消息竞争
+     */
+    private int quietSeconds = 60;
+}
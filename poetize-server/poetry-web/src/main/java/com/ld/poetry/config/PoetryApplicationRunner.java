@@ -13,7 +13,6 @@ import com.ld.poetry.service.FamilyService;
 import com.ld.poetry.service.UserService;
 import com.ld.poetry.service.TranslationService;
 import com.ld.poetry.utils.PrerenderClient;
-import com.ld.poetry.constants.CommonConst;
 import com.ld.poetry.enums.PoetryEnum;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -142,12 +141,7 @@ public class PoetryApplicationRunner implements ApplicationRunner {
         cacheService.cacheIpHistory(new CopyOnWriteArraySet<>(infoList.stream().map(info -> info.getIp() + (info.getUserId() != null ? "_" + info.getUserId().toString() : "")).collect(Collectors.toList())));
 
         // 初始化访问统计缓存
-        Map<String, Object> history = new HashMap<>();
-        history.put(CommonConst.IP_HISTORY_PROVINCE, historyInfoMapper.getHistoryByProvince());
-        history.put(CommonConst.IP_HISTORY_IP, historyInfoMapper.getHistoryByIp());
-        history.put(CommonConst.IP_HISTORY_HOUR, historyInfoMapper.getHistoryBy24Hour());
-        history.put(CommonConst.IP_HISTORY_COUNT, historyInfoMapper.getHistoryCount());
-        cacheService.cacheIpHistoryStatistics(history);
+        cacheService.refreshLocationStatisticsCache();
 
         // 初始化Tio
         TioUtil.buildTio();
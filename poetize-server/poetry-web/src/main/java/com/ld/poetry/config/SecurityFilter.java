@@ -1,8 +1,9 @@
 package com.ld.poetry.config;
 
-import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.service.IpBlacklistService;
 import com.ld.poetry.utils.IpUtil;
-import com.ld.poetry.utils.RedisUtil;
+import com.ld.poetry.utils.route.RouteClassification;
+import com.ld.poetry.utils.route.RouteClassifier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -13,81 +14,21 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Set;
 
 /**
  * 安全过滤器 - 拦截常见的恶意扫描请求并实现IP拉黑
  * 记录恶意IP，达到阈值后自动拉黑一段时间
+ * 黑名单检查和攻击计数由 IpBlacklistService 在本地完成，正常请求不访问Redis
  */
 @Component
 @Slf4j
 public class SecurityFilter extends OncePerRequestFilter {
 
     @Autowired
-    private RedisUtil redisUtil;
+    private IpBlacklistService ipBlacklistService;
 
-    // 攻击次数阈值 - 超过此次数将被拉黑
-    private static final int ATTACK_THRESHOLD = 3;
-
-    // 拉黑时长（小时）
-    private static final int BLACKLIST_DURATION_HOURS = 24;
-
-    // 内部服务标识
-    private static final Set<String> INTERNAL_SERVICES = Set.of(
-        "poetize-python",
-        "poetize-java", 
-        "poetize-prerender",
-        "poetize-nginx"
-    );
-
-    // 常见的恶意扫描路径 - 只包含明确的恶意路径，避免误拦截正常请求
-    private static final Set<String> MALICIOUS_PATHS = Set.of(
-        "/.env",                    // 环境变量文件
-        "/.env.local",
-        "/.env.production", 
-        "/.git",                    // Git版本控制目录
-        "/.git/config",
-        "/phpmyadmin",              // 数据库管理工具
-        "/pma",
-        "/wp-admin",                // WordPress管理后台
-        "/wp-login.php",
-        "/wp-config.php",
-        "/config.php",              // PHP配置文件
-        "/database.php",
-        "/xmlrpc.php",              // WordPress XML-RPC
-        "/.aws",                    // AWS配置
-        "/.docker",                 // Docker配置
-        "/docker-compose.yml",
-        "/Dockerfile",
-        "/.DS_Store",               // macOS系统文件
-        "/admin.php",               // PHP管理页面（而不是/admin）
-        "/admin/login.php",
-        "/administrator.php",
-        "/manager.php",
-        "/console.php",
-        "/debug.php",
-        "/test.php",
-        "/info.php",
-        "/phpinfo.php",
-        "/sql.php",
-        "/backup.sql",
-        "/database.sql",
-        "/.htaccess",               // Apache配置文件
-        "/.htpasswd",
-        "/web.config",              // IIS配置文件
-        "/server.xml",              // Tomcat配置
-        "/application.properties",  // Spring配置文件（如果在根目录就是恶意扫描）
-        "/application.yml",
-        "/build.sh",                // 构建脚本，常被扫描利用
-        "/index.html",              // 根目录index.html探测
-        "/translation/test-summary", // 翻译模型测试探测
-        "/translation/definite_notexist_path", // 翻译模型路径扫描
-        "/definite_notexist_path"  // 通用路径探测
-    );
+    @Autowired
+    private RouteClassifier routeClassifier;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
@@ -96,8 +37,11 @@ public class SecurityFilter extends OncePerRequestFilter {
         String requestURI = request.getRequestURI();
         String clientIP = getClientIpAddress(request);
         
+        // 路由分类只计算一次，结果保存在请求属性中供后续过滤器复用
+        RouteClassification classification = routeClassifier.classify(request);
+
         // 检查是否为内部服务请求，如果是则直接放行
-        if (isInternalServiceRequest(request)) {
+        if (isInternalServiceRequest(request, classification)) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -116,15 +60,10 @@ public class SecurityFilter extends OncePerRequestFilter {
         boolean isMaliciousRequest = false;
         String attackType = "";
         
-        // 检查是否为恶意扫描路径
-        if (MALICIOUS_PATHS.contains(requestURI)) {
-            isMaliciousRequest = true;
-            attackType = "恶意路径扫描";
-        }
-        // 检查是否包含恶意扫描特征
-        else if (containsMaliciousPattern(requestURI)) {
+        // 检查是否为恶意扫描路径或包含恶意扫描特征
+        if (classification.isMalicious()) {
             isMaliciousRequest = true;
-            attackType = "可疑请求特征";
+            attackType = classification.attackType();
         }
         // 检查无参数的敏感API调用
         else if (isInvalidApiCall(request)) {
@@ -133,13 +72,8 @@ public class SecurityFilter extends OncePerRequestFilter {
         }
 
         if (isMaliciousRequest) {
-            // 统计拦截请求总数 - 使用Redis计数器
-            long blocked = redisUtil.incr(CacheConstants.CACHE_PREFIX + "security:blocked:total", 1);
-
-            // 每100次拦截记录一次统计信息
-            if (blocked % 100 == 0) {
-                log.info("安全过滤器已累计拦截 {} 次恶意请求", blocked);
-            }
+            // 统计拦截请求总数 - 本地累计后定期写回Redis
+            ipBlacklistService.recordBlocked();
             
             // 记录攻击并检查是否需要拉黑
             recordAttackAndCheckBlacklist(clientIP, requestURI, attackType);
@@ -153,100 +87,18 @@ public class SecurityFilter extends OncePerRequestFilter {
     }
     
     /**
-     * 检查是否包含恶意模式
+     * 检查是否为内部服务请求
      */
-    private boolean containsMaliciousPattern(String requestURI) {
-        try {
-            // URL解码，防止编码绕过
-            String decodedURI = URLDecoder.decode(requestURI, StandardCharsets.UTF_8);
-            String lowerURI = decodedURI.toLowerCase();
-            
-            // 路径遍历攻击
-            if (decodedURI.contains("..") || decodedURI.contains("./")) {
-                return true;
-            }
-            
-            // 敏感文件扩展名
-            if (decodedURI.endsWith(".sql") || decodedURI.endsWith(".bak") || 
-                decodedURI.endsWith(".backup") || decodedURI.endsWith(".old") || 
-                decodedURI.endsWith(".tmp") || decodedURI.endsWith(".log")) {
-                return true;
-            }
-            
-            // PHP相关恶意路径（WordPress、PHPMyAdmin等）
-            if (lowerURI.contains("/wp-") || lowerURI.contains(".php.") ||
-                lowerURI.contains("admin.php") || lowerURI.contains("login.php") ||
-                lowerURI.contains("config.php") || lowerURI.contains("phpinfo")) {
-                return true;
-            }
-            
-            // 只拦截已知的恶意翻译路径扫描，不拦截合法翻译服务请求
-            if (lowerURI.equals("/translation/test-summary") || lowerURI.equals("/translation/definite_notexist_path")) {
-                return true;
-            }
-            
-            // 检测明显的恶意探测模式
-            if (lowerURI.contains("notexist") || 
-                lowerURI.contains("test-") || 
-                lowerURI.contains("scanner") || 
-                lowerURI.contains("scan") ||
-                lowerURI.contains("probe")) {
-                return true;
-            }
-            
-            // 检测常见的CMS路径扫描
-            Set<String> commonCmsPatterns = Set.of(
-                "/wp-", "/wordpress", "/drupal", "/joomla", "/magento",
-                "/administrator", "/admin/login", "/phpmyadmin", "/xmlrpc", 
-                "/blog/wp-", "/cms/", "/old/", "/new/", "/backup/", "/bak/", 
-                "/beta/", "/temp/", "/dev/"
-            );
-            
-            for (String pattern : commonCmsPatterns) {
-                if (lowerURI.contains(pattern)) {
-                    return true;
-                }
-            }
-            
-            // XSS和脚本注入检测
-            if (lowerURI.contains("<script") || lowerURI.contains("javascript:") ||
-                lowerURI.contains("eval(") || lowerURI.contains("base64_decode")) {
-                return true;
-            }
-            
-            // SQL注入检测（大小写不敏感）
-            if (lowerURI.contains("union") && lowerURI.contains("select") ||
-                lowerURI.contains("drop") && lowerURI.contains("table") ||
-                lowerURI.contains("insert") && lowerURI.contains("into") ||
-                lowerURI.contains("delete") && lowerURI.contains("from") ||
-                lowerURI.contains("update") && lowerURI.contains("set") ||
-                lowerURI.contains("select") && lowerURI.contains("from")) {
-                return true;
-            }
-            
-            return false;
-            
-        } catch (Exception e) {
-            // URL解码失败，可能是恶意构造的URL
-            log.warn("URL解码失败，可能为恶意请求: {}", requestURI);
+    private boolean isInternalServiceRequest(HttpServletRequest request, RouteClassification classification) {
+        if (classification.internal()) {
             return true;
         }
-    }
-    
-    /**
-     * 检查是否为内部服务请求
-     */
-    private boolean isInternalServiceRequest(HttpServletRequest request) {
-        String internalService = request.getHeader("X-Internal-Service");
-        
+
+        String internalService = request.getHeader(RouteClassifier.INTERNAL_SERVICE_HEADER);
         if (internalService != null) {
-            if (INTERNAL_SERVICES.contains(internalService)) {
-                return true;
-            } else {
-                // 记录未知的内部服务标识，可能是恶意伪造
-                log.warn("检测到未知的内部服务标识: {}, URI: {}, IP: {}", 
-                        internalService, request.getRequestURI(), getClientIpAddress(request));
-            }
+            // 记录未知的内部服务标识，可能是恶意伪造
+            log.warn("检测到未知的内部服务标识: {}, URI: {}, IP: {}",
+                    internalService, request.getRequestURI(), getClientIpAddress(request));
         }
         
         return false;
@@ -270,11 +122,10 @@ public class SecurityFilter extends OncePerRequestFilter {
     }
     
     /**
-     * 检查IP是否被拉黑
+     * 检查IP是否被拉黑（本地布隆过滤器 + 精确集合，不访问Redis）
      */
     private boolean isIPBlacklisted(String ip) {
-        String blacklistKey = CacheConstants.buildIpBlacklistKey(ip);
-        return redisUtil.hasKey(blacklistKey);
+        return ipBlacklistService.isBlacklisted(ip);
     }
     
     /**
@@ -282,42 +133,16 @@ public class SecurityFilter extends OncePerRequestFilter {
      */
     private void recordAttackAndCheckBlacklist(String ip, String requestURI, String attackType) {
         // 对于无法获取IP的情况，采用更严格的策略
-        if ("unknown_ip".equals(ip)) {
+        if (IpBlacklistService.UNKNOWN_IP.equals(ip)) {
             log.error("拦截{}攻击: {} from 未知IP (无法获取真实IP地址，可能存在代理配置问题或恶意伪造)",
                      attackType, requestURI);
-
-            // 对unknown_ip立即拉黑，防止绕过检测
-            String blacklistKey = CacheConstants.buildIpBlacklistKey(ip);
-            redisUtil.set(blacklistKey, LocalDateTime.now().toString(), CacheConstants.IP_BLACKLIST_EXPIRE_TIME);
-
-            log.error("未知IP因恶意攻击被立即拉黑{}小时，拉黑时间: {}",
-                     BLACKLIST_DURATION_HOURS,
-                     LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-            return;
-        }
-
-        // 正常IP的处理逻辑 - 使用Redis计数器
-        String attackKey = CacheConstants.buildIpAttackKey(ip);
-        long currentCount = redisUtil.incr(attackKey, 1);
-
-        // 设置攻击计数的过期时间
-        if (currentCount == 1) {
-            redisUtil.expire(attackKey, CacheConstants.IP_ATTACK_EXPIRE_TIME);
         }
 
-        log.warn("拦截{}攻击: {} from IP: {} (攻击次数: {})", attackType, requestURI, ip, currentCount);
-
-        // 检查是否达到拉黑阈值
-        if (currentCount >= ATTACK_THRESHOLD) {
-            String blacklistKey = CacheConstants.buildIpBlacklistKey(ip);
-            redisUtil.set(blacklistKey, LocalDateTime.now().toString(), CacheConstants.IP_BLACKLIST_EXPIRE_TIME);
-
-            log.error("IP {} 因连续{}次恶意攻击被拉黑{}小时，拉黑时间: {}",
-                     ip, currentCount, BLACKLIST_DURATION_HOURS,
-                     LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        // 攻击次数本地按窗口累计，达到阈值时由 IpBlacklistService 拉黑并通知其他节点
+        int windowCount = ipBlacklistService.recordAttack(ip);
 
-            // 重置攻击计数
-            redisUtil.del(attackKey);
+        if (!IpBlacklistService.UNKNOWN_IP.equals(ip)) {
+            log.warn("拦截{}攻击: {} from IP: {} (本窗口攻击次数: {})", attackType, requestURI, ip, windowCount);
         }
     }
     
@@ -0,0 +1,19 @@
+package com.ld.poetry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 无状态token签发配置
+ */
+@Component
+@ConfigurationProperties(prefix = "poetize.token.stateless")
+@Data
+public class StatelessTokenPolicy {
+
+    /**
+     * 是否签发无状态token（v2），关闭后已签发的无状态token仍可验证直至过期
+     */
+    private boolean enabled = false;
+}
@@ -17,6 +17,9 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private SecurityFilter securityFilter;
 
+    @Autowired
+    private AdmissionFilter admissionFilter;
+
     @Autowired
     private PoetryFilter poetryFilter;
     
@@ -41,6 +44,19 @@ public class WebMvcConfig implements WebMvcConfigurer {
         return registration;
     }
 
+    /**
+     * 注册准入控制过滤器
+     */
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilterRegistration() {
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(admissionFilter);
+        registration.addUrlPatterns("/*");
+        registration.setName("admissionFilter");
+        registration.setOrder(2); // 在SecurityFilter之后、访问统计之前执行
+        return registration;
+    }
+
     /**
      * 注册访问量统计过滤器
      */
@@ -50,7 +66,7 @@ public class WebMvcConfig implements WebMvcConfigurer {
         registration.setFilter(poetryFilter);
         registration.addUrlPatterns("/*");
         registration.setName("poetryFilter");
-        registration.setOrder(2); // 设置在SecurityFilter之后执行
+        registration.setOrder(3); // 设置在SecurityFilter、AdmissionFilter之后执行
         return registration;
     }
 
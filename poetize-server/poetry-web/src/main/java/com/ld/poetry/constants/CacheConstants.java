@@ -27,7 +27,27 @@ public class CacheConstants {
      * 格式: poetize:session:{token}
      */
     public static final String USER_SESSION_PREFIX = CACHE_PREFIX + "session:";
-    
+
+    /**
+     * 会话失效通知频道，各节点据此清理本地token缓存
+     */
+    public static final String SESSION_REVOKE_CHANNEL = CACHE_PREFIX + "session-revoke-channel";
+
+    /**
+     * 已吊销的无状态token索引（有序集合，成员为jti，分数为token过期时间）
+     */
+    public static final String TOKEN_REVOKED_INDEX_KEY = CACHE_PREFIX + "token:revoked";
+
+    /**
+     * 按用户吊销无状态token的时间点（有序集合，成员为userId，分数为吊销时间，此前签发的token均失效）
+     */
+    public static final String TOKEN_USER_NOT_BEFORE_KEY = CACHE_PREFIX + "token:user-not-before";
+
+    /**
+     * 无状态token吊销通知频道
+     */
+    public static final String TOKEN_REVOKE_CHANNEL = CACHE_PREFIX + "token:revoke-channel";
+
     /**
      * 用户登录失败次数缓存键前缀
      * 格式: poetize:login:fail:{username}
@@ -143,6 +163,22 @@ public class CacheConstants {
      * 格式: poetize:security:blacklist:{ip}
      */
     public static final String IP_BLACKLIST_PREFIX = CACHE_PREFIX + "security:blacklist:";
+
+    /**
+     * IP黑名单索引（有序集合，成员为IP，分数为解除拉黑的毫秒时间戳），用于各节点对账本地黑名单
+     * 格式: poetize:security:blacklist-index
+     */
+    public static final String IP_BLACKLIST_INDEX_KEY = CACHE_PREFIX + "security:blacklist-index";
+
+    /**
+     * IP黑名单变更通知频道
+     */
+    public static final String IP_BLACKLIST_CHANNEL = CACHE_PREFIX + "security:blacklist-channel";
+
+    /**
+     * 被拦截的恶意请求总数
+     */
+    public static final String SECURITY_BLOCKED_TOTAL_KEY = CACHE_PREFIX + "security:blocked:total";
     
     /**
      * 验证码缓存键前缀
@@ -169,34 +205,49 @@ public class CacheConstants {
     public static final String FORGET_PASSWORD_PREFIX = CACHE_PREFIX + "forget:password:";
 
     /**
-     * 登录失败尝试缓存键前缀
-     * 格式: poetize:login:attempt:{account}
+     * 限流计数缓存键前缀（由 Lua 脚本维护的哈希）
+     * 格式: poetize:ratelimit:{rule}:{key}
+     */
+    public static final String RATE_LIMIT_PREFIX = CACHE_PREFIX + "ratelimit:";
+
+    /**
+     * IM隐藏聊天集合键前缀（成员为 {chatType}:{chatId}，另含已加载标记）
+     * 格式: poetize:im:hidden:{userId}
      */
-    public static final String LOGIN_ATTEMPT_PREFIX = CACHE_PREFIX + "login:attempt:";
+    public static final String IM_HIDDEN_CHATS_PREFIX = CACHE_PREFIX + "im:hidden:";
 
     /**
-     * 用户保存频率限制缓存键前缀
-     * 格式: poetize:save:count:user:{userId}
+     * IM集群节点心跳（有序集合，成员为节点ID，分数为最后心跳时间）
      */
-    public static final String SAVE_COUNT_USER_PREFIX = CACHE_PREFIX + "save:count:user:";
+    public static final String IM_NODES_KEY = CACHE_PREFIX + "im:nodes";
 
     /**
-     * IP保存频率限制缓存键前缀
-     * 格式: poetize:save:count:ip:{ip}
+     * IM用户所在节点集合键前缀
+     * 格式: poetize:im:presence:{userId}
      */
-    public static final String SAVE_COUNT_IP_PREFIX = CACHE_PREFIX + "save:count:ip:";
+    public static final String IM_PRESENCE_PREFIX = CACHE_PREFIX + "im:presence:";
 
     /**
-     * 用户文件上传频率限制缓存键前缀
-     * 格式: poetize:upload:count:user:{userId}
+     * IM用户最后在线时间（哈希，字段为用户ID，值为断开连接的毫秒时间戳）
      */
-    public static final String FILE_UPLOAD_COUNT_USER_PREFIX = CACHE_PREFIX + "upload:count:user:";
+    public static final String IM_LAST_SEEN_KEY = CACHE_PREFIX + "im:last-seen";
 
     /**
-     * IP文件上传频率限制缓存键前缀
-     * 格式: poetize:upload:count:ip:{ip}
+     * IM群各节点在线连接数哈希键前缀（字段为节点ID）
+     * 格式: poetize:im:online:{groupId}
      */
-    public static final String FILE_UPLOAD_COUNT_IP_PREFIX = CACHE_PREFIX + "upload:count:ip:";
+    public static final String IM_GROUP_ONLINE_PREFIX = CACHE_PREFIX + "im:online:";
+
+    /**
+     * IM集群广播频道（群消息、群解散），所有节点订阅
+     */
+    public static final String IM_CLUSTER_CHANNEL = CACHE_PREFIX + "im:cluster-channel";
+
+    /**
+     * IM节点频道前缀（私聊消息、踢下线、绑定群组），只有目标节点订阅
+     * 格式: poetize:im:node-channel:{nodeId}
+     */
+    public static final String IM_NODE_CHANNEL_PREFIX = CACHE_PREFIX + "im:node-channel:";
 
     /**
      * 管理员token缓存键前缀
@@ -248,6 +299,54 @@ public class CacheConstants {
      */
     public static final String IP_TODAY_VISIT_PREFIX = CACHE_PREFIX + "visit:ip:today:";
     
+    /**
+     * 每日独立访客HyperLogLog缓存键前缀
+     * 格式: poetize:visit:uv:day:{date}
+     */
+    public static final String VISIT_UV_DAY_PREFIX = CACHE_PREFIX + "visit:uv:day:";
+    
+    /**
+     * 每小时独立访客HyperLogLog缓存键前缀
+     * 格式: poetize:visit:uv:hour:{date}:{hour}
+     */
+    public static final String VISIT_UV_HOUR_PREFIX = CACHE_PREFIX + "visit:uv:hour:";
+    
+    /**
+     * 每日省份独立访客HyperLogLog缓存键前缀
+     * 格式: poetize:visit:uv:province:{date}:{province}
+     */
+    public static final String VISIT_UV_PROVINCE_PREFIX = CACHE_PREFIX + "visit:uv:province:";
+    
+    /**
+     * 区间独立访客合并结果缓存键前缀（PFMERGE目标键）
+     * 格式: poetize:visit:uv:range:{days}:{endDate}
+     */
+    public static final String VISIT_UV_RANGE_PREFIX = CACHE_PREFIX + "visit:uv:range:";
+    
+    /**
+     * 每日访问量计数器缓存键前缀
+     * 格式: poetize:visit:pv:day:{date}
+     */
+    public static final String VISIT_PV_DAY_PREFIX = CACHE_PREFIX + "visit:pv:day:";
+    
+    /**
+     * 每小时访问量计数器缓存键前缀
+     * 格式: poetize:visit:pv:hour:{date}:{hour}
+     */
+    public static final String VISIT_PV_HOUR_PREFIX = CACHE_PREFIX + "visit:pv:hour:";
+    
+    /**
+     * 每日省份访问量Hash缓存键前缀（field为省份，value为访问次数）
+     * 格式: poetize:visit:pv:province:{date}
+     */
+    public static final String VISIT_PV_PROVINCE_PREFIX = CACHE_PREFIX + "visit:pv:province:";
+    
+    /**
+     * 每日登录用户访问量Hash缓存键前缀（field为用户ID，value为访问次数）
+     * 格式: poetize:visit:pv:user:{date}
+     */
+    public static final String VISIT_PV_USER_PREFIX = CACHE_PREFIX + "visit:pv:user:";
+    
     /**
      * 在线用户数缓存键
      */
@@ -363,6 +462,22 @@ public class CacheConstants {
      * IP黑名单过期时间（秒）- 24小时
      */
     public static final long IP_BLACKLIST_EXPIRE_TIME = 86400;
+    
+    /**
+     * 每日访问计数器过期时间（秒）- 400天
+     * 说明：需覆盖365天区间的PFMERGE合并统计
+     */
+    public static final long VISIT_DAY_COUNTER_EXPIRE_TIME = 400L * 86400;
+    
+    /**
+     * 每小时及省份访问计数器过期时间（秒）- 8天
+     */
+    public static final long VISIT_DETAIL_COUNTER_EXPIRE_TIME = 8L * 86400;
+    
+    /**
+     * 区间独立访客合并结果过期时间（秒）- 5分钟
+     */
+    public static final long VISIT_UV_RANGE_EXPIRE_TIME = 300;
 
     // ================================ 工具方法 ================================
     
@@ -374,6 +489,33 @@ public class CacheConstants {
     public static String buildUserKey(Integer userId) {
         return USER_CACHE_PREFIX + userId;
     }
+
+    /**
+     * 构建IM隐藏聊天集合键
+     * @param userId 用户ID
+     * @return 缓存键
+     */
+    public static String buildImHiddenChatsKey(Integer userId) {
+        return IM_HIDDEN_CHATS_PREFIX + userId;
+    }
+
+    /**
+     * 构建IM用户所在节点集合键
+     * @param userId 用户ID
+     * @return 缓存键
+     */
+    public static String buildImPresenceKey(String userId) {
+        return IM_PRESENCE_PREFIX + userId;
+    }
+
+    /**
+     * 构建IM群各节点在线连接数键
+     * @param groupId 群ID
+     * @return 缓存键
+     */
+    public static String buildImGroupOnlineKey(String groupId) {
+        return IM_GROUP_ONLINE_PREFIX + groupId;
+    }
     
     /**
      * 构建用户会话缓存键
@@ -490,48 +632,13 @@ public class CacheConstants {
     }
 
     /**
-     * 构建登录失败尝试缓存键
-     * @param account 账号
-     * @return 缓存键
-     */
-    public static String buildLoginAttemptKey(String account) {
-        return LOGIN_ATTEMPT_PREFIX + account;
-    }
-
-    /**
-     * 构建用户保存频率限制缓存键
-     * @param userId 用户ID
-     * @return 缓存键
-     */
-    public static String buildSaveCountUserKey(Integer userId) {
-        return SAVE_COUNT_USER_PREFIX + userId;
-    }
-
-    /**
-     * 构建IP保存频率限制缓存键
-     * @param ip IP地址
-     * @return 缓存键
-     */
-    public static String buildSaveCountIpKey(String ip) {
-        return SAVE_COUNT_IP_PREFIX + ip;
-    }
-
-    /**
-     * 构建用户文件上传频率限制缓存键
-     * @param userId 用户ID
-     * @return 缓存键
-     */
-    public static String buildFileUploadCountUserKey(Integer userId) {
-        return FILE_UPLOAD_COUNT_USER_PREFIX + userId;
-    }
-
-    /**
-     * 构建IP文件上传频率限制缓存键
-     * @param ip IP地址
+     * 构建限流计数缓存键
+     * @param rule 限流规则名称
+     * @param key 限流对象
      * @return 缓存键
      */
-    public static String buildFileUploadCountIpKey(String ip) {
-        return FILE_UPLOAD_COUNT_IP_PREFIX + ip;
+    public static String buildRateLimitKey(String rule, String key) {
+        return RATE_LIMIT_PREFIX + rule + ":" + key;
     }
 
     /**
@@ -602,6 +709,82 @@ public class CacheConstants {
         return IP_TODAY_VISIT_PREFIX + date + ":" + ip + userSuffix;
     }
     
+    /**
+     * 构建每日独立访客HyperLogLog缓存键
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @return 缓存键
+     */
+    public static String buildVisitUvDayKey(String date) {
+        return VISIT_UV_DAY_PREFIX + date;
+    }
+    
+    /**
+     * 构建每小时独立访客HyperLogLog缓存键
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @param hour 小时（0-23）
+     * @return 缓存键
+     */
+    public static String buildVisitUvHourKey(String date, int hour) {
+        return VISIT_UV_HOUR_PREFIX + date + ":" + hour;
+    }
+    
+    /**
+     * 构建省份独立访客HyperLogLog缓存键
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @param province 省份
+     * @return 缓存键
+     */
+    public static String buildVisitUvProvinceKey(String date, String province) {
+        return VISIT_UV_PROVINCE_PREFIX + date + ":" + province;
+    }
+    
+    /**
+     * 构建区间独立访客合并结果缓存键
+     * @param days 天数
+     * @param endDate 截止日期（格式：yyyy-MM-dd）
+     * @return 缓存键
+     */
+    public static String buildVisitUvRangeKey(int days, String endDate) {
+        return VISIT_UV_RANGE_PREFIX + days + ":" + endDate;
+    }
+    
+    /**
+     * 构建每日访问量计数器缓存键
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @return 缓存键
+     */
+    public static String buildVisitPvDayKey(String date) {
+        return VISIT_PV_DAY_PREFIX + date;
+    }
+    
+    /**
+     * 构建每小时访问量计数器缓存键
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @param hour 小时（0-23）
+     * @return 缓存键
+     */
+    public static String buildVisitPvHourKey(String date, int hour) {
+        return VISIT_PV_HOUR_PREFIX + date + ":" + hour;
+    }
+    
+    /**
+     * 构建每日省份访问量Hash缓存键
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @return 缓存键
+     */
+    public static String buildVisitPvProvinceKey(String date) {
+        return VISIT_PV_PROVINCE_PREFIX + date;
+    }
+    
+    /**
+     * 构建每日用户访问量Hash缓存键
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @return 缓存键
+     */
+    public static String buildVisitPvUserKey(String date) {
+        return VISIT_PV_USER_PREFIX + date;
+    }
+    
     // ================================ 二维码缓存键构建方法 ================================
     
     /**
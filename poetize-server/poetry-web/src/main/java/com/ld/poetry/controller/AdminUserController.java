@@ -9,6 +9,7 @@ import com.ld.poetry.constants.CommonConst;
 import com.ld.poetry.entity.*;
 import com.ld.poetry.enums.CodeMsg;
 import com.ld.poetry.enums.PoetryEnum;
+import com.ld.poetry.im.websocket.ImClusterRouter;
 import com.ld.poetry.im.websocket.TioUtil;
 import com.ld.poetry.im.websocket.TioWebsocketStarter;
 import com.ld.poetry.service.CacheService;
@@ -19,7 +20,6 @@ import com.ld.poetry.vo.UserVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
-import org.tio.core.Tio;
 
 /**
  * <p>
@@ -37,6 +37,9 @@ public class AdminUserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ImClusterRouter imClusterRouter;
+
     @Autowired
     private CacheService cacheService;
 
@@ -122,7 +125,7 @@ public class AdminUserController {
             // 断开WebSocket连接
             TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
             if (tioWebsocketStarter != null) {
-                Tio.removeUser(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), "管理员强制下线");
+                imClusterRouter.removeUser(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), "管理员强制下线");
             }
 
             log.info("用户强制下线完成: userId={}", userId);
@@ -145,8 +145,7 @@ public class CommentController {
      */
     @GetMapping("/getLocationCacheStats")
     public PoetryResult<Map<String, Object>> getLocationCacheStats() {
-        Map<String, Object> result = new HashMap<>();
-        result.put("cacheSize", locationService.getCacheSize());
+        Map<String, Object> result = locationService.getCacheStats();
         result.put("message", "IP地理位置缓存统计信息");
         return PoetryResult.success(result);
     }
@@ -298,7 +298,7 @@ public class UserController {
                 User updatedUser = userService.getById(userId);
                 if (updatedUser != null) {
                     // 重新缓存更新后的用户信息，而不是简单删除缓存
-                    cacheService.cacheUser(updatedUser);
+                    cacheService.refreshUser(updatedUser);
                 } else {
                     // 如果获取不到用户信息，则清除缓存
                     cacheService.evictUser(userId);
@@ -1,6 +1,5 @@
 package com.ld.poetry.controller;
 
-import com.alibaba.fastjson.JSON;
 import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
 import com.ld.poetry.aop.LoginCheck;
 import com.ld.poetry.config.PoetryResult;
@@ -9,6 +8,7 @@ import com.ld.poetry.constants.CacheConstants;
 import com.ld.poetry.dao.*;
 import com.ld.poetry.entity.*;
 import com.ld.poetry.service.CacheService;
+import com.ld.poetry.service.VisitRollupService;
 import com.ld.poetry.service.WebInfoService;
 import com.ld.poetry.service.ThirdPartyOauthConfigService;
 import com.ld.poetry.dao.WebInfoMapper;
@@ -16,7 +16,6 @@ import com.ld.poetry.utils.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -77,7 +76,7 @@ public class WebInfoController {
     private CacheService cacheService;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private VisitRollupService visitRollupService;
 
     @Autowired
     private com.ld.poetry.service.SitemapService sitemapService;
@@ -421,20 +420,21 @@ public class WebInfoController {
             Map<String, Object> historyStats = cacheService.getCachedIpHistoryStatisticsSafely();
             
                 // 获取总访问量
-                Long historyCount = (Long) historyStats.get(CommonConst.IP_HISTORY_COUNT);
-                if (historyCount != null) {
-                    result.setHistoryAllCount(historyCount.toString());
+                Object historyCount = historyStats.get(CommonConst.IP_HISTORY_COUNT);
+                if (historyCount instanceof Number) {
+                    result.setHistoryAllCount(String.valueOf(((Number) historyCount).longValue()));
             } else {
                 result.setHistoryAllCount("0");
                 log.warn("总访问量数据为空，使用默认值0");
             }
 
-            // 获取今日访问量（从数据库获取）
+            // 获取今日访问量（今日访问记录尚未落库，从Redis HyperLogLog计数器获取）
             try {
-                Long todayVisitCount = historyInfoMapper.getTodayHistoryCount();
+                Map<String, Object> todayStats = cacheService.getDailyVisitCounters(java.time.LocalDate.now().toString());
+                Object todayVisitCount = todayStats != null ? todayStats.get("unique_visits") : null;
                 result.setHistoryDayCount(String.valueOf(todayVisitCount != null ? todayVisitCount : 0));
             } catch (Exception e) {
-                log.warn("获取数据库今日访问量失败，使用默认值0", e);
+                log.warn("获取今日访问量失败，使用默认值0", e);
                 result.setHistoryDayCount("0");
             }
 
@@ -502,12 +502,8 @@ public class WebInfoController {
             if (Boolean.TRUE.equals(history.get("_cache_refresh_needed"))) {
                 log.info("检测到缓存需要刷新，主动刷新统计数据");
                 try {
-                    // 主动刷新缓存
-                    Map<String, Object> refreshedHistory = new HashMap<>();
-                    refreshedHistory.put(CommonConst.IP_HISTORY_PROVINCE, historyInfoMapper.getHistoryByProvince());
-                    refreshedHistory.put(CommonConst.IP_HISTORY_IP, historyInfoMapper.getHistoryByIp());
-                    refreshedHistory.put(CommonConst.IP_HISTORY_HOUR, historyInfoMapper.getHistoryByYesterday());
-                    refreshedHistory.put(CommonConst.IP_HISTORY_COUNT, historyInfoMapper.getHistoryCount());
+                    // 主动刷新缓存（基于访问统计汇总表）
+                    Map<String, Object> refreshedHistory = visitRollupService.buildHistoryStatistics();
                     
                     // 缓存新数据
                     cacheService.cacheIpHistoryStatistics(refreshedHistory);
@@ -525,10 +521,13 @@ public class WebInfoController {
             result.put(CommonConst.IP_HISTORY_IP, history.get(CommonConst.IP_HISTORY_IP));
             result.put(CommonConst.IP_HISTORY_COUNT, history.get(CommonConst.IP_HISTORY_COUNT));
 
-            // 处理24小时数据（昨日数据）
+            // 处理昨日数据（汇总表中为每个用户一行，user_id + num）
             List<Map<String, Object>> ipHistoryCount = (List<Map<String, Object>>) history.get(CommonConst.IP_HISTORY_HOUR);
 
-            if (ipHistoryCount != null && !ipHistoryCount.isEmpty()) {
+            Object yesterdayCount = history.get(CommonConst.IP_HISTORY_YESTERDAY_COUNT);
+            if (yesterdayCount instanceof Number) {
+                result.put("ip_count_yest", ((Number) yesterdayCount).longValue());
+            } else if (ipHistoryCount != null && !ipHistoryCount.isEmpty()) {
                 result.put("ip_count_yest", ipHistoryCount.stream()
                     .map(m -> m != null ? m.get("ip") : null)
                     .filter(Objects::nonNull)
@@ -540,25 +539,24 @@ public class WebInfoController {
             // 安全地处理昨日用户信息（添加访问次数统计）
             if (ipHistoryCount != null && !ipHistoryCount.isEmpty()) {
                 // 统计每个用户的访问次数
-                Map<Integer, Long> userVisitCount = ipHistoryCount.stream()
-                    .filter(Objects::nonNull)
-                    .map(m -> {
-                        try {
-                            Object userId = m.get("user_id");
-                            if (userId != null) {
-                                return Integer.valueOf(userId.toString());
-                            }
-                        } catch (Exception e) {
-                            log.warn("处理昨日用户ID时出错: {}", e.getMessage());
+                // 汇总表每行带访问次数num；兼容旧缓存中每次访问一行的格式
+                Map<Integer, Long> userVisitCount = new HashMap<>();
+                for (Map<String, Object> m : ipHistoryCount) {
+                    if (m == null) {
+                        continue;
+                    }
+                    try {
+                        Object userId = m.get("user_id");
+                        if (userId != null) {
+                            Object num = m.get("num");
+                            long visits = num instanceof Number ? ((Number) num).longValue() : 1L;
+                            userVisitCount.merge(Integer.valueOf(userId.toString()), visits, Long::sum);
                         }
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.groupingBy(
-                        userId -> userId, 
-                        Collectors.counting()
-                    ));
-                
+                    } catch (Exception e) {
+                        log.warn("处理昨日用户ID时出错: {}", e.getMessage());
+                    }
+                }
+
                 List<Map<String, Object>> usernameYest = userVisitCount.entrySet().stream()
                     .map(entry -> {
                         try {
@@ -894,11 +892,8 @@ public class WebInfoController {
         }
 
         try {
-            // 1. 获取数据库中的历史数据（不包括今天）
-            List<Map<String, Object>> dbStats = historyInfoMapper.getDailyVisitStatsExcludeToday(days);
-            if (dbStats == null) {
-                dbStats = new ArrayList<>();
-            }
+            // 1. 获取汇总表中的历史数据（不包括今天）
+            List<Map<String, Object>> dbStats = visitRollupService.getDailyVisitStatsExcludeToday(days);
 
             // 2. 获取Redis中今天的实时数据
             Map<String, Object> todayStats = getTodayVisitStatsFromRedis();
@@ -922,8 +917,12 @@ public class WebInfoController {
                         .orElse(0);
                 avg = Math.round(avg * 100.0) / 100.0;
 
+                // 区间内去重后的独立访客数（PFMERGE合并每日HyperLogLog）
+                long rangeUniqueVisits = cacheService.getUniqueVisitorsInLastDays(days);
+
                 for (Map<String, Object> m : completeStats) {
                     m.put("avg_unique_visits", avg);
+                    m.put("range_unique_visits", rangeUniqueVisits);
                 }
             }
 
@@ -936,48 +935,27 @@ public class WebInfoController {
     }
 
     /**
-     * 从Redis获取今天的访问统计
+     * 从Redis获取今天的访问统计（HyperLogLog + 计数器，O(1)读取）
      */
     private Map<String, Object> getTodayVisitStatsFromRedis() {
-        try {
-            String todayKey = CacheConstants.DAILY_VISIT_RECORDS_PREFIX + 
-                java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            
-            // 获取今天的访问记录
-            List<Object> todayRecords = redisTemplate.opsForList().range(todayKey, 0, -1);
-            if (todayRecords == null || todayRecords.isEmpty()) {
-                return null;
-            }
-
-            // 统计今日数据
-            Set<String> uniqueIps = new HashSet<>();
-            int totalVisits = 0;
-            
-            for (Object record : todayRecords) {
-                try {
-                    // 将JSON字符串解析为Map对象
-                    Map<String, Object> visitRecord = JSON.parseObject(record.toString(), Map.class);
-                    String ip = (String) visitRecord.get("ip");
-                    if (ip != null && !ip.isEmpty()) {
-                        uniqueIps.add(ip);
-                        totalVisits++;
-                    }
-                } catch (Exception e) {
-                    log.warn("解析Redis访问记录失败: {}", record, e);
-                }
-            }
+        Map<String, Object> todayStats = cacheService.getDailyVisitCounters(java.time.LocalDate.now().toString());
+        if (todayStats != null) {
+            log.info("今日实时统计 - 独立访客: {}, 总访问量: {}", todayStats.get("unique_visits"), todayStats.get("total_visits"));
+        }
+        return todayStats;
+    }
 
-            Map<String, Object> todayStats = new HashMap<>();
-            todayStats.put("visit_date", java.time.LocalDate.now().toString());
-            todayStats.put("unique_visits", uniqueIps.size());
-            todayStats.put("total_visits", totalVisits);
-            
-            log.info("今日实时统计 - 独立访客: {}, 总访问量: {}", uniqueIps.size(), totalVisits);
-            return todayStats;
-            
+    /**
+     * 获取今日每小时访问量统计
+     */
+    @LoginCheck(0)
+    @GetMapping("/getHourlyVisitStats")
+    public PoetryResult<List<Map<String, Object>>> getHourlyVisitStats() {
+        try {
+            return PoetryResult.success(cacheService.getHourlyVisitCounters(java.time.LocalDate.now().toString()));
         } catch (Exception e) {
-            log.error("从Redis获取今日访问统计失败", e);
-            return null;
+            log.error("获取每小时访问统计失败", e);
+            return PoetryResult.fail("获取访问统计数据失败: " + e.getMessage());
         }
     }
 
@@ -1030,8 +1008,11 @@ public class WebInfoController {
             
             // 1. 先同步当前Redis中的访问记录到数据库
             syncCurrentRedisRecordsToDatabase();
+
+            // 2. 汇总新写入的访问记录
+            visitRollupService.rollupNewHistory();
             
-            // 重新构建统计数据（仅基于数据库数据，无Redis实时计数）
+            // 3. 基于汇总表重新构建统计数据
             cacheService.refreshLocationStatisticsCache();
             
             // 获取刷新后的统计数据用于返回
@@ -1069,6 +1050,23 @@ public class WebInfoController {
         }
     }
 
+    /**
+     * 清空访问统计汇总表并基于全部访问记录重新回填（管理员专用，异步执行）
+     */
+    @LoginCheck(0)
+    @PostMapping("/backfillVisitRollup")
+    public PoetryResult<Map<String, Object>> backfillVisitRollup() {
+        boolean started = visitRollupService.startBackfill();
+        if (!started) {
+            return PoetryResult.fail("访问统计汇总回填正在执行中，请稍后再试");
+        }
+        log.info("管理员触发访问统计汇总回填");
+        Map<String, Object> result = new HashMap<>();
+        result.put("started", true);
+        result.put("startTime", System.currentTimeMillis());
+        return PoetryResult.success(result);
+    }
+
     @LoginCheck(0)
     @GetMapping("/getThirdLoginConfig")
     public PoetryResult<Object> getThirdLoginConfig() {
@@ -5,7 +5,9 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -110,4 +112,60 @@ public interface HistoryInfoMapper extends BaseMapper<HistoryInfo> {
             "GROUP BY DATE_FORMAT(create_time, '%Y-%m-%d') " +
             "ORDER BY visit_date")
     List<Map<String, Object>> getDailyVisitStatsExcludeToday(@Param("days") Integer days);
+
+    /**
+     * 按主键顺序增量读取访问记录（访问统计汇总使用）
+     * @param lastId 已汇总的最大ID
+     * @param limit 每批条数
+     */
+    @Select("select id, user_id, ip, nation, province, city, create_time" +
+            " from history_info" +
+            " where id > #{lastId}" +
+            " order by id" +
+            " limit #{limit}")
+    List<HistoryInfo> selectAfterId(@Param("lastId") Integer lastId, @Param("limit") Integer limit);
+
+    /**
+     * 读取时间区间内的访问记录（按天重算汇总使用，走 idx_create_time 范围扫描）
+     */
+    @Select("select user_id, ip, nation, province, city, create_time" +
+            " from history_info" +
+            " where create_time >= #{start} and create_time < #{end}")
+    List<HistoryInfo> selectBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // ================================ 按月分区维护 ================================
+
+    /**
+     * history_info 的分区列表（partition_name、partition_description），未分区时为空
+     */
+    @Select("select partition_name as partition_name, partition_description as partition_description" +
+            " from information_schema.partitions" +
+            " where table_schema = database() and table_name = 'history_info' and partition_name is not null" +
+            " order by partition_ordinal_position")
+    List<Map<String, Object>> listPartitions();
+
+    /**
+     * 拆分 pmax 分区以创建新的月份分区
+     * @param partitions 分区定义，最后一个必须是 pmax
+     */
+    @Update("alter table history_info reorganize partition pmax into (${partitions})")
+    int reorganizeMaxPartition(@Param("partitions") String partitions);
+
+    @Update("alter table history_info drop partition ${partition}")
+    int dropPartition(@Param("partition") String partition);
+
+    @Select("select count(*) from history_info partition (${partition})")
+    Long countPartition(@Param("partition") String partition);
+
+    /**
+     * 按主键顺序读取指定分区的访问记录（归档使用）
+     */
+    @Select("select id, user_id, ip, nation, province, city, create_time" +
+            " from history_info partition (${partition})" +
+            " where id > #{lastId}" +
+            " order by id" +
+            " limit #{limit}")
+    List<HistoryInfo> selectPartitionAfterId(@Param("partition") String partition,
+                                             @Param("lastId") Integer lastId,
+                                             @Param("limit") Integer limit);
 }
@@ -0,0 +1,173 @@
+package com.ld.poetry.dao;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 访问统计预聚合汇总 Mapper 接口
+ * </p>
+ * <p>
+ * 汇总表由 VisitRollupService 按 history_info 增量维护，统计接口只读汇总表，
+ * 不再对 history_info 做全表 count(distinct ip)。
+ * </p>
+ */
+@Mapper
+public interface VisitStatsMapper {
+
+    // ================================ 全站累计及检查点 ================================
+
+    /**
+     * 全站累计汇总（visits、unique_ips、last_history_id），未初始化时返回null
+     */
+    @Select("select visits, unique_ips, last_history_id from visit_stats_total where id = 1")
+    Map<String, Object> getTotal();
+
+    /**
+     * 初始化全站累计汇总行
+     */
+    @Insert("insert ignore into visit_stats_total (id, visits, unique_ips, last_history_id) values (1, 0, 0, 0)")
+    int initTotal();
+
+    /**
+     * 累加全站访问量并推进增量检查点（检查点只前进不后退，回填归档数据时传0）
+     */
+    @Update("update visit_stats_total" +
+            " set visits = visits + #{visits}, unique_ips = unique_ips + #{uniqueIps}," +
+            " last_history_id = greatest(last_history_id, #{lastHistoryId})" +
+            " where id = 1")
+    int addTotal(@Param("visits") long visits,
+                 @Param("uniqueIps") long uniqueIps,
+                 @Param("lastHistoryId") int lastHistoryId);
+
+    // ================================ IP / 省份累计 ================================
+
+    /**
+     * 在给定IP中筛选已存在于累计汇总中的IP
+     */
+    List<String> selectExistingIps(@Param("ips") List<String> ips);
+
+    /**
+     * 批量累加IP访问汇总
+     * @param list 元素包含 ip、nation、province、city、visits、firstVisitTime、lastVisitTime
+     */
+    int batchUpsertIpSummary(@Param("list") List<Map<String, Object>> list);
+
+    /**
+     * 批量累加省份访问汇总
+     * @param list 元素包含 nation、province、visits、uniqueIps
+     */
+    int batchUpsertProvinceTotal(@Param("list") List<Map<String, Object>> list);
+
+    /**
+     * 独立IP最多的省份
+     */
+    @Select("select nation, province, unique_ips as num" +
+            " from visit_stats_province_total" +
+            " order by unique_ips desc" +
+            " limit #{limit}")
+    List<Map<String, Object>> getTopProvinces(@Param("limit") int limit);
+
+    /**
+     * 访问次数最多的IP
+     */
+    @Select("select ip, visits as num" +
+            " from visit_ip_summary" +
+            " order by visits desc" +
+            " limit #{limit}")
+    List<Map<String, Object>> getTopIps(@Param("limit") int limit);
+
+    // ================================ 按天汇总 ================================
+
+    /**
+     * 写入（覆盖）单日汇总
+     */
+    @Insert("insert into visit_stats_daily (stat_date, visits, unique_ips)" +
+            " values (#{statDate}, #{visits}, #{uniqueIps})" +
+            " on duplicate key update visits = values(visits), unique_ips = values(unique_ips)")
+    int upsertDaily(@Param("statDate") LocalDate statDate,
+                    @Param("visits") long visits,
+                    @Param("uniqueIps") long uniqueIps);
+
+    @Delete("delete from visit_stats_hourly where stat_time >= #{start} and stat_time < #{end}")
+    int deleteHourly(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Delete("delete from visit_stats_daily_region where stat_date = #{statDate}")
+    int deleteDailyRegion(@Param("statDate") LocalDate statDate);
+
+    @Delete("delete from visit_stats_daily_user where stat_date = #{statDate}")
+    int deleteDailyUser(@Param("statDate") LocalDate statDate);
+
+    /**
+     * @param list 元素包含 statTime、visits、uniqueIps
+     */
+    int batchInsertHourly(@Param("list") List<Map<String, Object>> list);
+
+    /**
+     * @param list 元素包含 statDate、nation、province、city、visits、uniqueIps
+     */
+    int batchInsertDailyRegion(@Param("list") List<Map<String, Object>> list);
+
+    /**
+     * @param list 元素包含 statDate、userId、visits
+     */
+    int batchInsertDailyUser(@Param("list") List<Map<String, Object>> list);
+
+    /**
+     * 指定日期区间的每日访问统计（字段与原 history_info 统计查询保持一致）
+     */
+    @Select("select date_format(stat_date, '%Y-%m-%d') as visit_date," +
+            " unique_ips as unique_visits, visits as total_visits" +
+            " from visit_stats_daily" +
+            " where stat_date >= #{startDate} and stat_date < #{endDate}" +
+            " order by stat_date")
+    List<Map<String, Object>> getDailyStats(@Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate);
+
+    /**
+     * 单日汇总，不存在时返回null
+     */
+    @Select("select visits, unique_ips from visit_stats_daily where stat_date = #{statDate}")
+    Map<String, Object> getDaily(@Param("statDate") LocalDate statDate);
+
+    /**
+     * 单日登录用户访问次数
+     */
+    @Select("select user_id, visits as num" +
+            " from visit_stats_daily_user" +
+            " where stat_date = #{statDate}" +
+            " order by visits desc")
+    List<Map<String, Object>> getDailyUsers(@Param("statDate") LocalDate statDate);
+
+    // ================================ 回填 ================================
+
+    @Delete("delete from visit_stats_hourly")
+    int clearHourly();
+
+    @Delete("delete from visit_stats_daily")
+    int clearDaily();
+
+    @Delete("delete from visit_stats_daily_region")
+    int clearDailyRegion();
+
+    @Delete("delete from visit_stats_daily_user")
+    int clearDailyUser();
+
+    @Delete("delete from visit_ip_summary")
+    int clearIpSummary();
+
+    @Delete("delete from visit_stats_province_total")
+    int clearProvinceTotal();
+
+    @Update("update visit_stats_total set visits = 0, unique_ips = 0, last_history_id = 0 where id = 1")
+    int resetTotal();
+}
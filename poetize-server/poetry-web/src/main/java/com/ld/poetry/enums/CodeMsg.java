@@ -6,7 +6,9 @@ public enum CodeMsg {
     NOT_LOGIN(300, "未登陆，请登陆后再进行操作！"),
     LOGIN_EXPIRED(300, "登录已过期，请重新登陆！"),
     SYSTEM_REPAIR(301, "系统维护中，敬请期待！"),
-    FAIL(500, "服务异常！");
+    TOO_MANY_REQUESTS(429, "请求过于频繁，请稍后再试！"),
+    FAIL(500, "服务异常！"),
+    SERVICE_BUSY(503, "服务繁忙，请稍后再试！");
 
 
     private int code;
@@ -0,0 +1,22 @@
+package com.ld.poetry.handle;
+
+/**
+ * 服务繁忙异常
+ * 受限资源（如密码哈希线程池）已满时快速拒绝请求，由全局异常处理器返回 429
+ */
+public class PoetryBusyException extends PoetryRuntimeException {
+
+    /**
+     * 建议客户端重试前等待的秒数
+     */
+    private final long retryAfterSeconds;
+
+    public PoetryBusyException(String msg, long retryAfterSeconds) {
+        super(msg);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
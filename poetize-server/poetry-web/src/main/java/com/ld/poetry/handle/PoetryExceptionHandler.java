@@ -5,6 +5,7 @@ import com.ld.poetry.config.PoetryResult;
 import com.ld.poetry.enums.CodeMsg;
 import com.ld.poetry.utils.PoetryUtil;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -20,7 +21,7 @@ import java.util.stream.Collectors;
  * 全局异常处理器
  * 
  * <p>统一处理系统中抛出的各类异常，根据异常类型返回不同的响应结果。
- * 异常处理优先级从高到低依次为：登录异常 > 业务异常 > 参数校验异常 > 系统异常
+ * 异常处理优先级从高到低依次为：登录异常 > 服务繁忙 > 业务异常 > 参数校验异常 > 系统异常
  * 
  * @author sara (原作者)
  * @author LeapYa (优化者)
@@ -65,6 +66,17 @@ public class PoetryExceptionHandler {
             return PoetryResult.fail(300, ex.getMessage());
         }
 
+        // 服务繁忙：快速拒绝属于预期的过载保护，返回429并提示重试时间
+        if (ex instanceof PoetryBusyException busyEx) {
+            log.warn("服务繁忙，拒绝请求 - URL: {}, 原因: {}", requestUrl, ex.getMessage());
+            HttpServletResponse response = PoetryUtil.getResponse();
+            if (response != null) {
+                response.setStatus(CodeMsg.TOO_MANY_REQUESTS.getCode());
+                response.setHeader("Retry-After", String.valueOf(busyEx.getRetryAfterSeconds()));
+            }
+            return PoetryResult.fail(CodeMsg.TOO_MANY_REQUESTS.getCode(), ex.getMessage());
+        }
+
         // 记录异常详情供排查问题
         log.error("请求异常 - URL: {}", requestUrl);
         log.error("异常详情：", ex);
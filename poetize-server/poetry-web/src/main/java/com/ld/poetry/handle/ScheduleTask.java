@@ -3,6 +3,8 @@ package com.ld.poetry.handle;
 import com.ld.poetry.dao.HistoryInfoMapper;
 import com.ld.poetry.constants.CommonConst;
 import com.ld.poetry.service.CacheService;
+import com.ld.poetry.service.HistoryPartitionService;
+import com.ld.poetry.service.VisitRollupService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -30,6 +32,12 @@ public class ScheduleTask {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private VisitRollupService visitRollupService;
+
+    @Autowired
+    private HistoryPartitionService historyPartitionService;
+
     /**
      * 每天凌晨执行的完整清理和统计任务
      * 此时访问量统计会刷新，包括总访问量和今日访问量
@@ -42,7 +50,10 @@ public class ScheduleTask {
             // 同步昨天的Redis访问记录到数据库
             syncVisitRecordsToDatabase();
 
-            // 重新生成统计数据（仅基于数据库数据，无Redis实时计数）
+            // 将新写入的访问记录汇总到统计汇总表
+            visitRollupService.rollupNewHistory();
+
+            // 基于汇总表重新生成统计数据
             cacheService.refreshLocationStatisticsCache();
             log.info("IP历史记录清理和统计任务执行完成，访问量统计已更新");
             
@@ -52,6 +63,15 @@ public class ScheduleTask {
             ensureStatisticsCache();
         }
     }
+
+    /**
+     * 每天凌晨维护 history_info 分区：提前创建未来月份分区，归档并删除超过保留期的分区
+     * 在访问记录同步（0点）之后执行
+     */
+    @Scheduled(cron = "0 30 0 * * ?")
+    public void maintainHistoryPartitions() {
+        historyPartitionService.maintain();
+    }
     
 
     
@@ -73,58 +93,13 @@ public class ScheduleTask {
     }
 
     /**
-     * 刷新统计缓存（仅基于数据库数据，无Redis实时计数）
+     * 刷新统计缓存（基于访问统计汇总表）
      */
     private void refreshStatisticsCache() {
-        try (var scope = StructuredTaskScope.open()) {
-            // Fork 省份统计查询
-            Subtask<List<Map<String, Object>>> provinceTask = scope.fork(() -> 
-                historyInfoMapper.getHistoryByProvince()
-            );
-            
-            // Fork IP统计查询
-            Subtask<List<Map<String, Object>>> ipTask = scope.fork(() -> 
-                historyInfoMapper.getHistoryByIp()
-            );
-            
-            // Fork 小时统计查询
-            Subtask<List<Map<String, Object>>> hourTask = scope.fork(() -> 
-                historyInfoMapper.getHistoryBy24Hour()
-            );
-            
-            // Fork 总数查询
-            Subtask<Long> countTask = scope.fork(() -> 
-                historyInfoMapper.getHistoryCount()
-            );
-            
-            // 等待所有查询完成
-            scope.join();
-            
-            // 获取查询结果
-            List<Map<String, Object>> provinceStats = 
-                (provinceTask.state() == Subtask.State.SUCCESS) ? provinceTask.get() : new ArrayList<>();
-            List<Map<String, Object>> ipStats = 
-                (ipTask.state() == Subtask.State.SUCCESS) ? ipTask.get() : new ArrayList<>();
-            List<Map<String, Object>> hourStats = 
-                (hourTask.state() == Subtask.State.SUCCESS) ? hourTask.get() : new ArrayList<>();
-            Long totalCount = 
-                (countTask.state() == Subtask.State.SUCCESS) ? countTask.get() : 0L;
-
-            // 构建统计数据
-            Map<String, Object> stats = new HashMap<>();
-            stats.put(CommonConst.IP_HISTORY_PROVINCE, provinceStats != null ? provinceStats : new ArrayList<>());
-            stats.put(CommonConst.IP_HISTORY_IP, ipStats != null ? ipStats : new ArrayList<>());
-            stats.put(CommonConst.IP_HISTORY_HOUR, hourStats != null ? hourStats : new ArrayList<>());
-            stats.put(CommonConst.IP_HISTORY_COUNT, totalCount != null ? totalCount : 0L);
-
-            // 缓存统计数据
+        try {
+            Map<String, Object> stats = visitRollupService.buildHistoryStatistics();
             cacheService.cacheIpHistoryStatistics(stats);
-            log.info("统计缓存刷新成功，数据库总访问量: {}", totalCount);
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("统计缓存刷新被中断", e);
-            initializeDefaultStatistics();
+            log.info("统计缓存刷新成功，总访问量: {}", stats.get(CommonConst.IP_HISTORY_COUNT));
         } catch (Exception e) {
             log.error("刷新统计缓存失败，使用默认数据", e);
             initializeDefaultStatistics();
@@ -155,6 +130,19 @@ public class ScheduleTask {
     public void initializeCacheOnStartup() {
         log.info("应用启动，初始化统计缓存");
         ensureStatisticsCache();
+        // 升级后首次启动时，根据今日访问记录补齐HyperLogLog计数器
+        cacheService.rebuildVisitCountersIfMissing(java.time.LocalDate.now().toString());
+        // 维护 history_info 分区并汇总检查点之后的访问记录；升级后首次启动时汇总表为空，会对全部历史数据回填
+        Thread.ofVirtual().name("visit-rollup-startup").start(() -> {
+            try {
+                historyPartitionService.maintain();
+                if (visitRollupService.rollupNewHistory() > 0) {
+                    refreshStatisticsCache();
+                }
+            } catch (Exception e) {
+                log.error("启动时汇总访问统计失败", e);
+            }
+        });
     }
     
     /**
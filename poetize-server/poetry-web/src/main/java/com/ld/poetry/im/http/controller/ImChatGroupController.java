@@ -17,6 +17,7 @@ import com.ld.poetry.im.http.service.ImChatUserGroupMessageService;
 import com.ld.poetry.im.http.service.ImChatLastReadService;
 import com.ld.poetry.im.http.vo.GroupVO;
 import com.ld.poetry.im.websocket.ImConfigConst;
+import com.ld.poetry.im.websocket.ImClusterRouter;
 import com.ld.poetry.im.websocket.TioUtil;
 import com.ld.poetry.im.websocket.TioWebsocketStarter;
 import com.ld.poetry.enums.CodeMsg;
@@ -27,7 +28,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
-import org.tio.core.Tio;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -52,6 +52,9 @@ public class ImChatGroupController {
     @Autowired
     private ImChatGroupService imChatGroupService;
 
+    @Autowired
+    private ImClusterRouter imClusterRouter;
+
     @Autowired
     private ImChatGroupUserService imChatGroupUserService;
 
@@ -85,7 +88,7 @@ public class ImChatGroupController {
 
         TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
         if (tioWebsocketStarter != null) {
-            Tio.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(imChatGroup.getId()));
+            imClusterRouter.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(imChatGroup.getId()));
         }
 
         return PoetryResult.success();
@@ -175,7 +178,7 @@ public class ImChatGroupController {
 
             TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
             if (tioWebsocketStarter != null) {
-                Tio.removeGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(id), "remove group");
+                imClusterRouter.removeGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(id));
             }
         }
         return PoetryResult.success();
@@ -205,7 +208,7 @@ public class ImChatGroupController {
         if (count.intValue() == 1) {
             TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
             if (tioWebsocketStarter != null) {
-                Tio.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(PoetryUtil.getUserId()), String.valueOf(id));
+                imClusterRouter.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(PoetryUtil.getUserId()), String.valueOf(id));
             }
         }
         return PoetryResult.success();
@@ -267,7 +270,7 @@ public class ImChatGroupController {
             }
             
             // 获取群组在线用户数
-            int onlineCount = Tio.getByGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(groupId)).size();
+            int onlineCount = imClusterRouter.groupOnlineCount(tioWebsocketStarter.getServerTioConfig(), String.valueOf(groupId));
             
             // 记录访问日志
             
@@ -9,10 +9,15 @@ import com.ld.poetry.config.PoetryResult;
 import com.ld.poetry.entity.User;
 import com.ld.poetry.im.http.entity.ImChatGroup;
 import com.ld.poetry.im.http.entity.ImChatGroupUser;
+import com.ld.poetry.im.http.entity.ImChatUserFriend;
 import com.ld.poetry.im.http.service.ImChatGroupService;
 import com.ld.poetry.im.http.service.ImChatGroupUserService;
+import com.ld.poetry.im.http.service.ImChatUserFriendService;
 import com.ld.poetry.im.http.vo.GroupUserVO;
+import com.ld.poetry.im.http.vo.PresenceVO;
 import com.ld.poetry.im.websocket.ImConfigConst;
+import com.ld.poetry.im.websocket.ImClusterRouter;
+import com.ld.poetry.im.websocket.PresenceService;
 import com.ld.poetry.im.websocket.TioUtil;
 import com.ld.poetry.im.websocket.TioWebsocketStarter;
 import com.ld.poetry.utils.CommonQuery;
@@ -25,11 +30,12 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.tio.core.Tio;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -47,9 +53,18 @@ public class ImChatGroupUserController {
     @Autowired
     private ImChatGroupService imChatGroupService;
 
+    @Autowired
+    private ImClusterRouter imClusterRouter;
+
+    @Autowired
+    private PresenceService presenceService;
+
     @Autowired
     private ImChatGroupUserService imChatGroupUserService;
 
+    @Autowired
+    private ImChatUserFriendService imChatUserFriendService;
+
     @Autowired
     private CommonQuery commonQuery;
 
@@ -93,7 +108,7 @@ public class ImChatGroupUserController {
         if (isSuccess && chatGroup.getInType() == ImConfigConst.IN_TYPE_FALSE) {
             TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
             if (tioWebsocketStarter != null) {
-                Tio.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(id));
+                imClusterRouter.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(id));
             }
         }
         return PoetryResult.success();
@@ -152,14 +167,14 @@ public class ImChatGroupUserController {
         if (isSuccess && userStatus == ImConfigConst.GROUP_USER_STATUS_PASS) {
             TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
             if (tioWebsocketStarter != null) {
-                Tio.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(groupId));
+                imClusterRouter.bindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(groupId));
             }
         } else if (isSuccess && userStatus.intValue() == ImConfigConst.GROUP_USER_STATUS_BAN &&
                 (oldUserStatus.intValue() == ImConfigConst.GROUP_USER_STATUS_PASS ||
                         oldUserStatus.intValue() == ImConfigConst.GROUP_USER_STATUS_SILENCE)) {
             TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
             if (tioWebsocketStarter != null) {
-                Tio.unbindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(groupId));
+                imClusterRouter.unbindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(groupId));
             }
         }
 
@@ -250,7 +265,7 @@ public class ImChatGroupUserController {
         if (isSuccess) {
             TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
             if (tioWebsocketStarter != null) {
-                Tio.unbindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(id));
+                imClusterRouter.unbindGroup(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), String.valueOf(id));
             }
         }
         return PoetryResult.success();
@@ -386,6 +401,17 @@ public class ImChatGroupUserController {
             groupUserVOList.add(groupUserVO);
         });
 
+        // 成员在线状态（批量查询）
+        Map<Integer, PresenceVO> presence = presenceService.listPresence(
+                records.stream().map(ImChatGroupUser::getUserId).collect(Collectors.toList()));
+        groupUserVOList.forEach(groupUserVO -> {
+            PresenceVO userPresence = presence.get(groupUserVO.getUserId());
+            if (userPresence != null) {
+                groupUserVO.setOnline(userPresence.getOnline());
+                groupUserVO.setLastSeenTime(userPresence.getLastSeenTime());
+            }
+        });
+
         Page<GroupUserVO> result = new Page<>();
         result.setRecords(groupUserVOList);
         result.setTotal(page.getTotal());
@@ -393,5 +419,60 @@ public class ImChatGroupUserController {
         result.setSize(page.getSize());
         return PoetryResult.success(result);
     }
-}
 
+    /**
+     * 批量查询用户在线状态与最后在线时间
+     * <p>
+     * 只返回自己、好友和同群成员，其他用户直接忽略，避免任意用户探测他人的在线状态与最后在线时间
+     */
+    @GetMapping("/listPresence")
+    @LoginCheck
+    public PoetryResult<List<PresenceVO>> listPresence(@RequestParam("userIds") List<Integer> userIds) {
+        if (userIds.size() > ImConfigConst.PRESENCE_QUERY_MAX_SIZE) {
+            return PoetryResult.fail("一次最多查询" + ImConfigConst.PRESENCE_QUERY_MAX_SIZE + "个用户！");
+        }
+        Set<Integer> visible = visiblePresenceUsers(PoetryUtil.getUserId(), userIds);
+        List<Integer> allowed = userIds.stream().filter(visible::contains).collect(Collectors.toList());
+        return PoetryResult.success(new ArrayList<>(presenceService.listPresence(allowed).values()));
+    }
+
+    /**
+     * 可查看在线状态的用户：自己、已通过的好友、同在一个群（已通过或禁言）的成员
+     */
+    Set<Integer> visiblePresenceUsers(Integer userId, List<Integer> userIds) {
+        Set<Integer> visible = new HashSet<>();
+        visible.add(userId);
+        List<Integer> others = userIds.stream()
+                .filter(id -> id != null && !id.equals(userId))
+                .distinct()
+                .collect(Collectors.toList());
+        if (others.isEmpty()) {
+            return visible;
+        }
+
+        imChatUserFriendService.lambdaQuery()
+                .select(ImChatUserFriend::getFriendId)
+                .eq(ImChatUserFriend::getUserId, userId)
+                .eq(ImChatUserFriend::getFriendStatus, ImConfigConst.FRIEND_STATUS_PASS)
+                .in(ImChatUserFriend::getFriendId, others)
+                .list()
+                .forEach(friend -> visible.add(friend.getFriendId()));
+
+        List<Integer> groupIds = imChatGroupUserService.lambdaQuery()
+                .select(ImChatGroupUser::getGroupId)
+                .eq(ImChatGroupUser::getUserId, userId)
+                .in(ImChatGroupUser::getUserStatus, ImConfigConst.GROUP_USER_STATUS_PASS, ImConfigConst.GROUP_USER_STATUS_SILENCE)
+                .list()
+                .stream().map(ImChatGroupUser::getGroupId).collect(Collectors.toList());
+        if (!groupIds.isEmpty()) {
+            imChatGroupUserService.lambdaQuery()
+                    .select(ImChatGroupUser::getUserId)
+                    .in(ImChatGroupUser::getGroupId, groupIds)
+                    .in(ImChatGroupUser::getUserId, others)
+                    .in(ImChatGroupUser::getUserStatus, ImConfigConst.GROUP_USER_STATUS_PASS, ImConfigConst.GROUP_USER_STATUS_SILENCE)
+                    .list()
+                    .forEach(member -> visible.add(member.getUserId()));
+        }
+        return visible;
+    }
+}
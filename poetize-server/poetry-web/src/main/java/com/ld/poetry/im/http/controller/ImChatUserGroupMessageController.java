@@ -23,6 +23,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -53,12 +54,16 @@ public class ImChatUserGroupMessageController {
 
     /**
      * 获取群消息（只获取前四十条）
+     * <p>
+     * 带上 beforeId（已加载的最早一条消息ID）时按游标向前翻页，只扫描 (group_id, create_time) 索引的一段区间，不统计总数。
+     * 消息批量入库，ID是入库顺序而不是发送顺序，所以按发送时填写的 create_time 排序，同一秒内再按ID排序
      */
     @GetMapping("/listGroupMessage")
     @LoginCheck
     public PoetryResult<Page> listGroupMessage(@RequestParam(value = "current", defaultValue = "1") Long current,
                                                @RequestParam(value = "size", defaultValue = "40") Long size,
-                                               @RequestParam(value = "groupId") Integer groupId) {
+                                               @RequestParam(value = "groupId") Integer groupId,
+                                               @RequestParam(value = "beforeId", required = false) Long beforeId) {
         Page<ImChatUserGroupMessage> page = new Page<>();
         page.setCurrent(current);
         page.setSize(size);
@@ -83,7 +88,21 @@ public class ImChatUserGroupMessageController {
 
         LambdaQueryChainWrapper<ImChatUserGroupMessage> lambdaQuery = imChatUserGroupMessageService.lambdaQuery();
         lambdaQuery.eq(ImChatUserGroupMessage::getGroupId, groupId);
-        lambdaQuery.orderByDesc(ImChatUserGroupMessage::getCreateTime);
+        if (beforeId != null) {
+            page.setCurrent(1);
+            page.setSearchCount(false);
+            ImChatUserGroupMessage cursor = imChatUserGroupMessageService.lambdaQuery()
+                    .select(ImChatUserGroupMessage::getGroupId, ImChatUserGroupMessage::getCreateTime)
+                    .eq(ImChatUserGroupMessage::getId, beforeId)
+                    .one();
+            if (cursor == null || !groupId.equals(cursor.getGroupId())) {
+                return PoetryResult.success(page);
+            }
+            LocalDateTime cursorTime = cursor.getCreateTime();
+            lambdaQuery.and(wrapper -> wrapper.lt(ImChatUserGroupMessage::getCreateTime, cursorTime)
+                    .or(w -> w.eq(ImChatUserGroupMessage::getCreateTime, cursorTime).lt(ImChatUserGroupMessage::getId, beforeId)));
+        }
+        lambdaQuery.orderByDesc(ImChatUserGroupMessage::getCreateTime).orderByDesc(ImChatUserGroupMessage::getId);
         Page<ImChatUserGroupMessage> result = lambdaQuery.page(page);
         List<ImChatUserGroupMessage> records = result.getRecords();
         Collections.reverse(records);
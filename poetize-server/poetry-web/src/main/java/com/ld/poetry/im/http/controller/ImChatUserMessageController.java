@@ -8,6 +8,7 @@ import com.ld.poetry.config.PoetryResult;
 import com.ld.poetry.entity.User;
 import com.ld.poetry.im.http.entity.ImChatUserMessage;
 import com.ld.poetry.im.http.service.ImChatUserMessageService;
+import com.ld.poetry.im.http.vo.OfflineMessageBatchVO;
 import com.ld.poetry.im.http.vo.UserMessageVO;
 import com.ld.poetry.im.websocket.ImConfigConst;
 import com.ld.poetry.utils.CommonQuery;
@@ -19,6 +20,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -107,24 +109,56 @@ public class ImChatUserMessageController {
         return PoetryResult.success();
     }
 
+    /**
+     * 分页拉取未读消息
+     * <p>
+     * 握手时只推送最新的一页未读消息，更早的未读消息由客户端带上游标按需拉取
+     */
+    @GetMapping("/listOfflineMessage")
+    @LoginCheck
+    public PoetryResult<OfflineMessageBatchVO> listOfflineMessage(@RequestParam(value = "cursor", required = false) Long cursor,
+                                                                  @RequestParam(value = "friendId", required = false) Integer friendId,
+                                                                  @RequestParam(value = "size", defaultValue = "100") Integer size) {
+        int pageSize = Math.max(1, Math.min(size, ImConfigConst.OFFLINE_MESSAGE_MAX_PAGE_SIZE));
+        return PoetryResult.success(imChatUserMessageService.listOfflineMessages(PoetryUtil.getUserId(), friendId, cursor, pageSize));
+    }
+
     /**
      * 获取朋友消息（只获取前四十条）
+     * <p>
+     * 带上 beforeId（已加载的最早一条消息ID）时按游标向前翻页，只扫描 (conversation_key, create_time, id) 索引的一段区间，不统计总数。
+     * 消息批量入库，ID是入库顺序而不是发送顺序，所以按发送时填写的 create_time 排序，同一秒内再按ID排序
      */
     @GetMapping("/listFriendMessage")
     @LoginCheck
     public PoetryResult<Page> listFriendMessage(@RequestParam(value = "current", defaultValue = "1") Long current,
                                                 @RequestParam(value = "size", defaultValue = "40") Long size,
-                                                @RequestParam(value = "friendId") Integer friendId) {
+                                                @RequestParam(value = "friendId") Integer friendId,
+                                                @RequestParam(value = "beforeId", required = false) Long beforeId) {
         Page<ImChatUserMessage> page = new Page<>();
         page.setCurrent(current);
         page.setSize(size);
 
         Integer userId = PoetryUtil.getUserId();
 
+        long conversationKey = ImChatUserMessage.conversationKey(userId, friendId);
         LambdaQueryChainWrapper<ImChatUserMessage> lambdaQuery = imChatUserMessageService.lambdaQuery();
-        lambdaQuery.and(wrapper -> wrapper.eq(ImChatUserMessage::getFromId, userId).eq(ImChatUserMessage::getToId, friendId))
-                .or(wrapper -> wrapper.eq(ImChatUserMessage::getFromId, friendId).eq(ImChatUserMessage::getToId, userId));
-        lambdaQuery.orderByDesc(ImChatUserMessage::getCreateTime);
+        lambdaQuery.eq(ImChatUserMessage::getConversationKey, conversationKey);
+        if (beforeId != null) {
+            page.setCurrent(1);
+            page.setSearchCount(false);
+            ImChatUserMessage cursor = imChatUserMessageService.lambdaQuery()
+                    .select(ImChatUserMessage::getConversationKey, ImChatUserMessage::getCreateTime)
+                    .eq(ImChatUserMessage::getId, beforeId)
+                    .one();
+            if (cursor == null || cursor.getConversationKey() == null || cursor.getConversationKey() != conversationKey) {
+                return PoetryResult.success(page);
+            }
+            LocalDateTime cursorTime = cursor.getCreateTime();
+            lambdaQuery.and(wrapper -> wrapper.lt(ImChatUserMessage::getCreateTime, cursorTime)
+                    .or(w -> w.eq(ImChatUserMessage::getCreateTime, cursorTime).lt(ImChatUserMessage::getId, beforeId)));
+        }
+        lambdaQuery.orderByDesc(ImChatUserMessage::getCreateTime).orderByDesc(ImChatUserMessage::getId);
         Page<ImChatUserMessage> result = lambdaQuery.page(page);
         List<ImChatUserMessage> records = result.getRecords();
         Collections.reverse(records);
@@ -3,6 +3,10 @@ package com.ld.poetry.im.http.dao;
 import com.ld.poetry.im.http.entity.ImChatGroup;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
 
 /**
  * <p>
@@ -15,4 +19,18 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface ImChatGroupMapper extends BaseMapper<ImChatGroup> {
 
+    /**
+     * 群消息入库后累加消息序号并更新最后一条消息
+     *
+     * @param groupId 群ID
+     * @param count 本批消息条数
+     */
+    @Update("UPDATE im_chat_group SET message_seq = message_seq + #{count}, " +
+            "  last_message_content = IF(#{lastMessageId} >= IFNULL(last_message_id, 0), #{content}, last_message_content), " +
+            "  last_message_time = IF(#{lastMessageId} >= IFNULL(last_message_id, 0), #{createTime}, last_message_time), " +
+            "  last_message_id = GREATEST(IFNULL(last_message_id, 0), #{lastMessageId}) " +
+            "WHERE id = #{groupId}")
+    int appendMessages(@Param("groupId") Integer groupId, @Param("count") int count,
+                       @Param("lastMessageId") Long lastMessageId, @Param("content") String content,
+                       @Param("createTime") LocalDateTime createTime);
 }
@@ -2,10 +2,16 @@ package com.ld.poetry.im.http.dao;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.ld.poetry.im.http.entity.ImChatLastRead;
+import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
+import com.ld.poetry.im.http.vo.ConversationVO;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -28,14 +34,11 @@ public interface ImChatLastReadMapper extends BaseMapper<ImChatLastRead> {
      */
     @Select("SELECT " +
             "  f.friend_id, " +
-            "  COUNT(m.id) as unread_count " +
+            "  COALESCE(lr.unread_count, 0) as unread_count " +
             "FROM im_chat_user_friend f " +
             "LEFT JOIN im_chat_last_read lr ON lr.user_id = #{userId} AND lr.chat_type = 1 AND lr.chat_id = f.friend_id " +
-            "LEFT JOIN im_chat_user_message m ON (m.from_id = f.friend_id AND m.to_id = #{userId}) " +
-            "  AND m.create_time > COALESCE(lr.last_read_time, '1970-01-01') " +
             "WHERE f.user_id = #{userId} " +
-            "  AND f.friend_status = 1 " +
-            "GROUP BY f.friend_id")
+            "  AND f.friend_status = 1")
     List<Map<String, Object>> getFriendUnreadCountsByUserId(@Param("userId") Integer userId);
 
     /**
@@ -46,15 +49,12 @@ public interface ImChatLastReadMapper extends BaseMapper<ImChatLastRead> {
      */
     @Select("SELECT " +
             "  gu.group_id, " +
-            "  COUNT(gm.id) as unread_count " +
+            "  GREATEST(COALESCE(g.message_seq, 0) - COALESCE(lr.read_seq, 0), 0) as unread_count " +
             "FROM im_chat_group_user gu " +
+            "LEFT JOIN im_chat_group g ON g.id = gu.group_id " +
             "LEFT JOIN im_chat_last_read lr ON lr.user_id = #{userId} AND lr.chat_type = 2 AND lr.chat_id = gu.group_id " +
-            "LEFT JOIN im_chat_user_group_message gm ON gm.group_id = gu.group_id " +
-            "  AND gm.create_time > COALESCE(lr.last_read_time, '1970-01-01') " +
-            "  AND gm.from_id != #{userId} " +
             "WHERE gu.user_id = #{userId} " +
-            "  AND gu.user_status IN (1, 2) " +
-            "GROUP BY gu.group_id")
+            "  AND gu.user_status IN (1, 2)")
     List<Map<String, Object>> getGroupUnreadCountsByUserId(@Param("userId") Integer userId);
 
     /**
@@ -64,11 +64,8 @@ public interface ImChatLastReadMapper extends BaseMapper<ImChatLastRead> {
      * @param friendId 好友ID
      * @return 未读消息数
      */
-    @Select("SELECT COUNT(*) " +
-            "FROM im_chat_user_message m " +
-            "LEFT JOIN im_chat_last_read lr ON lr.user_id = #{userId} AND lr.chat_type = 1 AND lr.chat_id = #{friendId} " +
-            "WHERE m.from_id = #{friendId} AND m.to_id = #{userId} " +
-            "  AND m.create_time > COALESCE(lr.last_read_time, '1970-01-01')")
+    @Select("SELECT unread_count FROM im_chat_last_read " +
+            "WHERE user_id = #{userId} AND chat_type = 1 AND chat_id = #{friendId}")
     Integer getFriendUnreadCount(@Param("userId") Integer userId, @Param("friendId") Integer friendId);
 
     /**
@@ -78,14 +75,118 @@ public interface ImChatLastReadMapper extends BaseMapper<ImChatLastRead> {
      * @param groupId 群ID
      * @return 未读消息数
      */
-    @Select("SELECT COUNT(*) " +
-            "FROM im_chat_user_group_message gm " +
-            "LEFT JOIN im_chat_last_read lr ON lr.user_id = #{userId} AND lr.chat_type = 2 AND lr.chat_id = #{groupId} " +
-            "WHERE gm.group_id = #{groupId} " +
-            "  AND gm.create_time > COALESCE(lr.last_read_time, '1970-01-01') " +
-            "  AND gm.from_id != #{userId}")
+    @Select("SELECT GREATEST(g.message_seq - COALESCE(lr.read_seq, 0), 0) " +
+            "FROM im_chat_group g " +
+            "LEFT JOIN im_chat_last_read lr ON lr.user_id = #{userId} AND lr.chat_type = 2 AND lr.chat_id = g.id " +
+            "WHERE g.id = #{groupId}")
     Integer getGroupUnreadCount(@Param("userId") Integer userId, @Param("groupId") Integer groupId);
 
+    /**
+     * 获取用户的完整聊天列表（私聊+群聊，含隐藏的聊天），带最后一条消息和未读数，按最后查看时间倒序
+     * 
+     * @param userId 用户ID
+     * @return 会话列表
+     */
+    @Select("SELECT 1 AS chat_type, f.friend_id AS chat_id, " +
+            "  lr.last_message_content, lr.last_message_time, " +
+            "  COALESCE(lr.unread_count, 0) AS unread_count, " +
+            "  COALESCE(lr.is_hidden, 0) AS is_hidden, " +
+            "  COALESCE(lr.last_read_time, '1970-01-01') AS last_read_time " +
+            "FROM im_chat_user_friend f " +
+            "LEFT JOIN im_chat_last_read lr " +
+            "  ON lr.user_id = #{userId} AND lr.chat_type = 1 AND lr.chat_id = f.friend_id " +
+            "WHERE f.user_id = #{userId} AND f.friend_status = 1 " +
+            "UNION ALL " +
+            "SELECT 2 AS chat_type, gu.group_id AS chat_id, " +
+            "  g.last_message_content, g.last_message_time, " +
+            "  GREATEST(COALESCE(g.message_seq, 0) - COALESCE(lr.read_seq, 0), 0) AS unread_count, " +
+            "  COALESCE(lr.is_hidden, 0) AS is_hidden, " +
+            "  COALESCE(lr.last_read_time, '1970-01-01') AS last_read_time " +
+            "FROM im_chat_group_user gu " +
+            "LEFT JOIN im_chat_group g ON g.id = gu.group_id " +
+            "LEFT JOIN im_chat_last_read lr " +
+            "  ON lr.user_id = #{userId} AND lr.chat_type = 2 AND lr.chat_id = gu.group_id " +
+            "WHERE gu.user_id = #{userId} AND gu.user_status IN (1, 2) " +
+            "ORDER BY last_read_time DESC")
+    List<ConversationVO> listConversations(@Param("userId") Integer userId);
+
+    /**
+     * 标记私聊已读：记录查看时间并清零未读数
+     */
+    @Insert("INSERT INTO im_chat_last_read (user_id, chat_type, chat_id, last_read_time, unread_count) " +
+            "VALUES (#{userId}, 1, #{friendId}, #{readTime}, 0) " +
+            "ON DUPLICATE KEY UPDATE last_read_time = VALUES(last_read_time), unread_count = 0")
+    int markFriendAsRead(@Param("userId") Integer userId, @Param("friendId") Integer friendId,
+                         @Param("readTime") LocalDateTime readTime);
+
+    /**
+     * 标记群聊已读：记录查看时间，已读序号前移到群当前的消息序号
+     */
+    @Insert("INSERT INTO im_chat_last_read (user_id, chat_type, chat_id, last_read_time, read_seq) " +
+            "SELECT #{userId}, 2, g.id, #{readTime}, g.message_seq FROM im_chat_group g WHERE g.id = #{groupId} " +
+            "ON DUPLICATE KEY UPDATE last_read_time = VALUES(last_read_time), read_seq = VALUES(read_seq)")
+    int markGroupAsRead(@Param("userId") Integer userId, @Param("groupId") Integer groupId,
+                        @Param("readTime") LocalDateTime readTime);
+
+    /**
+     * 私聊消息入库后更新会话
+     *
+     * @param userId 会话所属用户
+     * @param friendId 好友ID
+     * @param last 本批最后一条消息
+     * @param incoming 本批好友发来的消息，创建时间晚于最后查看时间的计入未读
+     * @param incomingCount incoming 的条数（新建会话时全部计入未读）
+     */
+    int upsertFriendConversation(@Param("userId") Integer userId, @Param("friendId") Integer friendId,
+                                 @Param("last") ImChatUserMessage last, @Param("incoming") List<ImChatUserMessage> incoming,
+                                 @Param("incomingCount") int incomingCount);
+
+    /**
+     * 为群消息发送者创建会话记录（已存在时不变）
+     */
+    int ensureGroupConversations(@Param("groupId") Integer groupId, @Param("userIds") Collection<Integer> userIds);
+
+    /**
+     * 群消息入库后前移已读序号
+     *
+     * @param groupId 群ID
+     * @param messages 本批该群的消息
+     * @param since 本批最早的消息创建时间，只有此后查看过的成员需要调整
+     * @param senderIds 本批发送者
+     */
+    int advanceGroupReadSeq(@Param("groupId") Integer groupId, @Param("messages") List<ImChatUserGroupMessage> messages,
+                            @Param("since") LocalDateTime since, @Param("senderIds") Collection<Integer> senderIds);
+
+    /**
+     * 按消息表重算一段会话ID区间内的私聊未读数
+     *
+     * @param fromId 区间起点（不含）
+     * @param toId 区间终点（含）
+     * @param activeSince 只处理此后更新过的会话
+     * @param quietBefore 此后仍有写入的会话本轮跳过
+     * @return 修正的会话数
+     */
+    int reconcileFriendUnread(@Param("fromId") int fromId, @Param("toId") int toId,
+                              @Param("activeSince") LocalDateTime activeSince, @Param("quietBefore") LocalDateTime quietBefore);
+
+    /**
+     * 按消息表重算一段会话ID区间内的群已读序号
+     *
+     * @param fromId 区间起点（不含）
+     * @param toId 区间终点（含）
+     * @param activeSince 只处理此后查看过的会话（更早查看的会话重算代价高且不会产生新的偏差）
+     * @param quietBefore 此后仍有写入的会话或群本轮跳过
+     * @return 修正的会话数
+     */
+    int reconcileGroupReadSeq(@Param("fromId") int fromId, @Param("toId") int toId,
+                              @Param("activeSince") LocalDateTime activeSince, @Param("quietBefore") LocalDateTime quietBefore);
+
+    /**
+     * 最大的会话ID
+     */
+    @Select("SELECT COALESCE(MAX(id), 0) FROM im_chat_last_read")
+    int getMaxId();
+
     /**
      * 获取用户的私聊列表（按最后查看时间倒序，过滤隐藏的聊天）
      * 
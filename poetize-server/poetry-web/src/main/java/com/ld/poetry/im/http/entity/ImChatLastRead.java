@@ -70,6 +70,36 @@ public class ImChatLastRead implements Serializable {
     @TableField("is_hidden")
     private Integer isHidden;
 
+    /**
+     * 私聊最后一条消息ID
+     */
+    @TableField("last_message_id")
+    private Long lastMessageId;
+
+    /**
+     * 私聊最后一条消息内容
+     */
+    @TableField("last_message_content")
+    private String lastMessageContent;
+
+    /**
+     * 私聊最后一条消息时间
+     */
+    @TableField("last_message_time")
+    private LocalDateTime lastMessageTime;
+
+    /**
+     * 私聊未读数
+     */
+    @TableField("unread_count")
+    private Integer unreadCount;
+
+    /**
+     * 群聊已读到的消息序号，未读数 = 群消息序号 - 已读序号
+     */
+    @TableField("read_seq")
+    private Long readSeq;
+
     /**
      * 创建时间
      */
@@ -58,6 +58,12 @@ public class ImChatUserGroupMessage implements Serializable {
     @TableField("content")
     private String content;
 
+    /**
+     * 消息键，写入预写日志前生成，重放时据此跳过已写入数据库的消息
+     */
+    @TableField("msg_key")
+    private String msgKey;
+
     /**
      * 创建时间
      */
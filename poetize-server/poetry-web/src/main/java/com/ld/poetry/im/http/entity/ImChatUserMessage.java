@@ -1,5 +1,6 @@
 package com.ld.poetry.im.http.entity;
 
+import com.baomidou.mybatisplus.annotation.FieldFill;
 import com.baomidou.mybatisplus.annotation.TableName;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
@@ -58,11 +59,28 @@ public class ImChatUserMessage implements Serializable {
     @TableField("message_status")
     private Boolean messageStatus;
 
+    /**
+     * 会话键（双方ID较小者在高32位，较大者在低32位，入库时自动填充）
+     */
+    @TableField(value = "conversation_key", fill = FieldFill.INSERT)
+    private Long conversationKey;
+
+    /**
+     * 消息键，写入预写日志前生成，重放时据此跳过已写入数据库的消息
+     */
+    @TableField("msg_key")
+    private String msgKey;
+
     /**
      * 创建时间
      */
     @TableField("create_time")
     private LocalDateTime createTime;
 
-
+    /**
+     * 计算两个用户之间的会话键，与参数顺序无关
+     */
+    public static long conversationKey(int userId, int otherId) {
+        return ((long) Math.min(userId, otherId) << 32) + Math.max(userId, otherId);
+    }
 }
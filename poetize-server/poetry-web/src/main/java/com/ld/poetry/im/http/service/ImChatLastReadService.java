@@ -2,6 +2,9 @@ package com.ld.poetry.im.http.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.ld.poetry.im.http.entity.ImChatLastRead;
+import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
+import com.ld.poetry.im.http.vo.ConversationVO;
 
 import java.util.List;
 import java.util.Map;
@@ -106,4 +109,20 @@ public interface ImChatLastReadService extends IService<ImChatLastRead> {
      * @param chatId 聊天ID
      */
     void unhideChat(Integer userId, Integer chatType, Integer chatId);
+
+    /**
+     * 获取用户的完整聊天列表（一次查询）：私聊与群聊、最后一条消息、未读数、是否隐藏，按最后查看时间倒序
+     * 
+     * @param userId 用户ID
+     * @return 会话列表
+     */
+    List<ConversationVO> listConversations(Integer userId);
+
+    /**
+     * 消息写入数据库后更新会话（最后一条消息、未读数），须在写入消息的同一事务中调用
+     * 
+     * @param userMessages 已入库的私聊消息（按写入顺序）
+     * @param groupMessages 已入库的群聊消息（按写入顺序）
+     */
+    void applyMessages(List<ImChatUserMessage> userMessages, List<ImChatUserGroupMessage> groupMessages);
 }
@@ -2,6 +2,7 @@ package com.ld.poetry.im.http.service;
 
 import com.ld.poetry.im.http.entity.ImChatUserMessage;
 import com.ld.poetry.im.http.vo.LastMessageVO;
+import com.ld.poetry.im.http.vo.OfflineMessageBatchVO;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 /**
@@ -21,4 +22,14 @@ public interface ImChatUserMessageService extends IService<ImChatUserMessage> {
      * @return 最后一条消息
      */
     LastMessageVO getLastMessageWithFriend(Integer currentUserId, Integer friendId);
+
+    /**
+     * 分页获取未读的私聊消息，从最新的开始向前翻页
+     * @param userId 接收者ID
+     * @param friendId 只取该好友发来的消息，为null时不限
+     * @param cursor 上一页返回的游标，只取ID小于游标的消息；为null时从最新的消息开始
+     * @param size 每页条数
+     * @return 本页消息（按ID升序）、发送者信息与下一页游标
+     */
+    OfflineMessageBatchVO listOfflineMessages(Integer userId, Integer friendId, Long cursor, int size);
 }
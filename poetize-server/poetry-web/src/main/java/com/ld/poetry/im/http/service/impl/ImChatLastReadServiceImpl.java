@@ -1,17 +1,29 @@
 package com.ld.poetry.im.http.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.im.http.dao.ImChatGroupMapper;
 import com.ld.poetry.im.http.dao.ImChatLastReadMapper;
 import com.ld.poetry.im.http.entity.ImChatLastRead;
+import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
 import com.ld.poetry.im.http.service.ImChatLastReadService;
+import com.ld.poetry.im.http.vo.ConversationVO;
+import com.ld.poetry.im.websocket.ImConfigConst;
+import com.ld.poetry.utils.RedisUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>
@@ -25,6 +37,17 @@ import java.util.Map;
 @Service
 public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper, ImChatLastRead> implements ImChatLastReadService {
 
+    /**
+     * 隐藏聊天缓存的已加载标记
+     */
+    private static final String HIDDEN_LOADED_MARK = "loaded";
+
+    @Autowired
+    private ImChatGroupMapper imChatGroupMapper;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
     @Override
     public Map<Integer, Integer> getFriendUnreadCounts(Integer userId) {
         try {
@@ -33,7 +56,7 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
             
             for (Map<String, Object> result : results) {
                 Integer friendId = (Integer) result.get("friend_id");
-                Long unreadCount = (Long) result.get("unread_count");
+                Number unreadCount = (Number) result.get("unread_count");
                 unreadCounts.put(friendId, unreadCount != null ? unreadCount.intValue() : 0);
             }
             
@@ -52,7 +75,7 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
             
             for (Map<String, Object> result : results) {
                 Integer groupId = (Integer) result.get("group_id");
-                Long unreadCount = (Long) result.get("unread_count");
+                Number unreadCount = (Number) result.get("unread_count");
                 unreadCounts.put(groupId, unreadCount != null ? unreadCount.intValue() : 0);
             }
             
@@ -88,24 +111,7 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
     @Override
     public void markFriendAsRead(Integer userId, Integer friendId) {
         try {
-            ImChatLastRead record = this.lambdaQuery()
-                    .eq(ImChatLastRead::getUserId, userId)
-                    .eq(ImChatLastRead::getChatType, ImChatLastRead.CHAT_TYPE_FRIEND)
-                    .eq(ImChatLastRead::getChatId, friendId)
-                    .one();
-            
-            if (record != null) {
-                record.setLastReadTime(LocalDateTime.now());
-                this.updateById(record);
-            } else {
-                record = new ImChatLastRead();
-                record.setUserId(userId);
-                record.setChatType(ImChatLastRead.CHAT_TYPE_FRIEND);
-                record.setChatId(friendId);
-                record.setLastReadTime(LocalDateTime.now());
-                this.save(record);
-            }
-            
+            baseMapper.markFriendAsRead(userId, friendId, LocalDateTime.now());
         } catch (Exception e) {
             log.error("标记用户 {} 和好友 {} 的消息为已读失败", userId, friendId, e);
         }
@@ -114,24 +120,7 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
     @Override
     public void markGroupAsRead(Integer userId, Integer groupId) {
         try {
-            ImChatLastRead record = this.lambdaQuery()
-                    .eq(ImChatLastRead::getUserId, userId)
-                    .eq(ImChatLastRead::getChatType, ImChatLastRead.CHAT_TYPE_GROUP)
-                    .eq(ImChatLastRead::getChatId, groupId)
-                    .one();
-            
-            if (record != null) {
-                record.setLastReadTime(LocalDateTime.now());
-                this.updateById(record);
-            } else {
-                record = new ImChatLastRead();
-                record.setUserId(userId);
-                record.setChatType(ImChatLastRead.CHAT_TYPE_GROUP);
-                record.setChatId(groupId);
-                record.setLastReadTime(LocalDateTime.now());
-                this.save(record);
-            }
-            
+            baseMapper.markGroupAsRead(userId, groupId, LocalDateTime.now());
         } catch (Exception e) {
             log.error("标记用户 {} 在群 {} 的消息为已读失败", userId, groupId, e);
         }
@@ -169,8 +158,8 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
                     .one();
             
             if (record != null) {
-                record.setIsHidden(1);
-                this.updateById(record);
+                // 只更新隐藏标记，避免覆盖同时写入的最后一条消息和未读数
+                this.lambdaUpdate().set(ImChatLastRead::getIsHidden, 1).eq(ImChatLastRead::getId, record.getId()).update();
             } else {
                 // 创建隐藏记录
                 record = new ImChatLastRead();
@@ -181,6 +170,7 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
                 record.setIsHidden(1);
                 this.save(record);
             }
+            cacheHidden(userId, ImChatLastRead.CHAT_TYPE_FRIEND, friendId);
             
         } catch (Exception e) {
             log.error("隐藏用户 {} 和好友 {} 的聊天失败", userId, friendId, e);
@@ -197,18 +187,19 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
                     .one();
             
             if (record != null) {
-                record.setIsHidden(1);
-                this.updateById(record);
+                // 只更新隐藏标记，避免覆盖同时写入的最后一条消息和未读数
+                this.lambdaUpdate().set(ImChatLastRead::getIsHidden, 1).eq(ImChatLastRead::getId, record.getId()).update();
             } else {
-                // 创建隐藏记录
-                record = new ImChatLastRead();
-                record.setUserId(userId);
-                record.setChatType(ImChatLastRead.CHAT_TYPE_GROUP);
-                record.setChatId(groupId);
-                record.setLastReadTime(LocalDateTime.now());
-                record.setIsHidden(1);
-                this.save(record);
+                // 创建隐藏记录（已读序号取群当前的消息序号）
+                baseMapper.markGroupAsRead(userId, groupId, LocalDateTime.now());
+                this.lambdaUpdate()
+                        .set(ImChatLastRead::getIsHidden, 1)
+                        .eq(ImChatLastRead::getUserId, userId)
+                        .eq(ImChatLastRead::getChatType, ImChatLastRead.CHAT_TYPE_GROUP)
+                        .eq(ImChatLastRead::getChatId, groupId)
+                        .update();
             }
+            cacheHidden(userId, ImChatLastRead.CHAT_TYPE_GROUP, groupId);
             
         } catch (Exception e) {
             log.error("隐藏用户 {} 在群 {} 的聊天失败", userId, groupId, e);
@@ -218,19 +209,157 @@ public class ImChatLastReadServiceImpl extends ServiceImpl<ImChatLastReadMapper,
     @Override
     public void unhideChat(Integer userId, Integer chatType, Integer chatId) {
         try {
-            ImChatLastRead record = this.lambdaQuery()
+            // 每条消息都会调用：聊天几乎总是可见的，先查缓存，只有确实隐藏时才写数据库
+            if (Boolean.FALSE.equals(isHiddenCached(userId, chatType, chatId))) {
+                return;
+            }
+            this.lambdaUpdate()
+                    .set(ImChatLastRead::getIsHidden, 0)
+                    .set(ImChatLastRead::getLastReadTime, LocalDateTime.now()) // 更新查看时间，移到列表顶部
                     .eq(ImChatLastRead::getUserId, userId)
                     .eq(ImChatLastRead::getChatType, chatType)
                     .eq(ImChatLastRead::getChatId, chatId)
-                    .one();
-            
-            if (record != null && record.getIsHidden() != null && record.getIsHidden() == 1) {
-                record.setIsHidden(0);
-                record.setLastReadTime(LocalDateTime.now()); // 更新查看时间，移到列表顶部
-                this.updateById(record);
-            }
+                    .eq(ImChatLastRead::getIsHidden, 1)
+                    .update();
+            redisUtil.setRemove(CacheConstants.buildImHiddenChatsKey(userId), hiddenMember(chatType, chatId));
         } catch (Exception e) {
             log.error("取消隐藏聊天失败 - userId: {}, chatType: {}, chatId: {}", userId, chatType, chatId, e);
         }
     }
+
+    /**
+     * 从缓存判断聊天是否隐藏，缓存未加载时从数据库加载该用户全部隐藏的聊天
+     * 
+     * @return 是否隐藏；Redis不可用时返回null
+     */
+    private Boolean isHiddenCached(Integer userId, Integer chatType, Integer chatId) {
+        String key = CacheConstants.buildImHiddenChatsKey(userId);
+        String member = hiddenMember(chatType, chatId);
+        Map<Object, Boolean> cached = redisUtil.sIsMembers(key, HIDDEN_LOADED_MARK, member);
+        if (cached == null) {
+            return null;
+        }
+        if (Boolean.TRUE.equals(cached.get(HIDDEN_LOADED_MARK))) {
+            return Boolean.TRUE.equals(cached.get(member));
+        }
+
+        List<ImChatLastRead> hidden = this.lambdaQuery()
+                .select(ImChatLastRead::getChatType, ImChatLastRead::getChatId)
+                .eq(ImChatLastRead::getUserId, userId)
+                .eq(ImChatLastRead::getIsHidden, 1)
+                .list();
+        List<Object> members = new ArrayList<>(hidden.size() + 1);
+        members.add(HIDDEN_LOADED_MARK);
+        boolean isHidden = false;
+        for (ImChatLastRead record : hidden) {
+            String m = hiddenMember(record.getChatType(), record.getChatId());
+            members.add(m);
+            isHidden |= m.equals(member);
+        }
+        redisUtil.sSetAndTime(key, CacheConstants.VERY_LONG_EXPIRE_TIME, members.toArray());
+        return isHidden;
+    }
+
+    /**
+     * 隐藏后加入缓存：不删除缓存，避免与并发的加载交错后丢失这条隐藏记录
+     */
+    private void cacheHidden(Integer userId, Integer chatType, Integer chatId) {
+        redisUtil.sSetAndTime(CacheConstants.buildImHiddenChatsKey(userId), CacheConstants.VERY_LONG_EXPIRE_TIME,
+                hiddenMember(chatType, chatId));
+    }
+
+    private static String hiddenMember(Integer chatType, Integer chatId) {
+        return chatType + ":" + chatId;
+    }
+
+    @Override
+    public List<ConversationVO> listConversations(Integer userId) {
+        List<ConversationVO> conversations = baseMapper.listConversations(userId);
+        return conversations != null ? conversations : new ArrayList<>();
+    }
+
+    @Override
+    public void applyMessages(List<ImChatUserMessage> userMessages, List<ImChatUserGroupMessage> groupMessages) {
+        for (FriendConversationDelta delta : friendDeltas(userMessages)) {
+            baseMapper.upsertFriendConversation(delta.userId, delta.friendId, delta.last, delta.incoming, delta.incoming.size());
+        }
+
+        for (Map.Entry<Integer, List<ImChatUserGroupMessage>> entry : groupByGroupId(groupMessages).entrySet()) {
+            Integer groupId = entry.getKey();
+            List<ImChatUserGroupMessage> messages = entry.getValue();
+            ImChatUserGroupMessage last = messages.get(messages.size() - 1);
+            imChatGroupMapper.appendMessages(groupId, messages.size(), last.getId(), last.getContent(), last.getCreateTime());
+
+            Set<Integer> senderIds = new LinkedHashSet<>();
+            LocalDateTime since = null;
+            for (ImChatUserGroupMessage message : messages) {
+                senderIds.add(message.getFromId());
+                if (since == null || message.getCreateTime().isBefore(since)) {
+                    since = message.getCreateTime();
+                }
+            }
+            baseMapper.ensureGroupConversations(groupId, senderIds);
+            baseMapper.advanceGroupReadSeq(groupId, messages, since, senderIds);
+        }
+    }
+
+    /**
+     * 按会话汇总私聊消息：每条消息更新收发双方各一个会话，接收方的会话记录这条消息用于累加未读数
+     * 
+     * @param userMessages 按写入顺序排列的消息
+     * @return 每个会话的最后一条消息和收到的消息
+     */
+    static Collection<FriendConversationDelta> friendDeltas(List<ImChatUserMessage> userMessages) {
+        Map<Long, FriendConversationDelta> deltas = new LinkedHashMap<>();
+        if (userMessages == null) {
+            return deltas.values();
+        }
+        for (ImChatUserMessage message : userMessages) {
+            if (message.getFromId() == null || message.getToId() == null || message.getCreateTime() == null
+                    || message.getFromId() == ImConfigConst.DEFAULT_SYSTEM_MESSAGE_ID) {
+                continue;
+            }
+            delta(deltas, message.getFromId(), message.getToId()).last = message;
+            FriendConversationDelta receiver = delta(deltas, message.getToId(), message.getFromId());
+            receiver.last = message;
+            receiver.incoming.add(message);
+        }
+        return deltas.values();
+    }
+
+    static Map<Integer, List<ImChatUserGroupMessage>> groupByGroupId(List<ImChatUserGroupMessage> groupMessages) {
+        Map<Integer, List<ImChatUserGroupMessage>> byGroup = new LinkedHashMap<>();
+        if (groupMessages != null) {
+            for (ImChatUserGroupMessage message : groupMessages) {
+                if (message.getGroupId() != null && message.getCreateTime() != null) {
+                    byGroup.computeIfAbsent(message.getGroupId(), k -> new ArrayList<>()).add(message);
+                }
+            }
+        }
+        return byGroup;
+    }
+
+    private static FriendConversationDelta delta(Map<Long, FriendConversationDelta> deltas, Integer userId, Integer friendId) {
+        long key = ((long) userId << 32) | (friendId & 0xFFFFFFFFL);
+        return deltas.computeIfAbsent(key, k -> new FriendConversationDelta(userId, friendId));
+    }
+
+    /**
+     * 一批消息对单个私聊会话的更新
+     */
+    static final class FriendConversationDelta {
+
+        final Integer userId;
+
+        final Integer friendId;
+
+        final List<ImChatUserMessage> incoming = new ArrayList<>();
+
+        ImChatUserMessage last;
+
+        FriendConversationDelta(Integer userId, Integer friendId) {
+            this.userId = userId;
+            this.friendId = friendId;
+        }
+    }
 }
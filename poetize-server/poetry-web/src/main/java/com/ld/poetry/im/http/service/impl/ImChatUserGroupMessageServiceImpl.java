@@ -29,6 +29,7 @@ public class ImChatUserGroupMessageServiceImpl extends ServiceImpl<ImChatUserGro
             .select(ImChatUserGroupMessage::getContent, ImChatUserGroupMessage::getCreateTime)
             .eq(ImChatUserGroupMessage::getGroupId, groupId)
             .orderByDesc(ImChatUserGroupMessage::getCreateTime)
+            .orderByDesc(ImChatUserGroupMessage::getId)
             .last("LIMIT 1")
             .one();
         
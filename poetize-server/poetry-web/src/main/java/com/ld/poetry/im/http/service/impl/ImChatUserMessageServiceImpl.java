@@ -4,9 +4,20 @@ import com.ld.poetry.im.http.entity.ImChatUserMessage;
 import com.ld.poetry.im.http.dao.ImChatUserMessageMapper;
 import com.ld.poetry.im.http.service.ImChatUserMessageService;
 import com.ld.poetry.im.http.vo.LastMessageVO;
+import com.ld.poetry.im.http.vo.OfflineMessageBatchVO;
+import com.ld.poetry.im.http.vo.UserMessageVO;
+import com.ld.poetry.entity.User;
+import com.ld.poetry.im.websocket.ImConfigConst;
+import com.ld.poetry.utils.CommonQuery;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * <p>
  * 单聊记录 服务实现类
@@ -18,20 +29,21 @@ import org.springframework.stereotype.Service;
 @Service
 public class ImChatUserMessageServiceImpl extends ServiceImpl<ImChatUserMessageMapper, ImChatUserMessage> implements ImChatUserMessageService {
 
+    @Autowired
+    private CommonQuery commonQuery;
+
     @Override
     public LastMessageVO getLastMessageWithFriend(Integer currentUserId, Integer friendId) {
         if (currentUserId == null || friendId == null) {
             return null;
         }
         
-        // 查询最后一条消息（发送或接收），只查询需要的字段
+        // 查询最后一条消息（发送或接收），只查询需要的字段，走 (conversation_key, create_time, id) 索引
         ImChatUserMessage lastMessage = lambdaQuery()
             .select(ImChatUserMessage::getContent, ImChatUserMessage::getCreateTime)
-            .and(wrapper -> wrapper
-                .and(w -> w.eq(ImChatUserMessage::getFromId, currentUserId).eq(ImChatUserMessage::getToId, friendId))
-                .or(w -> w.eq(ImChatUserMessage::getFromId, friendId).eq(ImChatUserMessage::getToId, currentUserId))
-            )
+            .eq(ImChatUserMessage::getConversationKey, ImChatUserMessage.conversationKey(currentUserId, friendId))
             .orderByDesc(ImChatUserMessage::getCreateTime)
+            .orderByDesc(ImChatUserMessage::getId)
             .last("LIMIT 1")
             .one();
         
@@ -46,4 +58,64 @@ public class ImChatUserMessageServiceImpl extends ServiceImpl<ImChatUserMessageM
         
         return vo;
     }
+
+    @Override
+    public OfflineMessageBatchVO listOfflineMessages(Integer userId, Integer friendId, Long cursor, int size) {
+        if (userId == null || size <= 0) {
+            return new OfflineMessageBatchVO();
+        }
+
+        // 按主键倒序做游标分页（走 (to_id, message_status) 索引），多取一条用于判断是否还有下一页
+        List<ImChatUserMessage> newestFirst = lambdaQuery()
+            .select(ImChatUserMessage::getId, ImChatUserMessage::getFromId, ImChatUserMessage::getToId,
+                    ImChatUserMessage::getContent, ImChatUserMessage::getCreateTime)
+            .eq(ImChatUserMessage::getToId, userId)
+            .eq(ImChatUserMessage::getMessageStatus, ImConfigConst.USER_MESSAGE_STATUS_FALSE)
+            .eq(friendId != null, ImChatUserMessage::getFromId, friendId)
+            .lt(cursor != null, ImChatUserMessage::getId, cursor)
+            .orderByDesc(ImChatUserMessage::getId)
+            .last("LIMIT " + (size + 1))
+            .list();
+
+        Set<Integer> senderIds = new LinkedHashSet<>();
+        for (int i = 0; i < newestFirst.size() && i < size; i++) {
+            senderIds.add(newestFirst.get(i).getFromId());
+        }
+        return buildBatch(newestFirst, size, commonQuery.getUsers(senderIds));
+    }
+
+    /**
+     * 组装一页离线消息
+     * @param newestFirst 按ID倒序查出的消息，最多 size + 1 条
+     * @param users 发送者
+     */
+    static OfflineMessageBatchVO buildBatch(List<ImChatUserMessage> newestFirst, int size, Map<Integer, User> users) {
+        OfflineMessageBatchVO batch = new OfflineMessageBatchVO();
+        int count = Math.min(size, newestFirst.size());
+        batch.setHasMore(newestFirst.size() > size);
+        for (int i = count - 1; i >= 0; i--) {
+            ImChatUserMessage message = newestFirst.get(i);
+            UserMessageVO vo = new UserMessageVO();
+            vo.setId(message.getId());
+            vo.setFromId(message.getFromId());
+            vo.setToId(message.getToId());
+            vo.setContent(message.getContent());
+            vo.setMessageStatus(ImConfigConst.USER_MESSAGE_STATUS_FALSE);
+            vo.setCreateTime(message.getCreateTime());
+            batch.getMessages().add(vo);
+
+            User user = users.get(message.getFromId());
+            if (user != null && !batch.getSenders().containsKey(user.getId())) {
+                OfflineMessageBatchVO.Sender sender = new OfflineMessageBatchVO.Sender();
+                sender.setId(user.getId());
+                sender.setUsername(user.getUsername());
+                sender.setAvatar(user.getAvatar());
+                batch.getSenders().put(user.getId(), sender);
+            }
+        }
+        if (count > 0) {
+            batch.setCursor(newestFirst.get(count - 1).getId());
+        }
+        return batch;
+    }
 }
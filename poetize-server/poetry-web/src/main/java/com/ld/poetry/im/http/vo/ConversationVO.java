@@ -0,0 +1,43 @@
+package com.ld.poetry.im.http.vo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 会话 VO
+ * 聊天列表中的一项：最后一条消息与未读数，按最后查看时间倒序
+ */
+@Data
+public class ConversationVO {
+
+    /**
+     * 聊天类型[1:私聊，2:群聊]
+     */
+    private Integer chatType;
+
+    /**
+     * 聊天ID（私聊为friendId，群聊为groupId）
+     */
+    private Integer chatId;
+
+    /**
+     * 最后一条消息内容
+     */
+    private String lastMessageContent;
+
+    /**
+     * 最后一条消息时间
+     */
+    private LocalDateTime lastMessageTime;
+
+    /**
+     * 未读数
+     */
+    private Integer unreadCount;
+
+    /**
+     * 是否隐藏[0:否，1:是]
+     */
+    private Integer isHidden;
+}
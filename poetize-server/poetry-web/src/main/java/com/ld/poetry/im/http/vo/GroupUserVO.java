@@ -32,4 +32,16 @@ public class GroupUserVO {
     private LocalDateTime createTime;
 
     private String groupName;
+
+    /**
+     * 是否在线
+     */
+    private Boolean online;
+
+    /**
+     * 最后在线时间，在线时为空
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastSeenTime;
 }
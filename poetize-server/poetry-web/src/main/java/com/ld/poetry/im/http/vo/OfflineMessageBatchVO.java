@@ -0,0 +1,54 @@
+package com.ld.poetry.im.http.vo;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离线消息批量同步 VO
+ * <p>
+ * 一页未读私聊消息（按ID升序）连同发送者信息一次下发，发送者只出现一次，消息本身不再携带头像。
+ * 游标为本页最小的消息ID，客户端带上游标可继续拉取更早的未读消息。
+ * </p>
+ */
+@Data
+public class OfflineMessageBatchVO {
+
+    /**
+     * WebSocket 消息类型，6表示离线消息批量同步
+     */
+    private Integer messageType = 6;
+
+    /**
+     * 本页消息，按ID升序
+     */
+    private List<UserMessageVO> messages = new ArrayList<>();
+
+    /**
+     * 发送者ID到发送者信息的映射
+     */
+    private Map<Integer, Sender> senders = new HashMap<>();
+
+    /**
+     * 本页最小的消息ID，没有消息时为null
+     */
+    private Long cursor;
+
+    /**
+     * 是否还有更早的未读消息
+     */
+    private Boolean hasMore = false;
+
+    @Data
+    public static class Sender {
+
+        private Integer id;
+
+        private String username;
+
+        private String avatar;
+    }
+}
@@ -0,0 +1,25 @@
+package com.ld.poetry.im.http.vo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户在线状态
+ */
+@Data
+public class PresenceVO {
+
+    private Integer userId;
+
+    private Boolean online;
+
+    /**
+     * 最后在线时间（最后一个连接断开的时间），在线或从未连接时为空
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastSeenTime;
+}
@@ -0,0 +1,129 @@
+package com.ld.poetry.im.journal;
+
+import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * IM消息在预写日志中的二进制编码
+ * <p>
+ * 新增字段只追加在末尾，解码时按剩余字节判断是否存在，升级前写入的日志记录仍可重放。
+ * </p>
+ */
+public final class ImMessageCodec {
+
+    public static final byte TYPE_USER_MESSAGE = 1;
+
+    public static final byte TYPE_GROUP_MESSAGE = 2;
+
+    private ImMessageCodec() {
+    }
+
+    public static byte[] encode(ImChatUserMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeInteger(out, message.getFromId());
+            writeInteger(out, message.getToId());
+            writeString(out, message.getContent());
+            out.writeByte(message.getMessageStatus() == null ? -1 : message.getMessageStatus() ? 1 : 0);
+            writeTime(out, message.getCreateTime());
+            writeString(out, message.getMsgKey());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static byte[] encode(ImChatUserGroupMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeInteger(out, message.getGroupId());
+            writeInteger(out, message.getFromId());
+            writeInteger(out, message.getToId());
+            writeString(out, message.getContent());
+            writeTime(out, message.getCreateTime());
+            writeString(out, message.getMsgKey());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ImChatUserMessage decodeUserMessage(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            ImChatUserMessage message = new ImChatUserMessage();
+            message.setFromId(readInteger(in));
+            message.setToId(readInteger(in));
+            message.setContent(readString(in));
+            byte status = in.readByte();
+            message.setMessageStatus(status < 0 ? null : status == 1);
+            message.setCreateTime(readTime(in));
+            if (in.available() > 0) {
+                message.setMsgKey(readString(in));
+            }
+            return message;
+        }
+    }
+
+    public static ImChatUserGroupMessage decodeGroupMessage(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            ImChatUserGroupMessage message = new ImChatUserGroupMessage();
+            message.setGroupId(readInteger(in));
+            message.setFromId(readInteger(in));
+            message.setToId(readInteger(in));
+            message.setContent(readString(in));
+            message.setCreateTime(readTime(in));
+            if (in.available() > 0) {
+                message.setMsgKey(readString(in));
+            }
+            return message;
+        }
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(time.getNano());
+        }
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ld.poetry.im.journal;
+
+/**
+ * 日志记录
+ *
+ * @param offset     记录起始位置（全局偏移量）
+ * @param nextOffset 下一条记录的起始位置
+ * @param type       记录类型
+ * @param payload    载荷
+ */
+public record JournalRecord(long offset, long nextOffset, byte type, byte[] payload) {
+}
@@ -0,0 +1,146 @@
+package com.ld.poetry.im.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * 日志段：一个固定大小、内存映射的文件，记录从头依次追加
+ * <p>
+ * 记录格式：载荷长度(4字节) + CRC32C(4字节，覆盖类型与载荷) + 类型(1字节) + 载荷。
+ * 新文件映射后全部为0，读到长度为0、越界或校验失败即视为数据结束。
+ * 长度字段最后写入，崩溃时写了一半的记录校验不通过，恢复时被截断。
+ * </p>
+ */
+final class JournalSegment implements Closeable {
+
+    static final int HEADER_BYTES = 9;
+
+    private final Path path;
+
+    private final long baseOffset;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int capacity;
+
+    private JournalSegment(Path path, long baseOffset, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    /**
+     * 打开或创建日志段，已存在的文件按实际大小映射
+     *
+     * @param capacity 新建文件的大小
+     */
+    static JournalSegment open(Path path, long baseOffset, int capacity, boolean readOnly) throws IOException {
+        FileChannel channel = readOnly
+                ? FileChannel.open(path, StandardOpenOption.READ)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size() > 0 ? channel.size() : capacity;
+            MappedByteBuffer buffer = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, size);
+            return new JournalSegment(path, baseOffset, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 在指定位置写入一条记录，调用方保证空间足够且同一时刻只有一个写入者
+     */
+    void write(int position, byte type, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + 8, type);
+        buffer.put(position + HEADER_BYTES, payload);
+        buffer.putInt(position, payload.length);
+    }
+
+    /**
+     * 读取指定位置的记录
+     *
+     * @return 已到数据末尾或记录损坏时返回null
+     */
+    JournalRecord read(int position) {
+        if (position < 0 || position + HEADER_BYTES > capacity) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > capacity - position - HEADER_BYTES) {
+            return null;
+        }
+        byte type = buffer.get(position + 8);
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_BYTES, payload);
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            return null;
+        }
+        long offset = baseOffset + position;
+        return new JournalRecord(offset, offset + HEADER_BYTES + length, type, payload);
+    }
+
+    /**
+     * 从指定记录边界开始扫描到数据末尾，清除末尾写了一半的记录
+     *
+     * @return 数据末尾位置
+     */
+    int recover(int from) {
+        int position = from;
+        JournalRecord record;
+        while ((record = read(position)) != null) {
+            position = (int) (record.nextOffset() - baseOffset);
+        }
+        if (position + 4 <= capacity && buffer.getInt(position) != 0) {
+            for (int i = position; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 将 [from, to) 区间刷到磁盘
+     */
+    void force(int from, int to) {
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * 关闭文件通道；映射区域在缓冲区被回收时释放，此前仍可安全访问
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,490 @@
+package com.ld.poetry.im.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * 仅追加的消息预写日志
+ * <p>
+ * 日志由若干内存映射的段文件组成，记录写入映射内存即对进程崩溃安全（数据已在操作系统页缓存中），
+ * {@link #commit(long)} 刷盘后对断电安全。刷盘采用组提交：同一时刻等待刷盘的写入者共用一次刷盘。
+ * </p>
+ * <p>
+ * 消费方通过 {@link #drain(int, BatchHandler)} 从检查点开始批量读取，处理成功后检查点前移并删除已消费的段；
+ * 重启时从检查点重放未消费的记录。未消费的段超过上限时，最早的段移入溢出目录，
+ * 之后由 {@link #drainSpill(int, BatchHandler)} 补充消费，保证活动日志大小有界。
+ * </p>
+ * <p>
+ * 偏移量为全局递增的字节位置，段文件以起始偏移量命名；滚动时新段从上一段的数据末尾开始，偏移量连续。
+ * 处理成功到检查点落盘之间崩溃（或检查点写入失败）会导致该批记录被重放，即至少一次投递，消费方需按记录内容去重。
+ * </p>
+ * <p>
+ * 无法处理的记录由消费方通过 {@link #deadLetter(JournalRecord)} 移入死信目录；溢出目录超过上限时，最早的溢出文件
+ * 同样整体移入死信目录而不是删除，移回溢出目录即可补写。
+ * </p>
+ */
+@Slf4j
+public final class MessageJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final String SPILL_DIR = "spill";
+
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+
+    private static final String DEAD_LETTER_FILE = "records.log";
+
+    /**
+     * 批量处理回调，抛出异常时检查点不前移，下次重新读取同一批记录
+     */
+    @FunctionalInterface
+    public interface BatchHandler {
+        void handle(List<JournalRecord> records) throws Exception;
+    }
+
+    private final Path dir;
+
+    private final Path spillDir;
+
+    private final Path deadLetterDir;
+
+    private final int segmentBytes;
+
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    /**
+     * 当前写入段，由 appendLock 保护
+     */
+    private JournalSegment active;
+
+    /**
+     * 最后一条完整记录之后的位置；写入完成后才更新，读取方只读取此位置之前的数据
+     */
+    private volatile long writeOffset;
+
+    private volatile long durableOffset;
+
+    private volatile long checkpoint;
+
+    private final AtomicLong deadLetterRecords = new AtomicLong();
+
+    private final AtomicLong deadLetterFiles = new AtomicLong();
+
+    private MessageJournal(Path dir, int segmentBytes) {
+        this.dir = dir;
+        this.spillDir = dir.resolve(SPILL_DIR);
+        this.deadLetterDir = dir.resolve(DEAD_LETTER_DIR);
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * 打开日志目录，恢复写入位置并截断末尾写了一半的记录
+     */
+    public static MessageJournal open(Path dir, int segmentBytes) throws IOException {
+        MessageJournal journal = new MessageJournal(dir, segmentBytes);
+        journal.recover();
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(spillDir);
+        Files.createDirectories(deadLetterDir);
+        checkpoint = readCheckpoint();
+
+        TreeMap<Long, Path> files = listSegments(dir);
+        for (Map.Entry<Long, Path> entry : files.entrySet()) {
+            Long next = files.higherKey(entry.getKey());
+            if (next != null && next <= checkpoint) {
+                // 已全部消费，上次删除前退出
+                Files.deleteIfExists(entry.getValue());
+                continue;
+            }
+            segments.put(entry.getKey(), JournalSegment.open(entry.getValue(), entry.getKey(), segmentBytes, false));
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(checkpoint);
+            writeOffset = checkpoint;
+        } else {
+            active = segments.lastEntry().getValue();
+            long base = active.baseOffset();
+            int from = checkpoint > base ? (int) Math.min(checkpoint - base, active.capacity()) : 0;
+            int end = active.recover(from);
+            writeOffset = base + end;
+            if (checkpoint > writeOffset) {
+                // 检查点之前的记录已写入数据库但断电时未落盘，新记录从检查点开始写入新段
+                log.warn("IM消息日志末尾早于检查点，从检查点开始新段 - 末尾: {}, 检查点: {}", writeOffset, checkpoint);
+                active = createSegment(checkpoint);
+                writeOffset = checkpoint;
+            }
+        }
+        if (checkpoint < segments.firstKey()) {
+            checkpoint = segments.firstKey();
+        }
+        active.force(0, active.capacity());
+        durableOffset = writeOffset;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 该记录之后的位置，可传给 {@link #commit(long)} 等待落盘
+     */
+    public long append(byte type, byte[] payload) throws IOException {
+        int size = JournalSegment.HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new IllegalArgumentException("日志记录超过段大小: " + size);
+        }
+        appendLock.lock();
+        try {
+            long offset = writeOffset;
+            int position = (int) (offset - active.baseOffset());
+            if (position + size > active.capacity()) {
+                active = createSegment(offset);
+                position = 0;
+            }
+            active.write(position, type, payload);
+            writeOffset = offset + size;
+            return offset + size;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 等待指定位置之前的记录落盘
+     * 持有刷盘锁的线程一次刷到当前写入位置，排队等待的写入者醒来时通常已无需再刷盘
+     */
+    public void commit(long offset) {
+        if (durableOffset >= offset) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            long from = durableOffset;
+            if (from >= offset) {
+                return;
+            }
+            long to = writeOffset;
+            Long firstKey = segments.floorKey(from);
+            for (JournalSegment segment : (firstKey == null ? segments : segments.tailMap(firstKey)).values()) {
+                long base = segment.baseOffset();
+                if (base >= to) {
+                    break;
+                }
+                segment.force((int) Math.max(0, from - base), (int) Math.min(segment.capacity(), to - base));
+            }
+            durableOffset = to;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * 从检查点开始读取一批记录交给handler处理，成功后检查点前移
+     * 调用方须保证同一时刻只有一个消费者
+     *
+     * @return 处理的记录数
+     */
+    public int drain(int maxRecords, BatchHandler handler) throws Exception {
+        List<JournalRecord> records = read(checkpoint, maxRecords);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        handler.handle(records);
+        checkpoint(records.get(records.size() - 1).nextOffset());
+        return records.size();
+    }
+
+    /**
+     * 从指定位置读取至多 maxRecords 条记录，不超过当前写入位置
+     */
+    List<JournalRecord> read(long from, int maxRecords) {
+        List<JournalRecord> records = new ArrayList<>();
+        long end = writeOffset;
+        long offset = from;
+        while (records.size() < maxRecords && offset < end) {
+            Map.Entry<Long, JournalSegment> entry = segments.floorEntry(offset);
+            JournalRecord record = null;
+            if (entry != null) {
+                JournalSegment segment = entry.getValue();
+                record = segment.read((int) Math.min(offset - segment.baseOffset(), segment.capacity()));
+            }
+            if (record == null) {
+                // 段内数据已读完，转到下一段
+                Long next = segments.higherKey(offset);
+                if (next == null) {
+                    break;
+                }
+                offset = next;
+                continue;
+            }
+            records.add(record);
+            offset = record.nextOffset();
+        }
+        return records;
+    }
+
+    /**
+     * 前移检查点并删除已全部消费的段（当前写入段始终保留）
+     */
+    void checkpoint(long offset) throws IOException {
+        writeCheckpoint(offset);
+        checkpoint = offset;
+        Map.Entry<Long, JournalSegment> first;
+        while ((first = segments.firstEntry()) != null) {
+            Long next = segments.higherKey(first.getKey());
+            if (next == null || next > offset) {
+                break;
+            }
+            removeSegment(first.getValue());
+        }
+    }
+
+    /**
+     * 未消费的段超过上限时，将最早的段移入溢出目录并越过检查点；溢出目录超过上限时最早的溢出文件移入死信目录
+     * 与 {@link #drain(int, BatchHandler)} 由同一个消费者调用
+     *
+     * @return 移入溢出目录的段数
+     */
+    public int spillExcess(int maxSegments, long maxSpillBytes) throws IOException {
+        int spilled = 0;
+        Map.Entry<Long, JournalSegment> first;
+        while (segments.size() > Math.max(1, maxSegments) && (first = segments.firstEntry()) != null) {
+            JournalSegment segment = first.getValue();
+            long base = segment.baseOffset();
+            long next = segments.higherKey(base);
+            int skip = (int) Math.max(0, Math.min(checkpoint - base, segment.capacity()));
+            segments.remove(base);
+            segment.close();
+            Files.move(segment.path(), spillDir.resolve(spillFileName(base, skip)), StandardCopyOption.ATOMIC_MOVE);
+            checkpoint(Math.max(checkpoint, next));
+            spilled++;
+            log.warn("IM消息日志积压，最早的段已移入溢出目录 - 段: {}, 起始位置: {}", base, skip);
+        }
+        if (spilled > 0) {
+            trimSpill(maxSpillBytes);
+        }
+        return spilled;
+    }
+
+    /**
+     * 读取最早的溢出文件中的一批记录交给handler处理，成功后记录进度，文件读完即删除
+     *
+     * @return 处理的记录数，没有溢出文件时返回0
+     */
+    public int drainSpill(int maxRecords, BatchHandler handler) throws Exception {
+        for (Map.Entry<Long, Path> entry : listSpill().entrySet()) {
+            long base = entry.getKey();
+            Path file = entry.getValue();
+            List<JournalRecord> records = new ArrayList<>();
+            try (JournalSegment segment = JournalSegment.open(file, base, 0, true)) {
+                int position = parseSpillSkip(file);
+                JournalRecord record;
+                while (records.size() < maxRecords && (record = segment.read(position)) != null) {
+                    records.add(record);
+                    position = (int) (record.nextOffset() - base);
+                }
+            }
+            if (records.isEmpty()) {
+                Files.delete(file);
+                continue;
+            }
+            handler.handle(records);
+            if (records.size() < maxRecords) {
+                Files.delete(file);
+            } else {
+                int position = (int) (records.get(records.size() - 1).nextOffset() - base);
+                Files.move(file, spillDir.resolve(spillFileName(base, position)), StandardCopyOption.ATOMIC_MOVE);
+            }
+            return records.size();
+        }
+        return 0;
+    }
+
+    /**
+     * 将一条无法处理的记录追加到死信文件并刷盘，之后消费方即可越过该记录
+     * 死信文件格式：[位置 long][类型 byte][载荷长度 int][载荷]
+     */
+    public void deadLetter(JournalRecord record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(13 + record.payload().length)
+                .putLong(record.offset())
+                .put(record.type())
+                .putInt(record.payload().length)
+                .put(record.payload())
+                .flip();
+        try (FileChannel channel = FileChannel.open(deadLetterDir.resolve(DEAD_LETTER_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        deadLetterRecords.incrementAndGet();
+    }
+
+    /**
+     * 本次启动以来移入死信文件的记录数
+     */
+    public long deadLetterRecordCount() {
+        return deadLetterRecords.get();
+    }
+
+    /**
+     * 本次启动以来因溢出目录超限移入死信目录的溢出文件数
+     */
+    public long deadLetterFileCount() {
+        return deadLetterFiles.get();
+    }
+
+    /**
+     * 等待消费的字节数（不含溢出目录）
+     */
+    public long pendingBytes() {
+        return writeOffset - checkpoint;
+    }
+
+    /**
+     * 溢出文件数
+     */
+    public int spillFileCount() throws IOException {
+        return listSpill().size();
+    }
+
+    public long getWriteOffset() {
+        return writeOffset;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            commit(writeOffset);
+            for (JournalSegment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private JournalSegment createSegment(long baseOffset) throws IOException {
+        JournalSegment segment = JournalSegment.open(dir.resolve(segmentFileName(baseOffset)), baseOffset, segmentBytes, false);
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    private void removeSegment(JournalSegment segment) throws IOException {
+        segments.remove(segment.baseOffset());
+        segment.close();
+        Files.deleteIfExists(segment.path());
+    }
+
+    private void trimSpill(long maxSpillBytes) throws IOException {
+        TreeMap<Long, Path> files = listSpill();
+        long total = 0;
+        for (Path file : files.values()) {
+            total += Files.size(file);
+        }
+        while (total > maxSpillBytes && files.size() > 1) {
+            Path oldest = files.pollFirstEntry().getValue();
+            long size = Files.size(oldest);
+            Files.move(oldest, deadLetterDir.resolve(oldest.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+            total -= size;
+            deadLetterFiles.incrementAndGet();
+            log.error("IM消息溢出目录超过上限，最早的溢出文件已移入死信目录，需人工处理（移回溢出目录即可补写）: {}", oldest.getFileName());
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() == 12) {
+            long offset = buffer.getLong();
+            if (checksum(offset) == buffer.getInt()) {
+                return offset;
+            }
+        }
+        throw new IOException("IM消息日志检查点文件损坏: " + file);
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12).putLong(offset).putInt(checksum(offset));
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temp, buffer.array());
+        Files.move(temp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private TreeMap<Long, Path> listSpill() throws IOException {
+        return listSegments(spillDir);
+    }
+
+    private static int checksum(long offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(8).putLong(0, offset));
+        return (int) crc.getValue();
+    }
+
+    private static TreeMap<Long, Path> listSegments(Path dir) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String digits = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                int dash = digits.indexOf('-');
+                files.put(Long.parseLong(dash < 0 ? digits : digits.substring(0, dash)), file);
+            }
+        }
+        return files;
+    }
+
+    private static String segmentFileName(long baseOffset) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, baseOffset, SEGMENT_SUFFIX);
+    }
+
+    private static String spillFileName(long baseOffset, int skip) {
+        return String.format("%s%020d-%010d%s", SEGMENT_PREFIX, baseOffset, skip, SEGMENT_SUFFIX);
+    }
+
+    private static int parseSpillSkip(Path file) {
+        String name = file.getFileName().toString();
+        int dash = name.lastIndexOf('-');
+        return dash < 0 ? 0 : Integer.parseInt(name.substring(dash + 1, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
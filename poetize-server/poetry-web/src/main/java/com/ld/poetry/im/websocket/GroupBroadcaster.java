@@ -0,0 +1,95 @@
+package com.ld.poetry.im.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.tio.core.ChannelContext;
+import org.tio.core.Tio;
+import org.tio.core.TioConfig;
+import org.tio.utils.lock.SetWithLock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 群消息广播
+ * <p>
+ * {@code Tio.sendToGroup} 会为每个成员连接重新编码一次 WebSocket 帧。这里把消息编码一次为完整的文本帧，
+ * 各成员连接共享同一块字节数组（每个连接只持有独立读写位置的视图），编码开销与群人数无关。
+ * 每个连接的积压由 {@link OutboundQueue} 控制。
+ * </p>
+ */
+@Slf4j
+@Component
+public class GroupBroadcaster {
+
+    private static final byte OPCODE_TEXT_FIN = (byte) 0x81;
+
+    @Autowired
+    private OutboundQueue outboundQueue;
+
+    /**
+     * 向群内所有在线连接广播文本消息
+     *
+     * @return 发送的连接数
+     */
+    public int broadcast(TioConfig tioConfig, String groupId, String json) {
+        return broadcast(tioConfig, groupId, json, null);
+    }
+
+    /**
+     * 向群内所有在线连接广播非关键帧，连接积压时按合并键合并
+     *
+     * @return 发送（或暂存）的连接数
+     */
+    public int broadcast(TioConfig tioConfig, String groupId, OutboundQueue.Coalescible frame) {
+        return broadcast(tioConfig, groupId, frame.toJson(), frame);
+    }
+
+    private int broadcast(TioConfig tioConfig, String groupId, String json, OutboundQueue.Coalescible coalescible) {
+        SetWithLock<ChannelContext> channels = Tio.getByGroup(tioConfig, groupId);
+        if (channels == null || channels.size() == 0) {
+            return 0;
+        }
+        ByteBuffer frame = textFrame(json);
+        int sent = 0;
+        ReentrantReadWriteLock.ReadLock readLock = channels.readLock();
+        readLock.lock();
+        try {
+            Set<ChannelContext> set = channels.getObj();
+            for (ChannelContext channelContext : set) {
+                if (outboundQueue.offer(channelContext, frame.duplicate(), coalescible)) {
+                    sent++;
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return sent;
+    }
+
+    /**
+     * 编码服务端文本帧（FIN、不分片、不加掩码）
+     */
+    static ByteBuffer textFrame(String text) {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        int length = payload.length;
+        int headerLength = length < 126 ? 2 : (length <= 0xFFFF ? 4 : 10);
+        ByteBuffer frame = ByteBuffer.allocate(headerLength + length);
+        frame.put(OPCODE_TEXT_FIN);
+        if (length < 126) {
+            frame.put((byte) length);
+        } else if (length <= 0xFFFF) {
+            frame.put((byte) 126);
+            frame.putShort((short) length);
+        } else {
+            frame.put((byte) 127);
+            frame.putLong(length);
+        }
+        frame.put(payload);
+        frame.flip();
+        return frame;
+    }
+}
@@ -0,0 +1,457 @@
+package com.ld.poetry.im.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.ld.poetry.config.ImClusterPolicy;
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.utils.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.tio.core.ChannelContext;
+import org.tio.core.Tio;
+import org.tio.core.TioConfig;
+import org.tio.utils.lock.SetWithLock;
+import org.tio.websocket.common.WsResponse;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * IM集群路由
+ * <p>
+ * t-io 的 {@code Tio.sendToUser}、{@code Tio.bindGroup} 等只作用于本节点的连接。集群模式下：
+ * 用户建立连接时把本节点登记到 Redis 的用户节点集合，并通知其他节点踢掉该用户的旧连接；
+ * 私聊消息、踢下线、绑定/解绑群组发布到用户所在节点的频道；群消息发布到广播频道，由各节点向本地成员推送；
+ * 各节点把本地的群在线连接数写入 Redis，在线人数为所有存活节点之和。
+ * 发布时订阅者数为0说明节点已下线，顺带清理其登记。未开启集群模式时所有操作只作用于本节点，与单实例相同。
+ * </p>
+ * <p>
+ * 消息格式: ACTION 来源节点 参数 [内容]，转发的私聊消息内容为「消息键 JSON」（兼容不带消息键的JSON）。
+ * 接收节点未能送达（连接已关闭或积压超限被断开）时按消息键把消息标记为未读，接收者重连后按离线消息拉取。
+ * </p>
+ */
+@Slf4j
+@Component
+public class ImClusterRouter implements MessageListener {
+
+    private static final String ACTION_USER = "USER";
+
+    private static final String ACTION_KICK = "KICK";
+
+    private static final String ACTION_REMOVE = "REMOVE";
+
+    private static final String ACTION_BIND = "BIND";
+
+    private static final String ACTION_UNBIND = "UNBIND";
+
+    private static final String ACTION_GROUP = "GROUP";
+
+    private static final String ACTION_ONLINE_COUNT = "ONLINE_COUNT";
+
+    private static final String ACTION_REMOVE_GROUP = "REMOVE_GROUP";
+
+    @Autowired
+    private ImClusterPolicy policy;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    @Autowired
+    private GroupBroadcaster groupBroadcaster;
+
+    @Autowired
+    private OutboundQueue outboundQueue;
+
+    @Autowired
+    private MessageCache messageCache;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private String nodeId;
+
+    /**
+     * 最近一次心跳时读取的存活节点
+     */
+    private volatile Set<String> liveNodes = Set.of();
+
+    @PostConstruct
+    public void init() {
+        nodeId = StringUtils.hasText(policy.getNodeId()) ? policy.getNodeId() : defaultNodeId();
+        if (policy.isEnabled()) {
+            if (redisMessageListenerContainer != null) {
+                redisMessageListenerContainer.addMessageListener(this, List.of(
+                        new ChannelTopic(CacheConstants.IM_CLUSTER_CHANNEL),
+                        new ChannelTopic(CacheConstants.IM_NODE_CHANNEL_PREFIX + nodeId)));
+            }
+            heartbeat();
+            log.info("IM集群模式已启用 - 节点ID: {}", nodeId);
+        }
+    }
+
+    public boolean isEnabled() {
+        return policy.isEnabled();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 节点心跳，同时刷新存活节点
+     */
+    @Scheduled(fixedDelayString = "${poetize.im.cluster.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        if (!policy.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        redisUtil.zAdd(CacheConstants.IM_NODES_KEY, nodeId, now);
+        Map<String, Double> nodes = redisUtil.zRangeByScoreWithScores(CacheConstants.IM_NODES_KEY, now - policy.getNodeTimeoutMs());
+        if (nodes != null) {
+            liveNodes = Set.copyOf(nodes.keySet());
+        }
+        // 长期没有心跳的节点从心跳表中移除
+        redisUtil.zRemoveRangeByScore(CacheConstants.IM_NODES_KEY, 0, now - policy.getNodeTimeoutMs() * 10);
+    }
+
+    /**
+     * 用户在本节点绑定连接后调用：关闭本节点的旧连接，登记所在节点，并通知其他节点关闭旧连接
+     */
+    public void userBound(ChannelContext channelContext, String userId) {
+        kickLocal(channelContext.tioConfig, userId, channelContext);
+        if (!policy.isEnabled()) {
+            return;
+        }
+        String key = CacheConstants.buildImPresenceKey(userId);
+        Set<Object> nodes = redisUtil.sGet(key);
+        redisUtil.sSet(key, nodeId);
+        if (nodes != null) {
+            for (Object node : nodes) {
+                if (!nodeId.equals(node)) {
+                    sendToNode(userId, String.valueOf(node), message(ACTION_KICK, userId));
+                }
+            }
+        }
+    }
+
+    /**
+     * 用户在本节点的最后一个连接关闭时调用
+     */
+    public void userUnbound(String userId) {
+        if (policy.isEnabled()) {
+            redisUtil.setRemove(CacheConstants.buildImPresenceKey(userId), nodeId);
+        }
+    }
+
+    /**
+     * 向用户推送消息：用户连接在本节点时直接发送，否则转发到用户所在节点
+     *
+     * @return 是否已送达（本节点）或已转发给用户所在节点
+     */
+    public boolean sendToUser(TioConfig tioConfig, String userId, String json) {
+        return sendToUser(tioConfig, userId, null, json);
+    }
+
+    /**
+     * 向用户推送私聊消息，转发时附带消息键，用户所在节点未能送达时据此把消息标记为未读
+     *
+     * @param msgKey 消息键，为null时不附带
+     * @return 是否已送达（本节点）或已转发给用户所在节点
+     */
+    public boolean sendToUser(TioConfig tioConfig, String userId, String msgKey, String json) {
+        if (tioConfig != null) {
+            SetWithLock<ChannelContext> local = Tio.getByUserid(tioConfig, userId);
+            if (local != null && local.size() > 0) {
+                // 同一用户只保留一个连接，在本节点就不会在其他节点；积压超限被丢弃时视为未送达
+                return outboundQueue.sendToUser(tioConfig, userId, json) > 0;
+            }
+        }
+        return policy.isEnabled() && forwardToUser(userId, message(ACTION_USER, userId, msgKey == null ? json : msgKey + " " + json));
+    }
+
+    /**
+     * 向群广播消息：本节点直接推送，其他节点收到广播后各自推送
+     */
+    public void broadcastToGroup(TioConfig tioConfig, String groupId, String json) {
+        if (tioConfig != null) {
+            groupBroadcaster.broadcast(tioConfig, groupId, json);
+        }
+        if (policy.isEnabled()) {
+            redisUtil.publish(CacheConstants.IM_CLUSTER_CHANNEL, message(ACTION_GROUP, groupId, json));
+        }
+    }
+
+    /**
+     * 向群广播在线人数（非关键帧，各节点在连接积压时合并）
+     */
+    public void broadcastOnlineCount(TioConfig tioConfig, OnlineCountNotifier.OnlineCountFrame frame) {
+        if (tioConfig != null) {
+            groupBroadcaster.broadcast(tioConfig, frame.groupId, frame);
+        }
+        if (policy.isEnabled()) {
+            redisUtil.publish(CacheConstants.IM_CLUSTER_CHANNEL, message(ACTION_ONLINE_COUNT, frame.groupId, frame.toJson()));
+        }
+    }
+
+    /**
+     * 把用户的连接加入群组（用户可能连接在其他节点）
+     */
+    public void bindGroup(TioConfig tioConfig, String userId, String groupId) {
+        if (tioConfig != null) {
+            Tio.bindGroup(tioConfig, userId, groupId);
+        }
+        if (policy.isEnabled()) {
+            forwardToUser(userId, message(ACTION_BIND, userId, groupId));
+        }
+    }
+
+    /**
+     * 把用户的连接移出群组（用户可能连接在其他节点）
+     */
+    public void unbindGroup(TioConfig tioConfig, String userId, String groupId) {
+        if (tioConfig != null) {
+            Tio.unbindGroup(tioConfig, userId, groupId);
+        }
+        if (policy.isEnabled()) {
+            forwardToUser(userId, message(ACTION_UNBIND, userId, groupId));
+        }
+    }
+
+    /**
+     * 断开用户的连接（用户可能连接在其他节点）
+     */
+    public void removeUser(TioConfig tioConfig, String userId, String remark) {
+        if (tioConfig != null) {
+            Tio.removeUser(tioConfig, userId, remark);
+        }
+        if (policy.isEnabled()) {
+            forwardToUser(userId, message(ACTION_REMOVE, userId, remark));
+        }
+    }
+
+    /**
+     * 解散群组，所有节点移除该群组
+     */
+    public void removeGroup(TioConfig tioConfig, String groupId) {
+        if (tioConfig != null) {
+            Tio.removeGroup(tioConfig, groupId, "remove group");
+        }
+        if (policy.isEnabled()) {
+            redisUtil.publish(CacheConstants.IM_CLUSTER_CHANNEL, message(ACTION_REMOVE_GROUP, groupId));
+        }
+    }
+
+    /**
+     * 群在线人数：登记本节点的在线连接数，集群模式下返回所有存活节点之和
+     */
+    public int groupOnlineCount(TioConfig tioConfig, String groupId) {
+        int localCount = 0;
+        if (tioConfig != null) {
+            SetWithLock<ChannelContext> channels = Tio.getByGroup(tioConfig, groupId);
+            localCount = channels == null ? 0 : channels.size();
+        }
+        return groupOnlineCount(groupId, localCount);
+    }
+
+    int groupOnlineCount(String groupId, int localCount) {
+        if (!policy.isEnabled()) {
+            return localCount;
+        }
+        String key = CacheConstants.buildImGroupOnlineKey(groupId);
+        redisUtil.hset(key, nodeId, localCount);
+        Map<Object, Object> counts = redisUtil.hmget(key);
+        int total = localCount;
+        if (counts != null) {
+            Set<String> live = liveNodes;
+            for (Map.Entry<Object, Object> entry : counts.entrySet()) {
+                String node = String.valueOf(entry.getKey());
+                // 已下线节点登记的人数不再计入
+                if (!nodeId.equals(node) && live.contains(node) && entry.getValue() instanceof Number count) {
+                    total += count.intValue();
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 批量查询连接在其他存活节点上的用户（一次管道查询）
+     */
+    public Set<String> onlineElsewhere(List<String> userIds) {
+        if (!policy.isEnabled() || userIds.isEmpty()) {
+            return Set.of();
+        }
+        List<String> keys = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            keys.add(CacheConstants.buildImPresenceKey(userId));
+        }
+        List<Set<Object>> nodes = redisUtil.sGetAll(keys);
+        if (nodes == null) {
+            return Set.of();
+        }
+        Set<String> live = liveNodes;
+        Set<String> online = new HashSet<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            for (Object node : nodes.get(i)) {
+                if (!nodeId.equals(node) && live.contains(String.valueOf(node))) {
+                    online.add(userIds.get(i));
+                    break;
+                }
+            }
+        }
+        return online;
+    }
+
+    /**
+     * 关闭本节点上该用户除当前连接外的所有连接，关闭前先通知客户端不要重连
+     */
+    void kickLocal(TioConfig tioConfig, String userId, ChannelContext keep) {
+        SetWithLock<ChannelContext> connections = Tio.getByUserid(tioConfig, userId);
+        if (connections == null || connections.size() == 0) {
+            return;
+        }
+        List<ChannelContext> oldConnections = new ArrayList<>();
+        for (ChannelContext channelContext : connections.getObj()) {
+            if (channelContext != keep) {
+                oldConnections.add(channelContext);
+            }
+        }
+        for (ChannelContext oldCtx : oldConnections) {
+            try {
+                // 先发送"被踢出"消息给旧连接，让客户端知道不要重连
+                ImMessage kickMessage = new ImMessage();
+                kickMessage.setMessageType(999); // 999表示被踢出
+                kickMessage.setContent("您的账号在其他地方登录，当前连接已断开");
+                String kickJson = JSON.toJSONString(kickMessage,
+                        SerializerFeature.WriteMapNullValue,
+                        SerializerFeature.DisableCircularReferenceDetect);
+                Tio.send(oldCtx, WsResponse.fromText(kickJson, ImConfigConst.CHARSET));
+
+                // 等待消息发送完成后再关闭连接
+                Thread.sleep(100);
+            } catch (Exception e) {
+                log.warn("发送踢出消息失败: {}", e.getMessage());
+            }
+
+            // 关闭旧连接
+            Tio.remove(oldCtx, "新连接已建立，旧连接被踢出");
+        }
+        if (!oldConnections.isEmpty()) {
+            log.info("已踢出用户 {} 的 {} 个旧连接", userId, oldConnections.size());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        handleMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void handleMessage(String body) {
+        String[] parts = body.split(" ", 4);
+        if (parts.length < 3 || nodeId.equals(parts[1])) {
+            return;
+        }
+        TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
+        if (tioWebsocketStarter == null) {
+            return;
+        }
+        TioConfig tioConfig = tioWebsocketStarter.getServerTioConfig();
+        String target = parts[2];
+        String content = parts.length == 4 ? parts[3] : "";
+        try {
+            switch (parts[0]) {
+                case ACTION_USER -> deliverForwarded(tioConfig, target, content);
+                case ACTION_GROUP -> groupBroadcaster.broadcast(tioConfig, target, content);
+                case ACTION_ONLINE_COUNT -> groupBroadcaster.broadcast(tioConfig, target, OnlineCountNotifier.OnlineCountFrame.parse(content));
+                case ACTION_KICK -> kickLocal(tioConfig, target, null);
+                case ACTION_REMOVE -> Tio.removeUser(tioConfig, target, content);
+                case ACTION_BIND -> Tio.bindGroup(tioConfig, target, content);
+                case ACTION_UNBIND -> Tio.unbindGroup(tioConfig, target, content);
+                case ACTION_REMOVE_GROUP -> Tio.removeGroup(tioConfig, target, "remove group");
+                default -> log.warn("忽略无法识别的IM集群消息: {}", parts[0]);
+            }
+        } catch (Exception e) {
+            log.error("处理IM集群消息失败 - action: {}, target: {}", parts[0], target, e);
+        }
+    }
+
+    /**
+     * 推送其他节点转发的私聊消息，未能送达时标记为未读（消息由来源节点写入数据库，写入后再更新）
+     */
+    private void deliverForwarded(TioConfig tioConfig, String userId, String content) {
+        String msgKey = null;
+        String json = content;
+        if (!content.startsWith("{")) {
+            int space = content.indexOf(' ');
+            if (space > 0) {
+                msgKey = content.substring(0, space);
+                json = content.substring(space + 1);
+            }
+        }
+        if (outboundQueue.sendToUser(tioConfig, userId, json) == 0 && msgKey != null) {
+            log.info("转发的IM消息未能送达，标记为未读 - userId: {}, msgKey: {}", userId, msgKey);
+            messageCache.markUndelivered(msgKey);
+        }
+    }
+
+    /**
+     * 转发到用户所在的其他节点
+     *
+     * @return 是否有节点收到
+     */
+    private boolean forwardToUser(String userId, String message) {
+        Set<Object> nodes = redisUtil.sGet(CacheConstants.buildImPresenceKey(userId));
+        if (nodes == null || nodes.isEmpty()) {
+            return false;
+        }
+        boolean delivered = false;
+        for (Object node : nodes) {
+            if (!nodeId.equals(node)) {
+                delivered |= sendToNode(userId, String.valueOf(node), message);
+            }
+        }
+        return delivered;
+    }
+
+    private boolean sendToNode(String userId, String node, String message) {
+        long receivers = redisUtil.publishAndCount(CacheConstants.IM_NODE_CHANNEL_PREFIX + node, message);
+        if (receivers == 0) {
+            // 节点已下线，清理登记
+            redisUtil.setRemove(CacheConstants.buildImPresenceKey(userId), node);
+        }
+        return receivers > 0;
+    }
+
+    String message(String action, String target) {
+        return action + " " + nodeId + " " + target;
+    }
+
+    String message(String action, String target, String content) {
+        return action + " " + nodeId + " " + target + " " + content;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x100000, 0x1000000));
+    }
+}
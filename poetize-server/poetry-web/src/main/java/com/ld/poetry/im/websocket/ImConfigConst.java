@@ -75,6 +75,30 @@ public class ImConfigConst {
     public static final boolean USER_MESSAGE_STATUS_FALSE = false;
     public static final boolean USER_MESSAGE_STATUS_TRUE = true;
 
+    /**
+     * 离线消息同步：握手时下发的条数、客户端单次拉取的上限
+     */
+    public static final int OFFLINE_MESSAGE_PAGE_SIZE = 100;
+    public static final int OFFLINE_MESSAGE_MAX_PAGE_SIZE = 500;
+
+    /**
+     * 在线人数推送：每个群最多每隔多少毫秒推送一次；连接变化后至少等待多少毫秒再统计（等待被踢出的旧连接关闭）
+     */
+    public static final long ONLINE_COUNT_INTERVAL = 500;
+    public static final long ONLINE_COUNT_SETTLE_TIME = 200;
+
+    /**
+     * 在线状态：一帧最多附带的上下线用户数（超出后新增的用户不再附带，已附带的用户仍更新为最新状态，人数始终准确），单次批量查询的用户数上限
+     */
+    public static final int PRESENCE_DELTA_MAX_SIZE = 200;
+    public static final int PRESENCE_QUERY_MAX_SIZE = 500;
+
+    /**
+     * 其他节点转发后未能送达的私聊消息：等待来源节点写入数据库再标记为未读的最长时间（毫秒），单次标记的消息数上限
+     */
+    public static final long UNDELIVERED_MARK_TTL = 10 * 60 * 1000;
+    public static final int UNDELIVERED_MARK_BATCH_SIZE = 500;
+
     /**
      * 是否是群组管理员
      * <p>
@@ -1,23 +1,22 @@
 package com.ld.poetry.im.websocket;
 
-import com.ld.poetry.constants.CommonConst;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.tio.core.ChannelContext;
-import org.tio.core.Tio;
 import org.tio.core.intf.Packet;
-import org.tio.websocket.common.WsResponse;
 import org.tio.websocket.server.WsServerAioListener;
-import com.ld.poetry.im.websocket.TioWebsocketStarter;
-import com.ld.poetry.im.websocket.TioUtil;
-import org.tio.utils.lock.SetWithLock;
-
-import java.util.Set;
 
 @Component
 @Slf4j
 public class ImServerAioListener extends WsServerAioListener {
 
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private OutboundQueue outboundQueue;
+
     /**
      * 建链后触发本方法，注：建链不一定成功，需要关注参数isConnected
      *
@@ -33,7 +32,7 @@ public class ImServerAioListener extends WsServerAioListener {
         }
         
         // 注意：不在这里广播在线用户数，因为此时还没有绑定群组
-        // 在线用户数会在 onAfterHandshaked 完成后延迟广播（等待旧连接关闭）
+        // 在线用户数在 onAfterHandshaked 完成后由 OnlineCountNotifier 合并推送（等待旧连接关闭）
     }
 
     /**
@@ -54,6 +53,9 @@ public class ImServerAioListener extends WsServerAioListener {
     @Override
     public void onAfterSent(ChannelContext channelContext, Packet packet, boolean isSentSuccess) throws Exception {
         super.onAfterSent(channelContext, packet, isSentSuccess);
+        if (packet instanceof OutboundQueue.OutboundFrame frame) {
+            outboundQueue.sent(channelContext, frame);
+        }
     }
 
     /**
@@ -65,8 +67,9 @@ public class ImServerAioListener extends WsServerAioListener {
             log.info("onBeforeClose\r\n{}", channelContext);
         }
         
-        // 用户断开连接前，推送在线用户数更新（需要在super调用前处理，此时用户还在群组中）
-        broadcastOnlineCountUpdateOnLeave(channelContext);
+        // 更新在线状态并标记所在群需要推送在线人数（需要在super调用前处理，此时用户还在群组中；推送时已离开群组）
+        presenceService.disconnecting(channelContext);
+        outboundQueue.closed(channelContext);
         
         super.onBeforeClose(channelContext, throwable, remark, isRemove);
     }
@@ -106,73 +109,4 @@ public class ImServerAioListener extends WsServerAioListener {
     public boolean onHeartbeatTimeout(ChannelContext channelContext, Long interval, int heartbeatTimeoutCount) {
         return super.onHeartbeatTimeout(channelContext, interval, heartbeatTimeoutCount);
     }
-
-    /**
-     * 广播在线用户数更新
-     */
-    private void broadcastOnlineCountUpdate(ChannelContext channelContext) {
-        try {
-            // 获取用户所在的群组
-            SetWithLock<String> groups = channelContext.getGroups();
-            if (groups != null && groups.size() > 0) {
-                TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
-                if (tioWebsocketStarter == null) {
-                    return;
-                }
-                
-                for (String groupId : groups.getObj()) {
-                    // 获取群组在线用户数
-                    int onlineCount = Tio.getByGroup(tioWebsocketStarter.getServerTioConfig(), groupId).size();
-                    
-                    // 构建在线用户数消息
-                    ImMessage imMessage = new ImMessage();
-                    imMessage.setMessageType(CommonConst.ONLINE_COUNT_MESSAGE_TYPE);
-                    imMessage.setOnlineCount(onlineCount);
-                    imMessage.setGroupId(Integer.valueOf(groupId));
-                    
-                    // 向群组广播在线用户数
-                    WsResponse wsResponse = WsResponse.fromText(imMessage.toJsonString(), CommonConst.CHARSET_NAME);
-                    Tio.sendToGroup(tioWebsocketStarter.getServerTioConfig(), groupId, wsResponse);
-                    
-                }
-            }
-        } catch (Exception e) {
-            log.error("广播在线用户数更新失败", e);
-        }
-    }
-
-    /**
-     * 用户离开时广播在线用户数更新（需要减1）
-     */
-    private void broadcastOnlineCountUpdateOnLeave(ChannelContext channelContext) {
-        try {
-            // 获取用户所在的群组
-            SetWithLock<String> groups = channelContext.getGroups();
-            if (groups != null && groups.size() > 0) {
-                TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
-                if (tioWebsocketStarter == null) {
-                    return;
-                }
-                
-                for (String groupId : groups.getObj()) {
-                    // 获取群组在线用户数（当前用户还在群组中，所以需要减1）
-                    int currentCount = Tio.getByGroup(tioWebsocketStarter.getServerTioConfig(), groupId).size();
-                    int onlineCount = Math.max(0, currentCount - 1);
-                    
-                    // 构建在线用户数消息
-                    ImMessage imMessage = new ImMessage();
-                    imMessage.setMessageType(CommonConst.ONLINE_COUNT_MESSAGE_TYPE);
-                    imMessage.setOnlineCount(onlineCount);
-                    imMessage.setGroupId(Integer.valueOf(groupId));
-                    
-                    // 向群组广播在线用户数（排除当前即将离开的用户）
-                    WsResponse wsResponse = WsResponse.fromText(imMessage.toJsonString(), CommonConst.CHARSET_NAME);
-                    Tio.sendToGroup(tioWebsocketStarter.getServerTioConfig(), groupId, wsResponse);
-                    
-                }
-            }
-        } catch (Exception e) {
-            log.error("广播用户离开时在线用户数更新失败", e);
-        }
-    }
 }
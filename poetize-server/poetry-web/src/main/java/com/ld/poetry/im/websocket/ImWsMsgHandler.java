@@ -3,7 +3,6 @@ package com.ld.poetry.im.websocket;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
-import com.ld.poetry.constants.CommonConst;
 import com.ld.poetry.entity.User;
 import com.ld.poetry.im.http.entity.ImChatGroupUser;
 import com.ld.poetry.im.http.entity.ImChatLastRead;
@@ -11,9 +10,10 @@ import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
 import com.ld.poetry.im.http.entity.ImChatUserMessage;
 import com.ld.poetry.im.http.service.ImChatGroupUserService;
 import com.ld.poetry.im.http.service.ImChatUserMessageService;
-import com.ld.poetry.im.http.service.ImChatUserGroupMessageService;
 import com.ld.poetry.im.http.service.ImChatLastReadService;
+import com.ld.poetry.im.http.vo.ConversationVO;
 import com.ld.poetry.im.http.vo.LastMessageVO;
+import com.ld.poetry.im.http.vo.OfflineMessageBatchVO;
 import com.ld.poetry.service.CacheService;
 import com.ld.poetry.utils.CommonQuery;
 import com.ld.poetry.utils.StringUtil;
@@ -26,9 +26,7 @@ import org.tio.core.ChannelContext;
 import org.tio.core.Tio;
 import org.tio.http.common.HttpRequest;
 import org.tio.http.common.HttpResponse;
-import org.tio.utils.lock.SetWithLock;
 import org.tio.websocket.common.WsRequest;
-import org.tio.websocket.common.WsResponse;
 import org.tio.websocket.server.handler.IWsMsgHandler;
 
 import java.time.LocalDateTime;
@@ -36,19 +34,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.StructuredTaskScope;
-import java.util.concurrent.StructuredTaskScope.Subtask;
-import java.util.concurrent.Semaphore;
 
 @Component
 @Slf4j
 public class ImWsMsgHandler implements IWsMsgHandler {
-    
-    // 限制IM并发查询数量，避免耗尽数据库连接池
-    // 无论连接池多大，IM功能限制在35个并发查询，为其他功能（REST API、定时任务）预留连接
-    private static final int MAX_CONCURRENT_DB_QUERIES = 35;
-    private final Semaphore dbQuerySemaphore = new Semaphore(MAX_CONCURRENT_DB_QUERIES);
 
     @Autowired
     private ImChatGroupUserService imChatGroupUserService;
@@ -56,9 +45,6 @@ public class ImWsMsgHandler implements IWsMsgHandler {
     @Autowired
     private ImChatUserMessageService imChatUserMessageService;
 
-    @Autowired
-    private ImChatUserGroupMessageService imChatUserGroupMessageService;
-
     @Autowired
     private ImChatLastReadService imChatLastReadService;
 
@@ -71,6 +57,15 @@ public class ImWsMsgHandler implements IWsMsgHandler {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private ImClusterRouter imClusterRouter;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private OutboundQueue outboundQueue;
+
     /**
      * 握手时走这个方法，业务可以在这里获取cookie，request等
      * 对httpResponse参数进行补充并返回，如果返回null表示不想和对方建立连接
@@ -157,46 +152,13 @@ public class ImWsMsgHandler implements IWsMsgHandler {
                     user = tempUser;
                     String userIdStr = user.getId().toString();
                     
-                    // 1. 先获取该用户的旧连接
-                    SetWithLock<ChannelContext> oldConnections = Tio.getByUserid(channelContext.tioConfig, userIdStr);
-                    
-                    // 2. 绑定用户到当前新连接
+                    // 1. 绑定用户到当前新连接
                     Tio.bindUser(channelContext, userIdStr);
                     log.info("WebSocket连接绑定成功：用户ID：{}, 用户名：{}, token类型：{}", 
                         user.getId(), user.getUsername(), validationResult.getUserType());
                     
-                    // 3. 关闭旧连接（排除当前连接）
-                    if (oldConnections != null && oldConnections.size() > 0) {
-                        int closedCount = 0;
-                        for (ChannelContext oldCtx : oldConnections.getObj()) {
-                            // 排除当前连接
-                            if (oldCtx != channelContext) {
-                                try {
-                                    // 先发送"被踢出"消息给旧连接，让客户端知道不要重连
-                                    ImMessage kickMessage = new ImMessage();
-                                    kickMessage.setMessageType(999); // 999表示被踢出
-                                    kickMessage.setContent("您的账号在其他地方登录，当前连接已断开");
-                                    String kickJson = JSON.toJSONString(kickMessage, 
-                                        SerializerFeature.WriteMapNullValue,
-                                        SerializerFeature.DisableCircularReferenceDetect);
-                                    WsResponse kickResponse = WsResponse.fromText(kickJson, ImConfigConst.CHARSET);
-                                    Tio.send(oldCtx, kickResponse);
-                                    
-                                    // 等待消息发送完成后再关闭连接
-                                    Thread.sleep(100);
-                                } catch (Exception e) {
-                                    log.warn("发送踢出消息失败: {}", e.getMessage());
-                                }
-                                
-                                // 关闭旧连接
-                                Tio.remove(oldCtx, "新连接已建立，旧连接被踢出");
-                                closedCount++;
-                            }
-                        }
-                        if (closedCount > 0) {
-                            log.info("已踢出用户 {} 的 {} 个旧连接", userIdStr, closedCount);
-                        }
-                    }
+                    // 2. 关闭旧连接（排除当前连接），集群模式下同时登记所在节点并关闭其他节点上的旧连接
+                    imClusterRouter.userBound(channelContext, userIdStr);
                 } else {
                     log.warn("WebSocket连接绑定失败：用户信息不存在 - userId: {}", userId);
                     return;
@@ -210,36 +172,19 @@ public class ImWsMsgHandler implements IWsMsgHandler {
             return;
         }
 
-        // 处理未读的用户消息
+        // 推送最新一页未读的用户消息：一页一帧，发送者批量查询；更早的未读消息由客户端按游标拉取
         try {
-            List<ImChatUserMessage> userMessages = imChatUserMessageService.lambdaQuery().eq(ImChatUserMessage::getToId, user.getId())
-                    .eq(ImChatUserMessage::getMessageStatus, ImConfigConst.USER_MESSAGE_STATUS_FALSE)
-                    .orderByAsc(ImChatUserMessage::getCreateTime).list();
-
-            if (!CollectionUtils.isEmpty(userMessages)) {
-                userMessages.forEach(userMessage -> {
-                    ImMessage imMessage = new ImMessage();
-                    imMessage.setContent(userMessage.getContent());
-                    imMessage.setFromId(userMessage.getFromId());
-                    imMessage.setToId(userMessage.getToId());
-                    imMessage.setMessageType(ImEnum.MESSAGE_TYPE_MSG_SINGLE.getCode());
-                    User friend = commonQuery.getUser(userMessage.getFromId());
-                    if (friend != null) {
-                        imMessage.setAvatar(friend.getAvatar());
-                    }
-                    // 使用更安全的序列化配置
-                    String jsonString = JSON.toJSONString(imMessage, 
-                        SerializerFeature.WriteMapNullValue,
-                        SerializerFeature.WriteNullStringAsEmpty,
-                        SerializerFeature.WriteNonStringKeyAsString,
-                        SerializerFeature.DisableCircularReferenceDetect);
-                    WsResponse wsResponse = WsResponse.fromText(jsonString, ImConfigConst.CHARSET);
-                    Tio.sendToUser(channelContext.tioConfig, userMessage.getToId().toString(), wsResponse);
-                });
-                
-                // ❌ 不再立即标记为已读！改为用户进入聊天时才标记
-                // imChatUserMessageService.lambdaUpdate().in(ImChatUserMessage::getId, ids)
-                //         .set(ImChatUserMessage::getMessageStatus, ImConfigConst.USER_MESSAGE_STATUS_TRUE).update();
+            OfflineMessageBatchVO batch = imChatUserMessageService.listOfflineMessages(user.getId(), null, null,
+                    ImConfigConst.OFFLINE_MESSAGE_PAGE_SIZE);
+            if (!CollectionUtils.isEmpty(batch.getMessages())) {
+                // 使用更安全的序列化配置
+                String jsonString = JSON.toJSONString(batch,
+                    SerializerFeature.WriteMapNullValue,
+                    SerializerFeature.WriteNullStringAsEmpty,
+                    SerializerFeature.WriteNonStringKeyAsString,
+                    SerializerFeature.DisableCircularReferenceDetect);
+                outboundQueue.sendToUser(channelContext.tioConfig, user.getId().toString(), jsonString);
+                // 不在此标记为已读，用户进入聊天时才标记
             }
         } catch (Exception e) {
             log.error("处理用户未读消息时发生错误 - userId: {}", user.getId(), e);
@@ -259,97 +204,31 @@ public class ImWsMsgHandler implements IWsMsgHandler {
             log.error("绑定用户群组时发生错误 - userId: {}", user.getId(), e);
         }
 
-        // 推送聊天列表、私聊和群聊的未读消息数
-        try (var scope = StructuredTaskScope.open()) {
-            // 并行获取聊天列表和未读数
-            Subtask<List<Integer>> friendChatListTask = scope.fork(() -> 
-                imChatLastReadService.getFriendChatList(user.getId())
-            );
-            
-            Subtask<List<Integer>> groupChatListTask = scope.fork(() -> 
-                imChatLastReadService.getGroupChatList(user.getId())
-            );
-            
-            Subtask<Map<Integer, Integer>> friendUnreadCountsTask = scope.fork(() -> 
-                imChatLastReadService.getFriendUnreadCounts(user.getId())
-            );
-            
-            Subtask<Map<Integer, Integer>> groupUnreadCountsTask = scope.fork(() -> 
-                imChatLastReadService.getGroupUnreadCounts(user.getId())
-            );
-            
-            // 等待所有基础数据获取完成
-            scope.join();
-            
-            // 获取结果并确保不为null
-            List<Integer> friendChatList = (friendChatListTask.state() == Subtask.State.SUCCESS && friendChatListTask.get() != null) 
-                ? friendChatListTask.get() : new ArrayList<>();
-            List<Integer> groupChatList = (groupChatListTask.state() == Subtask.State.SUCCESS && groupChatListTask.get() != null) 
-                ? groupChatListTask.get() : new ArrayList<>();
-            Map<Integer, Integer> friendUnreadCounts = (friendUnreadCountsTask.state() == Subtask.State.SUCCESS && friendUnreadCountsTask.get() != null) 
-                ? friendUnreadCountsTask.get() : new HashMap<>();
-            Map<Integer, Integer> groupUnreadCounts = (groupUnreadCountsTask.state() == Subtask.State.SUCCESS && groupUnreadCountsTask.get() != null) 
-                ? groupUnreadCountsTask.get() : new HashMap<>();
-            
-            // 并行获取所有好友和群组的最后一条消息（限制并发数，避免耗尽连接池）
-            Map<String, LastMessageVO> friendLastMessages = new ConcurrentHashMap<>();
-            Map<String, LastMessageVO> groupLastMessages = new ConcurrentHashMap<>();
-            
-            try (var msgScope = StructuredTaskScope.open()) {
-                // 为每个好友创建并行任务获取最后一条消息
-                for (Integer friendId : friendChatList) {
-                    msgScope.fork(() -> {
-                        try {
-                            // 获取信号量许可，限制并发数
-                            dbQuerySemaphore.acquire();
-                            try {
-                                LastMessageVO lastMsg = imChatUserMessageService.getLastMessageWithFriend(user.getId(), friendId);
-                                if (lastMsg != null) {
-                                    friendLastMessages.put(friendId.toString(), lastMsg);
-                                }
-                            } finally {
-                                // 释放信号量
-                                dbQuerySemaphore.release();
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            log.warn("获取好友 {} 的最后一条消息被中断", friendId);
-                        } catch (Exception e) {
-                            log.error("获取好友 {} 的最后一条消息失败: {}", friendId, e.getMessage());
-                        }
-                        return null;
-                    });
+        // 推送聊天列表、私聊和群聊的未读消息数与最后一条消息（一次查询会话表）
+        try {
+            List<ConversationVO> conversations = imChatLastReadService.listConversations(user.getId());
+
+            List<Integer> friendChatList = new ArrayList<>();
+            List<Integer> groupChatList = new ArrayList<>();
+            Map<Integer, Integer> friendUnreadCounts = new HashMap<>();
+            Map<Integer, Integer> groupUnreadCounts = new HashMap<>();
+            Map<String, LastMessageVO> friendLastMessages = new HashMap<>();
+            Map<String, LastMessageVO> groupLastMessages = new HashMap<>();
+            for (ConversationVO conversation : conversations) {
+                boolean friend = conversation.getChatType() == ImChatLastRead.CHAT_TYPE_FRIEND;
+                // 隐藏的聊天不在列表中，但仍计入未读数
+                if (conversation.getIsHidden() == null || conversation.getIsHidden() == 0) {
+                    (friend ? friendChatList : groupChatList).add(conversation.getChatId());
                 }
-                
-                // 为每个群组创建并行任务获取最后一条消息
-                for (Integer groupId : groupChatList) {
-                    msgScope.fork(() -> {
-                        try {
-                            // 获取信号量许可，限制并发数
-                            dbQuerySemaphore.acquire();
-                            try {
-                                LastMessageVO lastMsg = imChatUserGroupMessageService.getLastGroupMessage(groupId);
-                                if (lastMsg != null) {
-                                    groupLastMessages.put(groupId.toString(), lastMsg);
-                                }
-                            } finally {
-                                // 释放信号量
-                                dbQuerySemaphore.release();
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            log.warn("获取群组 {} 的最后一条消息被中断", groupId);
-                        } catch (Exception e) {
-                            log.error("获取群组 {} 的最后一条消息失败: {}", groupId, e.getMessage());
-                        }
-                        return null;
-                    });
+                (friend ? friendUnreadCounts : groupUnreadCounts).put(conversation.getChatId(), conversation.getUnreadCount());
+                if (conversation.getLastMessageTime() != null) {
+                    LastMessageVO lastMsg = new LastMessageVO();
+                    lastMsg.setContent(conversation.getLastMessageContent());
+                    lastMsg.setCreateTime(conversation.getLastMessageTime());
+                    (friend ? friendLastMessages : groupLastMessages).put(conversation.getChatId().toString(), lastMsg);
                 }
-                
-                // 等待所有消息获取完成
-                msgScope.join();
             }
-            
+
             // 构造未读数和聊天列表消息
             Map<String, Object> syncMessage = new HashMap<>();
             syncMessage.put("messageType", 5); // 5表示同步消息（未读数+聊天列表）
@@ -367,45 +246,14 @@ public class ImWsMsgHandler implements IWsMsgHandler {
                 SerializerFeature.WriteNonStringKeyAsString,  // 非字符串key转为字符串（修复-1等数字key的问题）
                 SerializerFeature.DisableCircularReferenceDetect);  // 禁用循环引用检测
             
-            WsResponse wsResponse = WsResponse.fromText(jsonString, ImConfigConst.CHARSET);
-            Tio.sendToUser(channelContext.tioConfig, user.getId().toString(), wsResponse);
+            outboundQueue.sendToUser(channelContext.tioConfig, user.getId().toString(), jsonString);
                 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("推送聊天数据被中断 - userId: {}", user.getId(), e);
         } catch (Exception e) {
             log.error("推送聊天数据失败 - userId: {}, 错误信息: {}", user.getId(), e.getMessage(), e);
         }
         
-        // 延迟广播在线用户数（使用虚拟线程，等待旧连接完全关闭）
-        Thread.ofVirtual().start(() -> {
-            try {
-                // 延迟200ms，确保 closeUser 执行完成
-                Thread.sleep(200);
-                
-                // 获取用户所在的群组并广播在线人数
-                SetWithLock<String> groups = channelContext.getGroups();
-                if (groups != null && groups.size() > 0) {
-                    TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
-                    if (tioWebsocketStarter != null) {
-                        for (String groupId : groups.getObj()) {
-                            int onlineCount = Tio.getByGroup(tioWebsocketStarter.getServerTioConfig(), groupId).size();
-                            
-                            ImMessage imMessage = new ImMessage();
-                            imMessage.setMessageType(CommonConst.ONLINE_COUNT_MESSAGE_TYPE);
-                            imMessage.setOnlineCount(onlineCount);
-                            imMessage.setGroupId(Integer.valueOf(groupId));
-                            
-                            WsResponse onlineWs = WsResponse.fromText(imMessage.toJsonString(), CommonConst.CHARSET_NAME);
-                            Tio.sendToGroup(tioWebsocketStarter.getServerTioConfig(), groupId, onlineWs);
-                            
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.error("延迟广播在线用户数失败 - userId: {}", user.getId(), e);
-            }
-        });
+        // 合并推送所在群的在线人数与上线用户（等待被踢出的旧连接关闭后统计）
+        presenceService.connected(channelContext);
     }
 
     @Override
@@ -439,7 +287,6 @@ public class ImWsMsgHandler implements IWsMsgHandler {
                 SerializerFeature.WriteNullStringAsEmpty,
                 SerializerFeature.WriteNonStringKeyAsString,
                 SerializerFeature.DisableCircularReferenceDetect);
-            WsResponse wsResponse = WsResponse.fromText(jsonString, ImConfigConst.CHARSET);
             if (imMessage.getMessageType().intValue() == ImEnum.MESSAGE_TYPE_MSG_SINGLE.getCode()) {
                 //单聊
                 ImChatUserMessage userMessage = new ImChatUserMessage();
@@ -447,20 +294,20 @@ public class ImWsMsgHandler implements IWsMsgHandler {
                 userMessage.setToId(imMessage.getToId());
                 userMessage.setContent(imMessage.getContent());
                 userMessage.setCreateTime(LocalDateTime.now());
+                userMessage.setMsgKey(MessageCache.newMessageKey());
 
                 // 自动取消隐藏（发送者和接收者）
                 imChatLastReadService.unhideChat(imMessage.getFromId(), ImChatLastRead.CHAT_TYPE_FRIEND, imMessage.getToId());
                 imChatLastReadService.unhideChat(imMessage.getToId(), ImChatLastRead.CHAT_TYPE_FRIEND, imMessage.getFromId());
 
-                SetWithLock<ChannelContext> setWithLock = Tio.getByUserid(channelContext.tioConfig, imMessage.getToId().toString());
-                if (setWithLock != null && setWithLock.size() > 0) {
-                    Tio.sendToUser(channelContext.tioConfig, imMessage.getToId().toString(), wsResponse);
+                // 接收者可能连接在其他节点，那边未能送达时按消息键标记为未读
+                if (imClusterRouter.sendToUser(channelContext.tioConfig, imMessage.getToId().toString(), userMessage.getMsgKey(), jsonString)) {
                     userMessage.setMessageStatus(ImConfigConst.USER_MESSAGE_STATUS_TRUE);
                 } else {
                     userMessage.setMessageStatus(ImConfigConst.USER_MESSAGE_STATUS_FALSE);
                 }
                 messageCache.putUserMessage(userMessage);
-                Tio.sendToUser(channelContext.tioConfig, imMessage.getFromId().toString(), wsResponse);
+                outboundQueue.sendToUser(channelContext.tioConfig, imMessage.getFromId().toString(), jsonString);
             } else if (imMessage.getMessageType().intValue() == ImEnum.MESSAGE_TYPE_MSG_GROUP.getCode()) {
                 //群聊
                 ImChatUserGroupMessage groupMessage = new ImChatUserGroupMessage();
@@ -473,10 +320,8 @@ public class ImWsMsgHandler implements IWsMsgHandler {
                 // 🆕 自动取消隐藏（发送者）
                 imChatLastReadService.unhideChat(imMessage.getFromId(), ImChatLastRead.CHAT_TYPE_GROUP, imMessage.getGroupId());
 
-                SetWithLock<ChannelContext> setWithLock = Tio.getByGroup(channelContext.tioConfig, imMessage.getGroupId().toString());
-                if (setWithLock != null && setWithLock.size() > 0) {
-                    Tio.sendToGroup(channelContext.tioConfig, imMessage.getGroupId().toString(), wsResponse);
-                }
+                // 本节点只编码一次，所有成员连接共享同一帧；集群模式下其他节点各自推送
+                imClusterRouter.broadcastToGroup(channelContext.tioConfig, imMessage.getGroupId().toString(), jsonString);
             }
         } catch (Exception e) {
             log.error("解析消息失败：{}", e.getMessage());
@@ -1,23 +1,59 @@
 package com.ld.poetry.im.websocket;
 
+import com.ld.poetry.config.ImJournalPolicy;
 import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
 import com.ld.poetry.im.http.entity.ImChatUserMessage;
+import com.ld.poetry.im.http.service.ImChatLastReadService;
 import com.ld.poetry.im.http.service.ImChatUserGroupMessageService;
 import com.ld.poetry.im.http.service.ImChatUserMessageService;
+import com.ld.poetry.im.journal.ImMessageCodec;
+import com.ld.poetry.im.journal.JournalRecord;
+import com.ld.poetry.im.journal.MessageJournal;
 import com.ld.poetry.utils.mail.MailSendUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.DataTruncation;
+import java.sql.SQLDataException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * IM消息写入缓冲
+ * <p>
+ * 消息先追加到本地预写日志（{@link MessageJournal}），定时从日志批量写入数据库并前移检查点，
+ * 同一事务内更新会话表（最后一条消息、未读数）。
+ * 进程崩溃或OOM重启后从检查点重放未写入的消息；数据库长时间不可用时日志按段溢出到磁盘，不占用堆内存。
+ * </p>
+ * <p>
+ * 每条消息写入日志前生成消息键（数据库唯一索引），检查点落盘前崩溃或检查点写入失败导致整批重放时，
+ * 已写入的消息在逐条写入时按唯一键冲突跳过，会话表不会重复累计。
+ * 无法写入的消息（超长、违反约束、无法解码，或数据库可用时反复失败）移入死信文件，不阻塞后续消息。
+ * </p>
+ * <p>
+ * 集群模式下转发到其他节点的私聊消息由来源节点写入，接收节点未能送达时记下消息键，
+ * 每次写入数据库后把已入库的这些消息改为未读（来源节点可能尚未写入，等待 {@link ImConfigConst#UNDELIVERED_MARK_TTL}）。
+ * </p>
+ */
 @Component
 @Slf4j
 public class MessageCache {
@@ -28,22 +64,72 @@ public class MessageCache {
     @Autowired
     private ImChatUserGroupMessageService imChatUserGroupMessageService;
 
+    @Autowired
+    private ImChatLastReadService imChatLastReadService;
+
     @Autowired
     private MailSendUtil mailSendUtil;
 
-    private final List<ImChatUserMessage> userMessage = new ArrayList<>();
+    @Autowired
+    private ImJournalPolicy policy;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private MessageJournal journal;
+
+    /**
+     * 日志只允许一个消费者
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 日志位置 → 数据库可用时该记录写入失败的次数，由 flushLock 保护
+     */
+    private final Map<Long, Integer> recordFailures = new HashMap<>();
+
+    /**
+     * 已移入死信文件、检查点尚未越过的记录位置，整批重试时跳过，由 flushLock 保护
+     */
+    private final Set<Long> deadLettered = new HashSet<>();
+
+    /**
+     * 转发后未能送达、待标记为未读的消息键 → 放弃标记的时间
+     */
+    private final Map<String, Long> undelivered = new ConcurrentHashMap<>();
 
-    private final List<ImChatUserGroupMessage> groupMessage = new ArrayList<>();
+    @PostConstruct
+    public void init() throws IOException {
+        journal = MessageJournal.open(Paths.get(policy.getDir()), policy.getSegmentSizeMb() * 1024 * 1024);
+        if (meterRegistry != null) {
+            FunctionCounter.builder("poetize.im.journal.dead_letter.records", journal, MessageJournal::deadLetterRecordCount)
+                    .description("无法写入数据库、移入死信文件的IM消息数").register(meterRegistry);
+            FunctionCounter.builder("poetize.im.journal.dead_letter.files", journal, MessageJournal::deadLetterFileCount)
+                    .description("溢出目录超限移入死信目录的溢出文件数").register(meterRegistry);
+        }
+        log.info("IM消息日志已打开 - 目录: {}, 待写入数据库: {} 字节, 溢出文件: {}",
+                policy.getDir(), journal.pendingBytes(), journal.spillFileCount());
+    }
 
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    /**
+     * 生成消息键
+     */
+    public static String newMessageKey() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
 
     public void putUserMessage(ImChatUserMessage message) {
-        // 修复：写操作必须使用写锁，不是读锁！
-        readWriteLock.writeLock().lock();
-        try {
-            userMessage.add(message);
-        } finally {
-            readWriteLock.writeLock().unlock();
+        if (message.getMsgKey() == null) {
+            message.setMsgKey(newMessageKey());
+        }
+        if (!append(ImMessageCodec.TYPE_USER_MESSAGE, ImMessageCodec.encode(message))) {
+            transactionTemplate.executeWithoutResult(status -> {
+                imChatUserMessageService.save(message);
+                imChatLastReadService.applyMessages(List.of(message), List.of());
+            });
         }
 
         try {
@@ -54,95 +140,264 @@ public class MessageCache {
     }
 
     public void putGroupMessage(ImChatUserGroupMessage message) {
-        // 修复：写操作必须使用写锁，不是读锁！
-        readWriteLock.writeLock().lock();
+        if (message.getMsgKey() == null) {
+            message.setMsgKey(newMessageKey());
+        }
+        if (!append(ImMessageCodec.TYPE_GROUP_MESSAGE, ImMessageCodec.encode(message))) {
+            transactionTemplate.executeWithoutResult(status -> {
+                imChatUserGroupMessageService.save(message);
+                imChatLastReadService.applyMessages(List.of(), List.of(message));
+            });
+        }
+    }
+
+    /**
+     * 记下其他节点转发、本节点未能送达的私聊消息，入库后标记为未读
+     */
+    public void markUndelivered(String msgKey) {
+        undelivered.put(msgKey, System.currentTimeMillis() + ImConfigConst.UNDELIVERED_MARK_TTL);
+    }
+
+    /**
+     * 追加到日志，失败（如磁盘已满）时返回false，由调用方直接写入数据库
+     */
+    private boolean append(byte type, byte[] payload) {
         try {
-            groupMessage.add(message);
-        } finally {
-            readWriteLock.writeLock().unlock();
+            long offset = journal.append(type, payload);
+            if (policy.isSyncOnAppend()) {
+                journal.commit(offset);
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("IM消息写入日志失败，直接写入数据库", e);
+            return false;
         }
+    }
 
+    /**
+     * 定时刷盘（未开启 syncOnAppend 时）
+     */
+    @Scheduled(fixedDelayString = "${poetize.im.journal.commit-interval-ms:100}")
+    public void commitJournal() {
+        if (!policy.isSyncOnAppend()) {
+            journal.commit(journal.getWriteOffset());
+        }
     }
 
-    @Scheduled(fixedDelay = 5000)
-    public void saveUserMessage() {
-        // 优化缓存策略：先复制并清空，减少锁持有时间
-        List<ImChatUserMessage> messagesToSave = new ArrayList<>();
-        
-        readWriteLock.writeLock().lock();
+    /**
+     * 从日志批量写入数据库：先补写溢出的消息（早于活动日志），再写入活动日志，保持写入数据库的顺序与发送顺序一致
+     */
+    @Scheduled(fixedDelayString = "${poetize.im.journal.flush-interval-ms:1000}")
+    public void flushToDatabase() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
         try {
-            if (!CollectionUtils.isEmpty(userMessage)) {
-                messagesToSave.addAll(userMessage);
-                userMessage.clear();
+            int batchSize = policy.getFlushBatchSize();
+            while (journal.drainSpill(batchSize, this::saveBatch) > 0) {
+                // 逐批补写溢出文件
+            }
+
+            int count;
+            do {
+                count = journal.drain(batchSize, this::saveBatch);
+            } while (count == batchSize);
+
+            journal.spillExcess(policy.getMaxSegments(), policy.getMaxSpillMb() * 1024 * 1024);
+            applyUndelivered();
+        } catch (Exception e) {
+            log.error("IM消息写入数据库失败，稍后重试 - 待写入: {} 字节", journal.pendingBytes(), e);
+            try {
+                journal.spillExcess(policy.getMaxSegments(), policy.getMaxSpillMb() * 1024 * 1024);
+            } catch (IOException ex) {
+                log.error("IM消息日志溢出失败", ex);
             }
         } finally {
-            readWriteLock.writeLock().unlock();
+            flushLock.unlock();
         }
-        
-        // 在锁外执行数据库操作，提高并发性能
-        if (!messagesToSave.isEmpty()) {
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        flushToDatabase();
+        journal.close();
+    }
+
+    /**
+     * 一批日志记录在同一事务中写入数据库，失败时逐条写入以隔离无法写入的记录
+     */
+    private void saveBatch(List<JournalRecord> records) throws IOException {
+        List<JournalRecord> decoded = new ArrayList<>(records.size());
+        List<Object> messages = new ArrayList<>(records.size());
+        for (JournalRecord record : records) {
+            if (deadLettered.contains(record.offset())) {
+                continue;
+            }
+            Object message;
             try {
-                saveUserMessageWithTransaction(messagesToSave);
-            } catch (Exception e) {
-                log.error("批量保存用户消息失败，消息数量: {}", messagesToSave.size(), e);
-                // 保存失败，将消息重新加入队列
-                readWriteLock.writeLock().lock();
-                try {
-                    userMessage.addAll(0, messagesToSave);
-                    log.warn("保存失败的 {} 条消息已重新加入队列", messagesToSave.size());
-                } finally {
-                    readWriteLock.writeLock().unlock();
-                }
+                message = decode(record);
+            } catch (IOException | RuntimeException e) {
+                deadLetter(record, e);
+                continue;
+            }
+            if (message == null) {
+                log.warn("跳过未知类型的IM消息日志记录 - 类型: {}, 位置: {}", record.type(), record.offset());
+                continue;
             }
+            decoded.add(record);
+            messages.add(message);
+        }
+        try {
+            save(messages);
+        } catch (RuntimeException e) {
+            log.warn("IM消息批量写入数据库失败，逐条写入 - 条数: {}, 原因: {}", messages.size(), e.getMessage());
+            saveEach(decoded, messages);
+        }
+        for (JournalRecord record : records) {
+            recordFailures.remove(record.offset());
+            deadLettered.remove(record.offset());
         }
     }
-    
+
     /**
-     * 带事务的消息保存方法
+     * 逐条写入：重放时已写入的消息按唯一键冲突跳过；数据错误直接移入死信文件；
+     * 其他错误若同批有消息写入成功（数据库可用）则累计失败次数，达到上限后移入死信文件，否则整批稍后重试
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void saveUserMessageWithTransaction(List<ImChatUserMessage> messages) {
-        imChatUserMessageService.saveBatch(messages);
+    private void saveEach(List<JournalRecord> records, List<Object> messages) throws IOException {
+        int written = 0;
+        int consecutiveFailures = 0;
+        RuntimeException lastFailure = null;
+        List<JournalRecord> failed = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            JournalRecord record = records.get(i);
+            Object message = messages.get(i);
+            try {
+                save(List.of(message));
+                written++;
+                consecutiveFailures = 0;
+            } catch (DuplicateKeyException e) {
+                log.info("跳过已写入数据库的IM消息 - 位置: {}", record.offset());
+                written++;
+                consecutiveFailures = 0;
+            } catch (RuntimeException e) {
+                if (isDataError(e)) {
+                    deadLetter(record, e);
+                    consecutiveFailures = 0;
+                    continue;
+                }
+                lastFailure = e;
+                if (++consecutiveFailures >= 2) {
+                    // 连续失败，视为数据库不可用，已写入的消息重放时按唯一键跳过
+                    throw e;
+                }
+                failed.add(record);
+            }
+        }
+        if (failed.isEmpty()) {
+            return;
+        }
+        if (written == 0) {
+            throw lastFailure;
+        }
+        boolean retry = false;
+        for (JournalRecord record : failed) {
+            int attempts = recordFailures.merge(record.offset(), 1, Integer::sum);
+            if (attempts >= Math.max(1, policy.getMaxRecordAttempts())) {
+                deadLetter(record, lastFailure);
+            } else {
+                retry = true;
+            }
+        }
+        if (retry) {
+            throw lastFailure;
+        }
     }
 
-    @Scheduled(fixedDelay = 10000)
-    public void saveGroupMessage() {
-        // 优化缓存策略：先复制并清空，减少锁持有时间
-        List<ImChatUserGroupMessage> messagesToSave = new ArrayList<>();
-        
-        readWriteLock.writeLock().lock();
-        try {
-            if (!CollectionUtils.isEmpty(groupMessage)) {
-                messagesToSave.addAll(groupMessage);
-                groupMessage.clear();
+    private void save(List<Object> messages) {
+        List<ImChatUserMessage> userMessages = new ArrayList<>();
+        List<ImChatUserGroupMessage> groupMessages = new ArrayList<>();
+        for (Object message : messages) {
+            if (message instanceof ImChatUserMessage userMessage) {
+                // 回滚的批量插入可能已回填自增ID
+                userMessage.setId(null);
+                userMessages.add(userMessage);
+            } else if (message instanceof ImChatUserGroupMessage groupMessage) {
+                groupMessage.setId(null);
+                groupMessages.add(groupMessage);
             }
-        } finally {
-            readWriteLock.writeLock().unlock();
         }
-        
-        // 在锁外执行数据库操作，提高并发性能
-        if (!messagesToSave.isEmpty()) {
-            try {
-                saveGroupMessageWithTransaction(messagesToSave);
-            } catch (Exception e) {
-                log.error("批量保存群组消息失败，消息数量: {}", messagesToSave.size(), e);
-                // 保存失败，将消息重新加入队列
-                readWriteLock.writeLock().lock();
-                try {
-                    groupMessage.addAll(0, messagesToSave);
-                    log.warn("保存失败的 {} 条消息已重新加入队列", messagesToSave.size());
-                } finally {
-                    readWriteLock.writeLock().unlock();
-                }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!userMessages.isEmpty()) {
+                imChatUserMessageService.saveBatch(userMessages);
+            }
+            if (!groupMessages.isEmpty()) {
+                imChatUserGroupMessageService.saveBatch(groupMessages);
+            }
+            // 同一事务内更新会话（最后一条消息、未读数）
+            imChatLastReadService.applyMessages(userMessages, groupMessages);
+        });
+    }
+
+    /**
+     * 把已入库的未送达消息改为未读，来源节点尚未写入的留到下次，超时的放弃
+     */
+    private void applyUndelivered() {
+        if (undelivered.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(undelivered.keySet());
+        for (int from = 0; from < keys.size(); from += ImConfigConst.UNDELIVERED_MARK_BATCH_SIZE) {
+            List<String> batch = keys.subList(from, Math.min(keys.size(), from + ImConfigConst.UNDELIVERED_MARK_BATCH_SIZE));
+            List<String> stored = imChatUserMessageService.lambdaQuery()
+                    .select(ImChatUserMessage::getMsgKey)
+                    .in(ImChatUserMessage::getMsgKey, batch)
+                    .list().stream().map(ImChatUserMessage::getMsgKey).toList();
+            if (!stored.isEmpty()) {
+                imChatUserMessageService.lambdaUpdate()
+                        .set(ImChatUserMessage::getMessageStatus, ImConfigConst.USER_MESSAGE_STATUS_FALSE)
+                        .in(ImChatUserMessage::getMsgKey, stored)
+                        .update();
+                stored.forEach(undelivered::remove);
             }
         }
+        long now = System.currentTimeMillis();
+        undelivered.entrySet().removeIf(entry -> {
+            if (entry.getValue() < now) {
+                log.warn("未送达的IM消息超时仍未入库，放弃标记为未读 - msgKey: {}", entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private Object decode(JournalRecord record) throws IOException {
+        return switch (record.type()) {
+            case ImMessageCodec.TYPE_USER_MESSAGE -> ImMessageCodec.decodeUserMessage(record.payload());
+            case ImMessageCodec.TYPE_GROUP_MESSAGE -> ImMessageCodec.decodeGroupMessage(record.payload());
+            default -> null;
+        };
     }
-    
+
+    private void deadLetter(JournalRecord record, Exception cause) throws IOException {
+        journal.deadLetter(record);
+        deadLettered.add(record.offset());
+        recordFailures.remove(record.offset());
+        log.error("IM消息无法写入数据库，已移入死信文件 - 位置: {}, 类型: {}, 原因: {}", record.offset(), record.type(), cause.getMessage());
+    }
+
     /**
-     * 带事务的群组消息保存方法
+     * 超长、违反约束等与记录内容有关、重试也不会成功的错误
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void saveGroupMessageWithTransaction(List<ImChatUserGroupMessage> messages) {
-        imChatUserGroupMessageService.saveBatch(messages);
+    private static boolean isDataError(Throwable e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLDataException || cause instanceof SQLIntegrityConstraintViolationException
+                    || cause instanceof DataTruncation) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,209 @@
+package com.ld.poetry.im.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.ld.poetry.constants.CommonConst;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.tio.core.ChannelContext;
+import org.tio.server.ServerTioConfig;
+import org.tio.utils.lock.SetWithLock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 群在线人数与成员上下线推送
+ * <p>
+ * 连接建立、关闭时只把所在的群标记为待推送（记录期间上线/下线的用户），由定时任务合并推送：同一个群在一个周期内的多次进出合并为一帧，
+ * 且在最后一次变化 {@link ImConfigConst#ONLINE_COUNT_SETTLE_TIME} 毫秒后才统计（此时被踢出的旧连接、
+ * 正在关闭的连接已离开群组，人数准确）。持续有人进出的群最迟在两个周期后推送。
+ * 集群模式下推送的是所有节点的在线人数之和，并广播到所有节点。
+ * 在线人数是非关键帧，连接积压时由 {@link OutboundQueue} 按群合并（人数取最新，上下线用户按顺序合并）。
+ * </p>
+ */
+@Slf4j
+@Component
+public class OnlineCountNotifier {
+
+    @Autowired
+    private ImClusterRouter imClusterRouter;
+
+    /**
+     * 待推送的群 -> 标记时间与期间上线/下线的用户
+     */
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 标记连接所在的群需要推送在线人数
+     *
+     * @param userId 上线或下线的用户，只影响人数（如同一用户的旧连接关闭）时为null
+     * @param online 上线还是下线
+     */
+    public void markGroups(ChannelContext channelContext, Integer userId, boolean online) {
+        SetWithLock<String> groups = channelContext.getGroups();
+        if (groups == null || groups.size() == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ReentrantReadWriteLock.ReadLock readLock = groups.readLock();
+        readLock.lock();
+        try {
+            for (String groupId : groups.getObj()) {
+                mark(groupId, userId, online, now);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    void mark(String groupId, Integer userId, boolean online, long now) {
+        pending.compute(groupId, (key, previous) -> {
+            // 每次生成新对象，推送线程据此判断取出后是否又有变化
+            Map<Integer, Boolean> presence = previous == null ? new HashMap<>() : new HashMap<>(previous.presence);
+            // 已记录的用户总是更新为最新状态，否则达到上限后同一用户的后续变化会被丢弃
+            if (userId != null && (presence.containsKey(userId) || presence.size() < ImConfigConst.PRESENCE_DELTA_MAX_SIZE)) {
+                presence.put(userId, online);
+            }
+            return new Pending(previous == null ? now : previous.firstMarked, now, presence);
+        });
+    }
+
+    @Scheduled(fixedDelay = ImConfigConst.ONLINE_COUNT_INTERVAL)
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
+        if (tioWebsocketStarter == null) {
+            pending.clear();
+            return;
+        }
+        ServerTioConfig tioConfig = tioWebsocketStarter.getServerTioConfig();
+        drain(System.currentTimeMillis()).forEach((groupId, changes) -> {
+            try {
+                int onlineCount = imClusterRouter.groupOnlineCount(tioConfig, groupId);
+                imClusterRouter.broadcastOnlineCount(tioConfig, new OnlineCountFrame(groupId, onlineCount, changes.presence));
+            } catch (Exception e) {
+                log.error("推送群在线人数失败 - groupId: {}", groupId, e);
+            }
+        });
+    }
+
+    /**
+     * 在线人数帧，期间有用户上线/下线时附带用户ID（同一用户以最后一次为准）
+     */
+    static String buildFrame(String groupId, int onlineCount, Map<Integer, Boolean> presence) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("messageType", CommonConst.ONLINE_COUNT_MESSAGE_TYPE);
+        frame.put("groupId", Integer.valueOf(groupId));
+        frame.put("onlineCount", onlineCount);
+        if (!presence.isEmpty()) {
+            List<Integer> onlineUserIds = new ArrayList<>();
+            List<Integer> offlineUserIds = new ArrayList<>();
+            presence.forEach((userId, online) -> (online ? onlineUserIds : offlineUserIds).add(userId));
+            frame.put("onlineUserIds", onlineUserIds);
+            frame.put("offlineUserIds", offlineUserIds);
+        }
+        return JSON.toJSONString(frame);
+    }
+
+    /**
+     * 取出已稳定（或等待已久）的群
+     */
+    Map<String, Pending> drain(long now) {
+        Map<String, Pending> ready = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Pending> entry = iterator.next();
+            Pending changes = entry.getValue();
+            boolean settled = now - changes.lastMarked >= ImConfigConst.ONLINE_COUNT_SETTLE_TIME;
+            boolean overdue = now - changes.firstMarked >= ImConfigConst.ONLINE_COUNT_INTERVAL * 2;
+            // 仅在值未被并发更新时移除，被更新的留到下个周期
+            if ((settled || overdue) && pending.remove(entry.getKey(), changes)) {
+                ready.put(entry.getKey(), changes);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * 可合并的在线人数帧
+     */
+    static final class OnlineCountFrame implements OutboundQueue.Coalescible {
+
+        final String groupId;
+
+        final int onlineCount;
+
+        final Map<Integer, Boolean> presence;
+
+        OnlineCountFrame(String groupId, int onlineCount, Map<Integer, Boolean> presence) {
+            this.groupId = groupId;
+            this.onlineCount = onlineCount;
+            this.presence = presence;
+        }
+
+        /**
+         * 由 {@link #buildFrame} 生成的JSON还原（集群内转发时使用）
+         */
+        static OnlineCountFrame parse(String json) {
+            JSONObject frame = JSON.parseObject(json);
+            Map<Integer, Boolean> presence = new LinkedHashMap<>();
+            JSONArray onlineUserIds = frame.getJSONArray("onlineUserIds");
+            JSONArray offlineUserIds = frame.getJSONArray("offlineUserIds");
+            if (onlineUserIds != null) {
+                onlineUserIds.toJavaList(Integer.class).forEach(userId -> presence.put(userId, true));
+            }
+            if (offlineUserIds != null) {
+                offlineUserIds.toJavaList(Integer.class).forEach(userId -> presence.put(userId, false));
+            }
+            return new OnlineCountFrame(frame.getString("groupId"), frame.getIntValue("onlineCount"), presence);
+        }
+
+        @Override
+        public String coalesceKey() {
+            return "onlineCount:" + groupId;
+        }
+
+        @Override
+        public OutboundQueue.Coalescible mergeAfter(OutboundQueue.Coalescible older) {
+            Map<Integer, Boolean> merged = new LinkedHashMap<>(((OnlineCountFrame) older).presence);
+            presence.forEach((userId, online) -> {
+                if (merged.containsKey(userId) || merged.size() < ImConfigConst.PRESENCE_DELTA_MAX_SIZE) {
+                    merged.put(userId, online);
+                }
+            });
+            return new OnlineCountFrame(groupId, onlineCount, merged);
+        }
+
+        @Override
+        public String toJson() {
+            return buildFrame(groupId, onlineCount, presence);
+        }
+    }
+
+    static final class Pending {
+
+        final long firstMarked;
+
+        final long lastMarked;
+
+        final Map<Integer, Boolean> presence;
+
+        Pending(long firstMarked, long lastMarked, Map<Integer, Boolean> presence) {
+            this.firstMarked = firstMarked;
+            this.lastMarked = lastMarked;
+            this.presence = presence;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.ld.poetry.im.websocket;
+
+import com.ld.poetry.config.ImOutboundPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.tio.core.ChannelContext;
+import org.tio.core.Tio;
+import org.tio.core.TioConfig;
+import org.tio.utils.lock.SetWithLock;
+import org.tio.websocket.common.WsResponse;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 每个连接的下行积压控制
+ * <p>
+ * t-io 的发送队列没有上限，一个卡住的客户端在活跃群里会不断积压消息。这里统计每个连接已提交但尚未写出的帧数、字节数
+ * （提交时累加，{@link ImServerAioListener#onAfterSent} 时扣减）：
+ * <ul>
+ *     <li>关键帧（聊天消息、同步数据）超过 {@link ImOutboundPolicy} 的上限时断开该连接，客户端重连后按游标拉取离线消息；</li>
+ *     <li>非关键帧（在线人数）在积压达到阈值后按合并键暂存，同一个键只保留合并后的最新状态，积压降到一半以下时再发送。</li>
+ * </ul>
+ * 同一帧发往多个连接时共享编码后的字节数组，见 {@link GroupBroadcaster}。
+ * </p>
+ */
+@Slf4j
+@Component
+public class OutboundQueue {
+
+    private static final String REASON_COALESCED = "coalesced";
+
+    private static final String REASON_SLOW_CONSUMER = "slow_consumer";
+
+    @Autowired
+    private ImOutboundPolicy policy;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final Map<ChannelContext, ChannelQueue> queues = new ConcurrentHashMap<>();
+
+    private Counter coalescedCounter;
+
+    private Counter slowConsumerDropCounter;
+
+    private Counter disconnectedCounter;
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            Gauge.builder("poetize.im.outbound.pending.frames", this, queue -> queue.pending()[0])
+                    .description("所有连接已提交未写出的帧数").register(meterRegistry);
+            Gauge.builder("poetize.im.outbound.pending.bytes", this, queue -> queue.pending()[1])
+                    .description("所有连接已提交未写出的字节数").register(meterRegistry);
+            Gauge.builder("poetize.im.outbound.pending.max", this, queue -> queue.pending()[2])
+                    .description("积压最多的连接的帧数").register(meterRegistry);
+            coalescedCounter = Counter.builder("poetize.im.outbound.dropped").tag("reason", REASON_COALESCED)
+                    .description("丢弃的下行帧数").register(meterRegistry);
+            slowConsumerDropCounter = Counter.builder("poetize.im.outbound.dropped").tag("reason", REASON_SLOW_CONSUMER)
+                    .description("丢弃的下行帧数").register(meterRegistry);
+            disconnectedCounter = Counter.builder("poetize.im.outbound.disconnected")
+                    .description("因积压超限断开的连接数").register(meterRegistry);
+        }
+    }
+
+    /**
+     * 向用户在本节点的所有连接发送文本消息（关键帧）
+     *
+     * @return 发送的连接数
+     */
+    public int sendToUser(TioConfig tioConfig, String userId, String json) {
+        SetWithLock<ChannelContext> channels = Tio.getByUserid(tioConfig, userId);
+        if (channels == null || channels.size() == 0) {
+            return 0;
+        }
+        ByteBuffer frame = GroupBroadcaster.textFrame(json);
+        int sent = 0;
+        ReentrantReadWriteLock.ReadLock readLock = channels.readLock();
+        readLock.lock();
+        try {
+            for (ChannelContext channelContext : channels.getObj()) {
+                if (offer(channelContext, frame.duplicate(), null)) {
+                    sent++;
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return sent;
+    }
+
+    /**
+     * 提交一帧
+     *
+     * @param frame       编码好的完整帧（可与其他连接共享底层数组的视图）
+     * @param coalescible 非关键帧的内容，为null表示关键帧
+     * @return 是否已提交给 t-io（非关键帧被暂存合并时也返回true）
+     */
+    public boolean offer(ChannelContext channelContext, ByteBuffer frame, Coalescible coalescible) {
+        if (!policy.isEnabled()) {
+            return Boolean.TRUE.equals(Tio.send(channelContext, new OutboundFrame(null, frame)));
+        }
+        ChannelQueue queue = queues.computeIfAbsent(channelContext, key -> new ChannelQueue());
+        if (queue.closing.get()) {
+            drop(slowConsumerDropCounter);
+            return false;
+        }
+        if (coalescible == null) {
+            if (exceeds(queue, frame.remaining())) {
+                disconnect(channelContext, queue);
+                drop(slowConsumerDropCounter);
+                return false;
+            }
+            return submit(channelContext, queue, frame);
+        }
+        if (queue.frames.get() >= Math.max(1, policy.getCoalesceAfterFrames())) {
+            defer(queue, coalescible);
+            // 判断积压之后、暂存之前积压可能已回落（写出回调当时看到暂存为空），重新检查，避免暂存的帧再也不发出
+            if (drained(queue)) {
+                flushDeferred(channelContext, queue);
+            }
+            return true;
+        }
+        // 之前暂存的同键状态更旧，合并后一起发出，避免晚到的旧状态覆盖新状态
+        Coalescible older = queue.deferred.remove(coalescible.coalesceKey());
+        if (older != null) {
+            drop(coalescedCounter);
+            return submit(channelContext, queue, GroupBroadcaster.textFrame(coalescible.mergeAfter(older).toJson()));
+        }
+        return submit(channelContext, queue, frame);
+    }
+
+    /**
+     * 一帧写出（或写失败）后扣减积压，积压降到一半以下时发送暂存的非关键帧
+     */
+    public void sent(ChannelContext channelContext, OutboundFrame frame) {
+        ChannelQueue queue = frame.queue;
+        if (queue == null || !frame.released.compareAndSet(false, true)) {
+            return;
+        }
+        release(queue, frame.bytes);
+        if (drained(queue)) {
+            flushDeferred(channelContext, queue);
+        }
+    }
+
+    /**
+     * 连接关闭时丢弃其积压统计与暂存的帧
+     */
+    public void closed(ChannelContext channelContext) {
+        ChannelQueue queue = queues.remove(channelContext);
+        if (queue != null) {
+            queue.closing.set(true);
+            queue.deferred.clear();
+        }
+    }
+
+    /**
+     * 清理没有积压的连接记录（下次发送时重新创建），兜底处理关闭时仍有并发发送的连接
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void sweep() {
+        queues.entrySet().removeIf(entry -> entry.getValue().frames.get() == 0 && entry.getValue().deferred.isEmpty());
+    }
+
+    /**
+     * 采样积压（指标抓取时遍历，不在发送路径上维护总量）
+     *
+     * @return [总帧数, 总字节数, 单个连接最大帧数]
+     */
+    long[] pending() {
+        long frames = 0;
+        long bytes = 0;
+        long max = 0;
+        for (ChannelQueue queue : queues.values()) {
+            int queued = queue.frames.get();
+            frames += queued;
+            bytes += queue.bytes.get();
+            max = Math.max(max, queued);
+        }
+        return new long[]{frames, bytes, max};
+    }
+
+    int queueCount() {
+        return queues.size();
+    }
+
+    private boolean exceeds(ChannelQueue queue, int bytes) {
+        int frames = queue.frames.get();
+        // 积压为空时单帧不受字节数限制，避免大消息导致必然断开
+        return frames >= policy.getMaxPendingFrames()
+                || (frames > 0 && queue.bytes.get() + bytes > policy.getMaxPendingBytes());
+    }
+
+    private boolean submit(ChannelContext channelContext, ChannelQueue queue, ByteBuffer frame) {
+        OutboundFrame packet = new OutboundFrame(queue, frame);
+        queue.frames.incrementAndGet();
+        queue.bytes.addAndGet(packet.bytes);
+        if (Boolean.TRUE.equals(Tio.send(channelContext, packet))) {
+            return true;
+        }
+        // 连接已关闭，不会回调 onAfterSent
+        if (packet.released.compareAndSet(false, true)) {
+            release(queue, packet.bytes);
+        }
+        return false;
+    }
+
+    private void release(ChannelQueue queue, int bytes) {
+        queue.bytes.addAndGet(-bytes);
+        queue.frames.decrementAndGet();
+    }
+
+    /**
+     * 积压已降到一半以下
+     */
+    private boolean drained(ChannelQueue queue) {
+        return queue.frames.get() <= Math.max(1, policy.getCoalesceAfterFrames()) / 2;
+    }
+
+    /**
+     * 发送暂存的非关键帧，每个键只由一个线程取出发送
+     */
+    private void flushDeferred(ChannelContext channelContext, ChannelQueue queue) {
+        if (queue.deferred.isEmpty() || queue.closing.get()) {
+            return;
+        }
+        for (String key : queue.deferred.keySet()) {
+            Coalescible deferred = queue.deferred.remove(key);
+            if (deferred != null) {
+                submit(channelContext, queue, GroupBroadcaster.textFrame(deferred.toJson()));
+            }
+        }
+    }
+
+    void defer(ChannelQueue queue, Coalescible coalescible) {
+        AtomicBoolean merged = new AtomicBoolean();
+        queue.deferred.compute(coalescible.coalesceKey(), (key, older) -> {
+            if (older == null) {
+                return coalescible;
+            }
+            merged.set(true);
+            return coalescible.mergeAfter(older);
+        });
+        if (merged.get()) {
+            drop(coalescedCounter);
+        }
+    }
+
+    private void disconnect(ChannelContext channelContext, ChannelQueue queue) {
+        if (!queue.closing.compareAndSet(false, true)) {
+            return;
+        }
+        log.warn("IM连接下行积压超限，断开 - userId: {}, 积压帧数: {}, 积压字节数: {}",
+                channelContext.getUserid(), queue.frames.get(), queue.bytes.get());
+        if (disconnectedCounter != null) {
+            disconnectedCounter.increment();
+        }
+        // 可能在群组读锁内调用，异步关闭，避免与解绑群组的写锁互相等待
+        Thread.ofVirtual().name("im-slow-consumer").start(() -> {
+            try {
+                Tio.remove(channelContext, "下行积压超限");
+            } catch (Exception e) {
+                log.warn("断开积压超限的IM连接失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void drop(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * 可合并的非关键帧
+     */
+    public interface Coalescible {
+
+        /**
+         * 合并键，同一连接上相同键的帧积压时只保留一个
+         */
+        String coalesceKey();
+
+        /**
+         * 与之前未发出的同键帧合并，this 为较新的帧
+         */
+        Coalescible mergeAfter(Coalescible older);
+
+        String toJson();
+    }
+
+    /**
+     * 带积压统计的预编码帧
+     */
+    public static final class OutboundFrame extends WsResponse {
+
+        private final ChannelQueue queue;
+
+        private final int bytes;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        OutboundFrame(ChannelQueue queue, ByteBuffer frame) {
+            this.queue = queue;
+            this.bytes = frame.remaining();
+            setPreEncodedByteBuffer(frame);
+        }
+    }
+
+    static final class ChannelQueue {
+
+        final AtomicInteger frames = new AtomicInteger();
+
+        final AtomicLong bytes = new AtomicLong();
+
+        final AtomicBoolean closing = new AtomicBoolean();
+
+        final Map<String, Coalescible> deferred = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,123 @@
+package com.ld.poetry.im.websocket;
+
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.im.http.vo.PresenceVO;
+import com.ld.poetry.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.tio.core.ChannelContext;
+import org.tio.core.Tio;
+import org.tio.utils.lock.SetWithLock;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户在线状态
+ * <p>
+ * 连接建立、关闭时维护用户的在线状态：用户在本节点的最后一个连接关闭时注销集群登记，未连接在其他节点时记录最后在线时间，
+ * 同时把上线/下线的用户交给 {@link OnlineCountNotifier}，与群在线人数合并在同一帧中推送给所在的群。
+ * 群在线人数即 t-io 群组连接集合的大小，随绑定/解绑群组实时变化，读取为O(1)。
+ * 批量查询在线状态时，本节点的用户直接判断，其余用户一次管道查询所在节点，离线用户一次查询最后在线时间。
+ * </p>
+ */
+@Slf4j
+@Component
+public class PresenceService {
+
+    @Autowired
+    private ImClusterRouter imClusterRouter;
+
+    @Autowired
+    private OnlineCountNotifier onlineCountNotifier;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    /**
+     * 连接绑定用户和群组后调用
+     */
+    public void connected(ChannelContext channelContext) {
+        String userId = channelContext.getUserid();
+        onlineCountNotifier.markGroups(channelContext, userId != null ? Integer.valueOf(userId) : null, true);
+    }
+
+    /**
+     * 连接关闭前调用（此时连接仍在群组中）
+     */
+    public void disconnecting(ChannelContext channelContext) {
+        String userId = channelContext.getUserid();
+        Integer offlineUserId = null;
+        if (userId != null) {
+            // 被新连接踢掉的旧连接关闭时，新连接已绑定，用户仍在线
+            SetWithLock<ChannelContext> connections = Tio.getByUserid(channelContext.tioConfig, userId);
+            if (connections == null || connections.size() <= 1) {
+                imClusterRouter.userUnbound(userId);
+                // 集群模式下用户可能已重连到其他节点（那边已推送上线），此时只影响本节点的人数
+                if (!imClusterRouter.onlineElsewhere(List.of(userId)).contains(userId)) {
+                    redisUtil.hset(CacheConstants.IM_LAST_SEEN_KEY, userId, System.currentTimeMillis());
+                    offlineUserId = Integer.valueOf(userId);
+                }
+            }
+        }
+        onlineCountNotifier.markGroups(channelContext, offlineUserId, false);
+    }
+
+    /**
+     * 批量查询用户在线状态
+     *
+     * @return 用户ID -> 在线状态（按传入顺序，去重）
+     */
+    public Map<Integer, PresenceVO> listPresence(Collection<Integer> userIds) {
+        Map<Integer, PresenceVO> result = new LinkedHashMap<>();
+        TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
+        List<String> notLocal = new ArrayList<>();
+        for (Integer userId : userIds) {
+            if (userId == null || result.containsKey(userId)) {
+                continue;
+            }
+            PresenceVO presence = new PresenceVO();
+            presence.setUserId(userId);
+            presence.setOnline(false);
+            result.put(userId, presence);
+            if (tioWebsocketStarter != null) {
+                SetWithLock<ChannelContext> connections = Tio.getByUserid(tioWebsocketStarter.getServerTioConfig(), userId.toString());
+                if (connections != null && connections.size() > 0) {
+                    presence.setOnline(true);
+                    continue;
+                }
+            }
+            notLocal.add(userId.toString());
+        }
+
+        for (String userId : imClusterRouter.onlineElsewhere(notLocal)) {
+            result.get(Integer.valueOf(userId)).setOnline(true);
+        }
+
+        List<String> offline = new ArrayList<>();
+        for (PresenceVO presence : result.values()) {
+            if (!presence.getOnline()) {
+                offline.add(presence.getUserId().toString());
+            }
+        }
+        if (!offline.isEmpty()) {
+            List<Object> lastSeen = redisUtil.hmultiGet(CacheConstants.IM_LAST_SEEN_KEY, offline);
+            if (lastSeen != null) {
+                for (int i = 0; i < offline.size(); i++) {
+                    if (lastSeen.get(i) instanceof Number millis) {
+                        result.get(Integer.valueOf(offline.get(i))).setLastSeenTime(
+                                LocalDateTime.ofInstant(Instant.ofEpochMilli(millis.longValue()), ZoneId.systemDefault()));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ld.poetry.im.websocket;
+
+import com.ld.poetry.config.ImUnreadPolicy;
+import com.ld.poetry.im.http.dao.ImChatLastReadMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 未读数后台校对
+ * <p>
+ * 未读数由消息入库时增量维护（私聊未读数、群已读序号），标记已读时原子清零，连接时直接读取，不再扫描消息表。
+ * 人工删除消息、日志重放等情况可能使增量计数与消息表不一致，这里定期按会话ID区间分批重算并修正：
+ * 只处理近期活跃的会话，跳过最近仍有写入的会话，每条语句只覆盖一个ID区间，不长时间占用连接。
+ * </p>
+ */
+@Slf4j
+@Component
+public class UnreadCounterReconciler {
+
+    @Autowired
+    private ImChatLastReadMapper imChatLastReadMapper;
+
+    @Autowired
+    private ImUnreadPolicy policy;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Counter friendCorrected;
+
+    private Counter groupCorrected;
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            friendCorrected = Counter.builder("poetize.im.unread.reconciled").tag("type", "friend")
+                    .description("后台校对修正的会话数").register(meterRegistry);
+            groupCorrected = Counter.builder("poetize.im.unread.reconciled").tag("type", "group")
+                    .description("后台校对修正的会话数").register(meterRegistry);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${poetize.im.unread.reconcile-interval-ms:600000}",
+            fixedDelayString = "${poetize.im.unread.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        if (!policy.isReconcileEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int[] corrected = reconcile(now.minusHours(policy.getActiveWindowHours()), now.minusSeconds(policy.getQuietSeconds()));
+            if (corrected[0] > 0 || corrected[1] > 0) {
+                log.info("未读数校对完成 - 修正私聊: {}, 修正群聊: {}", corrected[0], corrected[1]);
+            }
+        } catch (Exception e) {
+            log.error("未读数校对失败", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 逐个ID区间校对
+     *
+     * @return [修正的私聊会话数, 修正的群聊会话数]
+     */
+    int[] reconcile(LocalDateTime activeSince, LocalDateTime quietBefore) {
+        int maxId = imChatLastReadMapper.getMaxId();
+        int batchSize = Math.max(1, policy.getBatchSize());
+        int friend = 0;
+        int group = 0;
+        for (int fromId = 0; fromId < maxId; fromId += batchSize) {
+            int toId = Math.min(maxId, fromId + batchSize);
+            friend += imChatLastReadMapper.reconcileFriendUnread(fromId, toId, activeSince, quietBefore);
+            group += imChatLastReadMapper.reconcileGroupReadSeq(fromId, toId, activeSince, quietBefore);
+        }
+        if (friendCorrected != null) {
+            friendCorrected.increment(friend);
+            groupCorrected.increment(group);
+        }
+        return new int[]{friend, group};
+    }
+}
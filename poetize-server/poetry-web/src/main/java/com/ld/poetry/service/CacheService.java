@@ -3,7 +3,6 @@ package com.ld.poetry.service;
 import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
 import com.ld.poetry.constants.CacheConstants;
 import com.ld.poetry.constants.CommonConst;
-import com.ld.poetry.dao.HistoryInfoMapper;
 import com.ld.poetry.dao.WebInfoMapper;
 import com.ld.poetry.entity.Article;
 import com.ld.poetry.entity.User;
@@ -14,8 +13,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
@@ -24,8 +25,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,12 +51,24 @@ public class CacheService {
     private RedisTemplate<String, Object> redisTemplate;
     
     @Autowired
-    private HistoryInfoMapper historyInfoMapper;
+    private StringRedisTemplate stringRedisTemplate;
+    
+    @Autowired
+    private VisitRollupService visitRollupService;
+
+    @Autowired
+    private IpBlacklistService ipBlacklistService;
+
+    @Autowired
+    private TokenSessionCache tokenSessionCache;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
 
     // ================================ 用户缓存 ================================
 
     /**
-     * 缓存用户信息
+     * 缓存用户信息（读取时回填，不通知各节点失效本地token缓存）
      */
     public void cacheUser(User user) {
         if (user != null && user.getId() != null) {
@@ -64,6 +79,16 @@ public class CacheService {
         }
     }
 
+    /**
+     * 用户信息被修改后刷新缓存，并通知各节点失效该用户的本地token缓存
+     */
+    public void refreshUser(User user) {
+        if (user != null && user.getId() != null) {
+            cacheUser(user);
+            tokenSessionCache.revokeUser(user.getId());
+        }
+    }
+
     /**
      * 获取缓存的用户信息
      */
@@ -78,6 +103,29 @@ public class CacheService {
         return null;
     }
 
+    /**
+     * 批量获取缓存的用户信息
+     * @return 用户ID到用户的映射，只包含命中缓存的用户
+     */
+    public Map<Integer, User> getCachedUsers(Collection<Integer> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Integer userId : ids) {
+            keys.add(CacheConstants.buildUserKey(userId));
+        }
+        List<Object> values = redisUtil.multiGet(keys);
+        Map<Integer, User> users = new HashMap<>();
+        for (int i = 0; i < values.size() && i < ids.size(); i++) {
+            if (values.get(i) instanceof User) {
+                users.put(ids.get(i), (User) values.get(i));
+            }
+        }
+        return users;
+    }
+
     /**
      * 删除用户缓存
      */
@@ -85,6 +133,7 @@ public class CacheService {
         if (userId != null) {
             String key = CacheConstants.buildUserKey(userId);
             redisUtil.del(key);
+            tokenSessionCache.revokeUser(userId);
         }
     }
 
@@ -689,6 +738,26 @@ public class CacheService {
         }
     }
 
+    /**
+     * token间隔检查标记的剩余有效期（秒），不存在或读取失败时返回0
+     */
+    public long getTokenIntervalExpire(Integer userId, boolean isAdmin) {
+        if (userId == null) {
+            return 0;
+        }
+        String key = isAdmin ?
+            CacheConstants.buildAdminTokenIntervalKey(userId) :
+            CacheConstants.buildUserTokenIntervalKey(userId);
+        try {
+            long expire = redisUtil.getExpire(key);
+            // -1 表示没有过期时间，-2 表示不存在
+            return expire == -1 ? CommonConst.TOKEN_EXPIRE : Math.max(expire, 0);
+        } catch (Exception e) {
+            log.warn("读取token间隔检查标记失败: userId={}, {}", userId, e.getMessage());
+            return 0;
+        }
+    }
+
     /**
      * 删除token间隔检查
      */
@@ -718,6 +787,11 @@ public class CacheService {
             // 注意：这里需要根据token清理会话，但我们没有反向映射
             // 建议在实际使用中维护userId到token的映射
 
+            // 各节点的本地token缓存按用户失效
+            tokenSessionCache.revokeUser(userId);
+
+            // 无状态token没有服务端会话，按用户吊销此前签发的全部token
+            tokenRevocationService.revokeUser(userId);
         }
     }
 
@@ -729,10 +803,8 @@ public class CacheService {
     public boolean unblacklistIP(String ip) {
         if (ip == null) return false;
 
-        String blacklistKey = CacheConstants.buildIpBlacklistKey(ip);
-        String attackKey = CacheConstants.buildIpAttackKey(ip);
-
-        redisUtil.del(blacklistKey, attackKey);
+        // 同时清理Redis记录并通知各节点更新本地黑名单
+        ipBlacklistService.unblacklist(ip);
         log.info("管理员手动解除IP拉黑: {}", ip);
         return true;
     }
@@ -741,7 +813,7 @@ public class CacheService {
      * 获取被拦截的恶意请求总数
      */
     public long getTotalBlockedRequests() {
-        Object count = redisUtil.get(CacheConstants.CACHE_PREFIX + "security:blocked:total");
+        Object count = redisUtil.get(CacheConstants.SECURITY_BLOCKED_TOTAL_KEY);
         if (count instanceof Number) {
             return ((Number) count).longValue();
         }
@@ -808,6 +880,8 @@ public class CacheService {
         if (token != null) {
             String key = CacheConstants.buildSessionKey(token);
             redisUtil.del(key);
+            tokenSessionCache.revokeToken(token);
+            tokenRevocationService.revoke(token);
         }
     }
 
@@ -827,6 +901,7 @@ public class CacheService {
     public void cacheAdminUser(User admin) {
         if (admin != null) {
             redisUtil.set(CacheConstants.CACHE_PREFIX + "admin", admin, CacheConstants.PERMANENT_EXPIRE_TIME);
+            tokenSessionCache.revokeAdmin();
             log.info("缓存管理员用户信息(永久): {}", admin.getId());
         }
     }
@@ -1059,7 +1134,8 @@ public class CacheService {
             visitRecord.put("city", city);
             // 使用数据库兼容的时间格式 yyyy-MM-dd HH:mm:ss
             java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            visitRecord.put("createTime", java.time.LocalDateTime.now().format(formatter));
+            LocalDateTime visitTime = LocalDateTime.now();
+            visitRecord.put("createTime", visitTime.format(formatter));
             // 添加同步标记，默认未同步
             visitRecord.put("synced", false);
             
@@ -1070,6 +1146,9 @@ public class CacheService {
             // 设置记录的过期时间为7天
             redisUtil.expire(recordsKey, 7 * 24 * 3600);
             
+            // 同步维护HyperLogLog和计数器，看板读取时无需再遍历访问记录
+            recordVisitCounters(ip, userId, province, visitTime);
+            
             // log.info("访问记录已保存到Redis: ip={}, userId={}, province={}", ip, userId, province);
             
         } catch (Exception e) {
@@ -1222,119 +1301,15 @@ public class CacheService {
 
 
     /**
-     * 刷新地理位置统计缓存 (混合Redis+数据库)
+     * 刷新地理位置统计缓存（基于访问统计汇总表）
      */
     public void refreshLocationStatisticsCache() {
         try {
-            Map<String, Object> statistics = new HashMap<>();
-            
-            // 1. 获取数据库的历史统计（省份、IP统计）
-            try {
-                List<Map<String, Object>> provinceStats = historyInfoMapper.getHistoryByProvince();
-                List<Map<String, Object>> ipStats = historyInfoMapper.getHistoryByIp();
-                
-                statistics.put(CommonConst.IP_HISTORY_PROVINCE, provinceStats != null ? provinceStats : new ArrayList<>());
-                statistics.put(CommonConst.IP_HISTORY_IP, ipStats != null ? ipStats : new ArrayList<>());
-                
-                log.info("成功获取数据库统计: 省份{}, IP{}", 
-                    provinceStats != null ? provinceStats.size() : 0, 
-                    ipStats != null ? ipStats.size() : 0);
-            } catch (Exception e) {
-                log.error("获取数据库统计失败", e);
-                statistics.put(CommonConst.IP_HISTORY_PROVINCE, new ArrayList<>());
-                statistics.put(CommonConst.IP_HISTORY_IP, new ArrayList<>());
-            }
-            
-            // 2. 获取昨日访问统计（按日历天计算）
-            try {
-                List<Map<String, Object>> yesterdayStats = getYesterdayStatisticsFromDatabase();
-                statistics.put(CommonConst.IP_HISTORY_HOUR, yesterdayStats);
-                log.info("成功获取昨日访问统计: {}", yesterdayStats.size());
-            } catch (Exception e) {
-                log.error("获取昨日访问统计失败", e);
-                statistics.put(CommonConst.IP_HISTORY_HOUR, new ArrayList<>());
-            }
-            
-            // 3. 计算总访问量（仅统计数据库数据）
-            try {
-                // 只获取数据库总数，不再统计Redis实时数据
-                Long dbCount = historyInfoMapper.getHistoryCount();
-                long totalCount = dbCount != null ? dbCount : 0;
-                
-                statistics.put(CommonConst.IP_HISTORY_COUNT, totalCount);
-                log.info("成功计算总访问量: 数据库总计={}", totalCount);
-            } catch (Exception e) {
-                log.error("计算总访问量失败", e);
-                statistics.put(CommonConst.IP_HISTORY_COUNT, 0L);
-            }
-            
-            // 缓存统计结果
+            Map<String, Object> statistics = visitRollupService.buildHistoryStatistics();
             cacheIpHistoryStatistics(statistics);
-            log.info("成功刷新地理位置统计缓存 (仅数据库统计)");
-            
+            log.info("成功刷新地理位置统计缓存: 总访问量={}", statistics.get(CommonConst.IP_HISTORY_COUNT));
         } catch (Exception e) {
             log.error("刷新地理位置统计缓存失败", e);
-            
-            // 完全失败时的fallback
-            try {
-                log.warn("混合统计失败，完全fallback到数据库查询");
-                Map<String, Object> fallbackStats = generateLocationStatisticsFromDatabase();
-                cacheIpHistoryStatistics(fallbackStats);
-                log.info("成功使用数据库fallback刷新统计缓存");
-            } catch (Exception dbException) {
-                log.error("数据库fallback也失败", dbException);
-            }
-        }
-    }
-
-    /**
-     * Fallback: 基于数据库生成地理位置统计 (保留作为备用方案)
-     */
-    private Map<String, Object> generateLocationStatisticsFromDatabase() {
-        Map<String, Object> statistics = new HashMap<>();
-        
-        try {
-            statistics.put(CommonConst.IP_HISTORY_PROVINCE, historyInfoMapper.getHistoryByProvince());
-        } catch (Exception e) {
-            log.error("数据库省份统计查询失败", e);
-            statistics.put(CommonConst.IP_HISTORY_PROVINCE, new ArrayList<>());
-        }
-        
-        try {
-            statistics.put(CommonConst.IP_HISTORY_IP, historyInfoMapper.getHistoryByIp());
-        } catch (Exception e) {
-            log.error("数据库IP统计查询失败", e);
-            statistics.put(CommonConst.IP_HISTORY_IP, new ArrayList<>());
-        }
-        
-        try {
-            statistics.put(CommonConst.IP_HISTORY_HOUR, historyInfoMapper.getHistoryByYesterday());
-        } catch (Exception e) {
-            log.error("数据库昨日访问统计查询失败", e);
-            statistics.put(CommonConst.IP_HISTORY_HOUR, new ArrayList<>());
-        }
-        
-        try {
-            Long totalCount = historyInfoMapper.getHistoryCount();
-            statistics.put(CommonConst.IP_HISTORY_COUNT, totalCount != null ? totalCount : 0L);
-        } catch (Exception e) {
-            log.error("数据库总访问量查询失败", e);
-            statistics.put(CommonConst.IP_HISTORY_COUNT, 0L);
-        }
-        
-        return statistics;
-    }
-
-    /**
-     * 从数据库获取昨日访问统计（按日历天计算）
-     */
-    private List<Map<String, Object>> getYesterdayStatisticsFromDatabase() {
-        try {
-            List<Map<String, Object>> yesterdayRecords = historyInfoMapper.getHistoryByYesterday();
-            return yesterdayRecords != null ? yesterdayRecords : new ArrayList<>();
-        } catch (Exception e) {
-            log.error("获取昨日访问统计失败", e);
-            return new ArrayList<>();
         }
     }
 
@@ -1390,81 +1365,53 @@ public class CacheService {
     
     /**
      * 获取今日访问数据的实时统计（从Redis）
+     * 基于HyperLogLog和计数器读取，耗时与当日访问量无关
      * @return 今日访问统计数据
      */
     public Map<String, Object> getTodayVisitStatisticsFromRedis() {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            String today = java.time.LocalDate.now().toString();
-            List<Map<String, Object>> todayRecords = getDailyVisitRecords(today);
-            
-            if (todayRecords.isEmpty()) {
-                log.info("今日暂无访问记录");
-                result.put("ip_count_today", 0L);
-                result.put("username_today", new ArrayList<>());
-                result.put("province_today", new ArrayList<>());
-                return result;
-            }
+            String today = LocalDate.now().toString();
             
-            // 1. 计算今日访问IP数量（去重）
-            long ipCountToday = todayRecords.stream()
-                .map(record -> (String) record.get("ip"))
-                .filter(java.util.Objects::nonNull)
-                .distinct()
-                .count();
+            // 1. 今日访问IP数量（HyperLogLog基数估算）
+            long ipCountToday = redisUtil.pfCount(CacheConstants.buildVisitUvDayKey(today));
             result.put("ip_count_today", ipCountToday);
             
-            // 2. 获取今日访问用户列表（统计每个用户的访问次数）
-            Map<String, Long> userVisitCount = todayRecords.stream()
-                .filter(java.util.Objects::nonNull)
-                .map(record -> {
-                    try {
-                        Object userIdObj = record.get("userId");
-                        if (userIdObj != null) {
-                            return Integer.valueOf(userIdObj.toString()).toString();
-                        }
-                    } catch (Exception e) {
-                        log.warn("处理今日用户信息时出错: {}", e.getMessage());
-                    }
-                    return null;
-                })
-                .filter(java.util.Objects::nonNull)
-                .collect(java.util.stream.Collectors.groupingBy(
-                    userId -> userId, 
-                    java.util.stream.Collectors.counting()
-                ));
-            
-            List<Map<String, Object>> usernameToday = userVisitCount.entrySet().stream()
+            // 2. 今日访问用户列表（Hash中记录每个用户的访问次数）
+            Map<Object, Object> userCounts = stringRedisTemplate.opsForHash().entries(CacheConstants.buildVisitPvUserKey(today));
+            List<Map<String, Object>> usernameToday = userCounts.entrySet().stream()
                 .map(entry -> {
                     Map<String, Object> userInfo = new HashMap<>();
-                    userInfo.put("userId", entry.getKey());
-                    userInfo.put("visitCount", entry.getValue());
+                    userInfo.put("userId", entry.getKey().toString());
+                    userInfo.put("visitCount", parseCounter(entry.getValue()));
                     return userInfo;
                 })
-                .sorted((o1, o2) -> Long.valueOf(o2.get("visitCount").toString())
-                    .compareTo(Long.valueOf(o1.get("visitCount").toString()))) // 按访问次数降序排列
+                .sorted((o1, o2) -> Long.compare((Long) o2.get("visitCount"), (Long) o1.get("visitCount"))) // 按访问次数降序排列
                 .collect(java.util.stream.Collectors.toList());
             result.put("username_today", usernameToday);
             
-            // 3. 处理今日省份统计
-            List<Map<String, Object>> provinceToday = todayRecords.stream()
-                .map(record -> (String) record.get("province"))
-                .filter(java.util.Objects::nonNull)
-                .collect(java.util.stream.Collectors.groupingBy(
-                    province -> province, 
-                    java.util.stream.Collectors.counting()
-                ))
-                .entrySet().stream()
-                .map(entry -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("province", entry.getKey());
-                    map.put("num", entry.getValue());
-                    return map;
-                })
-                .sorted((o1, o2) -> Long.valueOf(o2.get("num").toString())
-                    .compareTo(Long.valueOf(o1.get("num").toString())))
-                .collect(java.util.stream.Collectors.toList());
+            // 3. 今日省份统计（访问次数来自Hash计数，独立访客来自各省份HyperLogLog）
+            Map<Object, Object> provinceCounts = stringRedisTemplate.opsForHash().entries(CacheConstants.buildVisitPvProvinceKey(today));
+            List<String> provinces = new ArrayList<>();
+            for (Object province : provinceCounts.keySet()) {
+                provinces.add(province.toString());
+            }
+            List<Object> provinceUvCounts = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String province : provinces) {
+                    connection.hyperLogLogCommands().pfCount(toBytes(CacheConstants.buildVisitUvProvinceKey(today, province)));
+                }
+                return null;
+            });
+            List<Map<String, Object>> provinceToday = new ArrayList<>();
+            for (int i = 0; i < provinces.size(); i++) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("province", provinces.get(i));
+                map.put("num", parseCounter(provinceCounts.get(provinces.get(i))));
+                map.put("uv", i < provinceUvCounts.size() ? parseCounter(provinceUvCounts.get(i)) : 0L);
+                provinceToday.add(map);
+            }
+            provinceToday.sort((o1, o2) -> Long.compare((Long) o2.get("num"), (Long) o1.get("num")));
             result.put("province_today", provinceToday);
             
             log.info("获取今日访问统计: IP数量={}, 用户数量={}, 省份数量={}", 
@@ -1480,6 +1427,206 @@ public class CacheService {
         return result;
     }
 
+    // ================================ 访问统计HyperLogLog计数 ================================
+
+    /**
+     * 记录一次访问到HyperLogLog和计数器（单次管道往返）
+     * 维护：每日/每小时/每省份独立访客HyperLogLog，每日/每小时访问量计数器，省份和用户访问次数Hash
+     */
+    private void recordVisitCounters(String ip, Integer userId, String province, LocalDateTime visitTime) {
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                applyVisitCounters(connection, ip, userId, province, visitTime);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("记录访问计数器失败: ip={}, userId={}", ip, userId, e);
+        }
+    }
+
+    /**
+     * 在管道连接上写入单条访问的全部计数
+     */
+    private void applyVisitCounters(RedisConnection connection, String ip, Integer userId, String province, LocalDateTime visitTime) {
+        String date = visitTime.toLocalDate().toString();
+        int hour = visitTime.getHour();
+        byte[] ipBytes = toBytes(ip);
+        
+        byte[] uvDayKey = toBytes(CacheConstants.buildVisitUvDayKey(date));
+        byte[] pvDayKey = toBytes(CacheConstants.buildVisitPvDayKey(date));
+        connection.hyperLogLogCommands().pfAdd(uvDayKey, ipBytes);
+        connection.stringCommands().incr(pvDayKey);
+        connection.keyCommands().expire(uvDayKey, CacheConstants.VISIT_DAY_COUNTER_EXPIRE_TIME);
+        connection.keyCommands().expire(pvDayKey, CacheConstants.VISIT_DAY_COUNTER_EXPIRE_TIME);
+        
+        byte[] uvHourKey = toBytes(CacheConstants.buildVisitUvHourKey(date, hour));
+        byte[] pvHourKey = toBytes(CacheConstants.buildVisitPvHourKey(date, hour));
+        connection.hyperLogLogCommands().pfAdd(uvHourKey, ipBytes);
+        connection.stringCommands().incr(pvHourKey);
+        connection.keyCommands().expire(uvHourKey, CacheConstants.VISIT_DETAIL_COUNTER_EXPIRE_TIME);
+        connection.keyCommands().expire(pvHourKey, CacheConstants.VISIT_DETAIL_COUNTER_EXPIRE_TIME);
+        
+        if (province != null && !province.isEmpty()) {
+            byte[] uvProvinceKey = toBytes(CacheConstants.buildVisitUvProvinceKey(date, province));
+            byte[] pvProvinceKey = toBytes(CacheConstants.buildVisitPvProvinceKey(date));
+            connection.hyperLogLogCommands().pfAdd(uvProvinceKey, ipBytes);
+            connection.hashCommands().hIncrBy(pvProvinceKey, toBytes(province), 1);
+            connection.keyCommands().expire(uvProvinceKey, CacheConstants.VISIT_DETAIL_COUNTER_EXPIRE_TIME);
+            connection.keyCommands().expire(pvProvinceKey, CacheConstants.VISIT_DETAIL_COUNTER_EXPIRE_TIME);
+        }
+        
+        if (userId != null) {
+            byte[] pvUserKey = toBytes(CacheConstants.buildVisitPvUserKey(date));
+            connection.hashCommands().hIncrBy(pvUserKey, toBytes(userId.toString()), 1);
+            connection.keyCommands().expire(pvUserKey, CacheConstants.VISIT_DETAIL_COUNTER_EXPIRE_TIME);
+        }
+    }
+
+    /**
+     * 计数器缺失时根据当日访问记录重建（升级部署或Redis计数器丢失后调用）
+     * @param date 日期（格式：yyyy-MM-dd）
+     */
+    public void rebuildVisitCountersIfMissing(String date) {
+        try {
+            if (redisUtil.hasKey(CacheConstants.buildVisitPvDayKey(date))) {
+                return;
+            }
+            List<Map<String, Object>> records = getDailyVisitRecords(date);
+            if (records.isEmpty()) {
+                return;
+            }
+            
+            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map<String, Object> record : records) {
+                    String ip = (String) record.get("ip");
+                    if (ip == null || ip.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        Object userIdObj = record.get("userId");
+                        Integer userId = userIdObj != null ? Integer.valueOf(userIdObj.toString()) : null;
+                        Object createTimeObj = record.get("createTime");
+                        LocalDateTime visitTime = createTimeObj != null
+                            ? LocalDateTime.parse(createTimeObj.toString(), formatter)
+                            : LocalDate.parse(date).atStartOfDay();
+                        applyVisitCounters(connection, ip, userId, (String) record.get("province"), visitTime);
+                    } catch (Exception e) {
+                        log.warn("重建访问计数器时跳过无效记录: {}", record);
+                    }
+                }
+                return null;
+            });
+            log.info("已根据{}条访问记录重建{}的访问计数器", records.size(), date);
+        } catch (Exception e) {
+            log.error("重建访问计数器失败: date={}", date, e);
+        }
+    }
+
+    /**
+     * 获取指定日期的访问量和独立访客数（O(1)读取）
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @return 包含visit_date、unique_visits、total_visits的统计，当日无访问时返回null
+     */
+    public Map<String, Object> getDailyVisitCounters(String date) {
+        try {
+            long totalVisits = parseCounter(stringRedisTemplate.opsForValue().get(CacheConstants.buildVisitPvDayKey(date)));
+            if (totalVisits == 0) {
+                return null;
+            }
+            long uniqueVisits = redisUtil.pfCount(CacheConstants.buildVisitUvDayKey(date));
+            
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("visit_date", date);
+            stats.put("unique_visits", uniqueVisits);
+            stats.put("total_visits", totalVisits);
+            return stats;
+        } catch (Exception e) {
+            log.error("获取每日访问计数失败: date={}", date, e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取指定日期每小时的访问量和独立访客数
+     * @param date 日期（格式：yyyy-MM-dd）
+     * @return 24条按小时排列的统计
+     */
+    public List<Map<String, Object>> getHourlyVisitCounters(String date) {
+        List<Map<String, Object>> hourlyStats = new ArrayList<>();
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int hour = 0; hour < 24; hour++) {
+                    connection.hyperLogLogCommands().pfCount(toBytes(CacheConstants.buildVisitUvHourKey(date, hour)));
+                    connection.stringCommands().get(toBytes(CacheConstants.buildVisitPvHourKey(date, hour)));
+                }
+                return null;
+            });
+            for (int hour = 0; hour < 24; hour++) {
+                Map<String, Object> stats = new HashMap<>();
+                stats.put("hour", hour);
+                stats.put("unique_visits", parseCounter(results.get(hour * 2)));
+                stats.put("total_visits", parseCounter(results.get(hour * 2 + 1)));
+                hourlyStats.add(stats);
+            }
+        } catch (Exception e) {
+            log.error("获取每小时访问计数失败: date={}", date, e);
+        }
+        return hourlyStats;
+    }
+
+    /**
+     * 获取最近N天（含今天）的独立访客数
+     * 通过PFMERGE合并每日HyperLogLog，合并结果短期缓存
+     * @param days 天数(1-365)
+     * @return 独立访客数
+     */
+    public long getUniqueVisitorsInLastDays(int days) {
+        try {
+            LocalDate endDate = LocalDate.now();
+            if (days <= 1) {
+                return redisUtil.pfCount(CacheConstants.buildVisitUvDayKey(endDate.toString()));
+            }
+            
+            String rangeKey = CacheConstants.buildVisitUvRangeKey(days, endDate.toString());
+            if (!redisUtil.hasKey(rangeKey)) {
+                String[] dayKeys = new String[days];
+                for (int i = 0; i < days; i++) {
+                    dayKeys[i] = CacheConstants.buildVisitUvDayKey(endDate.minusDays(i).toString());
+                }
+                if (!redisUtil.pfMerge(rangeKey, dayKeys)) {
+                    return 0;
+                }
+                redisUtil.expire(rangeKey, CacheConstants.VISIT_UV_RANGE_EXPIRE_TIME);
+            }
+            return redisUtil.pfCount(rangeKey);
+        } catch (Exception e) {
+            log.error("获取区间独立访客数失败: days={}", days, e);
+            return 0;
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long parseCounter(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof byte[]) {
+            value = new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
     // ==================== 用户界面状态缓存方法 ====================
     
     /**
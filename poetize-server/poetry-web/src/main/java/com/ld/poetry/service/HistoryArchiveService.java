@@ -0,0 +1,195 @@
+package com.ld.poetry.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.ld.poetry.config.HistoryRetentionPolicy;
+import com.ld.poetry.entity.HistoryInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 访问记录归档文件读写
+ * <p>
+ * 超过保留期的 history_info 分区在删除前写入归档目录，每个分区一个 gzip 压缩的 NDJSON 文件
+ * （history_info_{分区名}.ndjson.gz），每行一条访问记录。归档文件先写入临时文件，完整写入后再原子重命名，
+ * 访问统计汇总回填时会先读取全部归档文件。
+ * </p>
+ */
+@Service
+@Slf4j
+public class HistoryArchiveService {
+
+    private static final String FILE_PREFIX = "history_info_";
+
+    private static final String FILE_SUFFIX = ".ndjson.gz";
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private HistoryRetentionPolicy historyRetentionPolicy;
+
+    /**
+     * 创建分区归档写入器
+     *
+     * @param partition 分区名
+     */
+    public ArchiveWriter openWriter(String partition) throws IOException {
+        Path dir = getArchiveDir();
+        Files.createDirectories(dir);
+        Path target = dir.resolve(FILE_PREFIX + partition + FILE_SUFFIX);
+        Path temp = dir.resolve(FILE_PREFIX + partition + FILE_SUFFIX + ".tmp");
+        return new ArchiveWriter(target, temp);
+    }
+
+    /**
+     * 按文件名排序的全部归档文件
+     */
+    public List<Path> listArchives() {
+        Path dir = getArchiveDir();
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.error("读取访问记录归档目录失败: {}", dir, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 分批读取归档文件中的访问记录
+     *
+     * @param file      归档文件
+     * @param batchSize 每批条数
+     * @param consumer  批处理回调
+     * @return 读取的记录数
+     */
+    public long readArchive(Path file, int batchSize, Consumer<List<HistoryInfo>> consumer) throws IOException {
+        long count = 0;
+        List<HistoryInfo> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 64 * 1024), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!StringUtils.hasText(line)) {
+                    continue;
+                }
+                batch.add(fromJson(JSON.parseObject(line)));
+                count++;
+                if (batch.size() >= batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+        return count;
+    }
+
+    private Path getArchiveDir() {
+        return Paths.get(historyRetentionPolicy.getArchiveDir()).toAbsolutePath();
+    }
+
+    private static JSONObject toJson(HistoryInfo info) {
+        JSONObject json = new JSONObject(true);
+        json.put("id", info.getId());
+        json.put("userId", info.getUserId());
+        json.put("ip", info.getIp());
+        json.put("nation", info.getNation());
+        json.put("province", info.getProvince());
+        json.put("city", info.getCity());
+        json.put("createTime", info.getCreateTime() != null ? info.getCreateTime().format(TIME_FORMATTER) : null);
+        return json;
+    }
+
+    private static HistoryInfo fromJson(JSONObject json) {
+        HistoryInfo info = new HistoryInfo();
+        info.setId(json.getInteger("id"));
+        info.setUserId(json.getInteger("userId"));
+        info.setIp(json.getString("ip"));
+        info.setNation(json.getString("nation"));
+        info.setProvince(json.getString("province"));
+        info.setCity(json.getString("city"));
+        String createTime = json.getString("createTime");
+        info.setCreateTime(createTime != null ? LocalDateTime.parse(createTime, TIME_FORMATTER) : null);
+        return info;
+    }
+
+    /**
+     * 单个分区的归档写入器，commit 之前目标文件不可见
+     */
+    public static final class ArchiveWriter implements AutoCloseable {
+
+        private final Path target;
+        private final Path temp;
+        private final BufferedWriter writer;
+        private long count;
+        private boolean committed;
+
+        private ArchiveWriter(Path target, Path temp) throws IOException {
+            this.target = target;
+            this.temp = temp;
+            this.writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024), StandardCharsets.UTF_8));
+        }
+
+        public void write(List<HistoryInfo> rows) throws IOException {
+            for (HistoryInfo row : rows) {
+                writer.write(toJson(row).toJSONString());
+                writer.newLine();
+                count++;
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 完成写入并原子替换目标文件
+         */
+        public Path commit() throws IOException {
+            writer.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return target;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                writer.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.config.HistoryRetentionPolicy;
+import com.ld.poetry.dao.HistoryInfoMapper;
+import com.ld.poetry.entity.HistoryInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * history_info 按月分区维护
+ * <p>
+ * 表按 TO_DAYS(create_time) 做 RANGE 分区，分区名 pYYYYMM 表示该月的数据，末尾的 pmax 兜底。
+ * 应用定期拆分 pmax 以提前创建未来月份分区；超过保留期的整月分区先汇总、再归档，最后 DROP PARTITION 整体删除。
+ * </p>
+ */
+@Service
+@Slf4j
+public class HistoryPartitionService {
+
+    private static final String MAX_PARTITION = "pmax";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("^p[0-9a-z_]+$");
+
+    private static final DateTimeFormatter PARTITION_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * MySQL TO_DAYS('1970-01-01')
+     */
+    private static final long TO_DAYS_EPOCH = 719528L;
+
+    private static final int ARCHIVE_BATCH_SIZE = 5000;
+
+    @Autowired
+    private HistoryInfoMapper historyInfoMapper;
+
+    @Autowired
+    private HistoryArchiveService historyArchiveService;
+
+    @Autowired
+    private VisitRollupService visitRollupService;
+
+    @Autowired
+    private HistoryRetentionPolicy historyRetentionPolicy;
+
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+
+    /**
+     * 创建未来分区并清理超过保留期的分区
+     */
+    public void maintain() {
+        if (!historyRetentionPolicy.isPartitionEnabled()) {
+            return;
+        }
+        if (!maintenanceLock.tryLock()) {
+            log.info("history_info 分区维护正在执行，跳过本次");
+            return;
+        }
+        try {
+            List<Partition> partitions = loadPartitions();
+            if (partitions.isEmpty()) {
+                log.warn("history_info 尚未分区，跳过分区维护（请执行迁移脚本 202610191100.sql）");
+                return;
+            }
+            ensureFuturePartitions(partitions);
+            applyRetention(partitions);
+        } catch (Exception e) {
+            log.error("history_info 分区维护失败", e);
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    /**
+     * 拆分 pmax，确保当前月之后 partitionAheadMonths 个月的分区已存在
+     */
+    private void ensureFuturePartitions(List<Partition> partitions) {
+        if (partitions.stream().noneMatch(p -> MAX_PARTITION.equals(p.name()))) {
+            log.warn("history_info 缺少 {} 分区，无法自动创建未来分区", MAX_PARTITION);
+            return;
+        }
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        LocalDate targetBound = currentMonth.plusMonths(historyRetentionPolicy.getPartitionAheadMonths() + 1L);
+        LocalDate highestBound = partitions.stream()
+                .map(Partition::upperBound)
+                .filter(Objects::nonNull)
+                .max(LocalDate::compareTo)
+                .orElse(null);
+
+        LocalDate month = highestBound != null ? highestBound : currentMonth;
+        StringBuilder definitions = new StringBuilder();
+        List<String> created = new ArrayList<>();
+        while (month.isBefore(targetBound)) {
+            String name = "p" + month.format(PARTITION_FORMATTER);
+            definitions.append("partition ").append(name)
+                    .append(" values less than (to_days('").append(month.plusMonths(1)).append("')), ");
+            created.add(name);
+            month = month.plusMonths(1);
+        }
+        if (created.isEmpty()) {
+            return;
+        }
+        definitions.append("partition ").append(MAX_PARTITION).append(" values less than maxvalue");
+        historyInfoMapper.reorganizeMaxPartition(definitions.toString());
+        log.info("history_info 已创建分区: {}", created);
+    }
+
+    /**
+     * 归档并删除上界早于保留期起点的分区
+     */
+    private void applyRetention(List<Partition> partitions) {
+        int retentionMonths = historyRetentionPolicy.getRetentionMonths();
+        if (retentionMonths <= 0) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths);
+        List<Partition> expired = partitions.stream()
+                .filter(p -> p.upperBound() != null && !p.upperBound().isAfter(cutoff))
+                .toList();
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        // 删除前确保这些记录已计入汇总表
+        visitRollupService.rollupNewHistory();
+
+        for (Partition partition : expired) {
+            try {
+                if (historyRetentionPolicy.isArchiveEnabled()) {
+                    archivePartition(partition.name());
+                }
+                historyInfoMapper.dropPartition(partition.name());
+                log.info("history_info 分区 {} 已超过保留期（{}个月），已删除", partition.name(), retentionMonths);
+            } catch (Exception e) {
+                // 归档失败时保留分区，下次维护重试
+                log.error("history_info 分区 {} 归档或删除失败", partition.name(), e);
+                return;
+            }
+        }
+    }
+
+    private void archivePartition(String partition) throws Exception {
+        Long expected = historyInfoMapper.countPartition(partition);
+        try (HistoryArchiveService.ArchiveWriter writer = historyArchiveService.openWriter(partition)) {
+            int lastId = 0;
+            while (true) {
+                List<HistoryInfo> batch = historyInfoMapper.selectPartitionAfterId(partition, lastId, ARCHIVE_BATCH_SIZE);
+                if (batch == null || batch.isEmpty()) {
+                    break;
+                }
+                writer.write(batch);
+                lastId = batch.get(batch.size() - 1).getId();
+                if (batch.size() < ARCHIVE_BATCH_SIZE) {
+                    break;
+                }
+            }
+            if (expected != null && writer.getCount() != expected) {
+                throw new IllegalStateException("归档记录数不一致: 期望" + expected + ", 实际" + writer.getCount());
+            }
+            log.info("history_info 分区 {} 已归档 {} 条记录到 {}", partition, writer.getCount(), writer.commit());
+        }
+    }
+
+    private List<Partition> loadPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        for (Map<String, Object> row : historyInfoMapper.listPartitions()) {
+            String name = String.valueOf(row.get("partition_name"));
+            if (!PARTITION_NAME.matcher(name).matches()) {
+                log.warn("忽略无法识别的 history_info 分区: {}", name);
+                continue;
+            }
+            partitions.add(new Partition(name, parseUpperBound(row.get("partition_description"))));
+        }
+        return partitions;
+    }
+
+    /**
+     * 将分区描述（TO_DAYS 值或 MAXVALUE）转换为分区上界日期，MAXVALUE 返回null
+     */
+    static LocalDate parseUpperBound(Object description) {
+        if (description == null) {
+            return null;
+        }
+        String value = description.toString().trim();
+        if (value.isEmpty() || "MAXVALUE".equalsIgnoreCase(value)) {
+            return null;
+        }
+        return LocalDate.ofEpochDay(Long.parseLong(value) - TO_DAYS_EPOCH);
+    }
+
+    private record Partition(String name, LocalDate upperBound) {
+    }
+}
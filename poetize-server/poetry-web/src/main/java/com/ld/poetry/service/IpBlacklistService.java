@@ -0,0 +1,328 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.utils.RedisUtil;
+import com.ld.poetry.utils.cache.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * IP黑名单本地视图与攻击计数
+ * <p>
+ * Redis 中的拉黑键（poetize:security:blacklist:{ip}）仍是权威数据，另外维护一个有序集合索引记录各IP的解除时间。
+ * 每个节点在本地保存 布隆过滤器 + 精确集合：布隆过滤器判定不存在的IP（绝大多数正常访问）无需任何网络调用，
+ * 命中时再查本地精确集合排除误判。拉黑/解除通过 Redis pub/sub 通知各节点，并定期按索引对账重建本地视图。
+ * </p>
+ * <p>
+ * 攻击次数先在本地按短窗口累计，定期合并写回 Redis；单个窗口内本地次数达到阈值时立即拉黑，
+ * 跨窗口、跨节点的累计次数在写回时判断。拦截总数同样本地累计后写回。
+ * </p>
+ */
+@Service
+@Slf4j
+public class IpBlacklistService implements MessageListener {
+
+    /**
+     * 无法获取真实IP时的标识
+     */
+    public static final String UNKNOWN_IP = "unknown_ip";
+
+    private static final String ACTION_ADD = "ADD";
+
+    private static final String ACTION_REMOVE = "DEL";
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 攻击次数阈值 - 达到此次数将被拉黑
+     */
+    @Value("${poetize.security.blacklist.attack-threshold:3}")
+    private int attackThreshold = 3;
+
+    /**
+     * 本地布隆过滤器的预期IP数，实际数量达到容量时按两倍重建
+     */
+    @Value("${poetize.security.blacklist.expected-ips:10000}")
+    private int expectedIps = 10000;
+
+    @Value("${poetize.security.blacklist.fpp:0.01}")
+    private double fpp = 0.01;
+
+    private volatile Snapshot snapshot;
+
+    private final ConcurrentHashMap<String, AtomicInteger> pendingAttacks = new ConcurrentHashMap<>();
+
+    private final LongAdder pendingBlocked = new LongAdder();
+
+    /**
+     * 串行化本地视图的增删与对账重建，避免重建时丢失并发到达的变更
+     */
+    private final ReentrantLock viewLock = new ReentrantLock();
+
+    /**
+     * 写入 Redis 索引失败的拉黑（IP → 解除时间），对账时重试写入，写入成功前合并进重建的本地视图
+     */
+    private final ConcurrentHashMap<String, Long> unsyncedEntries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        snapshot = new Snapshot(new BloomFilter(expectedIps, fpp), new ConcurrentHashMap<>());
+        if (redisMessageListenerContainer != null) {
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CacheConstants.IP_BLACKLIST_CHANNEL));
+        }
+        try {
+            indexLegacyEntries();
+            reconcile();
+        } catch (Exception e) {
+            log.warn("初始化IP黑名单本地视图失败，将在下次对账时重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 检查IP是否被拉黑，仅访问本地内存
+     */
+    public boolean isBlacklisted(String ip) {
+        Snapshot current = snapshot;
+        if (ip == null || !current.bloom().mightContain(ip)) {
+            return false;
+        }
+        Long expireAt = current.entries().get(ip);
+        if (expireAt == null) {
+            return false;
+        }
+        if (expireAt > System.currentTimeMillis()) {
+            return true;
+        }
+        current.entries().remove(ip, expireAt);
+        return false;
+    }
+
+    /**
+     * 记录一次攻击，本地窗口内达到阈值时立即拉黑
+     *
+     * @return 当前窗口内该IP的攻击次数
+     */
+    public int recordAttack(String ip) {
+        if (UNKNOWN_IP.equals(ip)) {
+            // 无法获取IP时立即拉黑，防止绕过检测
+            blacklist(ip);
+            return 1;
+        }
+        int count = pendingAttacks.computeIfAbsent(ip, key -> new AtomicInteger()).incrementAndGet();
+        if (count >= attackThreshold && !isBlacklisted(ip)) {
+            log.error("IP {} 因连续{}次恶意攻击被拉黑{}小时", ip, count, CacheConstants.IP_BLACKLIST_EXPIRE_TIME / 3600);
+            blacklist(ip);
+            pendingAttacks.remove(ip);
+        }
+        return count;
+    }
+
+    /**
+     * 记录一次被拦截的恶意请求
+     */
+    public void recordBlocked() {
+        pendingBlocked.increment();
+    }
+
+    /**
+     * 拉黑IP并通知其他节点
+     */
+    public void blacklist(String ip) {
+        long expireAt = System.currentTimeMillis() + CacheConstants.IP_BLACKLIST_EXPIRE_TIME * 1000;
+        redisUtil.set(CacheConstants.buildIpBlacklistKey(ip), LocalDateTime.now().toString(), CacheConstants.IP_BLACKLIST_EXPIRE_TIME);
+        // 先写 Redis 再更新本地视图：对账读取索引时持有 viewLock，写入成功后的本地变更不会被其覆盖
+        if (!redisUtil.zAdd(CacheConstants.IP_BLACKLIST_INDEX_KEY, ip, expireAt)) {
+            log.warn("写入IP黑名单索引失败，将在对账时重试 - ip: {}", ip);
+            unsyncedEntries.merge(ip, expireAt, Math::max);
+        }
+        applyAdd(ip, expireAt);
+        redisUtil.del(CacheConstants.buildIpAttackKey(ip));
+        redisUtil.publish(CacheConstants.IP_BLACKLIST_CHANNEL, ACTION_ADD + " " + expireAt + " " + ip);
+    }
+
+    /**
+     * 解除IP拉黑并通知其他节点
+     */
+    public void unblacklist(String ip) {
+        unsyncedEntries.remove(ip);
+        redisUtil.del(CacheConstants.buildIpBlacklistKey(ip), CacheConstants.buildIpAttackKey(ip));
+        redisUtil.zRemove(CacheConstants.IP_BLACKLIST_INDEX_KEY, ip);
+        applyRemove(ip);
+        pendingAttacks.remove(ip);
+        redisUtil.publish(CacheConstants.IP_BLACKLIST_CHANNEL, ACTION_REMOVE + " 0 " + ip);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        handleMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void handleMessage(String body) {
+        // 格式: ACTION 解除时间 IP（IPv6包含冒号，因此以空格分隔且IP放在最后）
+        String[] parts = body.split(" ", 3);
+        if (parts.length != 3) {
+            log.warn("忽略无法识别的黑名单通知: {}", body);
+            return;
+        }
+        try {
+            if (ACTION_ADD.equals(parts[0])) {
+                applyAdd(parts[2], Long.parseLong(parts[1]));
+            } else if (ACTION_REMOVE.equals(parts[0])) {
+                applyRemove(parts[2]);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法识别的黑名单通知: {}", body);
+        }
+    }
+
+    /**
+     * 将本地累计的攻击次数和拦截总数写回 Redis
+     */
+    @Scheduled(fixedDelayString = "${poetize.security.blacklist.flush-interval-ms:2000}")
+    public void flushAttackCounts() {
+        long blocked = pendingBlocked.sumThenReset();
+        if (blocked > 0) {
+            try {
+                long total = redisUtil.incr(CacheConstants.SECURITY_BLOCKED_TOTAL_KEY, blocked);
+                // 每跨过100次拦截记录一次统计信息
+                if (total / 100 > (total - blocked) / 100) {
+                    log.info("安全过滤器已累计拦截 {} 次恶意请求", total);
+                }
+            } catch (Exception e) {
+                log.warn("写回拦截总数失败: {}", e.getMessage());
+            }
+        }
+
+        for (Map.Entry<String, AtomicInteger> entry : pendingAttacks.entrySet()) {
+            String ip = entry.getKey();
+            int delta = entry.getValue().getAndSet(0);
+            if (delta == 0) {
+                pendingAttacks.remove(ip, entry.getValue());
+                continue;
+            }
+            try {
+                String attackKey = CacheConstants.buildIpAttackKey(ip);
+                long total = redisUtil.incr(attackKey, delta);
+                if (total == delta) {
+                    redisUtil.expire(attackKey, CacheConstants.IP_ATTACK_EXPIRE_TIME);
+                }
+                if (total >= attackThreshold && !isBlacklisted(ip)) {
+                    log.error("IP {} 累计{}次恶意攻击被拉黑{}小时", ip, total, CacheConstants.IP_BLACKLIST_EXPIRE_TIME / 3600);
+                    blacklist(ip);
+                }
+            } catch (Exception e) {
+                log.warn("写回IP {} 的攻击次数失败: {}", ip, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按 Redis 索引重建本地视图，清理已过期的拉黑记录并修正遗漏的通知
+     */
+    @Scheduled(fixedDelayString = "${poetize.security.blacklist.reconcile-interval-ms:60000}",
+            initialDelayString = "${poetize.security.blacklist.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        long now = System.currentTimeMillis();
+        redisUtil.zRemoveRangeByScore(CacheConstants.IP_BLACKLIST_INDEX_KEY, 0, now);
+        unsyncedEntries.entrySet().removeIf(entry -> entry.getValue() <= now
+                || redisUtil.zAdd(CacheConstants.IP_BLACKLIST_INDEX_KEY, entry.getKey(), entry.getValue()));
+        viewLock.lock();
+        try {
+            Map<String, Double> entries = redisUtil.zRangeByScoreWithScores(CacheConstants.IP_BLACKLIST_INDEX_KEY, now);
+            if (entries == null) {
+                // Redis不可用时保留现有视图
+                return;
+            }
+            Map<String, Double> fresh = new HashMap<>(entries);
+            unsyncedEntries.forEach((ip, expireAt) -> fresh.merge(ip, expireAt.doubleValue(), Math::max));
+            snapshot = buildSnapshot(fresh);
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    /**
+     * 将升级前已存在、尚未写入索引的拉黑键补充到索引
+     */
+    private void indexLegacyEntries() {
+        List<String> keys = redisUtil.scan(CacheConstants.IP_BLACKLIST_PREFIX + "*", 500);
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            long ttl = redisUtil.getExpire(key);
+            if (ttl > 0) {
+                String ip = key.substring(CacheConstants.IP_BLACKLIST_PREFIX.length());
+                redisUtil.zAdd(CacheConstants.IP_BLACKLIST_INDEX_KEY, ip, now + ttl * 1000);
+            }
+        }
+    }
+
+    private Snapshot buildSnapshot(Map<String, Double> entries) {
+        int capacity = Math.max(expectedIps, entries.size() * 2);
+        Snapshot fresh = new Snapshot(new BloomFilter(capacity, fpp), new ConcurrentHashMap<>(Math.max(16, entries.size() * 2)));
+        entries.forEach((ip, expireAt) -> {
+            fresh.bloom().put(ip);
+            fresh.entries().put(ip, expireAt.longValue());
+        });
+        return fresh;
+    }
+
+    private void applyAdd(String ip, long expireAt) {
+        viewLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current.entries().size() >= current.bloom().getExpectedInsertions()) {
+                // 超出布隆过滤器容量时扩容重建，保持误判率
+                Map<String, Double> entries = new ConcurrentHashMap<>();
+                current.entries().forEach((key, value) -> entries.put(key, value.doubleValue()));
+                current = buildSnapshot(entries);
+                snapshot = current;
+            }
+            current.bloom().put(ip);
+            current.entries().merge(ip, expireAt, Math::max);
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    private void applyRemove(String ip) {
+        viewLock.lock();
+        try {
+            // 布隆过滤器不支持删除，精确集合移除后即不再拦截，下次对账时重建
+            snapshot.entries().remove(ip);
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    /**
+     * 当前本地黑名单条目数
+     */
+    public int getLocalSize() {
+        return snapshot.entries().size();
+    }
+
+    private record Snapshot(BloomFilter bloom, ConcurrentHashMap<String, Long> entries) {
+    }
+}
@@ -1,6 +1,13 @@
 package com.ld.poetry.service;
 
 import com.ld.poetry.service.provider.IpLocationProviderFactory;
+import com.ld.poetry.service.provider.RemoteLocationResolver;
+import com.ld.poetry.utils.cache.BoundedTtlCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -8,11 +15,16 @@ import org.springframework.util.StringUtils;
 
 import java.net.Inet6Address;
 import java.net.InetAddress;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * IP地理位置解析服务
  * 使用工厂模式管理多个IP解析提供者，支持自动降级和优先级选择
+ * 请求线程只查询离线库，离线库无法解析的IP交给 RemoteLocationResolver 异步远程解析，结果到达后更新缓存
  */
 @Slf4j
 @Service
@@ -20,9 +32,47 @@ public class LocationService {
 
     @Autowired
     private IpLocationProviderFactory providerFactory;
+
+    @Autowired
+    private RemoteLocationResolver remoteLocationResolver;
     
-    // IP地理位置缓存，避免重复查询
-    private final ConcurrentHashMap<String, String> locationCache = new ConcurrentHashMap<>();
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 最多缓存的IP数
+     */
+    private static final int LOCATION_CACHE_SIZE = 10000;
+
+    /**
+     * 解析成功结果缓存1天，"未知"只缓存10分钟以便较快重试
+     */
+    private static final long LOCATION_CACHE_TTL_SECONDS = 24 * 3600;
+    private static final long LOCATION_NEGATIVE_TTL_SECONDS = 600;
+
+    // IP地理位置缓存（有界LRU + TTL + 负缓存），避免重复查询同时限制内存占用
+    private final BoundedTtlCache<String, String> locationCache = new BoundedTtlCache<>(
+            LOCATION_CACHE_SIZE, LOCATION_CACHE_TTL_SECONDS, LOCATION_NEGATIVE_TTL_SECONDS, "未知"::equals);
+
+    private Timer resolveTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        if (meterRegistry == null) {
+            return;
+        }
+        resolveTimer = Timer.builder("poetize.ip.location.resolve")
+                .description("IP地理位置解析耗时（不含缓存命中）")
+                .register(meterRegistry);
+        FunctionCounter.builder("poetize.ip.location.cache.hits", locationCache, BoundedTtlCache::getHitCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("poetize.ip.location.cache.misses", locationCache, BoundedTtlCache::getMissCount)
+                .register(meterRegistry);
+        Gauge.builder("poetize.ip.location.cache.hit.rate", locationCache, BoundedTtlCache::getHitRate)
+                .register(meterRegistry);
+        Gauge.builder("poetize.ip.location.cache.size", locationCache, BoundedTtlCache::size)
+                .register(meterRegistry);
+    }
 
     /**
      * 根据IP地址获取地理位置
@@ -47,15 +97,61 @@ public class LocationService {
             return location;
         }
 
-        // 使用工厂模式解析公网IP地理位置
-        String location = providerFactory.resolveLocation(ipAddress);
+        // 公网IP先使用离线库结果立即返回
+        long start = System.nanoTime();
+        String location = providerFactory.resolveLocal(ipAddress);
+        if (resolveTimer != null) {
+            resolveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
         
         // 缓存结果
         locationCache.put(ipAddress, location);
+
+        // 离线库无法解析时提交远程异步解析，结果到达后覆盖缓存
+        if (remoteLocationResolver != null && remoteLocationResolver.shouldResolve(ipAddress, location)) {
+            remoteLocationResolver.resolveAsync(ipAddress).thenAccept(resolved -> {
+                if (RemoteLocationResolver.isResolved(resolved)) {
+                    locationCache.put(ipAddress, resolved);
+                }
+            });
+        }
         
         return location;
     }
 
+    /**
+     * 远程解析得到比 currentLocation 更准确的结果时回调 updater，用于回填已保存记录的归属地
+     * 没有进行中的远程解析且缓存结果与 currentLocation 相同时不回调
+     * @param ipAddress IP地址
+     * @param currentLocation 已保存的归属地
+     * @param updater 回填操作，可能在后台线程执行
+     */
+    public void updateWhenResolved(String ipAddress, String currentLocation, Consumer<String> updater) {
+        if (remoteLocationResolver == null || !StringUtils.hasText(ipAddress)) {
+            return;
+        }
+        Consumer<String> guarded = resolved -> {
+            if (RemoteLocationResolver.isResolved(resolved) && !resolved.equals(currentLocation)) {
+                try {
+                    updater.accept(resolved);
+                } catch (Exception e) {
+                    log.warn("回填IP {} 的归属地失败: {}", ipAddress, e.getMessage());
+                }
+            }
+        };
+
+        CompletableFuture<String> pending = remoteLocationResolver.getPending(ipAddress);
+        if (pending != null) {
+            pending.thenAccept(guarded);
+            return;
+        }
+        // 远程解析已在保存前完成，结果已写入缓存
+        String cached = locationCache.get(ipAddress);
+        if (cached != null) {
+            guarded.accept(cached);
+        }
+    }
+
     /**
      * 清理位置缓存（可用于定期清理）
      */
@@ -71,13 +167,32 @@ public class LocationService {
     public int getCacheSize() {
         return locationCache.size();
     }
+
+    /**
+     * 获取缓存命中统计
+     * @return 缓存大小、容量、命中/未命中次数、命中率
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cacheSize", locationCache.size());
+        stats.put("maxSize", locationCache.getMaxSize());
+        stats.put("hitCount", locationCache.getHitCount());
+        stats.put("missCount", locationCache.getMissCount());
+        stats.put("evictionCount", locationCache.getEvictionCount());
+        stats.put("hitRate", locationCache.getHitRate());
+        return stats;
+    }
     
     /**
      * 获取提供者状态信息（用于调试和监控）
      * @return 提供者状态
      */
     public String getProvidersStatus() {
-        return providerFactory.getProvidersStatus();
+        String status = providerFactory.getProvidersStatus();
+        if (remoteLocationResolver != null) {
+            status += "\n远程异步解析: " + remoteLocationResolver.getStatus();
+        }
+        return status;
     }
     
     /**
@@ -0,0 +1,246 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.handle.PoetryBusyException;
+import com.ld.poetry.handle.PoetryRuntimeException;
+import com.ld.poetry.utils.PoetryUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码哈希专用线程池
+ * <p>
+ * BCrypt 计算是纯CPU任务，而 Tomcat 请求运行在虚拟线程上：登录洪峰时大量哈希计算会占满载体线程，
+ * 拖慢所有其他请求。这里将哈希与校验交给按CPU核数配置的平台线程池执行，请求线程只等待结果。
+ * </p>
+ * <p>
+ * 队列有界，排满时立即以 {@link PoetryBusyException}（429）拒绝，而不是无限排队；
+ * 提交前还按IP限制同时排队/执行的任务数，单个IP的撞库请求无法占满队列。
+ * </p>
+ */
+@Slf4j
+@Component
+public class PasswordHashExecutor {
+
+    private static final String REJECT_MESSAGE = "登录请求过多，请稍后再试！";
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 线程数，0 表示使用CPU核数
+     */
+    @Value("${poetize.security.password.hash.pool-size:0}")
+    private int poolSize = 0;
+
+    /**
+     * 等待队列容量，排满后直接拒绝
+     */
+    @Value("${poetize.security.password.hash.queue-capacity:64}")
+    private int queueCapacity = 64;
+
+    /**
+     * 单个IP同时排队或执行的哈希任务上限，0 表示不限制
+     */
+    @Value("${poetize.security.password.hash.per-ip-concurrency:2}")
+    private int perIpConcurrency = 2;
+
+    /**
+     * 请求线程等待结果的最长时间（毫秒）
+     */
+    @Value("${poetize.security.password.hash.timeout-ms:10000}")
+    private long timeoutMs = 10000;
+
+    /**
+     * 拒绝时建议客户端等待的秒数
+     */
+    @Value("${poetize.security.password.hash.retry-after-seconds:1}")
+    private long retryAfterSeconds = 1;
+
+    private ThreadPoolExecutor executor;
+
+    private final ConcurrentHashMap<String, Integer> inflightByIp = new ConcurrentHashMap<>();
+
+    private Timer hashTimer;
+
+    private Timer waitTimer;
+
+    private Counter queueFullCounter;
+
+    private Counter ipLimitCounter;
+
+    @PostConstruct
+    public void start() {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        if (meterRegistry != null) {
+            hashTimer = Timer.builder("poetize.password.hash")
+                    .description("密码哈希/校验耗时")
+                    .register(meterRegistry);
+            waitTimer = Timer.builder("poetize.password.hash.wait")
+                    .description("密码哈希任务排队时间")
+                    .register(meterRegistry);
+            Gauge.builder("poetize.password.hash.queue", executor, pool -> pool.getQueue().size())
+                    .description("等待执行的密码哈希任务数")
+                    .register(meterRegistry);
+            queueFullCounter = Counter.builder("poetize.password.hash.rejected")
+                    .tag("reason", "queue-full")
+                    .register(meterRegistry);
+            ipLimitCounter = Counter.builder("poetize.password.hash.rejected")
+                    .tag("reason", "ip-limit")
+                    .register(meterRegistry);
+        }
+        log.info("密码哈希线程池已启动 - 线程数: {}, 队列容量: {}, 单IP并发: {}", threads, queueCapacity, perIpConcurrency);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 在哈希线程池中执行任务，按当前请求的客户端IP做准入
+     */
+    public <T> T execute(Callable<T> task) {
+        HttpServletRequest request = PoetryUtil.getRequest();
+        return execute(request != null ? PoetryUtil.getIpAddr(request) : null, task);
+    }
+
+    /**
+     * 在哈希线程池中执行任务
+     *
+     * @param ip   客户端IP，null表示非请求场景（如启动自检），不做单IP准入
+     * @param task 哈希或校验任务
+     * @throws PoetryBusyException 单IP并发超限、队列已满或等待超时
+     */
+    public <T> T execute(String ip, Callable<T> task) {
+        if (ip != null && !acquireIp(ip)) {
+            increment(ipLimitCounter);
+            log.warn("密码哈希请求被拒绝 - IP: {} 同时进行的请求超过 {} 个", ip, perIpConcurrency);
+            throw new PoetryBusyException(REJECT_MESSAGE, retryAfterSeconds);
+        }
+        long submittedAt = System.nanoTime();
+        AtomicBoolean started = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    // 请求线程已放弃等待，名额已由其释放
+                    return null;
+                }
+                long startedAt = System.nanoTime();
+                record(waitTimer, startedAt - submittedAt);
+                try {
+                    return task.call();
+                } finally {
+                    record(hashTimer, System.nanoTime() - startedAt);
+                    // 在任务实际结束时释放名额，等待超时的请求不会提前让出仍在计算的哈希
+                    releaseIp(ip);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            releaseIp(ip);
+            increment(queueFullCounter);
+            log.warn("密码哈希队列已满（{}），拒绝请求 - IP: {}", queueCapacity, ip);
+            throw new PoetryBusyException(REJECT_MESSAGE, retryAfterSeconds);
+        }
+        return await(future, started, ip);
+    }
+
+    /**
+     * 当前排队中的任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    private <T> T await(Future<T> future, AtomicBoolean started, String ip) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(future, started, ip);
+            throw new PoetryBusyException(REJECT_MESSAGE, retryAfterSeconds);
+        } catch (InterruptedException e) {
+            abandon(future, started, ip);
+            Thread.currentThread().interrupt();
+            throw new PoetryRuntimeException("密码校验被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new PoetryRuntimeException("密码哈希计算失败", cause);
+        }
+    }
+
+    /**
+     * 放弃等待：任务尚未开始时不再执行并立即释放名额；已开始的BCrypt计算无法中断，名额在其结束时释放
+     */
+    private void abandon(Future<?> future, AtomicBoolean started, String ip) {
+        if (started.compareAndSet(false, true)) {
+            future.cancel(false);
+            releaseIp(ip);
+        } else {
+            future.cancel(true);
+        }
+    }
+
+    private boolean acquireIp(String ip) {
+        if (perIpConcurrency <= 0) {
+            return true;
+        }
+        if (inflightByIp.merge(ip, 1, Integer::sum) > perIpConcurrency) {
+            releaseIp(ip);
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseIp(String ip) {
+        if (ip != null && perIpConcurrency > 0) {
+            inflightByIp.computeIfPresent(ip, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static void record(Timer timer, long nanos) {
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.ld.poetry.service;
 import cn.hutool.crypto.SecureUtil;
 import com.ld.poetry.config.PasswordSecurityPolicy;
 import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.handle.PoetryBusyException;
 import com.ld.poetry.utils.CryptoUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,11 +13,13 @@ import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
 
 /**
  * 密码服务类
  * 负责密码的加密、验证和格式识别
  * 支持MD5到BCrypt的渐进式升级
+ * BCrypt计算在 PasswordHashExecutor 的专用线程池中执行，繁忙时抛出 PoetryBusyException
  * 
  * @author LeapYa
  * @since 2025-07-20
@@ -28,6 +31,12 @@ public class PasswordService {
     private final BCryptPasswordEncoder bCryptPasswordEncoder;
     private final PasswordSecurityPolicy securityPolicy;
 
+    /**
+     * 密码哈希线程池，未注入时（如单元测试）在调用线程中直接计算
+     */
+    @Autowired(required = false)
+    private PasswordHashExecutor passwordHashExecutor;
+
     // BCrypt密码的标识前缀
     private static final String BCRYPT_PREFIX = "$2a$";
     private static final String BCRYPT_PREFIX_2B = "$2b$";
@@ -86,7 +95,7 @@ public class PasswordService {
             throw new IllegalArgumentException("密码不能为空");
         }
         
-        String encoded = bCryptPasswordEncoder.encode(rawPassword);
+        String encoded = runHash(() -> bCryptPasswordEncoder.encode(rawPassword));
         return encoded;
     }
 
@@ -142,16 +151,35 @@ public class PasswordService {
      */
     private boolean verifyBCryptPassword(String rawPassword, String encodedPassword) {
         try {
-            boolean matches = bCryptPasswordEncoder.matches(rawPassword, encodedPassword);
+            boolean matches = runHash(() -> bCryptPasswordEncoder.matches(rawPassword, encodedPassword));
             if (securityPolicy.isLogPasswordFormat()) {
             }
             return matches;
+        } catch (PoetryBusyException e) {
+            // 繁忙不等于密码错误，交由上层返回429，避免计入登录失败次数
+            throw e;
         } catch (Exception e) {
             log.error("BCrypt密码验证失败", e);
             return false;
         }
     }
 
+    /**
+     * 在密码哈希线程池中执行BCrypt计算
+     */
+    private <T> T runHash(Callable<T> task) {
+        if (passwordHashExecutor == null) {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return passwordHashExecutor.execute(task);
+    }
+
     /**
      * 验证MD5密码（根据安全策略）
      */
@@ -0,0 +1,259 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.config.StatelessTokenPolicy;
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.utils.RedisUtil;
+import com.ld.poetry.utils.SecureTokenGenerator;
+import com.ld.poetry.utils.SecureTokenGenerator.TokenValidationResult;
+import com.ld.poetry.utils.cache.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 无状态token吊销列表
+ * <p>
+ * 无状态token（v2）本地验签即可确认身份，注销、登录挤下线、修改密码、强制下线时需要让尚未过期的token失效：
+ * 单个token按jti吊销，用户全部token按"吊销时间点"失效（此前签发的token都作废）。
+ * Redis 有序集合是权威数据，分数为过期时间，过期后即可清理，因此列表大小只与有效期内的注销次数有关。
+ * </p>
+ * <p>
+ * 与IP黑名单相同，各节点本地保存 布隆过滤器 + 精确集合：未被吊销的token（绝大多数请求）判定时无需访问 Redis。
+ * 变更通过 Redis pub/sub 通知各节点，并定期按索引对账重建本地视图，通知丢失时最多延迟一个对账周期。
+ * </p>
+ */
+@Service
+@Slf4j
+public class TokenRevocationService implements MessageListener {
+
+    private static final String ACTION_TOKEN = "TOKEN";
+
+    private static final String ACTION_USER = "USER";
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private StatelessTokenPolicy statelessTokenPolicy;
+
+    /**
+     * 本地布隆过滤器的预期吊销数，实际数量达到容量时按两倍重建
+     */
+    @Value("${poetize.token.revocation.expected-tokens:10000}")
+    private int expectedTokens = 10000;
+
+    @Value("${poetize.token.revocation.fpp:0.01}")
+    private double fpp = 0.01;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 用户ID → 吊销时间点（毫秒），签发时间早于该时间点的token无效
+     */
+    private volatile ConcurrentHashMap<Integer, Long> userNotBefore = new ConcurrentHashMap<>();
+
+    /**
+     * 串行化本地视图的增删与对账重建，避免重建时丢失并发到达的变更
+     */
+    private final ReentrantLock viewLock = new ReentrantLock();
+
+    /**
+     * 写入 Redis 失败的吊销（jti → 过期时间、用户ID → 吊销时间点），对账时重试写入，写入成功前合并进重建的本地视图
+     */
+    private final ConcurrentHashMap<String, Long> unsyncedTokens = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Integer, Long> unsyncedUsers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        snapshot = new Snapshot(new BloomFilter(expectedTokens, fpp), new ConcurrentHashMap<>());
+        if (redisMessageListenerContainer != null) {
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CacheConstants.TOKEN_REVOKE_CHANNEL));
+        }
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("初始化token吊销列表失败，将在下次对账时重试: {}", e.getMessage());
+        }
+        log.info("无状态token签发: {}", statelessTokenPolicy.isEnabled() ? "已启用" : "未启用");
+    }
+
+    /**
+     * 检查已验签的无状态token是否被吊销，仅访问本地内存
+     */
+    public boolean isRevoked(TokenValidationResult result) {
+        Long notBefore = userNotBefore.get(result.getUserId());
+        if (notBefore != null && result.getTimestamp() < notBefore) {
+            return true;
+        }
+        Snapshot current = snapshot;
+        String jti = result.getNonce();
+        return current.bloom().mightContain(jti) && current.entries().containsKey(jti);
+    }
+
+    /**
+     * 吊销单个无状态token并通知其他节点，非无状态token直接忽略
+     */
+    public void revoke(String token) {
+        if (!SecureTokenGenerator.isStatelessToken(token)) {
+            return;
+        }
+        TokenValidationResult result = SecureTokenGenerator.validateToken(token);
+        if (!result.isValid()) {
+            // 验签失败或已过期的token本身就无法使用
+            return;
+        }
+        String jti = result.getNonce();
+        long expiresAt = result.getExpiresAt();
+        // 先写 Redis 再更新本地视图：对账读取索引时持有 viewLock，写入成功后的本地变更不会被其覆盖
+        if (!redisUtil.zAdd(CacheConstants.TOKEN_REVOKED_INDEX_KEY, jti, expiresAt)) {
+            log.warn("写入token吊销记录失败，将在对账时重试 - jti: {}", jti);
+            unsyncedTokens.merge(jti, expiresAt, Math::max);
+        }
+        applyRevokeToken(jti, expiresAt);
+        redisUtil.publish(CacheConstants.TOKEN_REVOKE_CHANNEL, ACTION_TOKEN + " " + expiresAt + " " + jti);
+    }
+
+    /**
+     * 吊销用户此前签发的全部无状态token并通知其他节点
+     */
+    public void revokeUser(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        long notBefore = System.currentTimeMillis();
+        if (!redisUtil.zAdd(CacheConstants.TOKEN_USER_NOT_BEFORE_KEY, String.valueOf(userId), notBefore)) {
+            log.warn("写入用户token吊销记录失败，将在对账时重试 - userId: {}", userId);
+            unsyncedUsers.merge(userId, notBefore, Math::max);
+        }
+        applyRevokeUser(userId, notBefore);
+        redisUtil.publish(CacheConstants.TOKEN_REVOKE_CHANNEL, ACTION_USER + " " + notBefore + " " + userId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        handleMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void handleMessage(String body) {
+        // 格式: ACTION 时间 jti/userId
+        String[] parts = body.split(" ", 3);
+        if (parts.length != 3) {
+            log.warn("忽略无法识别的token吊销通知: {}", body);
+            return;
+        }
+        try {
+            if (ACTION_TOKEN.equals(parts[0])) {
+                applyRevokeToken(parts[2], Long.parseLong(parts[1]));
+            } else if (ACTION_USER.equals(parts[0])) {
+                applyRevokeUser(Integer.parseInt(parts[2]), Long.parseLong(parts[1]));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法识别的token吊销通知: {}", body);
+        }
+    }
+
+    /**
+     * 按 Redis 索引重建本地视图，清理已过期的吊销记录并修正遗漏的通知
+     */
+    @Scheduled(fixedDelayString = "${poetize.token.revocation.reconcile-interval-ms:60000}",
+            initialDelayString = "${poetize.token.revocation.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        long now = System.currentTimeMillis();
+        // 早于最长有效期签发的token都已过期，对应的用户吊销时间点不再需要
+        long oldestValidIssue = now - CommonConst.TOKEN_EXPIRE * 1000;
+        redisUtil.zRemoveRangeByScore(CacheConstants.TOKEN_REVOKED_INDEX_KEY, 0, now);
+        redisUtil.zRemoveRangeByScore(CacheConstants.TOKEN_USER_NOT_BEFORE_KEY, 0, oldestValidIssue);
+        unsyncedTokens.entrySet().removeIf(entry -> entry.getValue() <= now
+                || redisUtil.zAdd(CacheConstants.TOKEN_REVOKED_INDEX_KEY, entry.getKey(), entry.getValue()));
+        unsyncedUsers.entrySet().removeIf(entry -> entry.getValue() < oldestValidIssue
+                || redisUtil.zAdd(CacheConstants.TOKEN_USER_NOT_BEFORE_KEY, String.valueOf(entry.getKey()), entry.getValue()));
+        viewLock.lock();
+        try {
+            Map<String, Double> tokens = redisUtil.zRangeByScoreWithScores(CacheConstants.TOKEN_REVOKED_INDEX_KEY, now);
+            Map<String, Double> users = redisUtil.zRangeByScoreWithScores(CacheConstants.TOKEN_USER_NOT_BEFORE_KEY, oldestValidIssue);
+            if (tokens == null || users == null) {
+                // Redis不可用时保留现有视图
+                return;
+            }
+            Map<String, Double> freshTokens = new HashMap<>(tokens);
+            unsyncedTokens.forEach((jti, expiresAt) -> freshTokens.merge(jti, expiresAt.doubleValue(), Math::max));
+            snapshot = buildSnapshot(freshTokens);
+            ConcurrentHashMap<Integer, Long> freshUsers = new ConcurrentHashMap<>(unsyncedUsers);
+            users.forEach((userId, notBefore) -> {
+                try {
+                    freshUsers.merge(Integer.valueOf(userId), notBefore.longValue(), Math::max);
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的用户吊销记录: {}", userId);
+                }
+            });
+            userNotBefore = freshUsers;
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    /**
+     * 当前本地吊销的token数
+     */
+    public int getLocalSize() {
+        return snapshot.entries().size();
+    }
+
+    private Snapshot buildSnapshot(Map<String, Double> entries) {
+        int capacity = Math.max(expectedTokens, entries.size() * 2);
+        Snapshot fresh = new Snapshot(new BloomFilter(capacity, fpp), new ConcurrentHashMap<>(Math.max(16, entries.size() * 2)));
+        entries.forEach((jti, expiresAt) -> {
+            fresh.bloom().put(jti);
+            fresh.entries().put(jti, expiresAt.longValue());
+        });
+        return fresh;
+    }
+
+    private void applyRevokeToken(String jti, long expiresAt) {
+        viewLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current.entries().size() >= current.bloom().getExpectedInsertions()) {
+                // 超出布隆过滤器容量时扩容重建，保持误判率
+                Map<String, Double> entries = new ConcurrentHashMap<>();
+                current.entries().forEach((key, value) -> entries.put(key, value.doubleValue()));
+                current = buildSnapshot(entries);
+                snapshot = current;
+            }
+            current.bloom().put(jti);
+            current.entries().merge(jti, expiresAt, Math::max);
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    private void applyRevokeUser(Integer userId, long notBefore) {
+        viewLock.lock();
+        try {
+            userNotBefore.merge(userId, notBefore, Math::max);
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    private record Snapshot(BloomFilter bloom, ConcurrentHashMap<String, Long> entries) {
+    }
+}
@@ -0,0 +1,281 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.entity.User;
+import com.ld.poetry.utils.RedisUtil;
+import com.ld.poetry.utils.cache.BoundedTtlCache;
+import com.ld.poetry.utils.security.RequestSecurityContext;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地token会话缓存
+ * <p>
+ * 在各节点内存中短时间缓存 token → 用户 以及管理员信息，已登录请求通常无需访问 Redis。
+ * 会话续期间隔标记的有效期也随token条目缓存，标记在本地过期（或条目过期重新加载）后才查询 Redis。
+ * Redis 中的会话、用户缓存仍是权威数据：注销、踢下线（evictAllUserTokens）、修改密码、更新用户信息时
+ * 由 CacheService 调用 revoke* 清理本地缓存，并通过 Redis pub/sub 通知其他节点；
+ * 通知丢失时最多在 local-ttl-seconds 后自然过期。
+ * </p>
+ * <p>
+ * 从 Redis 加载前记录当前失效版本号，写入时若期间已有失效通知则放弃写入，避免并发加载把失效前读到的旧数据写回。
+ * 返回给调用方的是副本，调用方修改用户对象不会影响缓存。
+ * </p>
+ */
+@Service
+@Slf4j
+public class TokenSessionCache implements MessageListener {
+
+    private static final String ACTION_TOKEN = "TOKEN";
+
+    private static final String ACTION_USER = "USER";
+
+    private static final String ACTION_ADMIN = "ADMIN";
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 本地最多缓存的token数
+     */
+    @Value("${poetize.session.local-cache-size:10000}")
+    private int localCacheSize = 10000;
+
+    /**
+     * 本地缓存有效期（秒），即失效通知丢失时的最长不一致时间
+     */
+    @Value("${poetize.session.local-ttl-seconds:30}")
+    private long localTtlSeconds = 30;
+
+    private BoundedTtlCache<String, Entry> tokens;
+
+    private volatile Entry admin;
+
+    /**
+     * 失效版本号，每次失效递增
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 最近失效的token、用户，用于拦截失效前开始的加载及失效前写入的条目
+     */
+    private final ConcurrentHashMap<String, Revocation> revokedTokens = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Integer, Revocation> revokedUsers = new ConcurrentHashMap<>();
+
+    private volatile long adminRevokedVersion;
+
+    @PostConstruct
+    public void init() {
+        tokens = new BoundedTtlCache<>(localCacheSize, localTtlSeconds, localTtlSeconds, null);
+        if (redisMessageListenerContainer != null) {
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CacheConstants.SESSION_REVOKE_CHANNEL));
+        }
+    }
+
+    /**
+     * 加载开始前调用，返回值传给 put* 方法
+     */
+    public long loadStarted() {
+        return version.get();
+    }
+
+    /**
+     * 读取token对应的用户，未命中返回null
+     */
+    public User getUser(String token) {
+        Entry entry = tokens.get(token);
+        if (entry == null) {
+            return null;
+        }
+        if (isRevoked(revokedUsers.get(entry.user().getId()), entry.version())) {
+            tokens.invalidate(token);
+            return null;
+        }
+        return copy(entry.user());
+    }
+
+    /**
+     * 缓存从Redis加载的token用户
+     *
+     * @param loadedVersion 加载开始前 {@link #loadStarted()} 的返回值
+     */
+    public void putUser(String token, User user, long loadedVersion) {
+        if (token == null || user == null || user.getId() == null) {
+            return;
+        }
+        if (isRevoked(revokedTokens.get(token), loadedVersion) || isRevoked(revokedUsers.get(user.getId()), loadedVersion)) {
+            return;
+        }
+        tokens.put(token, new Entry(copy(user), loadedVersion, System.nanoTime(), new AtomicLong(System.nanoTime())));
+    }
+
+    /**
+     * token的续期间隔标记在本地是否仍有效，未缓存该token或标记已过期时返回false，由调用方查询 Redis
+     */
+    public boolean isIntervalMarked(String token) {
+        Entry entry = tokens.get(token);
+        return entry != null && entry.intervalUntil().get() - System.nanoTime() > 0;
+    }
+
+    /**
+     * 记录token的续期间隔标记在 Redis 中的剩余有效期，随token条目一起过期或失效
+     */
+    public void markInterval(String token, long ttlSeconds) {
+        Entry entry = tokens.get(token);
+        if (entry != null && ttlSeconds > 0) {
+            entry.intervalUntil().set(System.nanoTime() + ttlSeconds * 1_000_000_000L);
+        }
+    }
+
+    /**
+     * 读取管理员信息，未命中返回null
+     */
+    public User getAdmin() {
+        Entry entry = admin;
+        if (entry == null || System.nanoTime() - entry.cachedAt() > localTtlSeconds * 1_000_000_000L
+                || adminRevokedVersion > entry.version()
+                || isRevoked(revokedUsers.get(entry.user().getId()), entry.version())) {
+            return null;
+        }
+        return copy(entry.user());
+    }
+
+    /**
+     * 缓存从Redis加载的管理员信息
+     */
+    public void putAdmin(User user, long loadedVersion) {
+        if (user == null || user.getId() == null || adminRevokedVersion > loadedVersion
+                || isRevoked(revokedUsers.get(user.getId()), loadedVersion)) {
+            return;
+        }
+        admin = new Entry(copy(user), loadedVersion, System.nanoTime(), new AtomicLong());
+    }
+
+    /**
+     * token会话已注销，通知所有节点
+     */
+    public void revokeToken(String token) {
+        if (token == null) {
+            return;
+        }
+        applyRevokeToken(token);
+        publish(ACTION_TOKEN + " " + token);
+    }
+
+    /**
+     * 用户信息变更或全部会话失效，通知所有节点
+     */
+    public void revokeUser(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        applyRevokeUser(userId);
+        publish(ACTION_USER + " " + userId);
+    }
+
+    /**
+     * 管理员信息变更，通知所有节点
+     */
+    public void revokeAdmin() {
+        applyRevokeAdmin();
+        publish(ACTION_ADMIN);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        handleMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void handleMessage(String body) {
+        // 格式: ACTION [参数]
+        String[] parts = body.split(" ", 2);
+        try {
+            if (ACTION_TOKEN.equals(parts[0]) && parts.length == 2) {
+                applyRevokeToken(parts[1]);
+            } else if (ACTION_USER.equals(parts[0]) && parts.length == 2) {
+                applyRevokeUser(Integer.parseInt(parts[1]));
+            } else if (ACTION_ADMIN.equals(parts[0])) {
+                applyRevokeAdmin();
+            } else {
+                log.warn("忽略无法识别的会话失效通知: {}", body);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法识别的会话失效通知: {}", body);
+        }
+    }
+
+    /**
+     * 清理已超过本地缓存有效期的失效记录，此前加载的条目都已过期
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeRevocations() {
+        long now = System.nanoTime();
+        long ttlNanos = localTtlSeconds * 1_000_000_000L;
+        revokedTokens.values().removeIf(revocation -> now - revocation.revokedAt() > ttlNanos);
+        revokedUsers.values().removeIf(revocation -> now - revocation.revokedAt() > ttlNanos);
+    }
+
+    private void applyRevokeToken(String token) {
+        revokedTokens.put(token, newRevocation());
+        tokens.invalidate(token);
+        RequestSecurityContext.clear();
+    }
+
+    private void applyRevokeUser(Integer userId) {
+        // 按用户失效不遍历本地缓存，读取时比较条目与失效记录的版本号
+        revokedUsers.put(userId, newRevocation());
+        RequestSecurityContext.clear();
+    }
+
+    private void applyRevokeAdmin() {
+        adminRevokedVersion = version.incrementAndGet();
+        admin = null;
+        RequestSecurityContext.clear();
+    }
+
+    private void publish(String message) {
+        if (!redisUtil.publish(CacheConstants.SESSION_REVOKE_CHANNEL, message)) {
+            log.warn("发布会话失效通知失败，其他节点将在本地缓存过期后生效");
+        }
+    }
+
+    private Revocation newRevocation() {
+        return new Revocation(version.incrementAndGet(), System.nanoTime());
+    }
+
+    private static boolean isRevoked(Revocation revocation, long loadedVersion) {
+        return revocation != null && revocation.version() > loadedVersion;
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+
+    /**
+     * @param intervalUntil 续期间隔标记的本地有效期截止时间（nanoTime），不晚于此时无效
+     */
+    private record Entry(User user, long version, long cachedAt, AtomicLong intervalUntil) {
+    }
+
+    private record Revocation(long version, long revokedAt) {
+    }
+}
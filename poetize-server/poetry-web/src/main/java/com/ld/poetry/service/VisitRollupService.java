@@ -0,0 +1,474 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.dao.HistoryInfoMapper;
+import com.ld.poetry.dao.VisitStatsMapper;
+import com.ld.poetry.entity.HistoryInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 访问统计预聚合服务
+ * <p>
+ * 按 history_info 的自增ID增量维护汇总表：
+ * <ul>
+ *     <li>IP累计、省份累计、全站累计：只累加新增记录，检查点 last_history_id 与累加在同一事务内推进</li>
+ *     <li>小时、每日、每日省份城市、每日用户：按新增记录涉及的日期整天重算，可重复执行</li>
+ * </ul>
+ * 统计接口只读汇总表，不再对 history_info 做全表 count(distinct ip)。
+ * </p>
+ * <p>
+ * 访问记录由定时任务在次日凌晨批量写入，汇总在写入完成后执行，因此不会出现较小ID晚提交被检查点跳过的情况。
+ * </p>
+ */
+@Service
+@Slf4j
+public class VisitRollupService {
+
+    /**
+     * 每批增量读取的访问记录数
+     */
+    private static final int BATCH_SIZE = 5000;
+
+    /**
+     * IN 查询和批量写入的分片大小
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * 排行榜条数
+     */
+    private static final int TOP_LIMIT = 10;
+
+    @Autowired
+    private HistoryInfoMapper historyInfoMapper;
+
+    @Autowired
+    private VisitStatsMapper visitStatsMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HistoryArchiveService historyArchiveService;
+
+    /**
+     * 增量汇总与回填互斥，避免同一批记录被重复累加
+     */
+    private final ReentrantLock rollupLock = new ReentrantLock();
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean(false);
+
+    /**
+     * 汇总检查点之后新增的访问记录
+     * <p>
+     * 汇总表未初始化时（升级后首次运行）检查点为0，等同于对全部历史数据回填。
+     *
+     * @return 本次汇总的访问记录数
+     */
+    public long rollupNewHistory() {
+        rollupLock.lock();
+        try {
+            return doRollupNewHistory();
+        } finally {
+            rollupLock.unlock();
+        }
+    }
+
+    /**
+     * 清空全部汇总表并基于归档文件和 history_info 重新回填（异步执行）
+     *
+     * @return 已有回填任务在执行时返回false
+     */
+    public boolean startBackfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofVirtual().name("visit-rollup-backfill").start(() -> {
+            try {
+                long count = backfill();
+                log.info("访问统计汇总回填完成，共处理{}条访问记录", count);
+            } catch (Exception e) {
+                log.error("访问统计汇总回填失败", e);
+            } finally {
+                backfillRunning.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isBackfillRunning() {
+        return backfillRunning.get();
+    }
+
+    /**
+     * 清空全部汇总表并重新回填（同步执行）
+     *
+     * @return 回填的访问记录数
+     */
+    public long backfill() {
+        rollupLock.lock();
+        try {
+            log.info("开始回填访问统计汇总表");
+            transactionTemplate.executeWithoutResult(status -> {
+                visitStatsMapper.clearHourly();
+                visitStatsMapper.clearDaily();
+                visitStatsMapper.clearDailyRegion();
+                visitStatsMapper.clearDailyUser();
+                visitStatsMapper.clearIpSummary();
+                visitStatsMapper.clearProvinceTotal();
+                visitStatsMapper.initTotal();
+                visitStatsMapper.resetTotal();
+            });
+            return backfillFromArchives() + doRollupNewHistory();
+        } finally {
+            rollupLock.unlock();
+        }
+    }
+
+    /**
+     * 回填已从 history_info 删除的归档记录
+     * <p>
+     * 归档文件按月分区生成，单日记录不会跨文件，因此每个文件读完即可写入该文件涉及日期的按天汇总。
+     * 归档记录不推进检查点，随后再从头汇总 history_info 中保留的记录。
+     */
+    private long backfillFromArchives() {
+        long processed = 0;
+        for (Path file : historyArchiveService.listArchives()) {
+            Map<LocalDate, DayAggregate> days = new TreeMap<>();
+            try {
+                processed += historyArchiveService.readArchive(file, BATCH_SIZE, batch -> {
+                    transactionTemplate.executeWithoutResult(status -> accumulate(batch, 0));
+                    for (HistoryInfo info : batch) {
+                        if (info.getCreateTime() != null) {
+                            days.computeIfAbsent(info.getCreateTime().toLocalDate(), DayAggregate::new).add(info);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取访问记录归档文件失败: " + file, e);
+            }
+            days.values().forEach(this::writeDay);
+            log.info("已回填归档文件 {}，涉及{}天", file.getFileName(), days.size());
+        }
+        return processed;
+    }
+
+    private long doRollupNewHistory() {
+        visitStatsMapper.initTotal();
+        Map<String, Object> total = visitStatsMapper.getTotal();
+        int lastId = total != null ? toInt(total.get("last_history_id")) : 0;
+
+        Set<LocalDate> touchedDates = new TreeSet<>();
+        long processed = 0;
+        while (true) {
+            List<HistoryInfo> batch = historyInfoMapper.selectAfterId(lastId, BATCH_SIZE);
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            int batchLastId = batch.get(batch.size() - 1).getId();
+            transactionTemplate.executeWithoutResult(status -> accumulate(batch, batchLastId));
+            for (HistoryInfo info : batch) {
+                if (info.getCreateTime() != null) {
+                    touchedDates.add(info.getCreateTime().toLocalDate());
+                }
+            }
+            processed += batch.size();
+            lastId = batchLastId;
+            if (batch.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+
+        for (LocalDate date : touchedDates) {
+            rollupDayFromHistory(date);
+        }
+
+        if (processed > 0) {
+            log.info("访问统计增量汇总完成: 记录{}条, 涉及{}天, 检查点ID={}", processed, touchedDates.size(), lastId);
+        }
+        return processed;
+    }
+
+    /**
+     * 将一批访问记录累加到IP、省份、全站累计汇总，并推进检查点
+     */
+    private void accumulate(List<HistoryInfo> rows, int lastHistoryId) {
+        Map<String, Map<String, Object>> ipRows = new LinkedHashMap<>();
+        for (HistoryInfo info : rows) {
+            if (!StringUtils.hasText(info.getIp())) {
+                continue;
+            }
+            Map<String, Object> ipRow = ipRows.computeIfAbsent(info.getIp(), ip -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("ip", ip);
+                row.put("nation", info.getNation());
+                row.put("province", info.getProvince());
+                row.put("city", info.getCity());
+                row.put("visits", 0L);
+                row.put("firstVisitTime", info.getCreateTime());
+                row.put("lastVisitTime", info.getCreateTime());
+                return row;
+            });
+            ipRow.put("visits", (Long) ipRow.get("visits") + 1);
+            LocalDateTime createTime = info.getCreateTime();
+            if (createTime != null) {
+                LocalDateTime first = (LocalDateTime) ipRow.get("firstVisitTime");
+                LocalDateTime last = (LocalDateTime) ipRow.get("lastVisitTime");
+                if (first == null || createTime.isBefore(first)) {
+                    ipRow.put("firstVisitTime", createTime);
+                }
+                if (last == null || createTime.isAfter(last)) {
+                    ipRow.put("lastVisitTime", createTime);
+                }
+            }
+        }
+
+        // 本批中首次出现的IP才计入独立IP数
+        Set<String> existingIps = new HashSet<>();
+        List<String> ips = new ArrayList<>(ipRows.keySet());
+        for (int i = 0; i < ips.size(); i += CHUNK_SIZE) {
+            existingIps.addAll(visitStatsMapper.selectExistingIps(ips.subList(i, Math.min(i + CHUNK_SIZE, ips.size()))));
+        }
+
+        Map<String, Map<String, Object>> provinceRows = new LinkedHashMap<>();
+        long newIps = 0;
+        for (Map<String, Object> ipRow : ipRows.values()) {
+            boolean newIp = !existingIps.contains((String) ipRow.get("ip"));
+            if (newIp) {
+                newIps++;
+            }
+            String nation = (String) ipRow.get("nation");
+            String province = (String) ipRow.get("province");
+            if (nation == null || province == null) {
+                continue;
+            }
+            Map<String, Object> provinceRow = provinceRows.computeIfAbsent(nation + "|" + province, key -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("nation", nation);
+                row.put("province", province);
+                row.put("visits", 0L);
+                row.put("uniqueIps", 0L);
+                return row;
+            });
+            provinceRow.put("visits", (Long) provinceRow.get("visits") + (Long) ipRow.get("visits"));
+            if (newIp) {
+                provinceRow.put("uniqueIps", (Long) provinceRow.get("uniqueIps") + 1);
+            }
+        }
+
+        List<Map<String, Object>> ipList = new ArrayList<>(ipRows.values());
+        for (int i = 0; i < ipList.size(); i += CHUNK_SIZE) {
+            visitStatsMapper.batchUpsertIpSummary(ipList.subList(i, Math.min(i + CHUNK_SIZE, ipList.size())));
+        }
+        if (!provinceRows.isEmpty()) {
+            visitStatsMapper.batchUpsertProvinceTotal(new ArrayList<>(provinceRows.values()));
+        }
+        visitStatsMapper.addTotal(rows.size(), newIps, lastHistoryId);
+    }
+
+    /**
+     * 基于 history_info 重算指定日期的小时、每日、地区、用户汇总
+     */
+    public void rollupDayFromHistory(LocalDate date) {
+        LocalDateTime start = date.atStartOfDay();
+        rollupDay(date, historyInfoMapper.selectBetween(start, start.plusDays(1)));
+    }
+
+    /**
+     * 用指定日期的全部访问记录覆盖该日的小时、每日、地区、用户汇总
+     *
+     * @param date 统计日期
+     * @param rows 该日期的全部访问记录
+     */
+    public void rollupDay(LocalDate date, Collection<HistoryInfo> rows) {
+        writeDay(DayAggregate.of(date, rows));
+    }
+
+    private void writeDay(DayAggregate aggregate) {
+        LocalDate date = aggregate.date;
+        LocalDateTime start = date.atStartOfDay();
+        transactionTemplate.executeWithoutResult(status -> {
+            visitStatsMapper.deleteHourly(start, start.plusDays(1));
+            visitStatsMapper.deleteDailyRegion(date);
+            visitStatsMapper.deleteDailyUser(date);
+            visitStatsMapper.upsertDaily(date, aggregate.getVisits(), aggregate.getUniqueIps());
+            insertInChunks(aggregate.hourlyRows(), visitStatsMapper::batchInsertHourly);
+            insertInChunks(aggregate.regionRows(), visitStatsMapper::batchInsertDailyRegion);
+            insertInChunks(aggregate.userRows(), visitStatsMapper::batchInsertDailyUser);
+        });
+    }
+
+    private void insertInChunks(List<Map<String, Object>> rows, Function<List<Map<String, Object>>, Integer> writer) {
+        for (int i = 0; i < rows.size(); i += CHUNK_SIZE) {
+            writer.apply(rows.subList(i, Math.min(i + CHUNK_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * 基于汇总表生成访问统计缓存数据
+     * <p>
+     * IP_HISTORY_HOUR 为昨日登录用户访问次数（user_id、num），
+     * IP_HISTORY_YESTERDAY_COUNT 为昨日独立IP数。
+     */
+    public Map<String, Object> buildHistoryStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+
+        List<Map<String, Object>> provinces = visitStatsMapper.getTopProvinces(TOP_LIMIT);
+        List<Map<String, Object>> ips = visitStatsMapper.getTopIps(TOP_LIMIT);
+        List<Map<String, Object>> yesterdayUsers = visitStatsMapper.getDailyUsers(yesterday);
+        Map<String, Object> yesterdayStats = visitStatsMapper.getDaily(yesterday);
+        Map<String, Object> total = visitStatsMapper.getTotal();
+
+        statistics.put(CommonConst.IP_HISTORY_PROVINCE, provinces != null ? provinces : new ArrayList<>());
+        statistics.put(CommonConst.IP_HISTORY_IP, ips != null ? ips : new ArrayList<>());
+        statistics.put(CommonConst.IP_HISTORY_HOUR, yesterdayUsers != null ? yesterdayUsers : new ArrayList<>());
+        statistics.put(CommonConst.IP_HISTORY_YESTERDAY_COUNT, yesterdayStats != null ? toLong(yesterdayStats.get("unique_ips")) : 0L);
+        statistics.put(CommonConst.IP_HISTORY_COUNT, total != null ? toLong(total.get("unique_ips")) : 0L);
+        return statistics;
+    }
+
+    /**
+     * 最近若干天的每日访问统计（不包括今天）
+     *
+     * @param days 统计天数
+     * @return visit_date、unique_visits、total_visits
+     */
+    public List<Map<String, Object>> getDailyVisitStatsExcludeToday(int days) {
+        LocalDate today = LocalDate.now();
+        List<Map<String, Object>> stats = visitStatsMapper.getDailyStats(today.minusDays(days), today);
+        return stats != null ? stats : new ArrayList<>();
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static int toInt(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    /**
+     * 单日访问记录聚合结果
+     */
+    static final class DayAggregate {
+
+        private final LocalDate date;
+        private long visits;
+        private final Set<String> ips = new HashSet<>();
+        private final Map<LocalDateTime, long[]> hourVisits = new HashMap<>();
+        private final Map<LocalDateTime, Set<String>> hourIps = new HashMap<>();
+        private final Map<List<String>, long[]> regionVisits = new LinkedHashMap<>();
+        private final Map<List<String>, Set<String>> regionIps = new HashMap<>();
+        private final Map<Integer, long[]> userVisits = new LinkedHashMap<>();
+
+        DayAggregate(LocalDate date) {
+            this.date = date;
+        }
+
+        static DayAggregate of(LocalDate date, Collection<HistoryInfo> rows) {
+            DayAggregate aggregate = new DayAggregate(date);
+            if (rows != null) {
+                rows.stream().filter(Objects::nonNull).forEach(aggregate::add);
+            }
+            return aggregate;
+        }
+
+        void add(HistoryInfo info) {
+            LocalDateTime createTime = info.getCreateTime();
+            if (createTime == null || !date.equals(createTime.toLocalDate())) {
+                return;
+            }
+            String ip = info.getIp() != null ? info.getIp() : "";
+            visits++;
+            ips.add(ip);
+
+            LocalDateTime hour = createTime.truncatedTo(ChronoUnit.HOURS);
+            hourVisits.computeIfAbsent(hour, k -> new long[1])[0]++;
+            hourIps.computeIfAbsent(hour, k -> new HashSet<>()).add(ip);
+
+            List<String> region = List.of(
+                    info.getNation() != null ? info.getNation() : "",
+                    info.getProvince() != null ? info.getProvince() : "",
+                    info.getCity() != null ? info.getCity() : "");
+            regionVisits.computeIfAbsent(region, k -> new long[1])[0]++;
+            regionIps.computeIfAbsent(region, k -> new HashSet<>()).add(ip);
+
+            if (info.getUserId() != null) {
+                userVisits.computeIfAbsent(info.getUserId(), k -> new long[1])[0]++;
+            }
+        }
+
+        long getVisits() {
+            return visits;
+        }
+
+        long getUniqueIps() {
+            return ips.size();
+        }
+
+        List<Map<String, Object>> hourlyRows() {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            hourVisits.forEach((hour, count) -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("statTime", hour);
+                row.put("visits", count[0]);
+                row.put("uniqueIps", (long) hourIps.get(hour).size());
+                rows.add(row);
+            });
+            return rows;
+        }
+
+        List<Map<String, Object>> regionRows() {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            regionVisits.forEach((region, count) -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("statDate", date);
+                row.put("nation", region.get(0));
+                row.put("province", region.get(1));
+                row.put("city", region.get(2));
+                row.put("visits", count[0]);
+                row.put("uniqueIps", (long) regionIps.get(region).size());
+                rows.add(row);
+            });
+            return rows;
+        }
+
+        List<Map<String, Object>> userRows() {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            userVisits.forEach((userId, count) -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("statDate", date);
+                row.put("userId", userId);
+                row.put("visits", count[0]);
+                rows.add(row);
+            });
+            return rows;
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.ld.poetry.service.impl;
 
 import com.ld.poetry.service.CaptchaService;
 import com.ld.poetry.service.SysCaptchaConfigService;
+import com.ld.poetry.utils.ratelimit.RateLimitKey;
+import com.ld.poetry.utils.ratelimit.RateLimitResult;
+import com.ld.poetry.utils.ratelimit.RateLimitRule;
+import com.ld.poetry.utils.ratelimit.RedisRateLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.Cursor;
@@ -27,8 +31,10 @@ public class CaptchaServiceImpl implements CaptchaService {
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
     
+    @Autowired
+    private RedisRateLimiter redisRateLimiter;
+    
     private static final String CAPTCHA_TOKEN_PREFIX = "captcha:token:";
-    private static final String IP_VERIFY_COUNT_PREFIX = "captcha:ip:count:";
     private static final String IP_BLOCK_PREFIX = "captcha:ip:block:";
     private static final String FINGERPRINT_PREFIX = "captcha:fingerprint:";
     private static final long TOKEN_EXPIRY = 5; // 5分钟过期
@@ -36,6 +42,8 @@ public class CaptchaServiceImpl implements CaptchaService {
     private static final long IP_BLOCK_DURATION = 30; // IP封禁时长：30分钟
     private static final int MAX_VERIFY_PER_IP = 15; // 5分钟内最多验证15次
     private static final int MAX_FINGERPRINT_SWITCHES = 3; // 允许的最大指纹切换次数
+    private static final RateLimitRule IP_VERIFY_RULE =
+            RateLimitRule.slidingWindow("captcha-verify", MAX_VERIFY_PER_IP, IP_COUNT_WINDOW * 60);
     
     @Override
     public boolean isCaptchaRequired(String action) {
@@ -89,13 +97,13 @@ public class CaptchaServiceImpl implements CaptchaService {
                     return result;
                 }
                 
-                // 获取当前验证次数
-                int currentCount = getIpVerifyCount(clientIp);
-                int remainingAttempts = MAX_VERIFY_PER_IP - currentCount;
+                // 检查IP验证频率（计数与判断在一次Redis调用中原子完成）
+                RateLimitResult verifyLimit = redisRateLimiter.acquire(IP_VERIFY_RULE, RateLimitKey.IP.of(clientIp));
+                // 含本次在内的剩余验证次数
+                int remainingAttempts = verifyLimit.remaining() + 1;
                 
-                // 检查IP验证频率
-                if (!checkIpRateLimit(clientIp)) {
-                    log.warn("IP验证频率过高: {}, 已达{}次", clientIp, currentCount);
+                if (!verifyLimit.allowed()) {
+                    log.warn("IP验证频率过高: {}, 已达{}次", clientIp, verifyLimit.used());
                     blockIp(clientIp);
                     result.put("success", false);
                     result.put("token", "");
@@ -273,13 +281,13 @@ public class CaptchaServiceImpl implements CaptchaService {
                     return result;
                 }
                 
-                // 获取当前验证次数
-                int currentCount = getIpVerifyCount(clientIp);
-                int remainingAttempts = MAX_VERIFY_PER_IP - currentCount;
+                // 检查IP验证频率（计数与判断在一次Redis调用中原子完成）
+                RateLimitResult verifyLimit = redisRateLimiter.acquire(IP_VERIFY_RULE, RateLimitKey.IP.of(clientIp));
+                // 含本次在内的剩余验证次数
+                int remainingAttempts = verifyLimit.remaining() + 1;
                 
-                // 检查IP验证频率
-                if (!checkIpRateLimit(clientIp)) {
-                    log.warn("IP滑动验证频率过高: {}, 已达{}次", clientIp, currentCount);
+                if (!verifyLimit.allowed()) {
+                    log.warn("IP滑动验证频率过高: {}, 已达{}次", clientIp, verifyLimit.used());
                     blockIp(clientIp);
                     result.put("success", false);
                     result.put("message", String.format("验证次数过多（%d次/%d分钟），已被临时限制 %d 分钟", 
@@ -470,46 +478,6 @@ public class CaptchaServiceImpl implements CaptchaService {
         }
     }
     
-    /**
-     * 获取IP当前验证次数
-     */
-    private int getIpVerifyCount(String ip) {
-        try {
-            String key = IP_VERIFY_COUNT_PREFIX + ip;
-            String countStr = redisTemplate.opsForValue().get(key);
-            return countStr != null ? Integer.parseInt(countStr) : 0;
-        } catch (Exception e) {
-            log.error("获取IP验证次数失败", e);
-            return 0;
-        }
-    }
-    
-    /**
-     * 检查IP验证频率限制
-     * @return true表示在限制内，false表示超出限制
-     */
-    private boolean checkIpRateLimit(String ip) {
-        try {
-            String key = IP_VERIFY_COUNT_PREFIX + ip;
-            String countStr = redisTemplate.opsForValue().get(key);
-            
-            int count = countStr != null ? Integer.parseInt(countStr) : 0;
-            
-            if (count >= MAX_VERIFY_PER_IP) {
-                return false;
-            }
-            
-            // 增加计数
-            redisTemplate.opsForValue().increment(key);
-            redisTemplate.expire(key, IP_COUNT_WINDOW, TimeUnit.MINUTES);
-            
-            return true;
-        } catch (Exception e) {
-            log.error("检查IP频率失败", e);
-            return true; // 出错时允许通过
-        }
-    }
-    
     /**
      * 封禁IP
      */
@@ -862,15 +830,14 @@ public class CaptchaServiceImpl implements CaptchaService {
     public boolean unblockIp(String ip) {
         try {
             String blockKey = IP_BLOCK_PREFIX + ip;
-            String countKey = IP_VERIFY_COUNT_PREFIX + ip;
             
             // 删除封禁记录
             Boolean blockDeleted = redisTemplate.delete(blockKey);
             // 删除计数记录
-            Boolean countDeleted = redisTemplate.delete(countKey);
+            redisRateLimiter.reset(IP_VERIFY_RULE, RateLimitKey.IP.of(ip));
             
             if (Boolean.TRUE.equals(blockDeleted)) {
-                log.info("IP封禁已解除: {}, 计数记录也已清除: {}", ip, countDeleted);
+                log.info("IP封禁已解除: {}, 计数记录也已清除", ip);
                 return true;
             } else {
                 log.info("IP未被封禁: {}", ip);
@@ -917,9 +884,7 @@ public class CaptchaServiceImpl implements CaptchaService {
                         ipInfo.put("remainingMinutes", (ttlSeconds + 59) / 60); // 向上取整
                         
                         // 获取验证失败次数（如果还在计数窗口内）
-                        String countKey = IP_VERIFY_COUNT_PREFIX + ip;
-                        String countStr = redisTemplate.opsForValue().get(countKey);
-                        int failCount = countStr != null ? Integer.parseInt(countStr) : 0;
+                        int failCount = redisRateLimiter.peek(IP_VERIFY_RULE, RateLimitKey.IP.of(ip)).used();
                         ipInfo.put("failCount", failCount);
                         
                         blockedList.add(ipInfo);
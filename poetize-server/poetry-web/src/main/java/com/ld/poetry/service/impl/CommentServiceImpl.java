@@ -124,6 +124,15 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
 
         save(comment);
 
+        // 离线库无法解析的IP在远程解析完成后回填归属地
+        Integer commentId = comment.getId();
+        locationService.updateWhenResolved(clientIp, location, resolved -> {
+            lambdaUpdate().eq(Comment::getId, commentId)
+                    .set(Comment::getLocation, resolved)
+                    .update();
+            cacheService.evictCommentRelatedCache(commentVO.getSource(), commentVO.getType());
+        });
+
         try {
             mailSendUtil.sendCommentMail(commentVO, one, this);
         } catch (Exception e) {
@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapp
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.ld.poetry.config.PoetryResult;
+import com.ld.poetry.config.StatelessTokenPolicy;
 import com.ld.poetry.constants.CacheConstants;
 import com.ld.poetry.constants.CommonConst;
 import com.ld.poetry.dao.UserMapper;
@@ -20,6 +21,7 @@ import com.ld.poetry.im.http.dao.ImChatUserFriendMapper;
 import com.ld.poetry.im.http.entity.ImChatGroupUser;
 import com.ld.poetry.im.http.entity.ImChatUserFriend;
 import com.ld.poetry.im.websocket.ImConfigConst;
+import com.ld.poetry.im.websocket.ImClusterRouter;
 import com.ld.poetry.im.websocket.TioUtil;
 import com.ld.poetry.im.websocket.TioWebsocketStarter;
 import com.ld.poetry.service.CacheService;
@@ -31,6 +33,9 @@ import com.ld.poetry.service.UserService;
 import com.ld.poetry.service.WeiYanService;
 import com.ld.poetry.utils.*;
 import com.ld.poetry.utils.mail.MailUtil;
+import com.ld.poetry.utils.ratelimit.RateLimitResult;
+import com.ld.poetry.utils.ratelimit.RateLimitRule;
+import com.ld.poetry.utils.ratelimit.RedisRateLimiter;
 import com.ld.poetry.vo.BaseRequestVO;
 import com.ld.poetry.vo.UserVO;
 import lombok.extern.slf4j.Slf4j;
@@ -39,7 +44,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
-import org.tio.core.Tio;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -66,6 +70,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Autowired
     private WeiYanService weiYanService;
 
+    @Autowired
+    private ImClusterRouter imClusterRouter;
+
     @Autowired
     private ImChatGroupUserMapper imChatGroupUserMapper;
 
@@ -84,6 +91,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private StatelessTokenPolicy statelessTokenPolicy;
+
     @Autowired
     private SysConfigService sysConfigService;
 
@@ -97,6 +107,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Autowired
     private PasswordUpgradeService passwordUpgradeService;
 
+    @Autowired
+    private RedisRateLimiter redisRateLimiter;
+
+    /**
+     * 登录失败次数：1小时内达到上限后锁定账号
+     */
+    private static final RateLimitRule LOGIN_FAILURE_RULE =
+            RateLimitRule.slidingWindow("login-failure", CommonConst.MAX_LOGIN_ATTEMPTS, 3600);
+
     /**
      * 检查IP是否在管理员IP白名单中
      * @param ip 客户端IP
@@ -159,27 +178,22 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
      * @return 当前尝试次数
      */
     private int recordFailedLoginAttempt(String account) {
-        try {
-            String attemptKey = CacheConstants.buildLoginAttemptKey(account);
-            Object attemptsObj = cacheService.get(attemptKey);
-            Integer attempts = attemptsObj != null ? (Integer) attemptsObj : 0;
-            attempts++;
+        // 计数与判断在一次Redis调用中原子完成，Redis不可用时返回0次
+        RateLimitResult result = redisRateLimiter.acquire(LOGIN_FAILURE_RULE, account);
+        int attempts = result.used();
 
-            // 设置失败尝试记录，过期时间1小时
-            cacheService.set(attemptKey, attempts, 3600);
-
-            // 如果失败次数超过阈值，锁定账号
-            if (attempts >= CommonConst.MAX_LOGIN_ATTEMPTS) {
+        // 如果失败次数超过阈值，锁定账号
+        if (!result.allowed() || result.remaining() == 0) {
+            try {
                 String lockKey = CacheConstants.CACHE_PREFIX + "login:lock:" + account;
                 cacheService.set(lockKey, true, CommonConst.LOGIN_LOCKOUT_TIME);
                 log.warn("账号 {} 因多次登录失败被锁定 {} 秒", account, CommonConst.LOGIN_LOCKOUT_TIME);
+            } catch (Exception e) {
+                log.error("锁定账号时发生错误: account={}", account, e);
             }
-
-            return attempts;
-        } catch (Exception e) {
-            log.error("记录登录失败尝试时发生错误: account={}", account, e);
-            return 0;
         }
+
+        return attempts;
     }
 
     /**
@@ -187,12 +201,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
      * @param account 账号
      */
     private void clearFailedLoginAttempts(String account) {
-        try {
-            String attemptKey = CacheConstants.buildLoginAttemptKey(account);
-            cacheService.deleteKey(attemptKey);
-        } catch (Exception e) {
-            log.error("清除登录失败尝试记录失败: {}", account, e);
-        }
+        redisRateLimiter.reset(LOGIN_FAILURE_RULE, account);
     }
 
     @Override
@@ -316,7 +325,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
         // 根据用户实际权限生成对应的token（而不是依赖前端传递的isAdmin参数）
         if (isActualAdmin && !StringUtils.hasText(adminToken)) {
-            adminToken = SecureTokenGenerator.generateAdminToken(one.getId());
+            adminToken = SecureTokenGenerator.generateAdminToken(one.getId(), statelessTokenPolicy.isEnabled());
 
             // 使用Redis缓存管理token
             cacheService.cacheUserSession(adminToken, one.getId());
@@ -330,7 +339,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             // 保持UserCacheManager兼容性
             userCacheManager.cacheUserByToken(adminToken, one);
         } else if (!isActualAdmin && !StringUtils.hasText(userToken)) {
-            userToken = SecureTokenGenerator.generateUserToken(one.getId());
+            userToken = SecureTokenGenerator.generateUserToken(one.getId(), statelessTokenPolicy.isEnabled());
 
             // 使用Redis缓存管理token
             cacheService.cacheUserSession(userToken, one.getId());
@@ -396,7 +405,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
                 if (token.contains(CommonConst.USER_ACCESS_TOKEN)) {
                     TioWebsocketStarter tioWebsocketStarter = TioUtil.getTio();
                     if (tioWebsocketStarter != null) {
-                        Tio.removeUser(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), "用户退出登录");
+                        imClusterRouter.removeUser(tioWebsocketStarter.getServerTioConfig(), String.valueOf(userId), "用户退出登录");
                     }
                 }
 
@@ -561,7 +570,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
         User one = lambdaQuery().eq(User::getId, u.getId()).one();
 
-        String userToken = SecureTokenGenerator.generateUserToken(one.getId());
+        String userToken = SecureTokenGenerator.generateUserToken(one.getId(), statelessTokenPolicy.isEnabled());
 
         // 使用Redis缓存替换PoetryCache
         cacheService.cacheUserSession(userToken, one.getId());
@@ -654,6 +663,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         
         updateById(u);
         User one = lambdaQuery().eq(User::getId, u.getId()).one();
+        cacheService.refreshUser(one);
 
         UserVO userVO = new UserVO();
         BeanUtils.copyProperties(one, userVO);
@@ -866,6 +876,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         updateById(updateUser);
 
         User one = lambdaQuery().eq(User::getId, user.getId()).one();
+        cacheService.refreshUser(one);
 
         UserVO userVO = new UserVO();
         BeanUtils.copyProperties(one, userVO);
@@ -1299,7 +1310,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             adminToken = cacheService.getAdminToken(existUser.getId());
 
             if (!StringUtils.hasText(adminToken)) {
-                adminToken = SecureTokenGenerator.generateAdminToken(existUser.getId());
+                adminToken = SecureTokenGenerator.generateAdminToken(existUser.getId(), statelessTokenPolicy.isEnabled());
 
                 // 使用Redis缓存管理管理员token
                 cacheService.cacheUserSession(adminToken, existUser.getId());
@@ -1316,7 +1327,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             userToken = cacheService.getUserToken(existUser.getId());
 
             if (!StringUtils.hasText(userToken)) {
-                userToken = SecureTokenGenerator.generateUserToken(existUser.getId());
+                userToken = SecureTokenGenerator.generateUserToken(existUser.getId(), statelessTokenPolicy.isEnabled());
 
                 // 使用Redis缓存管理用户token
                 cacheService.cacheUserSession(userToken, existUser.getId());
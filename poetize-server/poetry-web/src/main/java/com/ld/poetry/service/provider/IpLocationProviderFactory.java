@@ -21,6 +21,16 @@ import java.util.List;
 @Slf4j
 @Component
 public class IpLocationProviderFactory {
+
+    /**
+     * 无法解析时的结果
+     */
+    public static final String UNKNOWN_LOCATION = "未知";
+
+    /**
+     * IPv6地址无法解析时的占位结果
+     */
+    public static final String IPV6_LOCATION = "IPv6地址";
     
     @Autowired
     private SysConfigService sysConfigService;
@@ -85,7 +95,34 @@ public class IpLocationProviderFactory {
     }
     
     /**
-     * 使用工厂模式解析IP地理位置
+     * 获取可用的远程提供者（不含离线库，按优先级排序）
+     * @param ipAddress IP地址
+     * @return 提供者列表
+     */
+    public List<IpLocationProvider> getRemoteProviders(String ipAddress) {
+        List<IpLocationProvider> providers = getAvailableProviders(ipAddress);
+        providers.removeIf(provider -> provider.getProviderType() == IpLocationProvider.ProviderType.IP2_REGION);
+        return providers;
+    }
+    
+    /**
+     * 仅使用IP2Region离线库解析，不发起网络请求
+     * 远程解析由 RemoteLocationResolver 异步完成
+     * @param ipAddress IP地址
+     * @return 地理位置，IPv6返回"IPv6地址"，无法解析返回"未知"
+     */
+    public String resolveLocal(String ipAddress) {
+        if (isIPv6Address(ipAddress)) {
+            return IPV6_LOCATION;
+        }
+        if (ip2RegionProvider.isAvailable() && ip2RegionProvider.supportsIpType(ipAddress)) {
+            return ip2RegionProvider.resolveLocation(ipAddress);
+        }
+        return UNKNOWN_LOCATION;
+    }
+    
+    /**
+     * 使用工厂模式同步解析IP地理位置（会在当前线程调用远程服务，仅用于调试）
      * 自动选择最佳提供者，支持降级策略
      * @param ipAddress IP地址
      * @return 地理位置
@@ -153,7 +190,7 @@ public class IpLocationProviderFactory {
         }
         
         // IPv6简化处理策略
-        return "IPv6地址";
+        return IPV6_LOCATION;
     }
     
     /**
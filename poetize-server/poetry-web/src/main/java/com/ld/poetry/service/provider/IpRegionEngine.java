@@ -0,0 +1,269 @@
+package com.ld.poetry.service.provider;
+
+import com.ld.poetry.utils.cache.BoundedTtlCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import jakarta.annotation.PostConstruct;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局共享的 ip2region 离线解析引擎
+ * <p>
+ * xdb 文件以只读方式内存映射（堆外、与操作系统页缓存共享），整个应用只保留一份；
+ * 前置有界的TTL LRU缓存，查不到结果的IP也会缓存较短时间（负缓存）。
+ * 访问记录、评论归属地（经 IpLocationProviderFactory / Ip2RegionProvider）统一通过本引擎解析。
+ * </p>
+ * <p>
+ * ip2region 2.x 的 Searcher 只接受 byte[] 或文件句柄，因此这里直接按 xdb 格式在映射缓冲区上做查找：
+ * 256字节文件头，随后是 256*256 个向量索引（起止指针各4字节），再是每条14字节的段索引
+ * （起始IP、结束IP各4字节，数据长度2字节，数据指针4字节），均为小端序。
+ * </p>
+ */
+@Slf4j
+@Component
+public class IpRegionEngine {
+
+    private static final int HEADER_INFO_LENGTH = 256;
+    private static final int VECTOR_INDEX_COLS = 256;
+    private static final int VECTOR_INDEX_SIZE = 8;
+    private static final int SEGMENT_INDEX_SIZE = 14;
+
+    /**
+     * 映射缓冲区，只使用绝对位置读取，可被多个线程并发访问
+     */
+    private MappedByteBuffer buffer;
+
+    private BoundedTtlCache<String, IpRegion> cache;
+
+    private Timer lookupTimer;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 外部 xdb 文件路径，为空时将 classpath 中的 ip2region.xdb 解压到临时目录后映射
+     */
+    @Value("${poetize.ip2region.db-path:}")
+    private String dbPath;
+
+    @Value("${poetize.ip2region.cache-size:20000}")
+    private int cacheSize;
+
+    @Value("${poetize.ip2region.cache-ttl-seconds:86400}")
+    private long cacheTtlSeconds;
+
+    @Value("${poetize.ip2region.negative-ttl-seconds:600}")
+    private long negativeTtlSeconds;
+
+    @PostConstruct
+    public void init() {
+        cache = new BoundedTtlCache<>(cacheSize, cacheTtlSeconds, negativeTtlSeconds, region -> region == IpRegion.UNKNOWN);
+        try {
+            Path xdb = resolveDbFile();
+            try (FileChannel channel = FileChannel.open(xdb, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+                buffer = mapped;
+            }
+            log.info("IP2Region离线库已内存映射: {}, 大小: {}KB", xdb, buffer.capacity() / 1024);
+        } catch (Exception e) {
+            log.warn("IP2Region离线库初始化失败: {}", e.getMessage());
+            buffer = null;
+        }
+        registerMetrics();
+    }
+
+    private Path resolveDbFile() throws Exception {
+        if (StringUtils.hasText(dbPath)) {
+            return Paths.get(dbPath);
+        }
+        Path target = Paths.get(System.getProperty("java.io.tmpdir"), "poetize-ip2region.xdb");
+        ClassPathResource resource = new ClassPathResource("ip2region.xdb");
+        if (!Files.exists(target) || Files.size(target) != resource.contentLength()) {
+            Path temp = Files.createTempFile(target.getParent(), "poetize-ip2region", ".tmp");
+            try (InputStream in = resource.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return target;
+    }
+
+    private void registerMetrics() {
+        if (meterRegistry == null) {
+            return;
+        }
+        lookupTimer = Timer.builder("poetize.ip2region.lookup")
+                .description("ip2region 离线库查找耗时（不含缓存命中）")
+                .register(meterRegistry);
+        FunctionCounter.builder("poetize.ip2region.cache.hits", cache, BoundedTtlCache::getHitCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("poetize.ip2region.cache.misses", cache, BoundedTtlCache::getMissCount)
+                .register(meterRegistry);
+        Gauge.builder("poetize.ip2region.cache.hit.rate", cache, BoundedTtlCache::getHitRate)
+                .register(meterRegistry);
+        Gauge.builder("poetize.ip2region.cache.size", cache, BoundedTtlCache::size)
+                .register(meterRegistry);
+    }
+
+    public boolean isAvailable() {
+        return buffer != null;
+    }
+
+    /**
+     * 解析IPv4地址，无法解析时返回 {@link IpRegion#UNKNOWN}
+     */
+    public IpRegion lookup(String ip) {
+        if (buffer == null || !StringUtils.hasText(ip)) {
+            return IpRegion.UNKNOWN;
+        }
+        return cache.get(ip.trim(), this::search);
+    }
+
+    private IpRegion search(String ip) {
+        long start = System.nanoTime();
+        try {
+            long ipValue = parseIpv4(ip);
+            if (ipValue < 0) {
+                return IpRegion.UNKNOWN;
+            }
+            String region = search(buffer, ipValue);
+            return StringUtils.hasText(region) ? IpRegion.parse(region) : IpRegion.UNKNOWN;
+        } catch (Exception e) {
+            log.warn("IP2Region离线库解析IP失败: {}, 错误: {}", ip, e.getMessage());
+            return IpRegion.UNKNOWN;
+        } finally {
+            if (lookupTimer != null) {
+                lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * 在 xdb 缓冲区中查找IP所在段的区域信息
+     */
+    static String search(java.nio.ByteBuffer xdb, long ip) {
+        int il0 = (int) ((ip >> 24) & 0xFF);
+        int il1 = (int) ((ip >> 16) & 0xFF);
+        int idx = il0 * VECTOR_INDEX_COLS * VECTOR_INDEX_SIZE + il1 * VECTOR_INDEX_SIZE;
+        long sPtr = Integer.toUnsignedLong(xdb.getInt(HEADER_INFO_LENGTH + idx));
+        long ePtr = Integer.toUnsignedLong(xdb.getInt(HEADER_INFO_LENGTH + idx + 4));
+
+        int dataLen = 0;
+        long dataPtr = -1;
+        long low = 0;
+        long high = (ePtr - sPtr) / SEGMENT_INDEX_SIZE;
+        while (low <= high) {
+            long mid = (low + high) >> 1;
+            int p = (int) (sPtr + mid * SEGMENT_INDEX_SIZE);
+            long sip = Integer.toUnsignedLong(xdb.getInt(p));
+            if (ip < sip) {
+                high = mid - 1;
+                continue;
+            }
+            long eip = Integer.toUnsignedLong(xdb.getInt(p + 4));
+            if (ip > eip) {
+                low = mid + 1;
+                continue;
+            }
+            dataLen = Short.toUnsignedInt(xdb.getShort(p + 8));
+            dataPtr = Integer.toUnsignedLong(xdb.getInt(p + 10));
+            break;
+        }
+        if (dataPtr < 0 || dataLen == 0) {
+            return null;
+        }
+        byte[] data = new byte[dataLen];
+        xdb.get((int) dataPtr, data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将点分十进制IPv4转换为无符号整数，格式不合法返回-1
+     */
+    static long parseIpv4(String ip) {
+        long value = 0;
+        int part = 0;
+        int dots = 0;
+        int digits = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || ++dots > 3) {
+                    return -1;
+                }
+                value = (value << 8) | part;
+                part = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+                if (++digits > 3 || part > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return -1;
+        }
+        return (value << 8) | part;
+    }
+
+    public BoundedTtlCache<String, IpRegion> getCache() {
+        return cache;
+    }
+
+    /**
+     * ip2region 区域信息，字段为"0"时视为空
+     *
+     * @param nation   国家
+     * @param area     区域
+     * @param province 省份
+     * @param city     城市
+     * @param isp      运营商
+     */
+    public record IpRegion(String nation, String area, String province, String city, String isp) {
+
+        public static final IpRegion UNKNOWN = new IpRegion(null, null, null, null, null);
+
+        /**
+         * 解析"国家|区域|省份|城市|ISP"格式的查找结果
+         */
+        static IpRegion parse(String region) {
+            String[] parts = region.split("\\|", -1);
+            return new IpRegion(part(parts, 0), part(parts, 1), part(parts, 2), part(parts, 3), part(parts, 4));
+        }
+
+        private static String part(String[] parts, int index) {
+            if (index >= parts.length) {
+                return null;
+            }
+            String value = parts[index];
+            return StringUtils.hasText(value) && !"0".equals(value) ? value : null;
+        }
+
+        public boolean isUnknown() {
+            return nation == null;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.ld.poetry.service.provider;
+
+import com.ld.poetry.utils.cache.BoundedTtlCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 远程IP地理位置异步解析器
+ * <p>
+ * 离线库无法解析（如IPv6）的IP不再在请求线程上同步调用腾讯位置服务/淘宝IP服务，而是进入待解析队列：
+ * 后台线程按批次窗口收集IP（同一IP只解析一次），每个提供者各自限流、熔断，单次调用有超时上限。
+ * 调用方通过返回的 CompletableFuture 在远程结果到达后回填缓存和已保存的记录。
+ * </p>
+ * <p>
+ * 两个远程接口都只支持单IP查询，批次内的IP在虚拟线程上并发请求，由各提供者的令牌桶控制实际速率；
+ * 被限流的IP推迟到下一轮，超过最大尝试次数或所有提供者都失败时结果为"未知"，并在一段时间内不再重试。
+ * </p>
+ */
+@Slf4j
+@Component
+public class RemoteLocationResolver {
+
+    @Autowired
+    private IpLocationProviderFactory providerFactory;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 每批最多解析的IP数
+     */
+    @Value("${poetize.ip-location.remote.batch-size:20}")
+    private int batchSize = 20;
+
+    /**
+     * 批次窗口（毫秒），窗口内到达的IP合并为一批
+     */
+    @Value("${poetize.ip-location.remote.batch-window-ms:200}")
+    private long batchWindowMs = 200;
+
+    /**
+     * 单次远程调用超时（毫秒）
+     */
+    @Value("${poetize.ip-location.remote.timeout-ms:3000}")
+    private long timeoutMs = 3000;
+
+    /**
+     * 待解析IP上限，超过时直接返回"未知"
+     */
+    @Value("${poetize.ip-location.remote.max-pending:1000}")
+    private int maxPending = 1000;
+
+    /**
+     * 被限流时的最大尝试轮数
+     */
+    @Value("${poetize.ip-location.remote.max-attempts:10}")
+    private int maxAttempts = 10;
+
+    @Value("${poetize.ip-location.remote.permits-per-second:1}")
+    private double permitsPerSecond = 1;
+
+    @Value("${poetize.ip-location.remote.burst:1}")
+    private int burst = 1;
+
+    @Value("${poetize.ip-location.remote.failure-threshold:5}")
+    private int failureThreshold = 5;
+
+    @Value("${poetize.ip-location.remote.open-seconds:60}")
+    private long openSeconds = 60;
+
+    /**
+     * 远程解析失败的IP在此期间内不再重试（秒）
+     */
+    @Value("${poetize.ip-location.remote.failure-ttl-seconds:600}")
+    private long failureTtlSeconds = 600;
+
+    /**
+     * 离线库能解析时是否仍使用优先级更高的远程提供者修正结果
+     */
+    @Value("${poetize.ip-location.remote.prefer-remote:false}")
+    private boolean preferRemote;
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    private final LinkedBlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+
+    private final ConcurrentHashMap<IpLocationProvider.ProviderType, RemoteProviderGuard> guards = new ConcurrentHashMap<>();
+
+    private BoundedTtlCache<String, Boolean> recentFailures;
+
+    private ExecutorService executor;
+
+    private Thread worker;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        recentFailures = new BoundedTtlCache<>(Math.max(maxPending, 1000), failureTtlSeconds, failureTtlSeconds, null);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        running = true;
+        worker = Thread.ofVirtual().name("ip-location-resolver").start(this::runLoop);
+        if (meterRegistry != null) {
+            Gauge.builder("poetize.ip.location.remote.pending", pending, Map::size)
+                    .description("等待远程解析的IP数")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        pending.forEach((ip, future) -> future.complete(IpLocationProviderFactory.UNKNOWN_LOCATION));
+        pending.clear();
+        queue.clear();
+    }
+
+    /**
+     * 离线库结果为 localLocation 时是否需要远程解析
+     */
+    public boolean shouldResolve(String ipAddress, String localLocation) {
+        if (!running) {
+            return false;
+        }
+        if (isResolved(localLocation) && !preferRemote) {
+            return false;
+        }
+        return !remoteProviders(ipAddress).isEmpty();
+    }
+
+    /**
+     * 提交异步解析，同一IP在解析完成前共享同一个结果
+     *
+     * @return 远程解析结果，失败时为"未知"
+     */
+    public CompletableFuture<String> resolveAsync(String ipAddress) {
+        if (!running || !StringUtils.hasText(ipAddress) || recentFailures.get(ipAddress) != null) {
+            return CompletableFuture.completedFuture(IpLocationProviderFactory.UNKNOWN_LOCATION);
+        }
+        CompletableFuture<String> existing = pending.get(ipAddress);
+        if (existing != null) {
+            return existing;
+        }
+        if (pending.size() >= maxPending) {
+            log.warn("远程IP解析队列已满（{}），跳过IP: {}", maxPending, ipAddress);
+            return CompletableFuture.completedFuture(IpLocationProviderFactory.UNKNOWN_LOCATION);
+        }
+        boolean[] created = {false};
+        CompletableFuture<String> future = pending.computeIfAbsent(ipAddress, key -> {
+            created[0] = true;
+            return new CompletableFuture<>();
+        });
+        if (created[0]) {
+            queue.offer(new Task(ipAddress, 0));
+        }
+        return future;
+    }
+
+    /**
+     * 获取正在解析的IP的结果，没有进行中的解析时返回null
+     */
+    public CompletableFuture<String> getPending(String ipAddress) {
+        return StringUtils.hasText(ipAddress) ? pending.get(ipAddress) : null;
+    }
+
+    /**
+     * 当前可用于该IP的远程提供者（按优先级排序）
+     */
+    protected List<IpLocationProvider> remoteProviders(String ipAddress) {
+        return providerFactory.getRemoteProviders(ipAddress);
+    }
+
+    private void runLoop() {
+        List<Task> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Task first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+                while (batch.size() < batchSize) {
+                    Task next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (processBatch(batch)) {
+                    // 有IP因限流推迟时，等待令牌恢复后再处理下一轮
+                    Thread.sleep(Math.max(batchWindowMs, (long) (1000 / Math.max(permitsPerSecond, 0.001))));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("远程IP解析批次处理失败", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 并发解析一批IP
+     *
+     * @return 是否有IP因限流被推迟
+     */
+    private boolean processBatch(List<Task> batch) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            results.add(executor.submit(() -> resolveRemote(task.ip(), task.attempts() + 1 < maxAttempts)));
+        }
+        boolean deferred = false;
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = batch.get(i);
+            String result;
+            try {
+                result = results.get(i).get();
+            } catch (Exception e) {
+                log.warn("远程解析IP {} 失败: {}", task.ip(), e.getMessage());
+                result = IpLocationProviderFactory.UNKNOWN_LOCATION;
+            }
+            if (result == null) {
+                deferred = true;
+                queue.offer(new Task(task.ip(), task.attempts() + 1));
+            } else {
+                complete(task.ip(), result);
+            }
+        }
+        return deferred;
+    }
+
+    /**
+     * 按优先级依次尝试远程提供者
+     *
+     * @param canDefer 所有可用提供者都被限流时是否推迟到下一轮
+     * @return 解析结果；推迟时返回null
+     */
+    String resolveRemote(String ipAddress, boolean canDefer) throws InterruptedException {
+        boolean rateLimited = false;
+        for (IpLocationProvider provider : remoteProviders(ipAddress)) {
+            RemoteProviderGuard guard = guardFor(provider.getProviderType());
+            RemoteProviderGuard.Permit permit = guard.tryAcquire();
+            if (permit != RemoteProviderGuard.Permit.GRANTED) {
+                rateLimited |= permit == RemoteProviderGuard.Permit.RATE_LIMITED;
+                count(provider, permit == RemoteProviderGuard.Permit.RATE_LIMITED ? "rate_limited" : "circuit_open");
+                continue;
+            }
+
+            String result = callWithTimeout(provider, ipAddress);
+            if (isResolved(result)) {
+                guard.onSuccess();
+                count(provider, "success");
+                log.info("IP地址 {} 远程解析成功，提供者: {}，结果: {}", ipAddress, provider.getProviderName(), result);
+                return result;
+            }
+            guard.onFailure();
+            count(provider, "failure");
+        }
+        return rateLimited && canDefer ? null : IpLocationProviderFactory.UNKNOWN_LOCATION;
+    }
+
+    private String callWithTimeout(IpLocationProvider provider, String ipAddress) throws InterruptedException {
+        Future<String> call = executor.submit(() -> provider.resolveLocation(ipAddress));
+        try {
+            return call.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            log.warn("提供者 {} 解析IP {} 超时（{}ms）", provider.getProviderName(), ipAddress, timeoutMs);
+        } catch (Exception e) {
+            log.warn("提供者 {} 解析IP {} 时发生异常: {}", provider.getProviderName(), ipAddress, e.getMessage());
+        }
+        return null;
+    }
+
+    private void complete(String ipAddress, String result) {
+        if (!isResolved(result)) {
+            recentFailures.put(ipAddress, Boolean.TRUE);
+        }
+        CompletableFuture<String> future = pending.get(ipAddress);
+        if (future != null) {
+            // 先完成再移除：看不到进行中解析的调用方，可以确定缓存已写入结果
+            future.complete(result);
+            pending.remove(ipAddress, future);
+        }
+    }
+
+    private RemoteProviderGuard guardFor(IpLocationProvider.ProviderType type) {
+        return guards.computeIfAbsent(type, key ->
+                new RemoteProviderGuard(permitsPerSecond, burst, failureThreshold, openSeconds));
+    }
+
+    private void count(IpLocationProvider provider, String outcome) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("poetize.ip.location.remote.calls",
+                    "provider", provider.getProviderType().name(), "outcome", outcome).increment();
+        }
+    }
+
+    /**
+     * 远程解析状态（用于调试和监控）
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("pending", pending.size());
+        guards.forEach((type, guard) -> status.put(type.getName(), guard.getState().name()));
+        return status;
+    }
+
+    /**
+     * 是否为有效的解析结果（非"未知"或IPv6占位）
+     */
+    public static boolean isResolved(String location) {
+        return StringUtils.hasText(location)
+                && !IpLocationProviderFactory.UNKNOWN_LOCATION.equals(location)
+                && !IpLocationProviderFactory.IPV6_LOCATION.equals(location);
+    }
+
+    private record Task(String ip, int attempts) {
+    }
+}
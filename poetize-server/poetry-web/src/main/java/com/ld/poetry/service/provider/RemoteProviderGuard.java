@@ -0,0 +1,131 @@
+package com.ld.poetry.service.provider;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 远程IP解析提供者的限流与熔断状态
+ * <p>
+ * 令牌桶控制调用速率；连续失败（超时、异常或返回"未知"）达到阈值后熔断，
+ * 熔断期满后只放行一次试探调用，成功则恢复，失败则继续熔断。
+ * </p>
+ */
+public class RemoteProviderGuard {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 申请调用许可的结果
+     */
+    public enum Permit {
+        GRANTED, RATE_LIMITED, CIRCUIT_OPEN
+    }
+
+    private final double permitsPerSecond;
+    private final double burst;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private double tokens;
+    private long lastRefill;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * @param permitsPerSecond 每秒允许的调用次数
+     * @param burst            令牌桶容量
+     * @param failureThreshold 触发熔断的连续失败次数
+     * @param openSeconds      熔断持续时间（秒）
+     */
+    public RemoteProviderGuard(double permitsPerSecond, int burst, int failureThreshold, long openSeconds) {
+        this(permitsPerSecond, burst, failureThreshold, openSeconds, System::nanoTime);
+    }
+
+    RemoteProviderGuard(double permitsPerSecond, int burst, int failureThreshold, long openSeconds, LongSupplier clock) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openSeconds * 1_000_000_000L;
+        this.clock = clock;
+        this.tokens = this.burst;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * 申请一次调用许可，获得许可时消耗一个令牌；半开状态下只放行一次试探调用
+     */
+    public Permit tryAcquire() {
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (now - openedAt < openNanos) {
+                    return Permit.CIRCUIT_OPEN;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (state == State.HALF_OPEN && trialInFlight) {
+                return Permit.CIRCUIT_OPEN;
+            }
+
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1_000_000_000D * permitsPerSecond);
+            lastRefill = now;
+            if (tokens < 1D) {
+                return Permit.RATE_LIMITED;
+            }
+            tokens -= 1D;
+            if (state == State.HALF_OPEN) {
+                trialInFlight = true;
+            }
+            return Permit.GRANTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        lock.lock();
+        try {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            state = State.CLOSED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onFailure() {
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            trialInFlight = false;
+            if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = now;
+                consecutiveFailures = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,16 +1,12 @@
 package com.ld.poetry.utils;
 
+import com.ld.poetry.utils.crypto.AesGcmEngine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
-import javax.crypto.spec.GCMParameterSpec;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-import java.security.SecureRandom;
 
 /**
  * AES加密工具类
@@ -30,10 +26,10 @@ public class AESCryptoUtil {
     @Value("${poetize.aes.key:sarasarasarasara}")
     private String secretKey;
 
-    private static final String ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
-    private static final int GCM_IV_LENGTH = 12; // GCM模式推荐12字节IV
-    private static final int GCM_TAG_LENGTH = 128; // 128位认证标签
+    /**
+     * 按密钥初始化的加解密引擎，首次使用时创建
+     */
+    private volatile AesGcmEngine engine;
 
     /**
      * 加密数据
@@ -47,31 +43,7 @@ public class AESCryptoUtil {
         }
 
         try {
-            // 确保密钥长度为16字节（128位）
-            byte[] keyBytes = get16ByteKey(secretKey);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(keyBytes, ALGORITHM);
-
-            // 生成随机IV
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            SecureRandom random = new SecureRandom();
-            random.nextBytes(iv);
-
-            // 初始化GCM参数
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-
-            // 加密
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, gcmSpec);
-
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-
-            // 组合IV和密文
-            byte[] combined = new byte[iv.length + encryptedBytes.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encryptedBytes, 0, combined, iv.length, encryptedBytes.length);
-
-            return Base64.getEncoder().encodeToString(combined);
-
+            return engine().encryptToBase64(data);
         } catch (Exception e) {
             log.error("数据加密失败: {}", e.getMessage(), e);
             return null;
@@ -81,7 +53,7 @@ public class AESCryptoUtil {
     /**
      * 解密数据
      *
-     * @param encryptedData Base64编码的加密数据（格式：IV+密文）
+     * @param encryptedData Base64编码的加密数据（格式：IV+密文），支持URL安全编码
      * @return 解密后的原始数据，解密失败返回null
      */
     public String decrypt(String encryptedData) {
@@ -90,41 +62,7 @@ public class AESCryptoUtil {
         }
 
         try {
-            // 确保密钥长度为16字节（128位）
-            byte[] keyBytes = get16ByteKey(secretKey);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(keyBytes, ALGORITHM);
-
-            // 解码Base64，支持URL安全编码（替换'-'和'_'为标准Base64字符）
-            String urlSafeEncoded = encryptedData.replace('-', '+').replace('_', '/');
-            // 确保填充正确
-            int padding = urlSafeEncoded.length() % 4;
-            if (padding > 0) {
-                urlSafeEncoded += "===".substring(0, 4 - padding);
-            }
-            byte[] combined = Base64.getDecoder().decode(urlSafeEncoded);
-
-            // 验证数据长度
-            if (combined.length < GCM_IV_LENGTH) {
-                log.error("数据长度不足，无法解密: 长度={}", combined.length);
-                return null;
-            }
-
-            // 提取IV（前12字节）
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            System.arraycopy(combined, 0, iv, 0, GCM_IV_LENGTH);
-
-            // 提取密文
-            byte[] ciphertext = new byte[combined.length - GCM_IV_LENGTH];
-            System.arraycopy(combined, GCM_IV_LENGTH, ciphertext, 0, ciphertext.length);
-
-            // 解密
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, gcmSpec);
-
-            byte[] decryptedBytes = cipher.doFinal(ciphertext);
-            return new String(decryptedBytes, StandardCharsets.UTF_8);
-
+            return engine().decryptFromBase64(encryptedData);
         } catch (Exception e) {
             log.error("数据解密失败: {}", e.getMessage(), e);
             return null;
@@ -155,6 +93,16 @@ public class AESCryptoUtil {
         return prefix + "*".repeat(maskedLength) + suffix;
     }
 
+    private AesGcmEngine engine() {
+        AesGcmEngine current = engine;
+        if (current == null) {
+            // 确保密钥长度为16字节（128位）；并发首次调用时可能重复创建，结果相同
+            current = new AesGcmEngine(get16ByteKey(secretKey));
+            engine = current;
+        }
+        return current;
+    }
+
     /**
      * 将密钥转换为16字节（128位）
      * 如果密钥不足16位，则补齐；超过16位则截取
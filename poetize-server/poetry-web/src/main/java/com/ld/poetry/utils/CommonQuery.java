@@ -7,18 +7,15 @@ import com.ld.poetry.dao.*;
 import com.ld.poetry.entity.*;
 import com.ld.poetry.service.CacheService;
 import com.ld.poetry.service.UserService;
+import com.ld.poetry.service.provider.IpRegionEngine;
 import com.ld.poetry.vo.FamilyVO;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
-import org.lionsoul.ip2region.xdb.Searcher;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
-import jakarta.annotation.PostConstruct;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.regex.Pattern;
@@ -58,15 +55,8 @@ public class CommonQuery {
     @Autowired
     private LockManager lockManager;
 
-    private Searcher searcher;
-
-    @PostConstruct
-    public void init() {
-        try {
-            searcher = Searcher.newWithBuffer(IOUtils.toByteArray(new ClassPathResource("ip2region.xdb").getInputStream()));
-        } catch (Exception e) {
-        }
-    }
+    @Autowired
+    private IpRegionEngine ipRegionEngine;
 
     public void saveHistory(String ip) {
         try {
@@ -83,29 +73,11 @@ public class CommonQuery {
             lockManager.executeWithLock("saveHistory:" + ipUser, () -> {
                 // log.info("[saveHistory] 记录访问到Redis: {}", ipUser);
                 
-                // 解析IP地理位置信息
-                String nation = null, province = null, city = null;
-                if (searcher != null) {
-                    try {
-                        String search = searcher.search(ip);
-                        String[] region = search.split("\\|");
-                        if (!"0".equals(region[0])) {
-                            nation = region[0];
-                        }
-                        if (region.length > 2 && !"0".equals(region[2])) {
-                            province = region[2];
-                        }
-                        if (region.length > 3 && !"0".equals(region[3])) {
-                            city = region[3];
-                        }
-                    } catch (Exception e) {
-                        log.warn("[saveHistory] IP地理位置解析失败: {}, 错误: {}", ip, e.getMessage());
-                    }
-                } else {
-                }
+                // 解析IP地理位置信息（共享的内存映射离线库 + 有界缓存）
+                IpRegionEngine.IpRegion region = ipRegionEngine.lookup(ip);
                 
                 // 记录访问信息到Redis（不立即写数据库）
-                cacheService.recordVisitToRedis(ip, userId, nation, province, city);
+                cacheService.recordVisitToRedis(ip, userId, region.nation(), region.province(), region.city());
                 
                 // log.info("[saveHistory] 访问记录已保存到Redis缓存，等待定时同步到数据库: {}", ipUser);
             });
@@ -221,6 +193,30 @@ public class CommonQuery {
         return null;
     }
 
+    /**
+     * 批量获取用户：一次Redis批量读取，未命中的用户一次查库后回填缓存
+     * @return 用户ID到用户的映射，不存在的用户不在映射中
+     */
+    public Map<Integer, User> getUsers(Collection<Integer> userIds) {
+        Map<Integer, User> users = cacheService.getCachedUsers(userIds);
+        if (userIds == null) {
+            return users;
+        }
+        Set<Integer> missing = new HashSet<>();
+        for (Integer userId : userIds) {
+            if (userId != null && !users.containsKey(userId)) {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (User u : userService.listByIds(missing)) {
+                cacheService.cacheUser(u);
+                users.put(u.getId(), u);
+            }
+        }
+        return users;
+    }
+
     public List<User> getAdmire() {
         // 使用Redis缓存替换PoetryCache
         String cacheKey = CacheConstants.CACHE_PREFIX + "admire:list";
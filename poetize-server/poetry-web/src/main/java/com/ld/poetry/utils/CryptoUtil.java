@@ -1,50 +1,31 @@
 package com.ld.poetry.utils;
 
 import com.ld.poetry.constants.CommonConst;
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
-import javax.crypto.spec.GCMParameterSpec;
+import com.ld.poetry.utils.crypto.AesGcmEngine;
+
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * 加密解密工具类
+ * 基于 {@link AesGcmEngine} 复用已初始化的 Cipher，密文格式不变
  */
 public class CryptoUtil {
     
     // 使用统一密钥，从CommonConst获取
     private static final String KEY = CommonConst.CRYPOTJS_KEY;
+
+    private static final AesGcmEngine ENGINE = new AesGcmEngine(KEY.getBytes(StandardCharsets.UTF_8));
     
     /**
      * AES加密 - 使用GCM模式（更安全）
      * @param data 待加密的数据
-     * @return 加密后的字符串（格式：IV:密文）
+     * @return 加密后的字符串（格式：Base64(IV + 密文)）
      */
     public static String encrypt(String data) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES");
-
-            // 使用GCM模式，提供认证加密
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            // 生成随机IV
-            byte[] iv = new byte[12]; // GCM模式推荐12字节的IV
-            java.security.SecureRandom random = new java.security.SecureRandom();
-            random.nextBytes(iv);
-
-            // 初始化GCM参数，认证标签长度为128位
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, gcmSpec);
-
-            byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-
-            // 将IV和密文组合在一起，IV放在前面
-            byte[] combined = new byte[iv.length + encrypted.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
-
-            return Base64.getEncoder().encodeToString(combined);
+            return ENGINE.encryptToBase64(data);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -53,37 +34,12 @@ public class CryptoUtil {
     
     /**
      * AES解密 - 使用GCM模式（更安全）
-     * @param encryptedData 加密的数据（格式：IV:密文）
+     * @param encryptedData 加密的数据（格式：Base64(IV + 密文)，支持URL安全编码）
      * @return 解密后的字符串
      */
     public static String decrypt(String encryptedData) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "AES");
-
-            // 解码Base64，支持URL安全编码（替换'-'和'_'为标准Base64字符）
-            String urlSafeEncoded = encryptedData.replace('-', '+').replace('_', '/');
-            // 确保填充正确
-            int padding = urlSafeEncoded.length() % 4;
-            if (padding > 0) {
-                urlSafeEncoded += "===".substring(0, 4 - padding);
-            }
-            byte[] decoded = Base64.getDecoder().decode(urlSafeEncoded);
-
-            // 提取IV（前12字节）
-            byte[] iv = new byte[12];
-            System.arraycopy(decoded, 0, iv, 0, iv.length);
-
-            // 提取密文
-            byte[] encrypted = new byte[decoded.length - iv.length];
-            System.arraycopy(decoded, iv.length, encrypted, 0, encrypted.length);
-
-            // 使用GCM模式解密
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec, gcmSpec);
-
-            byte[] decrypted = cipher.doFinal(encrypted);
-            return new String(decrypted, StandardCharsets.UTF_8);
+            return ENGINE.decryptFromBase64(encryptedData);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -1,9 +1,18 @@
 package com.ld.poetry.utils;
 
+import com.ld.poetry.utils.lock.KeyedLocks;
+import com.ld.poetry.utils.lock.LockStripes;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -13,208 +22,232 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * 锁管理工具类
  * 用于替代 String.intern() 的不安全用法，避免内存泄漏
  * 支持读写锁，优化读多写少场景的并发性能
+ * <p>
+ * 互斥锁（getLock/executeWithLock）按key引用计数，最后一个持有者释放后即回收，适用于IP、用户ID等无界key；
+ * 分段锁（executeWithStripedLock）与读写锁使用固定数量的锁，不同key可能共用一把锁，适用于能容忍伪共享的场景。
+ * 两者内存占用都有上限，全部基于 java.util.concurrent 锁，虚拟线程友好。
+ * </p>
  */
 @Slf4j
 @Component
 public class LockManager {
-    
+
     /**
-     * 存储普通锁对象的Map
-     * key: 锁的标识符
-     * value: 对应的锁对象
+     * 分段锁数量
      */
-    private final ConcurrentHashMap<String, Lock> lockMap = new ConcurrentHashMap<>();
-    
+    private static final int STRIPES = 256;
+
     /**
-     * 存储读写锁对象的Map
-     * key: 锁的标识符
-     * value: 对应的读写锁对象
+     * 读写锁分段数量（目前只用于少量缓存重建key）
      */
-    private final ConcurrentHashMap<String, ReadWriteLock> rwLockMap = new ConcurrentHashMap<>();
-    
+    private static final int READ_WRITE_STRIPES = 64;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
     /**
-     * 最大锁数量限制，防止无限增长
+     * 按key引用计数的互斥锁
      */
-    private static final int MAX_LOCKS = 10000;
-    
+    private final KeyedLocks keyedLocks = new KeyedLocks();
+
+    /**
+     * 分段互斥锁
+     */
+    private final LockStripes<Lock> lockStripes = new LockStripes<>(STRIPES, ReentrantLock::new);
+
+    /**
+     * 分段读写锁
+     */
+    private final LockStripes<ReadWriteLock> rwLockStripes = new LockStripes<>(READ_WRITE_STRIPES, ReentrantReadWriteLock::new);
+
+    /**
+     * 获取锁的次数与其中需要等待的次数
+     */
+    private final LongAdder acquisitions = new LongAdder();
+
+    private final LongAdder contended = new LongAdder();
+
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry == null) {
+            return;
+        }
+        FunctionCounter.builder("poetize.lock.acquisitions", acquisitions, LongAdder::sum)
+                .description("获取锁的次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("poetize.lock.contended", contended, LongAdder::sum)
+                .description("获取锁时已被占用、需要等待的次数")
+                .register(meterRegistry);
+        Gauge.builder("poetize.lock.keyed.active", keyedLocks, KeyedLocks::size)
+                .description("当前被持有或等待中的key数")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("poetize.lock.wait")
+                .description("锁被占用时的等待时间")
+                .register(meterRegistry);
+    }
+
     /**
      * 获取指定key对应的锁对象
-     * 如果不存在则创建，线程安全
-     * 
+     * 返回按key引用计数的锁视图，lock/unlock 须成对调用，释放后自动回收
+     *
      * @param key 锁的唯一标识符
      * @return 锁对象
      */
     public Lock getLock(String key) {
-        if (key == null || key.isEmpty()) {
-            throw new IllegalArgumentException("Lock key cannot be null or empty");
-        }
-        
-        // 检查是否超过最大锁数量
-        if (lockMap.size() >= MAX_LOCKS) {
-            log.warn("[LockManager] 锁数量达到上限 {}, 当前key: {}", MAX_LOCKS, key);
-            // 可以考虑清理一些旧的锁，或者使用LRU策略
-            // 这里暂时使用已有锁或创建新锁
-        }
-        
-        // 使用 computeIfAbsent 保证线程安全且避免重复创建
-        return lockMap.computeIfAbsent(key, k -> {
-            return new ReentrantLock();
-        });
+        checkKey(key);
+        return keyedLocks.get(key);
     }
-    
+
     /**
      * 执行带锁的操作
-     * 
+     *
      * @param key 锁的唯一标识符
      * @param action 需要在锁保护下执行的操作
      */
     public void executeWithLock(String key, Runnable action) {
-        Lock lock = getLock(key);
-        lock.lock();
-        try {
-            action.run();
-        } finally {
-            lock.unlock();
-        }
+        runLocked(getLock(key), action);
     }
-    
+
     /**
      * 执行带锁的操作并返回结果
-     * 
+     *
      * @param key 锁的唯一标识符
      * @param supplier 需要在锁保护下执行的操作
      * @param <T> 返回类型
      * @return 执行结果
      */
     public <T> T executeWithLock(String key, java.util.function.Supplier<T> supplier) {
-        Lock lock = getLock(key);
-        lock.lock();
-        try {
-            return supplier.get();
-        } finally {
-            lock.unlock();
-        }
+        return callLocked(getLock(key), supplier);
     }
-    
+
     /**
-     * 清理指定key的锁
-     * 
-     * @param key 锁的唯一标识符
+     * 执行带分段锁的操作
+     * 不同key可能共用同一把锁，仅用于能容忍额外串行化的短操作；持有分段锁时不要再获取其他分段锁，以免死锁
+     *
+     * @param key 锁的标识符
+     * @param action 需要在锁保护下执行的操作
      */
-    public void removeLock(String key) {
-        Lock removed = lockMap.remove(key);
-        if (removed != null) {
-        }
+    public void executeWithStripedLock(String key, Runnable action) {
+        checkKey(key);
+        runLocked(lockStripes.get(key), action);
+    }
+
+    /**
+     * 执行带分段锁的操作并返回结果
+     *
+     * @param key 锁的标识符
+     * @param supplier 需要在锁保护下执行的操作
+     * @param <T> 返回类型
+     * @return 执行结果
+     */
+    public <T> T executeWithStripedLock(String key, java.util.function.Supplier<T> supplier) {
+        checkKey(key);
+        return callLocked(lockStripes.get(key), supplier);
     }
-    
+
     /**
      * 获取指定key对应的读写锁对象
-     * 如果不存在则创建，线程安全
-     * 
+     * 读写锁为分段锁，不同key可能共用同一把锁
+     *
      * @param key 锁的唯一标识符
      * @return 读写锁对象
      */
     public ReadWriteLock getReadWriteLock(String key) {
-        if (key == null || key.isEmpty()) {
-            throw new IllegalArgumentException("Lock key cannot be null or empty");
-        }
-        
-        // 检查是否超过最大锁数量
-        if (rwLockMap.size() >= MAX_LOCKS) {
-            log.warn("[LockManager] 读写锁数量达到上限 {}, 当前key: {}", MAX_LOCKS, key);
-        }
-        
-        // 使用 computeIfAbsent 保证线程安全且避免重复创建
-        return rwLockMap.computeIfAbsent(key, k -> {
-            return new ReentrantReadWriteLock();
-        });
+        checkKey(key);
+        return rwLockStripes.get(key);
     }
-    
+
     /**
      * 执行带读锁的操作并返回结果
      * 适用于读多写少的场景，多个读操作可以并发执行
-     * 
+     *
      * @param key 锁的唯一标识符
      * @param supplier 需要在读锁保护下执行的操作
      * @param <T> 返回类型
      * @return 执行结果
      */
     public <T> T executeWithReadLock(String key, java.util.function.Supplier<T> supplier) {
-        ReadWriteLock rwLock = getReadWriteLock(key);
-        Lock readLock = rwLock.readLock();
-        readLock.lock();
-        try {
-            return supplier.get();
-        } finally {
-            readLock.unlock();
-        }
+        return callLocked(getReadWriteLock(key).readLock(), supplier);
     }
-    
+
     /**
      * 执行带写锁的操作并返回结果
      * 写锁是独占的，执行期间其他读写操作都会被阻塞
-     * 
+     *
      * @param key 锁的唯一标识符
      * @param supplier 需要在写锁保护下执行的操作
      * @param <T> 返回类型
      * @return 执行结果
      */
     public <T> T executeWithWriteLock(String key, java.util.function.Supplier<T> supplier) {
-        ReadWriteLock rwLock = getReadWriteLock(key);
-        Lock writeLock = rwLock.writeLock();
-        writeLock.lock();
-        try {
-            return supplier.get();
-        } finally {
-            writeLock.unlock();
-        }
+        return callLocked(getReadWriteLock(key).writeLock(), supplier);
     }
-    
+
     /**
      * 执行带写锁的操作（无返回值）
-     * 
+     *
      * @param key 锁的唯一标识符
      * @param action 需要在写锁保护下执行的操作
      */
     public void executeWithWriteLock(String key, Runnable action) {
-        ReadWriteLock rwLock = getReadWriteLock(key);
-        Lock writeLock = rwLock.writeLock();
-        writeLock.lock();
+        runLocked(getReadWriteLock(key).writeLock(), action);
+    }
+
+    /**
+     * 获取当前锁的数量
+     *
+     * @return 当前被持有或等待中的互斥锁key数（分段锁数量固定，不计入）
+     */
+    public int getLockCount() {
+        return keyedLocks.size();
+    }
+
+    /**
+     * 获取锁时需要等待的次数
+     */
+    public long getContendedCount() {
+        return contended.sum();
+    }
+
+    private void runLocked(Lock lock, Runnable action) {
+        acquire(lock);
         try {
             action.run();
         } finally {
-            writeLock.unlock();
+            lock.unlock();
         }
     }
-    
-    /**
-     * 清理指定key的读写锁
-     * 
-     * @param key 锁的唯一标识符
-     */
-    public void removeReadWriteLock(String key) {
-        ReadWriteLock removed = rwLockMap.remove(key);
-        if (removed != null) {
+
+    private <T> T callLocked(Lock lock, java.util.function.Supplier<T> supplier) {
+        acquire(lock);
+        try {
+            return supplier.get();
+        } finally {
+            lock.unlock();
         }
     }
-    
+
     /**
-     * 清理所有锁
+     * 先尝试无等待获取，失败时记录一次竞争及等待时间
      */
-    public void clearAllLocks() {
-        int size = lockMap.size() + rwLockMap.size();
-        lockMap.clear();
-        rwLockMap.clear();
-        log.info("[LockManager] 清理所有锁，数量: {}", size);
+    private void acquire(Lock lock) {
+        acquisitions.increment();
+        if (lock.tryLock()) {
+            return;
+        }
+        contended.increment();
+        long start = System.nanoTime();
+        lock.lock();
+        if (waitTimer != null) {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
-    
-    /**
-     * 获取当前锁的数量
-     * 
-     * @return 锁的数量（包括普通锁和读写锁）
-     */
-    public int getLockCount() {
-        return lockMap.size() + rwLockMap.size();
+
+    private static void checkKey(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Lock key cannot be null or empty");
+        }
     }
 }
-
@@ -7,7 +7,9 @@ import com.ld.poetry.entity.User;
 import com.ld.poetry.entity.WebInfo;
 import com.ld.poetry.handle.PoetryRuntimeException;
 import com.ld.poetry.service.CacheService;
+import com.ld.poetry.service.TokenSessionCache;
 import com.ld.poetry.utils.cache.UserCacheManager;
+import com.ld.poetry.utils.security.RequestSecurityContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -17,6 +19,7 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.annotation.PostConstruct;
 import java.util.List;
 
@@ -30,13 +33,18 @@ public class PoetryUtil {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private TokenSessionCache tokenSessionCache;
+
     private static UserCacheManager staticUserCacheManager;
     private static CacheService staticCacheService;
+    private static TokenSessionCache staticTokenSessionCache;
 
     @PostConstruct
     public void init() {
         staticUserCacheManager = userCacheManager;
         staticCacheService = cacheService;
+        staticTokenSessionCache = tokenSessionCache;
     }
 
     public static HttpServletRequest getRequest() {
@@ -49,25 +57,22 @@ public class PoetryUtil {
         }
     }
 
-    public static void checkEmail() {
-        // 优先从UserCacheManager获取，降级到Redis缓存
-        User user = null;
-        String token = PoetryUtil.getToken();
-
-        if (staticUserCacheManager != null) {
-            user = staticUserCacheManager.getUserByToken(token);
+    public static HttpServletResponse getResponse() {
+        try {
+            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+            return attributes != null ? attributes.getResponse() : null;
+        } catch (IllegalStateException e) {
+            return null;
         }
+    }
 
-        if (user == null && staticCacheService != null) {
-            Integer userId = staticCacheService.getUserIdFromSession(token);
-            if (userId != null) {
-                user = staticCacheService.getCachedUser(userId);
-            }
-        }
+    public static void checkEmail() {
+        // 与getCurrentUser共用请求级上下文，同一请求内不重复解析token
+        User user = getCurrentUser();
 
         // 如果所有缓存都无法获取用户信息，记录日志
         if (user == null) {
-            log.debug("无法从缓存获取用户信息，token: {}", token != null ? "已提供" : "未提供");
+            log.debug("无法从缓存获取用户信息，token: {}", getToken() != null ? "已提供" : "未提供");
         }
 
         if (user != null && !StringUtils.hasText(user.getEmail())) {
@@ -155,32 +160,34 @@ public class PoetryUtil {
                 return asyncUser;
             }
             
-            // 如果异步上下文中没有，尝试通过Token从Redis缓存获取
+            // 如果异步上下文中没有，通过Token获取，同一请求内只解析一次
             String token = getTokenWithoutBearer();
             if (StringUtils.hasText(token)) {
-                // 统一使用用户缓存管理器获取用户信息（已重构为Redis缓存）
-                if (staticUserCacheManager != null) {
-                    User user = staticUserCacheManager.getUserByToken(token);
-                    if (user != null) {
-                        return user;
-                    }
-                }
-
-                // 备用方案：直接从Redis缓存获取
-                if (staticCacheService != null) {
-                    Integer userId = staticCacheService.getUserIdFromSession(token);
-                    if (userId != null) {
-                        User user = staticCacheService.getCachedUser(userId);
-                        if (user != null) {
-                            return user;
-                        }
-                    }
-                }
+                return RequestSecurityContext.resolveUser(token, PoetryUtil::loadUserByToken);
             }
             
             return null;
         }, 2, 50, "获取当前用户");
     }
+
+    /**
+     * 根据token加载用户：本地token缓存 → Redis缓存
+     */
+    private static User loadUserByToken(String token) {
+        // 统一使用用户缓存管理器获取用户信息（本地token缓存 + Redis缓存）
+        if (staticUserCacheManager != null) {
+            return staticUserCacheManager.getUserByToken(token);
+        }
+
+        // 备用方案：直接从Redis缓存获取
+        if (staticCacheService != null) {
+            Integer userId = staticCacheService.getUserIdFromSession(token);
+            if (userId != null) {
+                return staticCacheService.getCachedUser(userId);
+            }
+        }
+        return null;
+    }
     
     /**
      * 获取当前用户，如果获取不到则抛出异常
@@ -197,10 +204,26 @@ public class PoetryUtil {
     }
 
     public static User getAdminUser() {
-        // 优先从Redis缓存获取管理员信息
+        return RequestSecurityContext.resolveAdmin(PoetryUtil::loadAdminUser);
+    }
+
+    private static User loadAdminUser() {
+        // 优先从本地缓存获取管理员信息
+        if (staticTokenSessionCache != null) {
+            User admin = staticTokenSessionCache.getAdmin();
+            if (admin != null) {
+                return admin;
+            }
+        }
+
+        // 本地未命中时从Redis缓存获取
         if (staticCacheService != null) {
+            long loadedAt = staticTokenSessionCache != null ? staticTokenSessionCache.loadStarted() : 0;
             User admin = staticCacheService.getCachedAdminUser();
             if (admin != null) {
+                if (staticTokenSessionCache != null) {
+                    staticTokenSessionCache.putAdmin(admin, loadedAt);
+                }
                 return admin;
             }
         }
@@ -233,15 +256,13 @@ public class PoetryUtil {
                 // 尝试获取token（不带Bearer前缀）
                 String tokenWithoutBearer = getTokenWithoutBearer();
                 if (StringUtils.hasText(tokenWithoutBearer)) {
-                    // 统一使用用户缓存管理器获取用户信息（已重构为Redis缓存）
-                    if (staticUserCacheManager != null) {
-                        User user = staticUserCacheManager.getUserByToken(tokenWithoutBearer);
-                        if (user != null) {
-                            return user.getId();
-                        }
+                    // 与getCurrentUser共用请求级上下文
+                    User user = RequestSecurityContext.resolveUser(tokenWithoutBearer, PoetryUtil::loadUserByToken);
+                    if (user != null) {
+                        return user.getId();
                     }
 
-                    // 备用方案：直接从Redis缓存获取
+                    // 备用方案：会话存在但用户缓存缺失时，直接从Redis会话获取
                     if (staticCacheService != null) {
                         Integer userId = staticCacheService.getUserIdFromSession(tokenWithoutBearer);
                         if (userId != null) {
@@ -313,29 +334,13 @@ public class PoetryUtil {
                 return asyncUsername;
             }
             
-            // 如果异步上下文中没有，尝试通过Token从缓存获取
+            // 如果异步上下文中没有，尝试通过Token获取，与getCurrentUser共用请求级上下文
             String token = getTokenWithoutBearer();
             if (StringUtils.hasText(token)) {
-                // 使用用户缓存管理器获取用户信息
-                if (staticUserCacheManager != null) {
-                    User user = staticUserCacheManager.getUserByToken(token);
-                    if (user != null && StringUtils.hasText(user.getUsername())) {
-                        return user.getUsername();
-                    }
-                }
-                
-                // 降级到Redis缓存获取
-                if (staticCacheService != null) {
-                    Integer userId = staticCacheService.getUserIdFromSession(token);
-                    if (userId != null) {
-                        User user = staticCacheService.getCachedUser(userId);
-                        if (user != null && StringUtils.hasText(user.getUsername())) {
-                            return user.getUsername();
-                        }
-                    }
+                User user = RequestSecurityContext.resolveUser(token, PoetryUtil::loadUserByToken);
+                if (user != null && StringUtils.hasText(user.getUsername())) {
+                    return user.getUsername();
                 }
-
-                // 如果Redis缓存也没有，返回null
             }
             
             return null;
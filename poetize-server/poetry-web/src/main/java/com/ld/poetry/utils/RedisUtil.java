@@ -2,11 +2,20 @@ package com.ld.poetry.utils;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -96,6 +105,19 @@ public class RedisUtil {
         return key == null ? null : redisTemplate.opsForValue().get(key);
     }
 
+    /**
+     * 批量获取普通缓存，一次往返
+     * @param keys 键
+     * @return 与键顺序一致的值列表，不存在的键对应null
+     */
+    public List<Object> multiGet(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        return values == null ? Collections.emptyList() : values;
+    }
+
     /**
      * 普通缓存放入
      * @param key 键
@@ -177,6 +199,21 @@ public class RedisUtil {
         return redisTemplate.opsForHash().entries(key);
     }
 
+    /**
+     * 获取哈希表中多个项的值
+     * @param key 键
+     * @param items 项
+     * @return 与items顺序一致的值（不存在的项为null），失败返回null
+     */
+    public List<Object> hmultiGet(String key, Collection<String> items) {
+        try {
+            return redisTemplate.opsForHash().multiGet(key, new ArrayList<Object>(items));
+        } catch (Exception e) {
+            log.error("批量获取哈希表项失败，key: {}", key, e);
+            return null;
+        }
+    }
+
     /**
      * HashSet
      * @param key 键
@@ -284,6 +321,31 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 批量获取多个Set中的所有值（管道，一次往返）
+     * @param keys 键
+     * @return 与keys顺序一致的集合（不存在的键为空集合），失败返回null
+     */
+    @SuppressWarnings("unchecked")
+    public List<Set<Object>> sGetAll(List<String> keys) {
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.setCommands().sMembers(key.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            List<Set<Object>> sets = new ArrayList<>(results.size());
+            for (Object result : results) {
+                sets.add(result instanceof Set ? (Set<Object>) result : Collections.emptySet());
+            }
+            return sets;
+        } catch (Exception e) {
+            log.error("批量获取Set中的所有值失败，keys: {}", keys.size(), e);
+            return null;
+        }
+    }
+
     /**
      * 根据value从一个set中查询,是否存在
      * @param key 键
@@ -299,6 +361,21 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 一次查询多个值是否在set中（SMISMEMBER）
+     * @param key 键
+     * @param values 值
+     * @return 值到是否存在的映射，查询失败时返回null
+     */
+    public Map<Object, Boolean> sIsMembers(String key, Object... values) {
+        try {
+            return redisTemplate.opsForSet().isMember(key, values);
+        } catch (Exception e) {
+            log.error("批量查询set中是否存在值失败，key: {}", key, e);
+            return null;
+        }
+    }
+
     /**
      * 将数据放入set缓存
      * @param key 键
@@ -507,4 +584,180 @@ public class RedisUtil {
             return 0;
         }
     }
+
+    // ============================HyperLogLog=============================
+
+    /**
+     * 向HyperLogLog中添加元素（使用字符串序列化，便于PFMERGE合并）
+     * @param key 键
+     * @param values 值 可以是多个
+     * @return 1 基数估算值发生变化 0 未变化
+     */
+    public long pfAdd(String key, String... values) {
+        try {
+            Long changed = stringRedisTemplate.opsForHyperLogLog().add(key, values);
+            return changed != null ? changed : 0;
+        } catch (Exception e) {
+            log.error("向HyperLogLog添加元素失败，key: {}", key, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 获取HyperLogLog的基数估算值，多个键时返回并集基数
+     * @param keys 键 可以是多个
+     * @return 基数估算值
+     */
+    public long pfCount(String... keys) {
+        try {
+            Long count = stringRedisTemplate.opsForHyperLogLog().size(keys);
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            log.error("获取HyperLogLog基数失败，keys: {}", (Object) keys, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 合并多个HyperLogLog到目标键
+     * @param destination 目标键
+     * @param sourceKeys 源键 可以是多个
+     * @return true成功 false失败
+     */
+    public boolean pfMerge(String destination, String... sourceKeys) {
+        try {
+            stringRedisTemplate.opsForHyperLogLog().union(destination, sourceKeys);
+            return true;
+        } catch (Exception e) {
+            log.error("合并HyperLogLog失败，destination: {}", destination, e);
+            return false;
+        }
+    }
+
+    // ============================ZSet=============================
+
+    /**
+     * 向有序集合添加成员（使用字符串序列化）
+     * @param key 键
+     * @param member 成员
+     * @param score 分数
+     * @return true成功 false失败
+     */
+    public boolean zAdd(String key, String member, double score) {
+        try {
+            stringRedisTemplate.opsForZSet().add(key, member, score);
+            return true;
+        } catch (Exception e) {
+            log.error("向有序集合添加成员失败，key: {}, member: {}", key, member, e);
+            return false;
+        }
+    }
+
+    /**
+     * 获取有序集合中分数不小于min的全部成员及分数
+     * @param key 键
+     * @param min 最小分数
+     * @return 成员到分数的映射（按分数升序），失败返回null
+     */
+    public Map<String, Double> zRangeByScoreWithScores(String key, double min) {
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().rangeByScoreWithScores(key, min, Double.POSITIVE_INFINITY);
+            Map<String, Double> result = new LinkedHashMap<>();
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                    result.put(tuple.getValue(), tuple.getScore());
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("获取有序集合成员失败，key: {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 移除有序集合中的成员
+     * @param key 键
+     * @param members 成员 可以是多个
+     * @return 移除的个数
+     */
+    public long zRemove(String key, Object... members) {
+        try {
+            Long count = stringRedisTemplate.opsForZSet().remove(key, members);
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            log.error("移除有序集合成员失败，key: {}", key, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 移除有序集合中分数在[min, max]范围内的成员
+     * @param key 键
+     * @param min 最小分数
+     * @param max 最大分数
+     * @return 移除的个数
+     */
+    public long zRemoveRangeByScore(String key, double min, double max) {
+        try {
+            Long count = stringRedisTemplate.opsForZSet().removeRangeByScore(key, min, max);
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            log.error("按分数移除有序集合成员失败，key: {}", key, e);
+            return 0;
+        }
+    }
+
+    // ============================Scan / Pub/Sub=============================
+
+    /**
+     * 使用SCAN遍历匹配的键（不阻塞Redis，替代KEYS）
+     * @param pattern 匹配模式
+     * @param count 每次迭代的建议数量
+     * @return 匹配的键
+     */
+    public List<String> scan(String pattern, int count) {
+        List<String> keys = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+        } catch (Exception e) {
+            log.error("扫描键失败，pattern: {}", pattern, e);
+        }
+        return keys;
+    }
+
+    /**
+     * 向频道发布消息（使用字符串序列化）
+     * @param channel 频道
+     * @param message 消息
+     * @return true成功 false失败
+     */
+    public boolean publish(String channel, String message) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, message);
+            return true;
+        } catch (Exception e) {
+            log.error("发布消息失败，channel: {}", channel, e);
+            return false;
+        }
+    }
+
+    /**
+     * 向频道发布消息并返回收到消息的订阅者数（使用字符串序列化）
+     * @param channel 频道
+     * @param message 消息
+     * @return 订阅者数，失败返回-1
+     */
+    public long publishAndCount(String channel, String message) {
+        try {
+            Long receivers = stringRedisTemplate.convertAndSend(channel, message);
+            return receivers != null ? receivers : 0;
+        } catch (Exception e) {
+            log.error("发布消息失败，channel: {}", channel, e);
+            return -1;
+        }
+    }
 }
@@ -11,7 +11,10 @@ import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 安全Token生成器
@@ -19,6 +22,11 @@ import java.util.Base64;
  * 
  * Token格式：前缀 + Base64(userId:userType:timestamp:nonce:signature)
  * 
+ * 启用无状态token（poetize.token.stateless.enabled）后生成v2格式：
+ * 前缀 + "v2." + Base64Url(kid:userId:userType:issuedAt:expiresAt:jti) + "." + Base64Url(HMAC前16字节)
+ * v2 token携带过期时间，签名密钥按kid轮换，验证时无需访问Redis；注销通过 TokenRevocationService 的吊销列表实现。
+ * 两种格式始终都能验证，便于迁移与回退。
+ * 
  * @author LeapYa
  * @since 2025-07-22
  */
@@ -56,6 +64,31 @@ public class SecureTokenGenerator {
      */
     private static volatile boolean secretWarningPrinted = false;
 
+    /**
+     * 无状态token密钥环境变量名，格式：kid1:secret1,kid2:secret2，第一个为当前签名密钥，其余仅用于验证
+     */
+    private static final String TOKEN_SECRET_KEYS_ENV = "TOKEN_SECRET_KEYS";
+
+    /**
+     * 未配置 TOKEN_SECRET_KEYS 时，使用 TOKEN_SECRET_KEY 作为该kid的密钥
+     */
+    private static final String DEFAULT_KEY_ID = "k0";
+
+    /**
+     * 无状态token数据段标识
+     */
+    private static final String STATELESS_MARKER = "v2.";
+
+    /**
+     * 无状态token签名截取的字节数（128位）
+     */
+    private static final int STATELESS_SIGNATURE_BYTES = 16;
+
+    /**
+     * 无状态token签名密钥，首次使用时从环境变量加载
+     */
+    private static volatile KeyRing keyRing;
+
     /**
      * 获取Token签名密钥
      * 优先从环境变量获取，如果没有则使用默认密钥（并记录警告）
@@ -76,23 +109,45 @@ public class SecureTokenGenerator {
     }
 
     /**
-     * 生成安全的用户token
+     * 生成安全的用户token（旧格式，会话保存在Redis）
      * 
      * @param userId 用户ID
      * @return 签名后的安全token
      */
     public static String generateUserToken(Integer userId) {
-        return generateSecureToken(userId, "user");
+        return generateUserToken(userId, false);
     }
 
     /**
-     * 生成安全的管理员token
+     * 生成安全的用户token
+     *
+     * @param userId 用户ID
+     * @param stateless 是否生成无状态token（v2），由调用方按 {@link com.ld.poetry.config.StatelessTokenPolicy} 传入
+     * @return 签名后的安全token
+     */
+    public static String generateUserToken(Integer userId, boolean stateless) {
+        return generateSecureToken(userId, "user", stateless);
+    }
+
+    /**
+     * 生成安全的管理员token（旧格式，会话保存在Redis）
      * 
      * @param userId 用户ID
      * @return 签名后的安全token
      */
     public static String generateAdminToken(Integer userId) {
-        return generateSecureToken(userId, "admin");
+        return generateAdminToken(userId, false);
+    }
+
+    /**
+     * 生成安全的管理员token
+     *
+     * @param userId 用户ID
+     * @param stateless 是否生成无状态token（v2）
+     * @return 签名后的安全token
+     */
+    public static String generateAdminToken(Integer userId, boolean stateless) {
+        return generateSecureToken(userId, "admin", stateless);
     }
 
     /**
@@ -100,9 +155,13 @@ public class SecureTokenGenerator {
      * 
      * @param userId 用户ID
      * @param userType 用户类型（user/admin）
+     * @param stateless 是否生成无状态token（v2）
      * @return 完整的安全token
      */
-    private static String generateSecureToken(Integer userId, String userType) {
+    private static String generateSecureToken(Integer userId, String userType, boolean stateless) {
+        if (stateless) {
+            return generateStatelessToken(userId, userType);
+        }
         try {
             // 当前时间戳
             long timestamp = System.currentTimeMillis();
@@ -164,6 +223,10 @@ public class SecureTokenGenerator {
                 return TokenValidationResult.failure("无效的token前缀");
             }
 
+            if (encodedData.startsWith(STATELESS_MARKER) && !prefix.equals(WS_TOKEN_PREFIX)) {
+                return validateStatelessToken(prefix, encodedData.substring(STATELESS_MARKER.length()));
+            }
+
             // Base64解码
             String decodedData;
             try {
@@ -232,6 +295,158 @@ public class SecureTokenGenerator {
         }
     }
 
+    // ==================== 无状态Token（v2） ====================
+
+    /**
+     * 判断是否为无状态token（仅检查格式，不验证签名）
+     */
+    public static boolean isStatelessToken(String token) {
+        if (token == null) {
+            return false;
+        }
+        if (token.startsWith(CommonConst.USER_ACCESS_TOKEN)) {
+            return token.startsWith(STATELESS_MARKER, CommonConst.USER_ACCESS_TOKEN.length());
+        }
+        if (token.startsWith(CommonConst.ADMIN_ACCESS_TOKEN)) {
+            return token.startsWith(STATELESS_MARKER, CommonConst.ADMIN_ACCESS_TOKEN.length());
+        }
+        return false;
+    }
+
+    /**
+     * 生成无状态token，有效期与会话过期时间（CommonConst.TOKEN_EXPIRE）一致
+     */
+    private static String generateStatelessToken(Integer userId, String userType) {
+        try {
+            KeyRing ring = getKeyRing();
+            long issuedAt = System.currentTimeMillis();
+            long expiresAt = issuedAt + CommonConst.TOKEN_EXPIRE * 1000;
+            String payload = ring.activeKeyId() + ":" + userId + ":" + userType + ":" + issuedAt + ":" + expiresAt + ":" + generateNonce();
+
+            String prefix = "admin".equals(userType) ? CommonConst.ADMIN_ACCESS_TOKEN : CommonConst.USER_ACCESS_TOKEN;
+            String encodedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+            byte[] signature = signStateless(ring.keys().get(ring.activeKeyId()), prefix, encodedPayload);
+            return prefix + STATELESS_MARKER + encodedPayload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (Exception e) {
+            log.error("生成无状态token失败 - 用户ID: {}, 类型: {}, 错误: {}", userId, userType, e.getMessage(), e);
+            throw new RuntimeException("Token生成失败", e);
+        }
+    }
+
+    /**
+     * 验证无状态token，只做本地计算
+     *
+     * @param prefix 已识别的token前缀
+     * @param data   v2标识之后的部分：payload.signature
+     */
+    private static TokenValidationResult validateStatelessToken(String prefix, String data) {
+        int dot = data.indexOf('.');
+        if (dot <= 0 || dot != data.lastIndexOf('.')) {
+            return TokenValidationResult.failure("Token格式错误，组件数量不正确");
+        }
+        String encodedPayload = data.substring(0, dot);
+
+        String[] parts;
+        byte[] providedSignature;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(encodedPayload), StandardCharsets.UTF_8).split(":");
+            providedSignature = Base64.getUrlDecoder().decode(data.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return TokenValidationResult.failure("Token Base64解码失败");
+        }
+        if (parts.length != 6) {
+            return TokenValidationResult.failure("Token格式错误，组件数量不正确");
+        }
+
+        SecretKeySpec key = getKeyRing().keys().get(parts[0]);
+        if (key == null) {
+            return TokenValidationResult.failure("Token签名密钥不存在或已停用");
+        }
+        if (!MessageDigest.isEqual(providedSignature, signStateless(key, prefix, encodedPayload))) {
+            return TokenValidationResult.failure("Token签名验证失败");
+        }
+
+        String userType = parts[2];
+        long issuedAt;
+        long expiresAt;
+        try {
+            issuedAt = Long.parseLong(parts[3]);
+            expiresAt = Long.parseLong(parts[4]);
+        } catch (NumberFormatException e) {
+            return TokenValidationResult.failure("时间戳格式错误");
+        }
+        if (System.currentTimeMillis() >= expiresAt) {
+            return TokenValidationResult.failure("登录已过期，请重新登录");
+        }
+        if (CommonConst.ADMIN_ACCESS_TOKEN.equals(prefix) != "admin".equals(userType)) {
+            return TokenValidationResult.failure("Token类型与前缀不匹配");
+        }
+
+        return TokenValidationResult.success(Integer.parseInt(parts[1]), userType, issuedAt, parts[5], expiresAt);
+    }
+
+    /**
+     * 计算无状态token签名，前缀一并签入，防止替换前缀冒充其他类型
+     */
+    private static byte[] signStateless(SecretKeySpec key, String prefix, String encodedPayload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(prefix.getBytes(StandardCharsets.UTF_8));
+            byte[] signature = mac.doFinal(encodedPayload.getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(signature, STATELESS_SIGNATURE_BYTES);
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            log.error("生成HMAC签名失败: {}", e.getMessage(), e);
+            throw new RuntimeException("签名生成失败", e);
+        }
+    }
+
+    private static KeyRing getKeyRing() {
+        KeyRing ring = keyRing;
+        if (ring == null) {
+            ring = KeyRing.parse(System.getenv(TOKEN_SECRET_KEYS_ENV), getTokenSecret());
+            keyRing = ring;
+        }
+        return ring;
+    }
+
+    /**
+     * 替换签名密钥（用于密钥轮换后重新加载及测试）
+     *
+     * @param keys 格式同 TOKEN_SECRET_KEYS，为空时回退到 TOKEN_SECRET_KEY
+     */
+    public static void reloadKeys(String keys) {
+        keyRing = KeyRing.parse(keys, getTokenSecret());
+        log.info("无状态token签名密钥已加载 - 当前kid: {}, 可验证kid: {}", keyRing.activeKeyId(), keyRing.keys().keySet());
+    }
+
+    /**
+     * 无状态token签名密钥环
+     * 轮换时把新密钥放在首位、旧密钥保留在后面，待旧token全部过期（TOKEN_EXPIRE）后再移除
+     */
+    private record KeyRing(String activeKeyId, Map<String, SecretKeySpec> keys) {
+
+        static KeyRing parse(String config, String fallbackSecret) {
+            Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+            if (StringUtils.hasText(config)) {
+                for (String item : config.split(",")) {
+                    int separator = item.indexOf(':');
+                    if (separator <= 0 || separator == item.length() - 1) {
+                        log.warn("忽略格式错误的token签名密钥配置项（应为 kid:secret）");
+                        continue;
+                    }
+                    String keyId = item.substring(0, separator).trim();
+                    String secret = item.substring(separator + 1).trim();
+                    keys.putIfAbsent(keyId, new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+                }
+            }
+            if (keys.isEmpty()) {
+                keys.put(DEFAULT_KEY_ID, new SecretKeySpec(fallbackSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            }
+            return new KeyRing(keys.keySet().iterator().next(), Map.copyOf(keys));
+        }
+    }
+
     /**
      * 生成HMAC-SHA256签名
      * 
@@ -319,23 +534,32 @@ public class SecureTokenGenerator {
         private final String userType;
         private final Long timestamp;
         private final String nonce;
+        private final Long expiresAt;
 
         private TokenValidationResult(boolean valid, String errorMessage, Integer userId, 
-                                    String userType, Long timestamp, String nonce) {
+                                    String userType, Long timestamp, String nonce, Long expiresAt) {
             this.valid = valid;
             this.errorMessage = errorMessage;
             this.userId = userId;
             this.userType = userType;
             this.timestamp = timestamp;
             this.nonce = nonce;
+            this.expiresAt = expiresAt;
         }
 
         public static TokenValidationResult success(Integer userId, String userType, Long timestamp, String nonce) {
-            return new TokenValidationResult(true, null, userId, userType, timestamp, nonce);
+            return new TokenValidationResult(true, null, userId, userType, timestamp, nonce, null);
+        }
+
+        /**
+         * 无状态token验证结果，nonce即token唯一标识（jti）
+         */
+        public static TokenValidationResult success(Integer userId, String userType, Long timestamp, String nonce, Long expiresAt) {
+            return new TokenValidationResult(true, null, userId, userType, timestamp, nonce, expiresAt);
         }
 
         public static TokenValidationResult failure(String errorMessage) {
-            return new TokenValidationResult(false, errorMessage, null, null, null, null);
+            return new TokenValidationResult(false, errorMessage, null, null, null, null, null);
         }
 
         // Getters
@@ -345,6 +569,8 @@ public class SecureTokenGenerator {
         public String getUserType() { return userType; }
         public Long getTimestamp() { return timestamp; }
         public String getNonce() { return nonce; }
+        public Long getExpiresAt() { return expiresAt; }
+        public boolean isStateless() { return expiresAt != null; }
         public boolean isAdminToken() { return "admin".equals(userType); }
         public boolean isUserToken() { return "user".equals(userType); }
     }
@@ -3,13 +3,21 @@ package com.ld.poetry.utils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
+import org.owasp.html.Handler;
 import org.owasp.html.HtmlPolicyBuilder;
+import org.owasp.html.HtmlSanitizer;
+import org.owasp.html.HtmlStreamRenderer;
 import org.owasp.html.PolicyFactory;
 
 /**
  * XSS过滤工具类
  * 提供HTML转义和输入验证功能，防止XSS攻击
  * 使用OWASP Java HTML Sanitizer实现
+ * <p>
+ * 评论、树洞、微言等输入绝大多数是纯文本，OWASP 仍会完整词法分析并生成事件流。
+ * 这里先扫描输入：不含标签、实体时直接按 OWASP 的文本编码规则输出（无需编码时原样返回同一个对象），
+ * 只有含'<'、'&'等字符时才交给 OWASP，结果与直接调用 OWASP 逐字节一致。
+ * </p>
  * 
  * @author LeapYa
  * @since 2025-11-08
@@ -40,6 +48,32 @@ public class XssFilterUtil {
             .allowStandardUrlProtocols()
             .toFactory();
 
+    /**
+     * ASCII字符在文本中的输出：null 原样输出，空串删除（控制字符），{@link #MARKUP} 需完整清理，其余为实体
+     */
+    private static final String[] ASCII_TEXT = new String[0x80];
+
+    private static final String MARKUP = "MARKUP";
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            if (c != '\t' && c != '\n' && c != '\r') {
+                ASCII_TEXT[c] = "";
+            }
+        }
+        ASCII_TEXT['"'] = "&#34;";
+        ASCII_TEXT['\''] = "&#39;";
+        ASCII_TEXT['+'] = "&#43;";
+        ASCII_TEXT['='] = "&#61;";
+        ASCII_TEXT['>'] = "&gt;";
+        ASCII_TEXT['@'] = "&#64;";
+        ASCII_TEXT['`'] = "&#96;";
+        // 可能构成标签、实体；'{'连续出现时OWASP会插入注释防止模板注入，同样交给OWASP
+        ASCII_TEXT['<'] = MARKUP;
+        ASCII_TEXT['&'] = MARKUP;
+        ASCII_TEXT['{'] = MARKUP;
+    }
+
     /**
      * 清理输入内容，移除潜在的XSS攻击代码
      * 使用严格模式，不允许任何HTML标签
@@ -53,7 +87,7 @@ public class XssFilterUtil {
         }
         
         try {
-            return STRICT_POLICY.sanitize(content);
+            return sanitize(content, STRICT_POLICY);
         } catch (Exception e) {
             log.error("XSS过滤处理异常: {}", e.getMessage(), e);
             // 出现异常时，返回转义后的内容
@@ -61,6 +95,30 @@ public class XssFilterUtil {
         }
     }
 
+    /**
+     * 清理输入内容并追加到调用方传入的StringBuilder，批量处理时可复用同一个StringBuilder（处理前调用 setLength(0)）
+     * 使用严格模式，结果与 {@link #clean(String)} 相同
+     * 
+     * @param content 原始内容
+     * @param out 输出
+     * @return out
+     */
+    public static StringBuilder clean(String content, StringBuilder out) {
+        if (StringUtils.isBlank(content)) {
+            return content == null ? out : out.append(content);
+        }
+
+        int start = out.length();
+        try {
+            sanitizeTo(content, STRICT_POLICY, out);
+        } catch (Exception e) {
+            log.error("XSS过滤处理异常: {}", e.getMessage(), e);
+            out.setLength(start);
+            out.append(escapeHtml(content));
+        }
+        return out;
+    }
+
     /**
      * HTML转义，将特殊字符转换为HTML实体
      * 
@@ -92,8 +150,12 @@ public class XssFilterUtil {
         }
         
         // 使用严格模式清理后，如果内容发生变化，说明包含XSS风险
-        String cleaned = STRICT_POLICY.sanitize(content);
-        return !content.equals(cleaned);
+        if (isPassThrough(content)) {
+            return false;
+        }
+        StringBuilder cleaned = new StringBuilder(content.length() + 16);
+        sanitizeTo(content, STRICT_POLICY, cleaned);
+        return !content.contentEquals(cleaned);
     }
 
     /**
@@ -146,7 +208,7 @@ public class XssFilterUtil {
         }
         
         try {
-            return RICH_TEXT_POLICY.sanitize(content);
+            return sanitize(content, RICH_TEXT_POLICY);
         } catch (Exception e) {
             log.error("XSS过滤处理异常: {}", e.getMessage(), e);
             // 出现异常时，返回转义后的内容
@@ -166,11 +228,97 @@ public class XssFilterUtil {
         }
         
         try {
-            return BASIC_FORMAT_POLICY.sanitize(content);
+            return sanitize(content, BASIC_FORMAT_POLICY);
         } catch (Exception e) {
             log.error("XSS过滤处理异常: {}", e.getMessage(), e);
             // 出现异常时，返回转义后的内容
             return escapeHtml(content);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 按策略清理，无需编码的纯文本原样返回
+     */
+    private static String sanitize(String content, PolicyFactory policy) {
+        if (isPassThrough(content)) {
+            return content;
+        }
+        StringBuilder out = new StringBuilder(content.length() + 16);
+        sanitizeTo(content, policy, out);
+        return out.toString();
+    }
+
+    /**
+     * 清理结果追加到out：纯文本直接编码，否则交给OWASP流式输出到同一个StringBuilder
+     */
+    private static void sanitizeTo(String content, PolicyFactory policy, StringBuilder out) {
+        int start = out.length();
+        if (!appendPlainText(content, out)) {
+            out.setLength(start);
+            HtmlSanitizer.sanitize(content, policy.apply(HtmlStreamRenderer.create(out, Handler.DO_NOTHING)));
+        }
+    }
+
+    /**
+     * 内容是否不含任何需要编码、删除的字符，OWASP清理后与原文相同
+     */
+    static boolean isPassThrough(String content) {
+        for (int i = 0, length = content.length(); i < length; i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                if (ASCII_TEXT[c] != null) {
+                    return false;
+                }
+            } else if (c == '\u1FEF' || c >= '\uFE60' || Character.isSurrogate(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按OWASP对文本节点的规则编码纯文本：删除C0控制字符、U+FFFE/U+FFFF与孤立代理项，部分ASCII符号、
+     * U+FE60以上字符及补充平面字符（emoji等）转为实体
+     *
+     * @return 遇到可能构成标签、实体的字符时返回false，此时out中已追加的内容无效
+     */
+    static boolean appendPlainText(String content, StringBuilder out) {
+        int length = content.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                String text = ASCII_TEXT[c];
+                if (text == null) {
+                    continue;
+                }
+                if (text == MARKUP) {
+                    return false;
+                }
+                out.append(content, runStart, i).append(text);
+            } else if (c < '\uD800' || (c >= '\uE000' && c < '\uFE60')) {
+                if (c == '\u1FEF') {
+                    // OWASP对该字符使用十进制实体，数量极少，交给OWASP处理
+                    return false;
+                }
+                continue;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(content.charAt(i + 1))) {
+                out.append(content, runStart, i);
+                appendHexEntity(Character.toCodePoint(c, content.charAt(++i)), out);
+            } else {
+                // U+FE60及以上转为实体，U+FFFE、U+FFFF与孤立代理项删除
+                out.append(content, runStart, i);
+                if (c >= '\uFE60' && c < '\uFFFE') {
+                    appendHexEntity(c, out);
+                }
+            }
+            runStart = i + 1;
+        }
+        out.append(content, runStart, length);
+        return true;
+    }
+
+    private static void appendHexEntity(int codePoint, StringBuilder out) {
+        out.append("&#x").append(Integer.toHexString(codePoint)).append(';');
+    }
+}
@@ -0,0 +1,256 @@
+package com.ld.poetry.utils.admission;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.ld.poetry.config.AdmissionPolicy;
+import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.utils.SecureTokenGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * 准入控制
+ * <p>
+ * 所有请求共用 Tomcat 虚拟线程与同一个数据库连接池，爬虫或匿名搜索的洪峰会拖慢登录用户和管理员。
+ * 这里按请求类别（管理员、登录用户、匿名页面、匿名搜索、爬虫）分别用 {@link AimdLimiter} 自适应限制并发，
+ * 上限随观测到的延迟与失败自动调整；同时定期采样连接池使用率，达到各类别的阈值时直接拒绝该类请求，
+ * 保证连接池耗尽前先拒绝低优先级流量。
+ * </p>
+ */
+@Slf4j
+@Component
+public class AdmissionController {
+
+    /**
+     * 超过该长度的token不做验签，直接按匿名处理
+     */
+    private static final int MAX_TOKEN_LENGTH = 250;
+
+    private static final String REASON_LIMIT = "limit";
+
+    private static final String REASON_POOL = "pool";
+
+    @Autowired
+    private AdmissionPolicy policy;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    private final Map<RequestClass, AimdLimiter> limiters = new EnumMap<>(RequestClass.class);
+
+    private final Map<RequestClass, Double> shedAtPoolUsage = new EnumMap<>(RequestClass.class);
+
+    private final Map<RequestClass, Counter[]> rejectedCounters = new EnumMap<>(RequestClass.class);
+
+    private Pattern crawlerPattern;
+
+    private DruidDataSource druidDataSource;
+
+    /**
+     * 最近一次采样的连接池使用率（0~1），有线程在等待连接时记为1
+     */
+    private volatile double poolUsage;
+
+    @PostConstruct
+    public void init() {
+        register(RequestClass.ADMIN, policy.getAdmin());
+        register(RequestClass.AUTHENTICATED, policy.getAuthenticated());
+        register(RequestClass.ANONYMOUS_PAGE, policy.getAnonymousPage());
+        register(RequestClass.ANONYMOUS_SEARCH, policy.getAnonymousSearch());
+        register(RequestClass.CRAWLER, policy.getCrawler());
+        crawlerPattern = Pattern.compile(policy.getCrawlerUserAgentPattern(), Pattern.CASE_INSENSITIVE);
+
+        if (dataSource != null) {
+            try {
+                if (dataSource.isWrapperFor(DruidDataSource.class)) {
+                    druidDataSource = dataSource.unwrap(DruidDataSource.class);
+                }
+            } catch (Exception e) {
+                log.warn("无法获取Druid连接池，准入控制不按连接池使用率拒绝: {}", e.getMessage());
+            }
+        }
+        if (meterRegistry != null) {
+            Gauge.builder("poetize.admission.pool.usage", this, AdmissionController::getPoolUsage)
+                    .description("数据库连接池使用率采样值")
+                    .register(meterRegistry);
+        }
+        log.info("准入控制{} - 连接池监控: {}", policy.isEnabled() ? "已启用" : "未启用", druidDataSource != null ? "Druid" : "无");
+    }
+
+    /**
+     * 判断请求类别：有效token优先，其次按 User-Agent 识别爬虫，再按路径与查询参数识别搜索
+     */
+    public RequestClass classify(HttpServletRequest request) {
+        String token = request.getHeader(CommonConst.TOKEN_HEADER);
+        if (StringUtils.hasText(token) && !"null".equals(token)) {
+            if (token.startsWith("Bearer ")) {
+                token = token.substring(7);
+            }
+            if (token.length() <= MAX_TOKEN_LENGTH) {
+                // 只验签不查会话：已注销的token最多获得一次优先处理，随后在登录校验中被拒绝
+                SecureTokenGenerator.TokenValidationResult result = SecureTokenGenerator.validateToken(token);
+                if (result.isValid()) {
+                    return result.isAdminToken() ? RequestClass.ADMIN : RequestClass.AUTHENTICATED;
+                }
+            }
+        }
+
+        String userAgent = request.getHeader("User-Agent");
+        if (!StringUtils.hasText(userAgent) || crawlerPattern.matcher(userAgent).find()) {
+            return RequestClass.CRAWLER;
+        }
+        if (isSearch(request.getRequestURI(), request.getQueryString())) {
+            return RequestClass.ANONYMOUS_SEARCH;
+        }
+        return RequestClass.ANONYMOUS_PAGE;
+    }
+
+    /**
+     * 尝试准入
+     *
+     * @return 准入凭证，请求结束后须调用 {@link Permit#release(boolean)}；被拒绝时返回null
+     */
+    public Permit tryAcquire(RequestClass requestClass) {
+        double shedAt = shedAtPoolUsage.get(requestClass);
+        if (shedAt > 0 && poolUsage >= shedAt) {
+            reject(requestClass, 1);
+            return null;
+        }
+        AimdLimiter limiter = limiters.get(requestClass);
+        if (!limiter.tryAcquire()) {
+            reject(requestClass, 0);
+            return null;
+        }
+        return new Permit(limiter, System.nanoTime());
+    }
+
+    /**
+     * 采样数据库连接池使用率
+     */
+    @Scheduled(fixedDelayString = "${poetize.admission.pool-sample-interval-ms:250}")
+    public void samplePoolUsage() {
+        DruidDataSource pool = druidDataSource;
+        if (pool == null) {
+            return;
+        }
+        int maxActive = pool.getMaxActive();
+        if (pool.getWaitThreadCount() > 0) {
+            poolUsage = 1.0;
+        } else {
+            poolUsage = maxActive > 0 ? (double) pool.getActiveCount() / maxActive : 0;
+        }
+    }
+
+    public double getPoolUsage() {
+        return poolUsage;
+    }
+
+    public AimdLimiter getLimiter(RequestClass requestClass) {
+        return limiters.get(requestClass);
+    }
+
+    public long getRetryAfterSeconds() {
+        return policy.getRetryAfterSeconds();
+    }
+
+    void setPoolUsage(double poolUsage) {
+        this.poolUsage = poolUsage;
+    }
+
+    private void register(RequestClass requestClass, AdmissionPolicy.ClassLimit config) {
+        AimdLimiter limiter = new AimdLimiter(config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+                config.getLatencyThresholdMs());
+        limiters.put(requestClass, limiter);
+        shedAtPoolUsage.put(requestClass, config.getShedAtPoolUsage());
+        if (meterRegistry != null) {
+            Gauge.builder("poetize.admission.limit", limiter, AimdLimiter::getLimit)
+                    .tag("class", requestClass.getTag())
+                    .description("当前并发上限")
+                    .register(meterRegistry);
+            Gauge.builder("poetize.admission.inflight", limiter, AimdLimiter::getInflight)
+                    .tag("class", requestClass.getTag())
+                    .description("当前并发数")
+                    .register(meterRegistry);
+            rejectedCounters.put(requestClass, new Counter[]{
+                    Counter.builder("poetize.admission.rejected").tag("class", requestClass.getTag()).tag("reason", REASON_LIMIT).register(meterRegistry),
+                    Counter.builder("poetize.admission.rejected").tag("class", requestClass.getTag()).tag("reason", REASON_POOL).register(meterRegistry)
+            });
+        }
+    }
+
+    private void reject(RequestClass requestClass, int reason) {
+        Counter[] counters = rejectedCounters.get(requestClass);
+        if (counters != null) {
+            counters[reason].increment();
+        }
+    }
+
+    private boolean isSearch(String uri, String queryString) {
+        if (uri != null) {
+            for (String path : policy.getSearchPaths()) {
+                if (uri.startsWith(path)) {
+                    return true;
+                }
+            }
+        }
+        if (queryString == null) {
+            return false;
+        }
+        // 直接扫描查询串，不调用 getParameter，避免提前解析表单请求体
+        for (String param : policy.getSearchParams()) {
+            int from = 0;
+            int index;
+            while ((index = queryString.indexOf(param + "=", from)) >= 0) {
+                int valueStart = index + param.length() + 1;
+                boolean atBoundary = index == 0 || queryString.charAt(index - 1) == '&';
+                if (atBoundary && valueStart < queryString.length() && queryString.charAt(valueStart) != '&') {
+                    return true;
+                }
+                from = valueStart;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 准入凭证，重复释放只生效一次
+     */
+    public static final class Permit {
+
+        private final AimdLimiter limiter;
+
+        private final long startedAt;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AimdLimiter limiter, long startedAt) {
+            this.limiter = limiter;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * @param dropped 请求是否失败（5xx或异常）
+         */
+        public void release(boolean dropped) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - startedAt, dropped);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ld.poetry.utils.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD（加性增、乘性减）自适应并发限制
+ * <p>
+ * 每个请求结束时按耗时调整上限：失败或耗时超过阈值时上限乘以 {@link #BACKOFF_RATIO}；
+ * 否则在并发已用到上限一半以上时加一（空闲时不增长，避免上限虚高）。上限始终在 [min, max] 之间。
+ * 算法与 Netflix concurrency-limits 的 AIMDLimit 相同。
+ * </p>
+ * <p>
+ * 线程安全，获取/释放均为无锁CAS。
+ * </p>
+ */
+public final class AimdLimiter {
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger limit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMs) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.limit = new AtomicInteger(Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit)));
+    }
+
+    /**
+     * 尝试占用一个并发名额，达到上限时立即返回false
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * 释放名额并根据本次请求的结果调整上限
+     *
+     * @param rttNanos 请求耗时
+     * @param dropped  请求是否失败（5xx、异常等，视为过载信号）
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int inflightAtRelease = inflight.getAndDecrement();
+        if (dropped || rttNanos > latencyThresholdNanos) {
+            limit.updateAndGet(current -> Math.max(minLimit, Math.min(current - 1, (int) (current * BACKOFF_RATIO))));
+        } else if (inflightAtRelease * 2 >= limit.get()) {
+            limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+        }
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+}
@@ -0,0 +1,45 @@
+package com.ld.poetry.utils.admission;
+
+/**
+ * 准入控制的请求类别，按优先级从高到低排列
+ */
+public enum RequestClass {
+
+    /**
+     * 携带有效管理员token
+     */
+    ADMIN("admin"),
+
+    /**
+     * 携带有效用户token
+     */
+    AUTHENTICATED("authenticated"),
+
+    /**
+     * 匿名的普通页面与接口访问
+     */
+    ANONYMOUS_PAGE("anonymous-page"),
+
+    /**
+     * 匿名的搜索、站点地图等开销较大的请求
+     */
+    ANONYMOUS_SEARCH("anonymous-search"),
+
+    /**
+     * 按 User-Agent 识别的爬虫与脚本
+     */
+    CRAWLER("crawler");
+
+    private final String tag;
+
+    RequestClass(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * 指标标签值
+     */
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ld.poetry.utils.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * 有界、带过期时间的LRU本地缓存
+ * <p>
+ * 超过容量时淘汰最久未访问的条目；命中“空结果”（由 negativePredicate 判定，如“未知”）时使用更短的过期时间，
+ * 既避免反复查询无结果的key，又能较快重试。加载函数在锁外执行，同一key并发未命中时可能重复加载。
+ * </p>
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Predicate<V> negativePredicate;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize           最大条目数
+     * @param ttlSeconds        正常结果的过期时间（秒）
+     * @param negativeTtlSeconds 空结果的过期时间（秒）
+     * @param negativePredicate 判断是否为空结果，null表示不区分
+     */
+    public BoundedTtlCache(int maxSize, long ttlSeconds, long negativeTtlSeconds, Predicate<V> negativePredicate) {
+        this(maxSize, ttlSeconds, negativeTtlSeconds, negativePredicate, System::nanoTime);
+    }
+
+    BoundedTtlCache(int maxSize, long ttlSeconds, long negativeTtlSeconds, Predicate<V> negativePredicate, LongSupplier clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.negativeTtlNanos = negativeTtlSeconds * 1_000_000_000L;
+        this.negativePredicate = negativePredicate;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedTtlCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存，未命中或已过期返回null
+     */
+    public V get(K key) {
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.expireAt() < 0) {
+                    hits.increment();
+                    return entry.value();
+                }
+                entries.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入缓存，null值不缓存
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        boolean negative = negativePredicate != null && negativePredicate.test(value);
+        long expireAt = clock.getAsLong() + (negative ? negativeTtlNanos : ttlNanos);
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, expireAt));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 加载并写入
+     */
+    public V get(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 命中率（0-1），尚无请求时为0
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0D : (double) hit / total;
+    }
+
+    private record Entry<V>(V value, long expireAt) {
+    }
+}
@@ -2,8 +2,11 @@ package com.ld.poetry.utils.cache;
 
 import com.ld.poetry.entity.User;
 import com.ld.poetry.service.CacheService;
+import com.ld.poetry.service.TokenRevocationService;
+import com.ld.poetry.service.TokenSessionCache;
 import com.ld.poetry.service.UserService;
 import com.ld.poetry.utils.RetryUtil;
+import com.ld.poetry.utils.SecureTokenGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -29,8 +32,15 @@ public class UserCacheManager {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private TokenSessionCache tokenSessionCache;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     /**
-     * 根据Token获取用户信息（基于Redis缓存）
+     * 根据Token获取用户信息（优先本地token缓存，未命中时读取Redis缓存）
+     * 无状态token本地验签并检查吊销列表，不查询Redis会话
      *
      * @param token 用户Token
      * @return 用户信息，如果不存在返回null
@@ -40,13 +50,24 @@ public class UserCacheManager {
             return null;
         }
 
+        if (SecureTokenGenerator.isStatelessToken(token)) {
+            return getUserByStatelessToken(token);
+        }
+
+        User localUser = tokenSessionCache.getUser(token);
+        if (localUser != null) {
+            return localUser;
+        }
+
         return RetryUtil.executeWithRetry(() -> {
             try {
-                // 直接从Redis缓存获取用户会话信息
+                // 从Redis缓存获取用户会话信息，成功后写入本地token缓存
+                long loadedAt = tokenSessionCache.loadStarted();
                 Integer userId = cacheService.getUserIdFromSession(token);
                 if (userId != null) {
                     User user = cacheService.getCachedUser(userId);
                     if (user != null) {
+                        tokenSessionCache.putUser(token, user, loadedAt);
                         return user;
                     }
                 }
@@ -59,6 +80,28 @@ public class UserCacheManager {
         }, 2, 50, "获取用户信息");
     }
 
+    /**
+     * 无状态token：验签 → 本地吊销列表 → 本地token缓存 → 用户缓存（缺失时查数据库）
+     */
+    private User getUserByStatelessToken(String token) {
+        SecureTokenGenerator.TokenValidationResult result = SecureTokenGenerator.validateToken(token);
+        if (!result.isValid() || tokenRevocationService.isRevoked(result)) {
+            return null;
+        }
+
+        User localUser = tokenSessionCache.getUser(token);
+        if (localUser != null) {
+            return localUser;
+        }
+
+        long loadedAt = tokenSessionCache.loadStarted();
+        User user = getUserById(result.getUserId());
+        if (user != null) {
+            tokenSessionCache.putUser(token, user, loadedAt);
+        }
+        return user;
+    }
+
     /**
      * 根据用户ID获取用户信息（基于Redis缓存）
      *
@@ -0,0 +1,199 @@
+package com.ld.poetry.utils.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AES-GCM 加解密引擎
+ * <p>
+ * 密文格式与原有工具类一致：Base64(IV(12字节) + 密文 + 认证标签(16字节))。
+ * 每个引擎绑定一个密钥，Cipher 实例用完归还到有界对象池复用：请求运行在虚拟线程上，按线程缓存（ThreadLocal）无法复用，
+ * 而池中的 Cipher 重复使用同一个密钥对象初始化时不会重新展开轮密钥，省去 Cipher.getInstance 的 provider 查找与密钥扩展。
+ * 加解密直接在输入/输出数组的区间上进行，IV、密文不再单独复制。
+ * </p>
+ * <p>
+ * 线程安全；池满时多出的 Cipher 直接丢弃，池为空时新建。
+ * </p>
+ */
+public final class AesGcmEngine {
+
+    public static final int IV_LENGTH = 12;
+
+    public static final int TAG_LENGTH = 16;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private final SecretKeySpec key;
+
+    private final int maxPooled;
+
+    private final ConcurrentLinkedQueue<Cipher> pool = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param keyBytes 16/24/32字节AES密钥
+     */
+    public AesGcmEngine(byte[] keyBytes) {
+        this(keyBytes, Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    /**
+     * @param keyBytes  16/24/32字节AES密钥
+     * @param maxPooled 池中最多保留的 Cipher 数
+     */
+    public AesGcmEngine(byte[] keyBytes, int maxPooled) {
+        this.key = new SecretKeySpec(keyBytes, "AES");
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * 加密字符串，返回标准Base64
+     */
+    public String encryptToBase64(String plaintext) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(encrypt(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 解密Base64密文，兼容URL安全编码及缺失的填充
+     */
+    public String decryptFromBase64(String encoded) throws GeneralSecurityException {
+        return new String(decrypt(decodeBase64(encoded)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 使用随机IV加密
+     *
+     * @return IV + 密文 + 认证标签
+     */
+    public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
+        return encrypt(plaintext, iv);
+    }
+
+    /**
+     * 使用指定IV加密，调用方须保证同一密钥下IV不重复
+     *
+     * @return IV + 密文 + 认证标签
+     */
+    public byte[] encrypt(byte[] plaintext, byte[] iv) throws GeneralSecurityException {
+        byte[] output = new byte[IV_LENGTH + plaintext.length + TAG_LENGTH];
+        System.arraycopy(iv, 0, output, 0, IV_LENGTH);
+        // 初始化或计算失败时 Cipher 状态不确定，直接丢弃不归还
+        Cipher cipher = acquire();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, output, 0, IV_LENGTH));
+        cipher.doFinal(plaintext, 0, plaintext.length, output, IV_LENGTH);
+        release(cipher);
+        return output;
+    }
+
+    /**
+     * 解密 IV + 密文 + 认证标签
+     */
+    public byte[] decrypt(byte[] combined) throws GeneralSecurityException {
+        if (combined.length < IV_LENGTH + TAG_LENGTH) {
+            throw new GeneralSecurityException("密文长度不足: " + combined.length);
+        }
+        Cipher cipher = acquire();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, combined, 0, IV_LENGTH));
+        byte[] plaintext = cipher.doFinal(combined, IV_LENGTH, combined.length - IV_LENGTH);
+        release(cipher);
+        return plaintext;
+    }
+
+    /**
+     * 流式加密，适用于大数据：分块读取输入，输出 IV + 密文 + 认证标签，格式与 {@link #encrypt(byte[])} 相同
+     */
+    public void encrypt(InputStream in, OutputStream out) throws IOException, GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
+        Cipher cipher = acquire();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+        out.write(iv);
+        transfer(cipher, in, out);
+        release(cipher);
+    }
+
+    /**
+     * 流式解密 {@link #encrypt(InputStream, OutputStream)} 或 {@link #encrypt(byte[])} 的输出
+     * <p>
+     * GCM 须在认证标签校验通过后才能输出明文，JDK 实现会在内部缓存密文直到结束，
+     * 因此解密的内存占用仍与数据大小相关，但省去了读入完整数组、拆分IV与密文的额外复制。
+     * </p>
+     */
+    public void decrypt(InputStream in, OutputStream out) throws IOException, GeneralSecurityException {
+        byte[] iv = in.readNBytes(IV_LENGTH);
+        if (iv.length < IV_LENGTH) {
+            throw new GeneralSecurityException("密文长度不足: " + iv.length);
+        }
+        Cipher cipher = acquire();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+        transfer(cipher, in, out);
+        release(cipher);
+    }
+
+    /**
+     * 解码Base64，包含URL安全字符或缺少填充时才做转换
+     */
+    public static byte[] decodeBase64(String encoded) {
+        if (encoded.indexOf('-') >= 0 || encoded.indexOf('_') >= 0) {
+            encoded = encoded.replace('-', '+').replace('_', '/');
+        }
+        int padding = encoded.length() % 4;
+        if (padding > 0) {
+            encoded += "===".substring(0, 4 - padding);
+        }
+        return Base64.getDecoder().decode(encoded);
+    }
+
+    /**
+     * 当前池中空闲的 Cipher 数
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+
+    private void transfer(Cipher cipher, InputStream in, OutputStream out) throws IOException, GeneralSecurityException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            byte[] chunk = cipher.update(buffer, 0, read);
+            if (chunk != null) {
+                out.write(chunk);
+            }
+        }
+        out.write(cipher.doFinal());
+    }
+
+    private Cipher acquire() throws GeneralSecurityException {
+        Cipher cipher = pool.poll();
+        if (cipher != null) {
+            pooled.decrementAndGet();
+            return cipher;
+        }
+        return Cipher.getInstance(TRANSFORMATION);
+    }
+
+    private void release(Cipher cipher) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            pool.offer(cipher);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
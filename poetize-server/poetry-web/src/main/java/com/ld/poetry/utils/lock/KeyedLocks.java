@@ -0,0 +1,131 @@
+package com.ld.poetry.utils.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按key引用计数的互斥锁
+ * <p>
+ * 每个key对应一把独立的 ReentrantLock，获取（含排队等待）时引用计数加一，释放时减一，
+ * 最后一个持有者释放后立即从Map中移除，Map大小只取决于同时在用的key数，适用于IP、用户ID等无界key。
+ * 基于 ReentrantLock，虚拟线程等待时不会占用载体线程。
+ * </p>
+ * <p>
+ * {@link #get(String)} 返回的是无状态视图，lock/unlock 必须成对调用，不支持 newCondition。
+ * </p>
+ */
+public final class KeyedLocks {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 获取key对应的锁视图
+     */
+    public Lock get(String key) {
+        return new KeyLock(key);
+    }
+
+    /**
+     * 当前被持有或等待中的key数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry retain(String key) {
+        return entries.compute(key, (k, entry) -> {
+            if (entry == null) {
+                entry = new Entry();
+            }
+            entry.refs++;
+            return entry;
+        });
+    }
+
+    private void release(String key, Entry held) {
+        entries.computeIfPresent(key, (k, entry) -> {
+            if (entry != held) {
+                return entry;
+            }
+            return --entry.refs == 0 ? null : entry;
+        });
+    }
+
+    private static final class Entry {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * 持有及等待中的次数，只在 ConcurrentHashMap.compute 中读写
+         */
+        int refs;
+    }
+
+    private final class KeyLock implements Lock {
+
+        private final String key;
+
+        KeyLock(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void lock() {
+            retain(key).lock.lock();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            Entry entry = retain(key);
+            try {
+                entry.lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                release(key, entry);
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            Entry entry = retain(key);
+            if (entry.lock.tryLock()) {
+                return true;
+            }
+            release(key, entry);
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            Entry entry = retain(key);
+            boolean locked = false;
+            try {
+                locked = entry.lock.tryLock(time, unit);
+                return locked;
+            } finally {
+                if (!locked) {
+                    release(key, entry);
+                }
+            }
+        }
+
+        @Override
+        public void unlock() {
+            // 持有期间引用计数大于0，Map中的条目一定是加锁时的那个
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                throw new IllegalMonitorStateException("Lock not held: " + key);
+            }
+            entry.lock.unlock();
+            release(key, entry);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("KeyedLocks does not support conditions");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ld.poetry.utils.lock;
+
+import java.util.function.Supplier;
+
+/**
+ * 分段锁
+ * <p>
+ * 固定数量的锁组成数组，按key的哈希选取其中一个，内存占用与key的数量无关。
+ * 不同key可能落在同一把锁上（伪共享）而互相等待，只适用于能容忍这种额外串行化的场景，
+ * 例如少量固定key的缓存重建。
+ * </p>
+ *
+ * @param <L> 锁类型，如 ReentrantLock、ReentrantReadWriteLock
+ */
+public final class LockStripes<L> {
+
+    private final Object[] stripes;
+
+    private final int mask;
+
+    /**
+     * @param stripes 分段数，向上取整为2的幂
+     * @param factory 锁的创建函数
+     */
+    public LockStripes(int stripes, Supplier<L> factory) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = factory.get();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 获取key对应的锁，同一key总是返回同一把锁
+     */
+    @SuppressWarnings("unchecked")
+    public L get(Object key) {
+        return (L) stripes[indexFor(key)];
+    }
+
+    /**
+     * 分段数
+     */
+    public int size() {
+        return stripes.length;
+    }
+
+    int indexFor(Object key) {
+        // 打散哈希值的高低位，避免相似字符串集中在少数分段上
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & mask;
+    }
+}
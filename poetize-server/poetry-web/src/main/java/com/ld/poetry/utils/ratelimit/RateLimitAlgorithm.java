@@ -0,0 +1,27 @@
+package com.ld.poetry.utils.ratelimit;
+
+/**
+ * 限流算法
+ */
+public enum RateLimitAlgorithm {
+
+    /**
+     * 令牌桶：允许突发 limit 次，之后按 limit/window 的速率匀速恢复
+     */
+    TOKEN_BUCKET("lua/rate_limit_token_bucket.lua"),
+
+    /**
+     * 滑动窗口计数：任意 window 时长内最多 limit 次（按上一窗口加权估算，只占用两个计数）
+     */
+    SLIDING_WINDOW("lua/rate_limit_sliding_window.lua");
+
+    private final String script;
+
+    RateLimitAlgorithm(String script) {
+        this.script = script;
+    }
+
+    public String getScript() {
+        return script;
+    }
+}
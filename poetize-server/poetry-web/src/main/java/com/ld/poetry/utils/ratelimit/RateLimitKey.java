@@ -0,0 +1,33 @@
+package com.ld.poetry.utils.ratelimit;
+
+import java.util.Locale;
+
+/**
+ * 限流键维度
+ */
+public enum RateLimitKey {
+
+    /**
+     * 当前登录用户，未登录时跳过该规则
+     */
+    USER,
+
+    /**
+     * 客户端IP
+     */
+    IP,
+
+    /**
+     * 接口（类名.方法名）
+     */
+    ENDPOINT;
+
+    private final String label = name().toLowerCase(Locale.ROOT);
+
+    /**
+     * 构建该维度的键片段，如 user:1、ip:1.2.3.4
+     */
+    public String of(Object value) {
+        return label + ":" + value;
+    }
+}
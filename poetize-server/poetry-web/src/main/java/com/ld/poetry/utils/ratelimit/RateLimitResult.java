@@ -0,0 +1,52 @@
+package com.ld.poetry.utils.ratelimit;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 限流判定结果
+ *
+ * @param allowed           是否放行
+ * @param limit             规则允许次数
+ * @param remaining         剩余次数
+ * @param resetSeconds      计数完全恢复（当前窗口结束/令牌补满）所需秒数
+ * @param retryAfterSeconds 被拒绝时建议的重试等待秒数，放行时为0
+ */
+public record RateLimitResult(boolean allowed, int limit, int remaining, long resetSeconds, long retryAfterSeconds) {
+
+    public static final String HEADER_LIMIT = "X-RateLimit-Limit";
+
+    public static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+
+    public static final String HEADER_RESET = "X-RateLimit-Reset";
+
+    public static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    /**
+     * 无法判定（如Redis不可用）时放行的结果
+     */
+    public static RateLimitResult unlimited(RateLimitRule rule) {
+        return new RateLimitResult(true, rule.limit(), rule.limit(), 0, 0);
+    }
+
+    /**
+     * 已使用次数
+     */
+    public int used() {
+        return limit - remaining;
+    }
+
+    /**
+     * 写入限流响应头
+     */
+    public void applyHeaders(HttpServletResponse response) {
+        if (response == null) {
+            return;
+        }
+        response.setHeader(HEADER_LIMIT, String.valueOf(limit));
+        response.setHeader(HEADER_REMAINING, String.valueOf(remaining));
+        response.setHeader(HEADER_RESET, String.valueOf(resetSeconds));
+        if (!allowed) {
+            response.setHeader(HEADER_RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        }
+    }
+}
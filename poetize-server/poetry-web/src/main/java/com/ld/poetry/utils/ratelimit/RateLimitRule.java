@@ -0,0 +1,37 @@
+package com.ld.poetry.utils.ratelimit;
+
+/**
+ * 限流规则
+ *
+ * @param name           规则名称，作为Redis键的一部分，同名规则共享计数
+ * @param algorithm      限流算法
+ * @param limit          窗口内允许次数（令牌桶为桶容量）
+ * @param windowSeconds  窗口时长（令牌桶为补满整桶所需时长）
+ * @param localPreCheck  是否启用本地预检：被拒绝后在等待期内直接本地拒绝，不再访问Redis
+ */
+public record RateLimitRule(String name, RateLimitAlgorithm algorithm, int limit, long windowSeconds, boolean localPreCheck) {
+
+    public RateLimitRule {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("rate limit name must not be empty");
+        }
+        if (limit <= 0 || windowSeconds <= 0) {
+            throw new IllegalArgumentException("rate limit and window must be positive: " + name);
+        }
+    }
+
+    public static RateLimitRule slidingWindow(String name, int limit, long windowSeconds) {
+        return new RateLimitRule(name, RateLimitAlgorithm.SLIDING_WINDOW, limit, windowSeconds, false);
+    }
+
+    public static RateLimitRule tokenBucket(String name, int capacity, long refillSeconds) {
+        return new RateLimitRule(name, RateLimitAlgorithm.TOKEN_BUCKET, capacity, refillSeconds, false);
+    }
+
+    /**
+     * 返回启用本地预检的同名规则
+     */
+    public RateLimitRule withLocalPreCheck() {
+        return new RateLimitRule(name, algorithm, limit, windowSeconds, true);
+    }
+}
@@ -0,0 +1,140 @@
+package com.ld.poetry.utils.ratelimit;
+
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.utils.cache.BoundedTtlCache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 Redis Lua 脚本的分布式限流器
+ * <p>
+ * 每次判定只执行一次脚本：读取计数、判断、累加、设置过期在 Redis 内原子完成，
+ * 替代原先 get 后再 set(count+1) 的两次往返（并发时会漏计）。脚本使用 Redis 服务器时间，各节点时钟偏差不影响窗口计算。
+ * </p>
+ * <p>
+ * 规则启用本地预检时，被拒绝的键会在本地记住等待期，等待期内直接拒绝，持续刷接口的客户端不再产生Redis调用。
+ * Redis 不可用时放行，与原有限流逻辑“出错不阻止操作”保持一致。
+ * </p>
+ */
+@Slf4j
+@Component
+public class RedisRateLimiter {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 本地预检最多记录的被拒绝键数
+     */
+    @Value("${poetize.rate-limit.local-cache-size:10000}")
+    private int localCacheSize = 10000;
+
+    /**
+     * 本地预检单次最长拒绝时间（秒），超过后重新询问Redis
+     */
+    @Value("${poetize.rate-limit.local-max-seconds:60}")
+    private long localMaxSeconds = 60;
+
+    private final Map<RateLimitAlgorithm, RedisScript<List>> scripts = new EnumMap<>(RateLimitAlgorithm.class);
+
+    private BoundedTtlCache<String, Long> localDenied;
+
+    @PostConstruct
+    public void init() {
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            DefaultRedisScript<List> script = new DefaultRedisScript<>();
+            script.setScriptSource(new ResourceScriptSource(new ClassPathResource(algorithm.getScript())));
+            script.setResultType(List.class);
+            scripts.put(algorithm, script);
+        }
+        localDenied = new BoundedTtlCache<>(localCacheSize, localMaxSeconds, localMaxSeconds, null);
+    }
+
+    /**
+     * 消耗一次配额
+     *
+     * @param rule 限流规则
+     * @param key  限流对象，如 user:1、ip:1.2.3.4
+     */
+    public RateLimitResult acquire(RateLimitRule rule, String key) {
+        return acquire(rule, key, 1);
+    }
+
+    /**
+     * 消耗指定数量的配额
+     */
+    public RateLimitResult acquire(RateLimitRule rule, String key, int permits) {
+        String redisKey = CacheConstants.buildRateLimitKey(rule.name(), key);
+
+        if (rule.localPreCheck()) {
+            Long deniedUntil = localDenied.get(redisKey);
+            long now = System.currentTimeMillis();
+            if (deniedUntil != null && deniedUntil > now) {
+                long retryAfter = toSeconds(deniedUntil - now);
+                return new RateLimitResult(false, rule.limit(), 0, retryAfter, retryAfter);
+            }
+        }
+
+        try {
+            List<?> values = stringRedisTemplate.execute(scripts.get(rule.algorithm()), List.of(redisKey),
+                    String.valueOf(rule.limit()), String.valueOf(rule.windowSeconds() * 1000), String.valueOf(permits));
+            if (values == null || values.size() < 4) {
+                log.warn("限流脚本返回异常结果，本次放行: rule={}, key={}, result={}", rule.name(), key, values);
+                return RateLimitResult.unlimited(rule);
+            }
+
+            boolean allowed = toLong(values.get(0)) == 1;
+            long retryAfterMs = toLong(values.get(3));
+            RateLimitResult result = new RateLimitResult(allowed, rule.limit(), (int) toLong(values.get(1)),
+                    toSeconds(toLong(values.get(2))), allowed ? 0 : toSeconds(retryAfterMs));
+
+            if (!allowed && rule.localPreCheck() && retryAfterMs > 0) {
+                localDenied.put(redisKey, System.currentTimeMillis() + Math.min(retryAfterMs, localMaxSeconds * 1000));
+            }
+            return result;
+        } catch (Exception e) {
+            log.warn("限流检查失败，本次放行: rule={}, key={}, error={}", rule.name(), key, e.getMessage());
+            return RateLimitResult.unlimited(rule);
+        }
+    }
+
+    /**
+     * 查询当前配额而不消耗（不经过本地预检，也不写入Redis）
+     */
+    public RateLimitResult peek(RateLimitRule rule, String key) {
+        return acquire(new RateLimitRule(rule.name(), rule.algorithm(), rule.limit(), rule.windowSeconds(), false), key, 0);
+    }
+
+    /**
+     * 清除限流计数（如登录成功后清除失败次数）
+     */
+    public void reset(RateLimitRule rule, String key) {
+        String redisKey = CacheConstants.buildRateLimitKey(rule.name(), key);
+        localDenied.invalidate(redisKey);
+        try {
+            stringRedisTemplate.delete(redisKey);
+        } catch (Exception e) {
+            log.warn("清除限流计数失败: rule={}, key={}, error={}", rule.name(), key, e.getMessage());
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : Long.parseLong(String.valueOf(value));
+    }
+
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+}
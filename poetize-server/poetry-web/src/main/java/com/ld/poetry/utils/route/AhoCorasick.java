@@ -0,0 +1,152 @@
+package com.ld.poetry.utils.route;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 多模式子串匹配自动机（Aho-Corasick），忽略ASCII大小写
+ * <p>
+ * 构建时把 goto/fail 展开为完整的状态转移表，字符先映射到紧凑字母表（模式中未出现的字符归为同一类），
+ * 扫描时每个字符只做一次查表，与模式数量无关。模式只能包含ASCII字符。
+ * </p>
+ */
+final class AhoCorasick {
+
+    /**
+     * 匹配回调
+     */
+    interface MatchHandler {
+
+        /**
+         * @param pattern 模式下标
+         * @param end     匹配结束位置（不含）
+         * @return 是否继续扫描
+         */
+        boolean onMatch(int pattern, int end);
+    }
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final byte[] charClass = new byte[128];
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] patternLengths;
+
+    AhoCorasick(List<String> patterns) {
+        patternLengths = new int[patterns.size()];
+        List<String> lowered = new ArrayList<>(patterns.size());
+        int classes = 1;
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i).toLowerCase(Locale.ROOT);
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("pattern must not be empty");
+            }
+            for (int j = 0; j < pattern.length(); j++) {
+                char c = pattern.charAt(j);
+                if (c >= 128) {
+                    throw new IllegalArgumentException("pattern must be ASCII: " + pattern);
+                }
+                if (charClass[c] == 0) {
+                    charClass[c] = (byte) classes++;
+                }
+            }
+            lowered.add(pattern);
+            patternLengths[i] = pattern.length();
+        }
+        alphabetSize = classes;
+
+        // 构建 goto 树
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        gotoTable.add(newRow());
+        nodeOutputs.add(new ArrayList<>());
+        for (int i = 0; i < lowered.size(); i++) {
+            int state = 0;
+            for (char c : lowered.get(i).toCharArray()) {
+                int cls = charClass[c];
+                if (gotoTable.get(state)[cls] < 0) {
+                    gotoTable.get(state)[cls] = gotoTable.size();
+                    gotoTable.add(newRow());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                state = gotoTable.get(state)[cls];
+            }
+            nodeOutputs.get(state).add(i);
+        }
+
+        // BFS 计算 fail 链接并展开为完整转移表
+        int states = gotoTable.size();
+        transitions = new int[states * alphabetSize];
+        outputs = new int[states][];
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            int next = gotoTable.get(0)[cls];
+            if (next > 0) {
+                fail[next] = 0;
+                queue.add(next);
+                transitions[cls] = next;
+            } else {
+                transitions[cls] = 0;
+            }
+        }
+        outputs[0] = NO_OUTPUT;
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> merged = new ArrayList<>(nodeOutputs.get(state));
+            for (int inherited : outputs[fail[state]]) {
+                merged.add(inherited);
+            }
+            outputs[state] = merged.isEmpty() ? NO_OUTPUT : merged.stream().mapToInt(Integer::intValue).toArray();
+
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                int next = gotoTable.get(state)[cls];
+                if (next > 0) {
+                    fail[next] = transitions[fail[state] * alphabetSize + cls];
+                    queue.add(next);
+                    transitions[state * alphabetSize + cls] = next;
+                } else {
+                    transitions[state * alphabetSize + cls] = transitions[fail[state] * alphabetSize + cls];
+                }
+            }
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /**
+     * 扫描文本，按出现顺序回调每个匹配
+     */
+    void scan(CharSequence text, MatchHandler handler) {
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + 32);
+            }
+            int cls = c < 128 ? charClass[c] : 0;
+            state = transitions[state * alphabetSize + cls];
+            for (int pattern : outputs[state]) {
+                if (!handler.onMatch(pattern, i + 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    int patternLength(int pattern) {
+        return patternLengths[pattern];
+    }
+
+    int stateCount() {
+        return outputs.length;
+    }
+}
@@ -0,0 +1,90 @@
+package com.ld.poetry.utils.route;
+
+import java.util.Arrays;
+
+/**
+ * 路径前缀树，区分大小写
+ * <p>
+ * 支持三种规则：精确匹配、前缀匹配、单段匹配（前缀之后还有且只有一个非空路径段，等价于 {@code /user/[^/]+}）。
+ * 匹配时沿路径逐字符下行一次：精确匹配优先，其余取最长的命中规则。
+ * </p>
+ *
+ * @param <V> 规则对应的值
+ */
+final class PathTrie<V> {
+
+    enum Mode {
+        EXACT, PREFIX, SINGLE_SEGMENT
+    }
+
+    private final Node<V> root = new Node<>();
+
+    void put(String key, Mode mode, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        switch (mode) {
+            case EXACT -> node.exact = value;
+            case PREFIX -> node.prefix = value;
+            case SINGLE_SEGMENT -> node.singleSegment = value;
+        }
+    }
+
+    /**
+     * @return 命中规则的值，未命中返回null
+     */
+    V match(String path) {
+        Node<V> node = root;
+        V best = null;
+        int length = path.length();
+        for (int i = 0; ; i++) {
+            if (node.prefix != null) {
+                best = node.prefix;
+            }
+            if (node.singleSegment != null && i < length && path.indexOf('/', i) < 0) {
+                best = node.singleSegment;
+            }
+            if (i == length) {
+                return node.exact != null ? node.exact : best;
+            }
+            node = node.child(path.charAt(i));
+            if (node == null) {
+                return best;
+            }
+        }
+    }
+
+    private static final class Node<V> {
+
+        private char[] keys = new char[0];
+        @SuppressWarnings("unchecked")
+        private Node<V>[] children = new Node[0];
+        private V exact;
+        private V prefix;
+        private V singleSegment;
+
+        Node<V> child(char c) {
+            char[] k = keys;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node<V> childOrCreate(char c) {
+            Node<V> existing = child(c);
+            if (existing != null) {
+                return existing;
+            }
+            Node<V> created = new Node<>();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = created;
+            return created;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ld.poetry.utils.route;
+
+/**
+ * 请求路由分类结果
+ *
+ * @param type       路由类别
+ * @param internal   是否为内部服务请求（X-Internal-Service 为已知服务）
+ * @param attackType 恶意请求的攻击类型描述，非恶意请求为null
+ */
+public record RouteClassification(RouteType type, boolean internal, String attackType) {
+
+    public boolean isPageVisit() {
+        return type == RouteType.PAGE_VISIT;
+    }
+
+    public boolean isMalicious() {
+        return type == RouteType.MALICIOUS;
+    }
+
+    public boolean isUpload() {
+        return type == RouteType.UPLOAD;
+    }
+}
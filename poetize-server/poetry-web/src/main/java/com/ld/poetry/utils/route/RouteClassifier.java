@@ -0,0 +1,331 @@
+package com.ld.poetry.utils.route;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 请求路由分类器
+ * <p>
+ * SecurityFilter、PoetryFilter、FileFilter 原先各自用 startsWith 链、正则和 AntPathMatcher 判断请求类别，
+ * 这里把全部规则在启动时编译一次：路径前缀/精确/单段规则放入前缀树，子串、后缀和SQL关键字放入 Aho-Corasick 自动机，
+ * 对每个URI做一次分类，得到 {页面访问, 接口, 静态资源, 上传, 恶意, 内部服务}。
+ * </p>
+ * <p>
+ * 分类结果保存在请求属性 {@link #REQUEST_ATTRIBUTE} 中，第一个过滤器计算后，后续过滤器和切面直接复用。
+ * </p>
+ */
+@Slf4j
+@Component
+public class RouteClassifier {
+
+    /**
+     * 保存分类结果的请求属性名
+     */
+    public static final String REQUEST_ATTRIBUTE = RouteClassifier.class.getName() + ".CLASSIFICATION";
+
+    /**
+     * 内部服务标识请求头
+     */
+    public static final String INTERNAL_SERVICE_HEADER = "X-Internal-Service";
+
+    public static final String ATTACK_MALICIOUS_PATH = "恶意路径扫描";
+
+    public static final String ATTACK_SUSPICIOUS_PATTERN = "可疑请求特征";
+
+    // 内部服务标识
+    private static final Set<String> INTERNAL_SERVICES = Set.of(
+        "poetize-python",
+        "poetize-java",
+        "poetize-prerender",
+        "poetize-nginx"
+    );
+
+    // 常见的恶意扫描路径 - 只包含明确的恶意路径，避免误拦截正常请求
+    private static final List<String> MALICIOUS_PATHS = List.of(
+        "/.env",                    // 环境变量文件
+        "/.env.local",
+        "/.env.production",
+        "/.git",                    // Git版本控制目录
+        "/.git/config",
+        "/phpmyadmin",              // 数据库管理工具
+        "/pma",
+        "/wp-admin",                // WordPress管理后台
+        "/wp-login.php",
+        "/wp-config.php",
+        "/config.php",              // PHP配置文件
+        "/database.php",
+        "/xmlrpc.php",              // WordPress XML-RPC
+        "/.aws",                    // AWS配置
+        "/.docker",                 // Docker配置
+        "/docker-compose.yml",
+        "/Dockerfile",
+        "/.DS_Store",               // macOS系统文件
+        "/admin.php",               // PHP管理页面（而不是/admin）
+        "/admin/login.php",
+        "/administrator.php",
+        "/manager.php",
+        "/console.php",
+        "/debug.php",
+        "/test.php",
+        "/info.php",
+        "/phpinfo.php",
+        "/sql.php",
+        "/backup.sql",
+        "/database.sql",
+        "/.htaccess",               // Apache配置文件
+        "/.htpasswd",
+        "/web.config",              // IIS配置文件
+        "/server.xml",              // Tomcat配置
+        "/application.properties",  // Spring配置文件（如果在根目录就是恶意扫描）
+        "/application.yml",
+        "/build.sh",                // 构建脚本，常被扫描利用
+        "/index.html",              // 根目录index.html探测
+        "/translation/test-summary", // 翻译模型测试探测
+        "/translation/definite_notexist_path", // 翻译模型路径扫描
+        "/definite_notexist_path"  // 通用路径探测
+    );
+
+    // 解码后URI中出现即视为可疑的子串（忽略大小写）
+    private static final List<String> MALICIOUS_SUBSTRINGS = List.of(
+        // 路径遍历攻击
+        "..", "./",
+        // PHP相关恶意路径（WordPress、PHPMyAdmin等）
+        "/wp-", ".php.", "admin.php", "login.php", "config.php", "phpinfo",
+        // 明显的恶意探测模式（已覆盖 /translation/test-summary 等翻译路径扫描）
+        "notexist", "test-", "scanner", "scan", "probe",
+        // 常见的CMS路径扫描
+        "/wordpress", "/drupal", "/joomla", "/magento",
+        "/administrator", "/admin/login", "/phpmyadmin", "/xmlrpc",
+        "/blog/wp-", "/cms/", "/old/", "/new/", "/backup/", "/bak/",
+        "/beta/", "/temp/", "/dev/",
+        // XSS和脚本注入
+        "<script", "javascript:", "eval(", "base64_decode"
+    );
+
+    // 敏感文件扩展名（区分大小写的后缀）
+    private static final List<String> MALICIOUS_SUFFIXES = List.of(
+        ".sql", ".bak", ".backup", ".old", ".tmp", ".log"
+    );
+
+    // SQL注入关键字，成对出现时视为可疑（忽略大小写）
+    private static final List<String> SQL_KEYWORDS = List.of(
+        "union", "select", "drop", "table", "insert", "into", "delete", "from", "update", "set"
+    );
+
+    private static final int[] SQL_PAIRS = {
+        sqlMask("union", "select"),
+        sqlMask("drop", "table"),
+        sqlMask("insert", "into"),
+        sqlMask("delete", "from"),
+        sqlMask("update", "set"),
+        sqlMask("select", "from")
+    };
+
+    // 文件上传下载路径（区分大小写的子串）
+    private static final List<String> NON_PAGE_SUBSTRINGS = List.of("/upload/", "/download/");
+
+    // 静态资源扩展名（区分大小写的后缀）
+    private static final List<String> NON_PAGE_SUFFIXES = List.of(
+        ".jpg", ".png", ".gif", ".ico", ".css", ".js", ".map"
+    );
+
+    private enum Group {
+        MALICIOUS, SQL, NON_PAGE
+    }
+
+    private record Keyword(String text, Group group, boolean caseSensitive, boolean suffix, int sqlBit) {
+    }
+
+    private record PathRule(RouteType type, String attackType) {
+    }
+
+    private static final PathRule UPLOAD_RULE = new PathRule(RouteType.UPLOAD, null);
+
+    private final PathTrie<PathRule> pathRules = new PathTrie<>();
+
+    private final Keyword[] keywords;
+
+    private final AhoCorasick automaton;
+
+    public RouteClassifier() {
+        PathRule maliciousPath = new PathRule(RouteType.MALICIOUS, ATTACK_MALICIOUS_PATH);
+        for (String path : MALICIOUS_PATHS) {
+            pathRules.put(path, PathTrie.Mode.EXACT, maliciousPath);
+        }
+
+        PathRule api = new PathRule(RouteType.API, null);
+        PathRule staticResource = new PathRule(RouteType.STATIC, null);
+        // 后端接口
+        for (String prefix : List.of("/api/", "/imChatUserMessage", "/imChatGroup", "/imChatUserFriend", "/imChatGroupUser",
+                "/webInfo", "/sysConfig", "/resource", "/imageCompress")) {
+            pathRules.put(prefix, PathTrie.Mode.PREFIX, api);
+        }
+        // 形如 /user/login 的接口（区分API和页面路由，等价于 /user/[^/]+）
+        for (String module : List.of("user", "article", "weiYan", "treeHole", "comment", "sort", "label", "admin")) {
+            pathRules.put("/" + module + "/", PathTrie.Mode.SINGLE_SEGMENT, api);
+        }
+        // 静态资源
+        for (String prefix : List.of("/static/", "/css/", "/js/", "/images/", "/favicon.ico")) {
+            pathRules.put(prefix, PathTrie.Mode.PREFIX, staticResource);
+        }
+        // 其他服务
+        for (String prefix : List.of("/seo/", "/translation/")) {
+            pathRules.put(prefix, PathTrie.Mode.PREFIX, api);
+        }
+        // 文件上传
+        pathRules.put("/resource/upload", PathTrie.Mode.EXACT, UPLOAD_RULE);
+
+        List<Keyword> keywordList = new ArrayList<>();
+        MALICIOUS_SUBSTRINGS.forEach(text -> keywordList.add(new Keyword(text, Group.MALICIOUS, false, false, 0)));
+        MALICIOUS_SUFFIXES.forEach(text -> keywordList.add(new Keyword(text, Group.MALICIOUS, true, true, 0)));
+        for (int i = 0; i < SQL_KEYWORDS.size(); i++) {
+            keywordList.add(new Keyword(SQL_KEYWORDS.get(i), Group.SQL, false, false, 1 << i));
+        }
+        NON_PAGE_SUBSTRINGS.forEach(text -> keywordList.add(new Keyword(text, Group.NON_PAGE, true, false, 0)));
+        NON_PAGE_SUFFIXES.forEach(text -> keywordList.add(new Keyword(text, Group.NON_PAGE, true, true, 0)));
+
+        keywords = keywordList.toArray(new Keyword[0]);
+        automaton = new AhoCorasick(keywordList.stream().map(Keyword::text).toList());
+    }
+
+    private static int sqlMask(String first, String second) {
+        return (1 << SQL_KEYWORDS.indexOf(first)) | (1 << SQL_KEYWORDS.indexOf(second));
+    }
+
+    /**
+     * 分类请求，结果缓存在请求属性中
+     */
+    public RouteClassification classify(HttpServletRequest request) {
+        Object cached = request.getAttribute(REQUEST_ATTRIBUTE);
+        if (cached instanceof RouteClassification classification) {
+            return classification;
+        }
+        String internalService = request.getHeader(INTERNAL_SERVICE_HEADER);
+        boolean internal = internalService != null && INTERNAL_SERVICES.contains(internalService);
+        RouteClassification classification = classify(request.getRequestURI(), internal);
+        request.setAttribute(REQUEST_ATTRIBUTE, classification);
+        return classification;
+    }
+
+    /**
+     * 分类URI
+     *
+     * @param requestURI 请求URI（未解码）
+     * @param internal   是否为内部服务请求
+     */
+    public RouteClassification classify(String requestURI, boolean internal) {
+        String uri = requestURI != null ? requestURI : "";
+
+        PathRule pathRule = pathRules.match(uri);
+        if (pathRule != null && pathRule.type() == RouteType.MALICIOUS) {
+            return new RouteClassification(RouteType.MALICIOUS, internal, pathRule.attackType());
+        }
+
+        // URL解码，防止编码绕过；大多数URI不含编码字符，直接复用原串
+        String decoded = uri;
+        if (uri.indexOf('%') >= 0 || uri.indexOf('+') >= 0) {
+            try {
+                decoded = URLDecoder.decode(uri, StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                // URL解码失败，可能是恶意构造的URL
+                log.warn("URL解码失败，可能为恶意请求: {}", uri);
+                return new RouteClassification(RouteType.MALICIOUS, internal, ATTACK_SUSPICIOUS_PATTERN);
+            }
+        }
+
+        Scan scan = new Scan(decoded, true);
+        automaton.scan(decoded, scan);
+        if (scan.malicious) {
+            return new RouteClassification(RouteType.MALICIOUS, internal, ATTACK_SUSPICIOUS_PATTERN);
+        }
+
+        boolean nonPage = scan.nonPage;
+        if (!decoded.equals(uri)) {
+            // 静态资源规则作用于原始URI
+            Scan raw = new Scan(uri, false);
+            automaton.scan(uri, raw);
+            nonPage = raw.nonPage;
+        }
+
+        RouteType type;
+        if (uri.contains("//") && pathRules.match(collapseSlashes(uri)) == UPLOAD_RULE) {
+            // 与 AntPathMatcher 一致，重复的分隔符不能绕过上传路径的频率限制
+            type = RouteType.UPLOAD;
+        } else if (pathRule != null) {
+            type = pathRule.type();
+        } else if (nonPage) {
+            type = RouteType.STATIC;
+        } else {
+            type = RouteType.PAGE_VISIT;
+        }
+        return new RouteClassification(type, internal, null);
+    }
+
+    private static String collapseSlashes(String uri) {
+        StringBuilder collapsed = new StringBuilder(uri.length());
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c != '/' || collapsed.isEmpty() || collapsed.charAt(collapsed.length() - 1) != '/') {
+                collapsed.append(c);
+            }
+        }
+        return collapsed.toString();
+    }
+
+    /**
+     * 单次扫描的匹配状态
+     */
+    private final class Scan implements AhoCorasick.MatchHandler {
+
+        private final String text;
+        private final boolean checkMalicious;
+        private boolean malicious;
+        private boolean nonPage;
+        private int sqlBits;
+
+        private Scan(String text, boolean checkMalicious) {
+            this.text = text;
+            this.checkMalicious = checkMalicious;
+        }
+
+        @Override
+        public boolean onMatch(int pattern, int end) {
+            Keyword keyword = keywords[pattern];
+            if (keyword.suffix() && end != text.length()) {
+                return true;
+            }
+            int length = keyword.text().length();
+            if (keyword.caseSensitive() && !text.regionMatches(end - length, keyword.text(), 0, length)) {
+                return true;
+            }
+            switch (keyword.group()) {
+                case MALICIOUS -> {
+                    if (checkMalicious) {
+                        malicious = true;
+                        return false;
+                    }
+                }
+                case SQL -> {
+                    if (checkMalicious) {
+                        sqlBits |= keyword.sqlBit();
+                        for (int pair : SQL_PAIRS) {
+                            if ((sqlBits & pair) == pair) {
+                                malicious = true;
+                                return false;
+                            }
+                        }
+                    }
+                }
+                case NON_PAGE -> nonPage = true;
+            }
+            return true;
+        }
+    }
+}
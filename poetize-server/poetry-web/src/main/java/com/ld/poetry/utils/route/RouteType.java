@@ -0,0 +1,32 @@
+package com.ld.poetry.utils.route;
+
+/**
+ * 请求路由类别
+ */
+public enum RouteType {
+
+    /**
+     * 前端页面访问，需要记录访问历史
+     */
+    PAGE_VISIT,
+
+    /**
+     * 后端接口及其他服务（SEO、翻译等）
+     */
+    API,
+
+    /**
+     * 静态资源、文件上传下载路径
+     */
+    STATIC,
+
+    /**
+     * 文件上传接口（/resource/upload）
+     */
+    UPLOAD,
+
+    /**
+     * 恶意扫描或可疑请求
+     */
+    MALICIOUS
+}
@@ -0,0 +1,102 @@
+package com.ld.poetry.utils.security;
+
+import com.ld.poetry.entity.User;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 请求级安全上下文
+ * <p>
+ * 同一请求中 LoginCheckAspect、RateLimitAspect、FileFilter 以及业务代码会多次调用
+ * PoetryUtil.getCurrentUser()/getUserId()/getAdminUser()，这里将 token 对应的用户、管理员信息
+ * 记在请求属性上，整个请求只解析一次（未登录/无效token的空结果同样记住）。
+ * 请求结束后随请求属性一起释放，无需额外清理；非Web线程中不做缓存，直接调用加载函数。
+ * </p>
+ * <p>
+ * 用户信息在请求中被更新或会话被注销时，由 TokenSessionCache 调用 {@link #clear()} 使之后的读取重新解析。
+ * </p>
+ */
+public final class RequestSecurityContext {
+
+    /**
+     * 请求属性名
+     */
+    public static final String REQUEST_ATTRIBUTE = RequestSecurityContext.class.getName();
+
+    private String token;
+
+    private boolean userResolved;
+
+    private User user;
+
+    private boolean adminResolved;
+
+    private User admin;
+
+    private RequestSecurityContext() {
+    }
+
+    /**
+     * 获取token对应的用户，本请求内已解析过同一token时直接返回上次结果
+     *
+     * @param token  不带Bearer前缀的token
+     * @param loader 未解析时的加载函数，抛出异常时不记录结果
+     */
+    public static User resolveUser(String token, Function<String, User> loader) {
+        RequestSecurityContext context = current();
+        if (context == null) {
+            return loader.apply(token);
+        }
+        if (context.userResolved && Objects.equals(context.token, token)) {
+            return context.user;
+        }
+        User loaded = loader.apply(token);
+        context.token = token;
+        context.user = loaded;
+        context.userResolved = true;
+        return loaded;
+    }
+
+    /**
+     * 获取管理员信息，本请求内只加载一次
+     */
+    public static User resolveAdmin(Supplier<User> loader) {
+        RequestSecurityContext context = current();
+        if (context == null) {
+            return loader.get();
+        }
+        if (!context.adminResolved) {
+            context.admin = loader.get();
+            context.adminResolved = true;
+        }
+        return context.admin;
+    }
+
+    /**
+     * 清除当前请求已解析的结果
+     */
+    public static void clear() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private static RequestSecurityContext current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object existing = attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (existing instanceof RequestSecurityContext context) {
+            return context;
+        }
+        RequestSecurityContext context = new RequestSecurityContext();
+        attributes.setAttribute(REQUEST_ATTRIBUTE, context, RequestAttributes.SCOPE_REQUEST);
+        return context;
+    }
+}
@@ -1,14 +1,16 @@
 package com.ld.poetry.utils.storage;
 
-import com.ld.poetry.constants.CacheConstants;
 import com.ld.poetry.constants.CommonConst;
 import com.ld.poetry.entity.User;
-import com.ld.poetry.service.CacheService;
 import com.ld.poetry.utils.PoetryUtil;
+import com.ld.poetry.utils.ratelimit.RateLimitKey;
+import com.ld.poetry.utils.ratelimit.RateLimitResult;
+import com.ld.poetry.utils.ratelimit.RateLimitRule;
+import com.ld.poetry.utils.ratelimit.RedisRateLimiter;
+import com.ld.poetry.utils.route.RouteClassifier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -21,10 +23,23 @@ import jakarta.servlet.http.HttpServletResponse;
 @Component
 public class FileFilter {
 
-    private final AntPathMatcher matcher = new AntPathMatcher();
-    
+    /**
+     * 用户每天上传次数
+     */
+    private static final RateLimitRule USER_UPLOAD_RULE =
+            RateLimitRule.slidingWindow("upload", CommonConst.SAVE_MAX_COUNT, CommonConst.SAVE_EXPIRE);
+
+    /**
+     * IP每天上传次数
+     */
+    private static final RateLimitRule IP_UPLOAD_RULE =
+            RateLimitRule.slidingWindow("upload", CommonConst.SAVE_MAX_COUNT + 1, CommonConst.SAVE_EXPIRE).withLocalPreCheck();
+
     @Autowired
-    private CacheService cacheService;
+    private RedisRateLimiter redisRateLimiter;
+
+    @Autowired
+    private RouteClassifier routeClassifier;
 
     /**
      * 文件上传过滤检查
@@ -35,7 +50,7 @@ public class FileFilter {
      */
     public boolean doFilterFile(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
         // 仅对上传路径进行检查
-        if (!matcher.match("/resource/upload", httpServletRequest.getRequestURI())) {
+        if (!routeClassifier.classify(httpServletRequest).isUpload()) {
             return false; // 非上传路径不拦截
         }
         
@@ -55,7 +70,7 @@ public class FileFilter {
             }
 
             // 用户上传频率限制检查
-            boolean userLimitReached = checkUserUploadLimit(user.getId());
+            boolean userLimitReached = checkUserUploadLimit(user.getId(), httpServletResponse);
             if (userLimitReached) {
                 log.info("用户上传超限：userId={}", user.getId());
                 return true;
@@ -63,7 +78,7 @@ public class FileFilter {
             
             // IP上传频率限制检查
             String ip = PoetryUtil.getIpAddr(httpServletRequest);
-            boolean ipLimitReached = checkIpUploadLimit(ip);
+            boolean ipLimitReached = checkIpUploadLimit(ip, httpServletResponse);
             if (ipLimitReached) {
                 log.info("IP上传超限：ip={}", ip);
                 return true;
@@ -83,51 +98,28 @@ public class FileFilter {
      * 检查用户上传频率限制
      * 
      * @param userId 用户ID
+     * @param response HTTP响应，用于写入限流响应头
      * @return true表示超限，false表示未超限
      */
-    private boolean checkUserUploadLimit(Integer userId) {
-        try {
-            String uploadCountKey = CacheConstants.buildFileUploadCountUserKey(userId);
-            Object countObj = cacheService.get(uploadCountKey);
-            int currentCount = countObj != null ? (Integer) countObj : 0;
-            
-            if (currentCount >= CommonConst.SAVE_MAX_COUNT) {
-                return true;
-            }
-            
-            // 增加上传计数
-            cacheService.set(uploadCountKey, currentCount + 1, CommonConst.SAVE_EXPIRE);
-            return false;
-        } catch (Exception e) {
-            log.error("检查用户上传频率限制时发生错误: userId={}", userId, e);
-            // 发生错误时不阻止操作
-            return false;
-        }
+    private boolean checkUserUploadLimit(Integer userId, HttpServletResponse response) {
+        RateLimitResult result = redisRateLimiter.acquire(USER_UPLOAD_RULE, RateLimitKey.USER.of(userId));
+        result.applyHeaders(response);
+        return !result.allowed();
     }
     
     /**
      * 检查IP上传频率限制
      * 
      * @param ip IP地址
+     * @param response HTTP响应，用于写入限流响应头
      * @return true表示超限，false表示未超限
      */
-    private boolean checkIpUploadLimit(String ip) {
-        try {
-            String ipCountKey = CacheConstants.buildFileUploadCountIpKey(ip);
-            Object ipCountObj = cacheService.get(ipCountKey);
-            int currentIpCount = ipCountObj != null ? (Integer) ipCountObj : 0;
-            
-            if (currentIpCount > CommonConst.SAVE_MAX_COUNT) {
-                return true;
-            }
-            
-            // 增加IP上传计数
-            cacheService.set(ipCountKey, currentIpCount + 1, CommonConst.SAVE_EXPIRE);
-            return false;
-        } catch (Exception e) {
-            log.error("检查IP上传频率限制时发生错误: ip={}", ip, e);
-            // 发生错误时不阻止操作
-            return false;
+    private boolean checkIpUploadLimit(String ip, HttpServletResponse response) {
+        RateLimitResult result = redisRateLimiter.acquire(IP_UPLOAD_RULE, RateLimitKey.IP.of(ip));
+        // 放行时保留用户维度的响应头（更严格），仅在IP超限时覆盖
+        if (!result.allowed()) {
+            result.applyHeaders(response);
         }
+        return !result.allowed();
     }
 }
@@ -0,0 +1,58 @@
+-- 滑动窗口计数限流（单个哈希键：w 当前窗口序号，c 当前窗口计数，p 上一窗口计数）
+-- 估算值 = 上一窗口计数 * 上一窗口在滑动窗口内的占比 + 当前窗口计数
+-- KEYS[1] 限流键
+-- ARGV[1] 窗口内允许次数  ARGV[2] 窗口毫秒数  ARGV[3] 本次消耗次数
+-- 返回 {是否放行, 剩余次数, 当前窗口结束剩余毫秒, 需等待毫秒}
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+
+local key = KEYS[1]
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local index = math.floor(now / window)
+local elapsed = now - index * window
+
+local data = redis.call('HMGET', key, 'w', 'c', 'p')
+local current_index = tonumber(data[1])
+local current = tonumber(data[2]) or 0
+local previous = tonumber(data[3]) or 0
+if current_index ~= index then
+    if current_index == index - 1 then
+        previous = current
+    else
+        previous = 0
+    end
+    current = 0
+end
+
+local weight = (window - elapsed) / window
+local estimated = previous * weight + current
+
+local allowed = 0
+local retry_ms = 0
+if estimated + requested <= limit then
+    current = current + requested
+    estimated = estimated + requested
+    allowed = 1
+else
+    local room = limit - current - requested
+    if room >= 0 and previous > 0 then
+        -- 等待上一窗口的权重衰减到足以放行
+        retry_ms = math.max(1, math.ceil((1 - room / previous) * window) - elapsed)
+    else
+        retry_ms = window - elapsed
+    end
+end
+
+-- 消耗0次用于查询，不写入
+if requested > 0 then
+    redis.call('HSET', key, 'w', index, 'c', current, 'p', previous)
+    redis.call('PEXPIRE', key, window * 2)
+end
+
+return {allowed, math.max(0, math.floor(limit - estimated)), window - elapsed, retry_ms}
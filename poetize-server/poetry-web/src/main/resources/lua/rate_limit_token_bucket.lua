@@ -0,0 +1,43 @@
+-- 令牌桶限流（单个哈希键：tokens 剩余令牌，ts 上次补充时间）
+-- KEYS[1] 限流键
+-- ARGV[1] 桶容量  ARGV[2] 补满整桶所需毫秒数  ARGV[3] 本次消耗令牌数
+-- 返回 {是否放行, 剩余令牌, 补满所需毫秒, 需等待毫秒}
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+
+local key = KEYS[1]
+local capacity = tonumber(ARGV[1])
+local refill_ms = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local rate = capacity / refill_ms
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local data = redis.call('HMGET', key, 'tokens', 'ts')
+local tokens = tonumber(data[1])
+local ts = tonumber(data[2])
+if tokens == nil or ts == nil then
+    tokens = capacity
+    ts = now
+end
+
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)
+
+local allowed = 0
+local retry_ms = 0
+if tokens >= requested then
+    tokens = tokens - requested
+    allowed = 1
+else
+    retry_ms = math.ceil((requested - tokens) / rate)
+end
+
+-- 消耗0个令牌用于查询，不写入
+if requested > 0 then
+    redis.call('HSET', key, 'tokens', tostring(tokens), 'ts', tostring(now))
+    redis.call('PEXPIRE', key, refill_ms)
+end
+
+return {allowed, math.floor(tokens), math.ceil((capacity - tokens) / rate), retry_ms}
@@ -0,0 +1,86 @@
+package com.ld.poetry.im.http.controller;
+
+import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
+import com.ld.poetry.im.http.entity.ImChatGroupUser;
+import com.ld.poetry.im.http.entity.ImChatUserFriend;
+import com.ld.poetry.im.http.service.ImChatGroupUserService;
+import com.ld.poetry.im.http.service.ImChatUserFriendService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 在线状态可见范围测试
+ * 验证只有自己、好友和同群成员的在线状态可以查询，其他用户被忽略
+ */
+class PresenceVisibilityTest {
+
+    private final ImChatUserFriendService friendService = mock(ImChatUserFriendService.class);
+
+    private final ImChatGroupUserService groupUserService = mock(ImChatGroupUserService.class);
+
+    private LambdaQueryChainWrapper<ImChatUserFriend> friendQuery;
+
+    private LambdaQueryChainWrapper<ImChatGroupUser> groupUserQuery;
+
+    private final ImChatGroupUserController controller = new ImChatGroupUserController();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        friendQuery = mock(LambdaQueryChainWrapper.class, RETURNS_SELF);
+        groupUserQuery = mock(LambdaQueryChainWrapper.class, RETURNS_SELF);
+        when(friendService.lambdaQuery()).thenReturn(friendQuery);
+        when(groupUserService.lambdaQuery()).thenReturn(groupUserQuery);
+        ReflectionTestUtils.setField(controller, "imChatUserFriendService", friendService);
+        ReflectionTestUtils.setField(controller, "imChatGroupUserService", groupUserService);
+    }
+
+    @Test
+    void onlyFriendsAndGroupMembersAreVisible() {
+        when(friendQuery.list()).thenReturn(List.of(friend(2)));
+        // 先查自己所在的群，再查这些群里的被查询用户
+        when(groupUserQuery.list()).thenReturn(List.of(groupUser(10, 1)), List.of(groupUser(10, 3)));
+
+        Set<Integer> visible = controller.visiblePresenceUsers(1, List.of(1, 2, 3, 4));
+
+        assertEquals(Set.of(1, 2, 3), visible);
+    }
+
+    @Test
+    void userWithoutGroupsSeesOnlyFriends() {
+        when(friendQuery.list()).thenReturn(List.of());
+        when(groupUserQuery.list()).thenReturn(List.of());
+
+        assertEquals(Set.of(1), controller.visiblePresenceUsers(1, List.of(4, 5)));
+        // 没有加入任何群时不查询群成员
+        verify(groupUserService, times(1)).lambdaQuery();
+    }
+
+    @Test
+    void selfOnlyQueryHitsNoTables() {
+        assertEquals(Set.of(1), controller.visiblePresenceUsers(1, List.of(1)));
+
+        verifyNoInteractions(friendService, groupUserService);
+    }
+
+    private static ImChatUserFriend friend(int friendId) {
+        ImChatUserFriend friend = new ImChatUserFriend();
+        friend.setUserId(1);
+        friend.setFriendId(friendId);
+        return friend;
+    }
+
+    private static ImChatGroupUser groupUser(int groupId, int userId) {
+        ImChatGroupUser groupUser = new ImChatGroupUser();
+        groupUser.setGroupId(groupId);
+        groupUser.setUserId(userId);
+        return groupUser;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ld.poetry.im.http.entity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 会话键测试
+ * 验证与参数顺序无关、不同会话不冲突，且与迁移脚本中的 LEAST * 2^32 + GREATEST 结果一致
+ */
+class ConversationKeyTest {
+
+    @Test
+    void keyIsSymmetric() {
+        assertEquals(ImChatUserMessage.conversationKey(3, 7), ImChatUserMessage.conversationKey(7, 3));
+    }
+
+    @Test
+    void keyMatchesMigrationFormula() {
+        assertEquals(3L * 4294967296L + 7, ImChatUserMessage.conversationKey(7, 3));
+        // 系统消息发送者为 -1
+        assertEquals(-1L * 4294967296L + 5, ImChatUserMessage.conversationKey(5, -1));
+        assertEquals(Integer.MAX_VALUE, ImChatUserMessage.conversationKey(Integer.MAX_VALUE, 0));
+    }
+
+    @Test
+    void differentPairsDoNotCollide() {
+        assertNotEquals(ImChatUserMessage.conversationKey(1, 2), ImChatUserMessage.conversationKey(2, 5));
+        assertNotEquals(ImChatUserMessage.conversationKey(1, Integer.MAX_VALUE), ImChatUserMessage.conversationKey(2, 0));
+        assertNotEquals(ImChatUserMessage.conversationKey(-1, 2), ImChatUserMessage.conversationKey(1, 2));
+    }
+}
@@ -0,0 +1,98 @@
+package com.ld.poetry.im.http.service.impl;
+
+import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 会话更新汇总测试
+ * 验证私聊消息按收发双方汇总最后一条消息与收到的消息、跳过系统消息，群消息按群分组并保持写入顺序
+ */
+class ConversationDeltaTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 19, 12, 0);
+
+    @Test
+    void userMessagesUpdateBothSides() {
+        List<ImChatUserMessage> messages = List.of(
+                userMessage(1L, 1, 2),
+                userMessage(2L, 2, 1),
+                userMessage(3L, 1, 2),
+                userMessage(4L, 3, 1));
+
+        Collection<ImChatLastReadServiceImpl.FriendConversationDelta> deltas = ImChatLastReadServiceImpl.friendDeltas(messages);
+
+        assertEquals(4, deltas.size());
+        ImChatLastReadServiceImpl.FriendConversationDelta oneWithTwo = find(deltas, 1, 2);
+        assertEquals(3L, oneWithTwo.last.getId());
+        assertEquals(1, oneWithTwo.incoming.size());
+        assertEquals(2L, oneWithTwo.incoming.get(0).getId());
+
+        ImChatLastReadServiceImpl.FriendConversationDelta twoWithOne = find(deltas, 2, 1);
+        assertEquals(3L, twoWithOne.last.getId());
+        assertEquals(2, twoWithOne.incoming.size());
+
+        ImChatLastReadServiceImpl.FriendConversationDelta threeWithOne = find(deltas, 3, 1);
+        assertEquals(4L, threeWithOne.last.getId());
+        assertTrue(threeWithOne.incoming.isEmpty());
+        assertEquals(1, find(deltas, 1, 3).incoming.size());
+    }
+
+    @Test
+    void systemMessagesAreSkipped() {
+        List<ImChatUserMessage> messages = List.of(userMessage(1L, -1, -1));
+
+        assertTrue(ImChatLastReadServiceImpl.friendDeltas(messages).isEmpty());
+        assertTrue(ImChatLastReadServiceImpl.friendDeltas(null).isEmpty());
+    }
+
+    @Test
+    void groupMessagesKeepWriteOrderPerGroup() {
+        List<ImChatUserGroupMessage> messages = new ArrayList<>();
+        messages.add(groupMessage(1L, -1, 1));
+        messages.add(groupMessage(2L, 5, 2));
+        messages.add(groupMessage(3L, -1, 3));
+
+        Map<Integer, List<ImChatUserGroupMessage>> byGroup = ImChatLastReadServiceImpl.groupByGroupId(messages);
+
+        assertEquals(2, byGroup.size());
+        assertEquals(List.of(1L, 3L), byGroup.get(-1).stream().map(ImChatUserGroupMessage::getId).toList());
+        assertEquals(1, byGroup.get(5).size());
+    }
+
+    private static ImChatLastReadServiceImpl.FriendConversationDelta find(
+            Collection<ImChatLastReadServiceImpl.FriendConversationDelta> deltas, int userId, int friendId) {
+        return deltas.stream()
+                .filter(d -> d.userId == userId && d.friendId == friendId)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static ImChatUserMessage userMessage(long id, int fromId, int toId) {
+        ImChatUserMessage message = new ImChatUserMessage();
+        message.setId(id);
+        message.setFromId(fromId);
+        message.setToId(toId);
+        message.setContent("message-" + id);
+        message.setCreateTime(NOW.plusSeconds(id));
+        return message;
+    }
+
+    private static ImChatUserGroupMessage groupMessage(long id, int groupId, int fromId) {
+        ImChatUserGroupMessage message = new ImChatUserGroupMessage();
+        message.setId(id);
+        message.setGroupId(groupId);
+        message.setFromId(fromId);
+        message.setContent("message-" + id);
+        message.setCreateTime(NOW.plusSeconds(id));
+        return message;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ld.poetry.im.http.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.im.http.dao.ImChatLastReadMapper;
+import com.ld.poetry.im.http.entity.ImChatLastRead;
+import com.ld.poetry.utils.RedisUtil;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 隐藏聊天缓存测试
+ * 验证聊天未隐藏时收发消息不访问数据库，隐藏时按用户、会话更新并移除缓存，更新失败时保留缓存
+ */
+class HiddenChatCacheTest {
+
+    private static final String KEY = CacheConstants.buildImHiddenChatsKey(1);
+
+    private RedisUtil redisUtil;
+
+    private ImChatLastReadMapper mapper;
+
+    private ImChatLastReadServiceImpl service;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // 不启动MyBatis时注册实体的表信息，lambda条件才能解析列名
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), ImChatLastRead.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisUtil = mock(RedisUtil.class);
+        mapper = mock(ImChatLastReadMapper.class);
+        service = spy(new ImChatLastReadServiceImpl());
+        ReflectionTestUtils.setField(service, "redisUtil", redisUtil);
+        ReflectionTestUtils.setField(service, "baseMapper", mapper);
+    }
+
+    @Test
+    void visibleChatSkipsDatabase() {
+        when(redisUtil.sIsMembers(KEY, "loaded", "1:2")).thenReturn(Map.of("loaded", true, "1:2", false));
+
+        service.unhideChat(1, 1, 2);
+
+        verify(service, never()).lambdaUpdate();
+        verify(service, never()).lambdaQuery();
+        verify(redisUtil, never()).setRemove(anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void hiddenChatIsUnhidden() {
+        when(redisUtil.sIsMembers(KEY, "loaded", "2:5")).thenReturn(Map.of("loaded", true, "2:5", true));
+
+        when(mapper.update(any(), any())).thenReturn(1);
+
+        service.unhideChat(1, 2, 5);
+
+        ArgumentCaptor<Wrapper<ImChatLastRead>> wrapper = ArgumentCaptor.forClass(Wrapper.class);
+        verify(mapper).update(isNull(), wrapper.capture());
+        String sqlSet = wrapper.getValue().getSqlSet();
+        assertTrue(sqlSet.contains("is_hidden="), sqlSet);
+        assertTrue(sqlSet.contains("last_read_time="), sqlSet);
+        String where = wrapper.getValue().getSqlSegment();
+        for (String column : new String[]{"user_id", "chat_type", "chat_id", "is_hidden"}) {
+            assertTrue(where.contains(column + " ="), where);
+        }
+        // 取消隐藏后从缓存移除，之后的消息不再访问数据库
+        verify(redisUtil).setRemove(KEY, "2:5");
+    }
+
+    @Test
+    void failedUpdateKeepsCache() {
+        when(redisUtil.sIsMembers(KEY, "loaded", "2:5")).thenReturn(Map.of("loaded", true, "2:5", true));
+        when(mapper.update(any(), any())).thenThrow(new IllegalStateException("数据库不可用"));
+
+        service.unhideChat(1, 2, 5);
+
+        verify(mapper).update(isNull(), any());
+        verify(redisUtil, never()).setRemove(anyString(), any());
+    }
+}
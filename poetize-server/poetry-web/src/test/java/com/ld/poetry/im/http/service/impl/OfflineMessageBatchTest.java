@@ -0,0 +1,87 @@
+package com.ld.poetry.im.http.service.impl;
+
+import com.ld.poetry.entity.User;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
+import com.ld.poetry.im.http.vo.OfflineMessageBatchVO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 离线消息分页组装测试
+ * 验证倒序结果翻转为升序、多取一条判断下一页、游标取本页最小ID、发送者去重
+ */
+class OfflineMessageBatchTest {
+
+    @Test
+    void pageIsAscendingWithCursorAndHasMore() {
+        // 倒序查出 size + 1 条
+        List<ImChatUserMessage> newestFirst = messages(10, 9, 8, 7);
+        OfflineMessageBatchVO batch = ImChatUserMessageServiceImpl.buildBatch(newestFirst, 3, users());
+
+        assertEquals(3, batch.getMessages().size());
+        assertEquals(8L, batch.getMessages().get(0).getId());
+        assertEquals(10L, batch.getMessages().get(2).getId());
+        assertEquals(8L, batch.getCursor());
+        assertTrue(batch.getHasMore());
+        assertEquals(6, batch.getMessageType());
+    }
+
+    @Test
+    void lastPageHasNoMore() {
+        OfflineMessageBatchVO batch = ImChatUserMessageServiceImpl.buildBatch(messages(5, 4), 3, users());
+
+        assertEquals(2, batch.getMessages().size());
+        assertEquals(4L, batch.getCursor());
+        assertFalse(batch.getHasMore());
+    }
+
+    @Test
+    void emptyPage() {
+        OfflineMessageBatchVO batch = ImChatUserMessageServiceImpl.buildBatch(new ArrayList<>(), 3, users());
+
+        assertTrue(batch.getMessages().isEmpty());
+        assertNull(batch.getCursor());
+        assertFalse(batch.getHasMore());
+    }
+
+    @Test
+    void sendersAreDeduplicatedAndMessagesCarryNoAvatar() {
+        OfflineMessageBatchVO batch = ImChatUserMessageServiceImpl.buildBatch(messages(6, 5, 4, 3), 4, users());
+
+        // 消息ID为偶数的来自用户2，奇数的来自用户3，用户3不存在
+        assertEquals(1, batch.getSenders().size());
+        assertEquals("avatar-2", batch.getSenders().get(2).getAvatar());
+        assertNull(batch.getSenders().get(3));
+        batch.getMessages().forEach(message -> assertNull(message.getAvatar()));
+    }
+
+    private static List<ImChatUserMessage> messages(long... ids) {
+        List<ImChatUserMessage> messages = new ArrayList<>();
+        for (long id : ids) {
+            ImChatUserMessage message = new ImChatUserMessage();
+            message.setId(id);
+            message.setFromId(id % 2 == 0 ? 2 : 3);
+            message.setToId(1);
+            message.setContent("message-" + id);
+            message.setMessageStatus(false);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static Map<Integer, User> users() {
+        User user = new User();
+        user.setId(2);
+        user.setUsername("friend");
+        user.setAvatar("avatar-2");
+        Map<Integer, User> users = new HashMap<>();
+        users.put(2, user);
+        return users;
+    }
+}
@@ -0,0 +1,263 @@
+package com.ld.poetry.im.journal;
+
+import com.ld.poetry.im.http.entity.ImChatUserGroupMessage;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IM消息预写日志测试
+ * 验证追加与批量消费、重启重放、截断写了一半的记录、段滚动、积压溢出与补写、死信、并发组提交
+ */
+public class MessageJournalTest {
+
+    private static final byte TYPE = ImMessageCodec.TYPE_USER_MESSAGE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testAppendAndDrain() throws Exception {
+        try (MessageJournal journal = MessageJournal.open(dir, 4096)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(TYPE, payload(i));
+            }
+            List<String> consumed = new ArrayList<>();
+            assertEquals(2, journal.drain(2, records -> records.forEach(r -> consumed.add(text(r)))));
+            assertEquals(1, journal.drain(10, records -> records.forEach(r -> consumed.add(text(r)))));
+            assertEquals(0, journal.drain(10, records -> fail("不应再有记录")));
+            assertEquals(List.of("m0", "m1", "m2"), consumed);
+            assertEquals(0, journal.pendingBytes());
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() throws Exception {
+        try (MessageJournal journal = MessageJournal.open(dir, 4096)) {
+            journal.append(TYPE, payload(0));
+            long checkpoint = journal.getCheckpoint();
+            assertThrows(IllegalStateException.class, () -> journal.drain(10, records -> {
+                throw new IllegalStateException("数据库不可用");
+            }));
+            assertEquals(checkpoint, journal.getCheckpoint());
+
+            List<String> consumed = new ArrayList<>();
+            journal.drain(10, records -> records.forEach(r -> consumed.add(text(r))));
+            assertEquals(List.of("m0"), consumed);
+        }
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws Exception {
+        MessageJournal journal = MessageJournal.open(dir, 4096);
+        for (int i = 0; i < 5; i++) {
+            journal.append(TYPE, payload(i));
+        }
+        journal.drain(2, records -> {
+        });
+        // 不关闭，模拟进程崩溃
+
+        try (MessageJournal reopened = MessageJournal.open(dir, 4096)) {
+            List<String> consumed = new ArrayList<>();
+            reopened.drain(10, records -> records.forEach(r -> consumed.add(text(r))));
+            assertEquals(List.of("m2", "m3", "m4"), consumed);
+        }
+    }
+
+    @Test
+    public void testTornTailTruncated() throws Exception {
+        MessageJournal journal = MessageJournal.open(dir, 4096);
+        journal.append(TYPE, payload(0));
+        long end = journal.append(TYPE, payload(1));
+        journal.commit(end);
+
+        // 模拟崩溃时写了一半的记录：长度已写入，校验和与载荷不完整
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().startsWith("journal-")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(100).putInt(12345).flip(), end);
+        }
+
+        try (MessageJournal reopened = MessageJournal.open(dir, 4096)) {
+            assertEquals(end, reopened.getWriteOffset());
+            reopened.append(TYPE, payload(2));
+            List<String> consumed = new ArrayList<>();
+            reopened.drain(10, records -> records.forEach(r -> consumed.add(text(r))));
+            assertEquals(List.of("m0", "m1", "m2"), consumed);
+        }
+    }
+
+    @Test
+    public void testSegmentRollAndCleanup() throws Exception {
+        try (MessageJournal journal = MessageJournal.open(dir, 128)) {
+            for (int i = 0; i < 50; i++) {
+                journal.append(TYPE, payload(i));
+            }
+            assertTrue(journal.segmentCount() > 3);
+
+            List<String> consumed = new ArrayList<>();
+            while (journal.drain(7, records -> records.forEach(r -> consumed.add(text(r)))) > 0) {
+                // 逐批消费
+            }
+            assertEquals(50, consumed.size());
+            for (int i = 0; i < 50; i++) {
+                assertEquals("m" + i, consumed.get(i));
+            }
+            assertEquals(1, journal.segmentCount());
+        }
+        try (MessageJournal reopened = MessageJournal.open(dir, 128)) {
+            assertEquals(0, reopened.pendingBytes());
+        }
+    }
+
+    @Test
+    public void testSpillWhenBacklogged() throws Exception {
+        try (MessageJournal journal = MessageJournal.open(dir, 128)) {
+            for (int i = 0; i < 60; i++) {
+                journal.append(TYPE, payload(i));
+            }
+            // 部分消费后数据库不可用，积压的段移入溢出目录
+            List<String> consumed = new ArrayList<>();
+            journal.drain(3, records -> records.forEach(r -> consumed.add(text(r))));
+            assertTrue(journal.spillExcess(2, Long.MAX_VALUE) > 0);
+            assertTrue(journal.segmentCount() <= 2);
+            assertTrue(journal.spillFileCount() > 0);
+
+            while (journal.drain(5, records -> records.forEach(r -> consumed.add(text(r)))) > 0) {
+                // 消费活动日志
+            }
+            while (journal.drainSpill(4, records -> records.forEach(r -> consumed.add(text(r)))) > 0) {
+                // 补写溢出文件
+            }
+            assertEquals(0, journal.spillFileCount());
+
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < 60; i++) {
+                expected.add("m" + i);
+            }
+            assertEquals(60, consumed.size());
+            assertEquals(expected, new HashSet<>(consumed));
+        }
+    }
+
+    @Test
+    public void testSpillOverflowMovedToDeadLetter() throws Exception {
+        try (MessageJournal journal = MessageJournal.open(dir, 128)) {
+            for (int i = 0; i < 60; i++) {
+                journal.append(TYPE, payload(i));
+            }
+            int spilled = journal.spillExcess(2, 1);
+            assertTrue(spilled > 1);
+
+            // 超出溢出目录上限的文件移入死信目录而不是删除，只保留最新的一个溢出文件
+            assertEquals(1, journal.spillFileCount());
+            assertEquals(spilled - 1, journal.deadLetterFileCount());
+            try (Stream<Path> files = Files.list(dir.resolve("dead-letter"))) {
+                assertEquals(spilled - 1, files.count());
+            }
+        }
+    }
+
+    @Test
+    public void testDeadLetterRecord() throws Exception {
+        try (MessageJournal journal = MessageJournal.open(dir, 4096)) {
+            journal.append(TYPE, payload(0));
+            journal.append(TYPE, payload(1));
+            List<JournalRecord> records = journal.read(journal.getCheckpoint(), 10);
+            journal.deadLetter(records.get(1));
+
+            assertEquals(1, journal.deadLetterRecordCount());
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("dead-letter").resolve("records.log")));
+            assertEquals(records.get(1).offset(), buffer.getLong());
+            assertEquals(TYPE, buffer.get());
+            byte[] payload = new byte[buffer.getInt()];
+            buffer.get(payload);
+            assertEquals("m1", new String(payload, StandardCharsets.UTF_8));
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    public void testConcurrentAppendWithGroupCommit() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (MessageJournal journal = MessageJournal.open(dir, 64 * 1024)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        long offset = journal.append(TYPE, ("t" + thread + "-" + i).getBytes(StandardCharsets.UTF_8));
+                        journal.commit(offset);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            Set<String> consumed = new HashSet<>();
+            while (journal.drain(300, records -> records.forEach(r -> consumed.add(text(r)))) > 0) {
+                // 逐批消费
+            }
+            assertEquals(threads * perThread, consumed.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCodecRoundTrip() throws IOException {
+        ImChatUserMessage userMessage = new ImChatUserMessage();
+        userMessage.setFromId(1);
+        userMessage.setToId(2);
+        userMessage.setContent("你好😀");
+        userMessage.setMessageStatus(false);
+        userMessage.setCreateTime(LocalDateTime.of(2025, 1, 2, 3, 4, 5, 123456789));
+        assertEquals(userMessage, ImMessageCodec.decodeUserMessage(ImMessageCodec.encode(userMessage)));
+
+        // 升级前写入的记录没有消息键
+        byte[] legacy = ImMessageCodec.encode(userMessage);
+        assertEquals(userMessage, ImMessageCodec.decodeUserMessage(Arrays.copyOf(legacy, legacy.length - 4)));
+
+        ImChatUserGroupMessage groupMessage = new ImChatUserGroupMessage();
+        groupMessage.setGroupId(10);
+        groupMessage.setFromId(1);
+        groupMessage.setContent("群消息");
+        groupMessage.setMsgKey("0123456789abcdef0123456789abcdef");
+        groupMessage.setCreateTime(LocalDateTime.now());
+        assertEquals(groupMessage, ImMessageCodec.decodeGroupMessage(ImMessageCodec.encode(groupMessage)));
+    }
+
+    private static byte[] payload(int i) {
+        return ("m" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(JournalRecord record) {
+        return new String(record.payload(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,126 @@
+package com.ld.poetry.im.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 群广播测试
+ * 验证预编码帧的长度头、共享帧的独立读取位置，以及在线人数与上下线推送的合并与延迟
+ */
+class GroupBroadcastTest {
+
+    @Test
+    void shortFrameUsesSingleByteLength() {
+        ByteBuffer frame = GroupBroadcaster.textFrame("{\"a\":1}");
+
+        assertEquals((byte) 0x81, frame.get(0));
+        assertEquals(7, frame.get(1));
+        assertEquals(9, frame.remaining());
+    }
+
+    @Test
+    void mediumAndLargeFramesUseExtendedLength() {
+        String medium = "好".repeat(1000);
+        ByteBuffer frame = GroupBroadcaster.textFrame(medium);
+        assertEquals(126, frame.get(1));
+        assertEquals(3000, frame.getShort(2) & 0xFFFF);
+        assertEquals(4 + 3000, frame.remaining());
+
+        String large = "x".repeat(70000);
+        frame = GroupBroadcaster.textFrame(large);
+        assertEquals(127, frame.get(1));
+        assertEquals(70000L, frame.getLong(2));
+        assertEquals(10 + 70000, frame.remaining());
+    }
+
+    @Test
+    void sharedFrameViewsAreIndependent() {
+        ByteBuffer frame = GroupBroadcaster.textFrame("hello");
+        ByteBuffer first = frame.duplicate();
+        ByteBuffer second = frame.duplicate();
+
+        first.position(first.limit());
+
+        assertEquals(7, second.remaining());
+        byte[] payload = new byte[5];
+        second.position(2);
+        second.get(payload);
+        assertEquals("hello", new String(payload, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void onlineCountIsCoalescedUntilSettled() {
+        OnlineCountNotifier notifier = new OnlineCountNotifier();
+        notifier.mark("1", null, true, 1000);
+        notifier.mark("1", null, true, 1100);
+        notifier.mark("2", null, true, 1000);
+
+        assertEquals(Set.of("2"), notifier.drain(1250).keySet());
+        assertEquals(Set.of("1"), notifier.drain(1300).keySet());
+        assertTrue(notifier.drain(5000).isEmpty());
+    }
+
+    @Test
+    void busyGroupIsFlushedWhenOverdue() {
+        OnlineCountNotifier notifier = new OnlineCountNotifier();
+        long first = 1000;
+        notifier.mark("1", null, true, first);
+        for (long now = first; now < first + ImConfigConst.ONLINE_COUNT_INTERVAL * 2; now += 100) {
+            notifier.mark("1", null, true, now);
+            assertTrue(notifier.drain(now + 50).isEmpty());
+        }
+
+        assertEquals(Set.of("1"), notifier.drain(first + ImConfigConst.ONLINE_COUNT_INTERVAL * 2).keySet());
+    }
+
+    @Test
+    void presenceChangesAreMergedIntoOneFrame() {
+        OnlineCountNotifier notifier = new OnlineCountNotifier();
+        notifier.mark("-1", 7, true, 1000);
+        notifier.mark("-1", 8, true, 1010);
+        notifier.mark("-1", 7, false, 1020);
+        notifier.mark("-1", null, false, 1030);
+
+        Map<Integer, Boolean> presence = notifier.drain(2000).get("-1").presence;
+        JSONObject frame = JSON.parseObject(OnlineCountNotifier.buildFrame("-1", 5, presence));
+
+        assertEquals(3, frame.getIntValue("messageType"));
+        assertEquals(-1, frame.getIntValue("groupId"));
+        assertEquals(5, frame.getIntValue("onlineCount"));
+        assertEquals(List.of(8), frame.getJSONArray("onlineUserIds").toJavaList(Integer.class));
+        assertEquals(List.of(7), frame.getJSONArray("offlineUserIds").toJavaList(Integer.class));
+    }
+
+    @Test
+    void recordedUserIsUpdatedAfterPresenceCapReached() {
+        OnlineCountNotifier notifier = new OnlineCountNotifier();
+        for (int userId = 1; userId <= ImConfigConst.PRESENCE_DELTA_MAX_SIZE; userId++) {
+            notifier.mark("1", userId, true, 1000);
+        }
+        notifier.mark("1", 1, false, 1010);
+        notifier.mark("1", ImConfigConst.PRESENCE_DELTA_MAX_SIZE + 1, true, 1020);
+
+        Map<Integer, Boolean> presence = notifier.drain(2000).get("1").presence;
+
+        assertEquals(ImConfigConst.PRESENCE_DELTA_MAX_SIZE, presence.size());
+        assertFalse(presence.get(1));
+        assertFalse(presence.containsKey(ImConfigConst.PRESENCE_DELTA_MAX_SIZE + 1));
+    }
+
+    @Test
+    void countOnlyFrameHasNoUserLists() {
+        JSONObject frame = JSON.parseObject(OnlineCountNotifier.buildFrame("3", 2, Map.of()));
+
+        assertEquals(2, frame.getIntValue("onlineCount"));
+        assertFalse(frame.containsKey("onlineUserIds"));
+    }
+}
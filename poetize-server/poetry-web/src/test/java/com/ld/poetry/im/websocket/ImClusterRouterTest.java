@@ -0,0 +1,271 @@
+package com.ld.poetry.im.websocket;
+
+import com.ld.poetry.config.ImClusterPolicy;
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.utils.RedisUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.tio.core.ChannelContext;
+import org.tio.core.Tio;
+import org.tio.core.TioConfig;
+import org.tio.server.ServerTioConfig;
+import org.tio.utils.lock.SetWithLock;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * IM集群路由测试
+ * 验证私聊消息转发到用户所在节点、未能送达时标记为未读、清理已下线节点的登记、新连接通知其他节点踢掉旧连接、在线人数按存活节点求和，
+ * 以及两个节点通过共享的发布订阅互相投递
+ */
+class ImClusterRouterTest {
+
+    private static final String PRESENCE_KEY = CacheConstants.buildImPresenceKey("2");
+
+    private RedisUtil redisUtil;
+
+    private OutboundQueue outboundQueue;
+
+    private MessageCache messageCache;
+
+    private ImClusterRouter router;
+
+    private ServerTioConfig tioConfig;
+
+    @BeforeEach
+    void setUp() {
+        tioConfig = mock(ServerTioConfig.class);
+        TioWebsocketStarter starter = mock(TioWebsocketStarter.class);
+        when(starter.getServerTioConfig()).thenReturn(tioConfig);
+        ReflectionTestUtils.setField(TioUtil.class, "tioWebsocketStarter", starter);
+
+        ImClusterPolicy policy = new ImClusterPolicy();
+        policy.setEnabled(true);
+        policy.setNodeId("node-a");
+        redisUtil = mock(RedisUtil.class);
+        outboundQueue = mock(OutboundQueue.class);
+        messageCache = mock(MessageCache.class);
+        router = new ImClusterRouter();
+        ReflectionTestUtils.setField(router, "policy", policy);
+        ReflectionTestUtils.setField(router, "redisUtil", redisUtil);
+        ReflectionTestUtils.setField(router, "outboundQueue", outboundQueue);
+        ReflectionTestUtils.setField(router, "messageCache", messageCache);
+        router.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(TioUtil.class, "tioWebsocketStarter", null);
+    }
+
+    @Test
+    void userMessageIsForwardedToOwningNode() {
+        when(redisUtil.sGet(PRESENCE_KEY)).thenReturn(Set.<Object>of("node-b"));
+        when(redisUtil.publishAndCount(anyString(), anyString())).thenReturn(1L);
+
+        assertTrue(router.sendToUser(null, "2", "{\"content\":\"hi there\"}"));
+
+        verify(redisUtil).publishAndCount(CacheConstants.IM_NODE_CHANNEL_PREFIX + "node-b",
+                "USER node-a 2 {\"content\":\"hi there\"}");
+    }
+
+    @Test
+    void forwardedMessageCarriesMessageKey() {
+        when(redisUtil.sGet(PRESENCE_KEY)).thenReturn(Set.<Object>of("node-b"));
+        when(redisUtil.publishAndCount(anyString(), anyString())).thenReturn(1L);
+
+        assertTrue(router.sendToUser(null, "2", "k1", "{\"content\":\"hi there\"}"));
+
+        verify(redisUtil).publishAndCount(CacheConstants.IM_NODE_CHANNEL_PREFIX + "node-b",
+                "USER node-a 2 k1 {\"content\":\"hi there\"}");
+    }
+
+    @Test
+    void droppedLocalMessageIsUndelivered() {
+        TioConfig tioConfig = mock(TioConfig.class);
+        when(outboundQueue.sendToUser(tioConfig, "2", "{}")).thenReturn(0);
+
+        try (MockedStatic<Tio> tio = mockStatic(Tio.class)) {
+            tio.when(() -> Tio.getByUserid(tioConfig, "2"))
+                    .thenReturn(new SetWithLock<>(new HashSet<>(Set.of(mock(ChannelContext.class)))));
+
+            assertFalse(router.sendToUser(tioConfig, "2", "k1", "{}"));
+        }
+
+        verify(redisUtil, never()).publishAndCount(anyString(), anyString());
+    }
+
+    @Test
+    void forwardedMessageDroppedOnReceivingNodeIsMarkedUndelivered() {
+        when(outboundQueue.sendToUser(tioConfig, "2", "{\"content\":\"hi there\"}")).thenReturn(0);
+        when(outboundQueue.sendToUser(tioConfig, "3", "{}")).thenReturn(1);
+
+        router.handleMessage("USER node-b 2 k1 {\"content\":\"hi there\"}");
+        router.handleMessage("USER node-b 3 k2 {}");
+        // 不带消息键的旧格式
+        router.handleMessage("USER node-b 2 {}");
+
+        verify(messageCache).markUndelivered("k1");
+        verify(messageCache, never()).markUndelivered("k2");
+        verify(outboundQueue).sendToUser(tioConfig, "2", "{}");
+        verifyNoMoreInteractions(messageCache);
+    }
+
+    @Test
+    void deadNodeIsUnregisteredAndUserIsOffline() {
+        when(redisUtil.sGet(PRESENCE_KEY)).thenReturn(Set.<Object>of("node-c"));
+        when(redisUtil.publishAndCount(anyString(), anyString())).thenReturn(0L);
+
+        assertFalse(router.sendToUser(null, "2", "{}"));
+
+        verify(redisUtil).setRemove(PRESENCE_KEY, "node-c");
+    }
+
+    @Test
+    void userWithoutPresenceIsOffline() {
+        when(redisUtil.sGet(PRESENCE_KEY)).thenReturn(Set.<Object>of());
+
+        assertFalse(router.sendToUser(null, "2", "{}"));
+
+        verify(redisUtil, never()).publishAndCount(anyString(), anyString());
+    }
+
+    @Test
+    void ownMessagesAreIgnored() {
+        ImClusterRouter spy = spy(router);
+        doNothing().when(spy).kickLocal(any(), anyString(), any());
+
+        spy.handleMessage("KICK node-a 2");
+        verify(spy, never()).kickLocal(any(), anyString(), any());
+
+        spy.handleMessage("KICK node-b 2");
+        verify(spy).kickLocal(tioConfig, "2", null);
+    }
+
+    @Test
+    void twoNodesDeliverThroughSharedPubSub() {
+        Map<String, Set<Object>> sets = new ConcurrentHashMap<>();
+        Map<String, ImClusterRouter> nodes = new LinkedHashMap<>();
+        ImClusterRouter nodeA = newNode("node-a", sets, nodes);
+        ImClusterRouter nodeB = newNode("node-b", sets, nodes);
+        OutboundQueue outboundB = (OutboundQueue) ReflectionTestUtils.getField(nodeB, "outboundQueue");
+        MessageCache messageCacheB = (MessageCache) ReflectionTestUtils.getField(nodeB, "messageCache");
+        GroupBroadcaster broadcasterA = (GroupBroadcaster) ReflectionTestUtils.getField(nodeA, "groupBroadcaster");
+        GroupBroadcaster broadcasterB = (GroupBroadcaster) ReflectionTestUtils.getField(nodeB, "groupBroadcaster");
+        when(outboundB.sendToUser(tioConfig, "2", "{\"n\":1}")).thenReturn(1);
+        when(outboundB.sendToUser(tioConfig, "2", "{\"n\":2}")).thenReturn(0);
+
+        try (MockedStatic<Tio> tio = mockStatic(Tio.class)) {
+            // 用户2连接在 B
+            nodeB.userBound(mock(ChannelContext.class), "2");
+            assertEquals(Set.of("node-b"), sets.get(PRESENCE_KEY));
+
+            // A 上发出的私聊消息由 B 推送，B 未能送达时标记为未读
+            assertTrue(nodeA.sendToUser(null, "2", "k1", "{\"n\":1}"));
+            assertTrue(nodeA.sendToUser(null, "2", "k2", "{\"n\":2}"));
+            verify(messageCacheB).markUndelivered("k2");
+            verify(messageCacheB, never()).markUndelivered("k1");
+
+            // 绑定群组、群消息在用户所在节点执行，来源节点不重复处理自己发布的消息
+            nodeA.bindGroup(null, "2", "7");
+            tio.verify(() -> Tio.bindGroup(tioConfig, "2", "7"), times(1));
+            nodeA.broadcastToGroup(null, "7", "{}");
+            verify(broadcasterB).broadcast(tioConfig, "7", "{}");
+            verify(broadcasterA, never()).broadcast(any(), anyString(), anyString());
+
+            // 用户2改连 A，B 上的旧连接被踢掉
+            nodeA.userBound(mock(ChannelContext.class), "2");
+            verify(nodeB).kickLocal(tioConfig, "2", null);
+            verify(nodeA, never()).kickLocal(tioConfig, "2", null);
+            assertEquals(Set.of("node-a", "node-b"), sets.get(PRESENCE_KEY));
+        }
+    }
+
+    @Test
+    void onlineCountSumsLiveNodes() {
+        when(redisUtil.zRangeByScoreWithScores(eq(CacheConstants.IM_NODES_KEY), anyDouble()))
+                .thenReturn(Map.of("node-a", 1.0, "node-b", 1.0));
+        router.heartbeat();
+        when(redisUtil.hmget(CacheConstants.buildImGroupOnlineKey("-1")))
+                .thenReturn(Map.<Object, Object>of("node-a", 3, "node-b", 5, "node-dead", 7));
+
+        assertEquals(8, router.groupOnlineCount("-1", 3));
+
+        verify(redisUtil).hset(CacheConstants.buildImGroupOnlineKey("-1"), "node-a", 3);
+    }
+
+    @Test
+    void singleNodeModeStaysLocal() {
+        ReflectionTestUtils.setField(router, "policy", new ImClusterPolicy());
+
+        assertFalse(router.sendToUser(null, "2", "{}"));
+        assertEquals(4, router.groupOnlineCount("-1", 4));
+
+        verify(redisUtil, never()).sGet(anyString());
+        verify(redisUtil, never()).hmget(anyString());
+    }
+
+    /**
+     * 创建一个集群节点，Redis 的集合与发布订阅由所有节点共享的内存实现模拟
+     */
+    private ImClusterRouter newNode(String nodeId, Map<String, Set<Object>> sets, Map<String, ImClusterRouter> nodes) {
+        ImClusterPolicy policy = new ImClusterPolicy();
+        policy.setEnabled(true);
+        policy.setNodeId(nodeId);
+        RedisUtil redis = mock(RedisUtil.class);
+        when(redis.sGet(anyString())).thenAnswer(invocation ->
+                new HashSet<>(sets.getOrDefault(invocation.<String>getArgument(0), Set.of())));
+        when(redis.sSet(anyString(), any())).thenAnswer(invocation -> {
+            sets.computeIfAbsent(invocation.getArgument(0), key -> ConcurrentHashMap.newKeySet()).add(invocation.getArgument(1));
+            return 1L;
+        });
+        when(redis.setRemove(anyString(), any())).thenAnswer(invocation -> {
+            Set<Object> members = sets.get(invocation.<String>getArgument(0));
+            return members != null && members.remove(invocation.getArgument(1)) ? 1L : 0L;
+        });
+        when(redis.publishAndCount(anyString(), anyString())).thenAnswer(invocation ->
+                deliver(nodes, invocation.getArgument(0), invocation.getArgument(1)));
+        when(redis.publish(anyString(), anyString())).thenAnswer(invocation ->
+                deliver(nodes, invocation.getArgument(0), invocation.getArgument(1)) > 0);
+
+        ImClusterRouter node = new ImClusterRouter();
+        ReflectionTestUtils.setField(node, "policy", policy);
+        ReflectionTestUtils.setField(node, "redisUtil", redis);
+        ReflectionTestUtils.setField(node, "outboundQueue", mock(OutboundQueue.class));
+        ReflectionTestUtils.setField(node, "messageCache", mock(MessageCache.class));
+        ReflectionTestUtils.setField(node, "groupBroadcaster", mock(GroupBroadcaster.class));
+        node.init();
+        ImClusterRouter spy = spy(node);
+        doNothing().when(spy).kickLocal(any(), anyString(), any());
+        nodes.put(nodeId, spy);
+        return spy;
+    }
+
+    /**
+     * 广播频道投递给所有节点，节点频道只投递给该节点（各节点自行忽略自己发布的消息）
+     *
+     * @return 订阅者数
+     */
+    private static long deliver(Map<String, ImClusterRouter> nodes, String channel, String message) {
+        long receivers = 0;
+        for (Map.Entry<String, ImClusterRouter> node : nodes.entrySet()) {
+            if (CacheConstants.IM_CLUSTER_CHANNEL.equals(channel)
+                    || (CacheConstants.IM_NODE_CHANNEL_PREFIX + node.getKey()).equals(channel)) {
+                node.getValue().handleMessage(message);
+                receivers++;
+            }
+        }
+        return receivers;
+    }
+}
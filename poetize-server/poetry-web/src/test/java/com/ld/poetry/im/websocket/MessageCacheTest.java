@@ -0,0 +1,213 @@
+package com.ld.poetry.im.websocket;
+
+import com.ld.poetry.config.ImJournalPolicy;
+import com.ld.poetry.im.http.entity.ImChatUserMessage;
+import com.ld.poetry.im.http.service.ImChatLastReadService;
+import com.ld.poetry.im.http.service.ImChatUserGroupMessageService;
+import com.ld.poetry.im.http.service.ImChatUserMessageService;
+import com.ld.poetry.im.journal.MessageJournal;
+import com.ld.poetry.utils.mail.MailSendUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * IM消息写入缓冲测试
+ * 验证溢出的消息先于活动日志写入、重放时按消息键跳过已写入的消息、无法写入的消息移入死信文件而不阻塞后续消息
+ */
+class MessageCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final ImChatUserMessageService userMessageService = mock(ImChatUserMessageService.class);
+
+    private final ImChatLastReadService lastReadService = mock(ImChatLastReadService.class);
+
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private final ImJournalPolicy policy = new ImJournalPolicy();
+
+    private final MessageCache messageCache = new MessageCache();
+
+    private MessageJournal journal;
+
+    /**
+     * 模拟数据库：已写入的消息键（唯一索引）与按写入顺序记录的内容
+     */
+    private final Set<String> storedKeys = new HashSet<>();
+
+    private final List<String> stored = new ArrayList<>();
+
+    private final List<String> applied = new ArrayList<>();
+
+    private final Map<String, RuntimeException> failures = new HashMap<>();
+
+    private boolean databaseDown;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        journal = MessageJournal.open(dir, 256);
+        ReflectionTestUtils.setField(messageCache, "imChatUserMessageService", userMessageService);
+        ReflectionTestUtils.setField(messageCache, "imChatUserGroupMessageService", mock(ImChatUserGroupMessageService.class));
+        ReflectionTestUtils.setField(messageCache, "imChatLastReadService", lastReadService);
+        ReflectionTestUtils.setField(messageCache, "mailSendUtil", mock(MailSendUtil.class));
+        ReflectionTestUtils.setField(messageCache, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(messageCache, "policy", policy);
+        ReflectionTestUtils.setField(messageCache, "journal", journal);
+
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        doAnswer(invocation -> {
+            Collection<ImChatUserMessage> batch = invocation.getArgument(0);
+            if (databaseDown) {
+                throw new DataAccessResourceFailureException("数据库不可用");
+            }
+            for (ImChatUserMessage message : batch) {
+                if (failures.containsKey(message.getContent())) {
+                    throw failures.get(message.getContent());
+                }
+                if (storedKeys.contains(message.getMsgKey())) {
+                    throw new DuplicateKeyException("Duplicate entry for key 'uk_msg_key'");
+                }
+            }
+            for (ImChatUserMessage message : batch) {
+                storedKeys.add(message.getMsgKey());
+                stored.add(message.getContent());
+            }
+            return true;
+        }).when(userMessageService).saveBatch(anyCollection());
+        doAnswer(invocation -> {
+            invocation.<List<ImChatUserMessage>>getArgument(0).forEach(message -> applied.add(message.getContent()));
+            return null;
+        }).when(lastReadService).applyMessages(anyList(), anyList());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Test
+    void spilledMessagesAreWrittenBeforeLiveLog() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            messageCache.putUserMessage(message("m" + i));
+            expected.add("m" + i);
+        }
+        assertTrue(journal.spillExcess(2, Long.MAX_VALUE) > 0);
+
+        messageCache.flushToDatabase();
+
+        assertEquals(expected, stored);
+        assertEquals(0, journal.spillFileCount());
+        assertEquals(0, journal.pendingBytes());
+    }
+
+    @Test
+    void replayedBatchSkipsWrittenMessages() {
+        ImChatUserMessage written = message("m0");
+        messageCache.putUserMessage(written);
+        messageCache.putUserMessage(message("m1"));
+        messageCache.putUserMessage(message("m2"));
+        // 上次写入数据库后检查点未落盘，同一批记录被重放
+        storedKeys.add(written.getMsgKey());
+
+        messageCache.flushToDatabase();
+
+        assertEquals(List.of("m1", "m2"), stored);
+        assertEquals(List.of("m1", "m2"), applied);
+        assertEquals(0, journal.pendingBytes());
+        assertEquals(0, journal.deadLetterRecordCount());
+    }
+
+    @Test
+    void poisonRecordIsDeadLetteredWithoutBlocking() {
+        failures.put("too long", new DataIntegrityViolationException("Data too long for column 'content'"));
+        messageCache.putUserMessage(message("m0"));
+        messageCache.putUserMessage(message("too long"));
+        messageCache.putUserMessage(message("m2"));
+
+        messageCache.flushToDatabase();
+
+        assertEquals(List.of("m0", "m2"), stored);
+        assertEquals(1, journal.deadLetterRecordCount());
+        assertEquals(0, journal.pendingBytes());
+    }
+
+    @Test
+    void recordFailingWhileDatabaseIsUpIsDeadLetteredAfterAttempts() {
+        policy.setMaxRecordAttempts(3);
+        failures.put("stuck", new IllegalStateException("Lock wait timeout exceeded"));
+        messageCache.putUserMessage(message("m0"));
+        messageCache.putUserMessage(message("stuck"));
+        messageCache.putUserMessage(message("m2"));
+
+        messageCache.flushToDatabase();
+        messageCache.flushToDatabase();
+        assertEquals(0, journal.deadLetterRecordCount());
+        assertTrue(journal.pendingBytes() > 0);
+
+        messageCache.flushToDatabase();
+        assertEquals(1, journal.deadLetterRecordCount());
+        assertEquals(0, journal.pendingBytes());
+        // 重试期间已写入的消息只写入一次
+        assertEquals(List.of("m0", "m2"), stored);
+        assertEquals(List.of("m0", "m2"), applied);
+    }
+
+    @Test
+    void databaseOutageKeepsMessages() {
+        policy.setMaxRecordAttempts(1);
+        databaseDown = true;
+        for (int i = 0; i < 3; i++) {
+            messageCache.putUserMessage(message("m" + i));
+        }
+        long pending = journal.pendingBytes();
+
+        for (int i = 0; i < 5; i++) {
+            messageCache.flushToDatabase();
+        }
+        assertEquals(0, journal.deadLetterRecordCount());
+        assertEquals(pending, journal.pendingBytes());
+
+        databaseDown = false;
+        messageCache.flushToDatabase();
+        assertEquals(List.of("m0", "m1", "m2"), stored);
+    }
+
+    private static ImChatUserMessage message(String content) {
+        ImChatUserMessage message = new ImChatUserMessage();
+        message.setFromId(1);
+        message.setToId(2);
+        message.setContent(content);
+        message.setMessageStatus(false);
+        message.setCreateTime(LocalDateTime.of(2026, 10, 19, 12, 0));
+        return message;
+    }
+}
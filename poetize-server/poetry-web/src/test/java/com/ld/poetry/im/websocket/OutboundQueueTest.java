@@ -0,0 +1,189 @@
+package com.ld.poetry.im.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.ld.poetry.config.ImOutboundPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.tio.core.ChannelContext;
+import org.tio.core.Tio;
+import org.tio.core.intf.Packet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 下行积压控制测试
+ * 验证写出后扣减积压、关键帧超限时断开、非关键帧积压时按键合并并在积压回落后发出（包括暂存与积压回落并发时）
+ */
+class OutboundQueueTest {
+
+    private ImOutboundPolicy policy;
+
+    private OutboundQueue outboundQueue;
+
+    private ChannelContext channelContext;
+
+    private MockedStatic<Tio> tio;
+
+    private final List<OutboundQueue.OutboundFrame> submitted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        policy = new ImOutboundPolicy();
+        policy.setMaxPendingFrames(3);
+        policy.setCoalesceAfterFrames(2);
+        outboundQueue = new OutboundQueue();
+        ReflectionTestUtils.setField(outboundQueue, "policy", policy);
+        outboundQueue.init();
+        channelContext = mock(ChannelContext.class);
+        tio = mockStatic(Tio.class);
+        tio.when(() -> Tio.send(any(ChannelContext.class), any(Packet.class))).thenAnswer(invocation -> {
+            submitted.add(invocation.getArgument(1));
+            return true;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        tio.close();
+    }
+
+    @Test
+    void pendingIsReleasedAfterSent() {
+        assertTrue(outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{\"a\":1}"), null));
+        assertEquals(1, outboundQueue.pending()[0]);
+        assertEquals(9, outboundQueue.pending()[1]);
+
+        outboundQueue.sent(channelContext, submitted.get(0));
+        // 重复回调只扣减一次
+        outboundQueue.sent(channelContext, submitted.get(0));
+
+        assertArrayEquals(new long[]{0, 0, 0}, outboundQueue.pending());
+    }
+
+    @Test
+    void slowConsumerIsDisconnected() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null));
+        }
+
+        assertFalse(outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null));
+        assertFalse(outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null));
+        assertEquals(3, submitted.size());
+
+        outboundQueue.closed(channelContext);
+        assertEquals(0, outboundQueue.queueCount());
+    }
+
+    @Test
+    void byteLimitAllowsSingleLargeFrame() {
+        policy.setMaxPendingBytes(16);
+        String large = "x".repeat(100);
+
+        assertTrue(outboundQueue.offer(channelContext, GroupBroadcaster.textFrame(large), null));
+        assertFalse(outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null));
+    }
+
+    @Test
+    void onlineCountIsCoalescedWhileBacklogged() {
+        outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null);
+        outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null);
+
+        offerOnlineCount(new OnlineCountNotifier.OnlineCountFrame("1", 3, Map.of(7, true)));
+        offerOnlineCount(new OnlineCountNotifier.OnlineCountFrame("1", 4, Map.of(8, true)));
+        offerOnlineCount(new OnlineCountNotifier.OnlineCountFrame("2", 9, Map.of()));
+        assertEquals(2, submitted.size());
+
+        // 积压降到一半以下时发出合并后的帧，每个群一帧
+        outboundQueue.sent(channelContext, submitted.get(0));
+        assertEquals(4, submitted.size());
+
+        JSONObject merged = null;
+        for (OutboundQueue.OutboundFrame frame : submitted.subList(2, 4)) {
+            JSONObject json = JSON.parseObject(payload(frame));
+            if (json.getIntValue("groupId") == 1) {
+                merged = json;
+            }
+        }
+        assertNotNull(merged);
+        assertEquals(4, merged.getIntValue("onlineCount"));
+        assertEquals(List.of(7, 8), merged.getJSONArray("onlineUserIds").toJavaList(Integer.class));
+    }
+
+    @Test
+    void deferredFrameIsSentWhenBacklogDrainsBeforeDefer() {
+        outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null);
+        outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null);
+        OutboundQueue racing = spy(outboundQueue);
+        // 判断积压之后、暂存之前，积压的帧全部写出；写出回调此时看不到暂存的帧
+        doAnswer(invocation -> {
+            racing.sent(channelContext, submitted.get(0));
+            racing.sent(channelContext, submitted.get(1));
+            return invocation.callRealMethod();
+        }).when(racing).defer(any(), any());
+
+        OnlineCountNotifier.OnlineCountFrame frame = new OnlineCountNotifier.OnlineCountFrame("1", 3, Map.of());
+        assertTrue(racing.offer(channelContext, GroupBroadcaster.textFrame(frame.toJson()), frame));
+
+        assertEquals(3, submitted.size());
+        assertEquals(3, JSON.parseObject(payload(submitted.get(2))).getIntValue("onlineCount"));
+        assertEquals(1, racing.pending()[0]);
+    }
+
+    @Test
+    void onlineCountIsSentDirectlyWithoutBacklog() {
+        offerOnlineCount(new OnlineCountNotifier.OnlineCountFrame("1", 3, Map.of()));
+
+        assertEquals(1, submitted.size());
+        assertEquals(3, JSON.parseObject(payload(submitted.get(0))).getIntValue("onlineCount"));
+    }
+
+    @Test
+    void disabledPolicyDoesNotTrack() {
+        policy.setEnabled(false);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(outboundQueue.offer(channelContext, GroupBroadcaster.textFrame("{}"), null));
+        }
+
+        assertEquals(0, outboundQueue.queueCount());
+    }
+
+    @Test
+    void clusterFrameRoundTrips() {
+        OnlineCountNotifier.OnlineCountFrame frame = new OnlineCountNotifier.OnlineCountFrame("-1", 5, Map.of(7, false));
+        OnlineCountNotifier.OnlineCountFrame parsed = OnlineCountNotifier.OnlineCountFrame.parse(frame.toJson());
+
+        assertEquals("-1", parsed.groupId);
+        assertEquals(5, parsed.onlineCount);
+        assertEquals(Map.of(7, false), parsed.presence);
+    }
+
+    private void offerOnlineCount(OnlineCountNotifier.OnlineCountFrame frame) {
+        outboundQueue.offer(channelContext, GroupBroadcaster.textFrame(frame.toJson()), frame);
+    }
+
+    private static String payload(OutboundQueue.OutboundFrame frame) {
+        ByteBuffer buffer = frame.getPreEncodedByteBuffer().duplicate();
+        int length = buffer.get(1) & 0x7F;
+        int offset = 2;
+        if (length == 126) {
+            length = buffer.getShort(2) & 0xFFFF;
+            offset = 4;
+        }
+        byte[] bytes = new byte[length];
+        buffer.position(offset);
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
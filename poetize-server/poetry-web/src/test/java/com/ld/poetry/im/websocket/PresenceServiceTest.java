@@ -0,0 +1,112 @@
+package com.ld.poetry.im.websocket;
+
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.im.http.vo.PresenceVO;
+import com.ld.poetry.utils.RedisUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.tio.core.ChannelContext;
+import org.tio.core.Tio;
+import org.tio.core.TioConfig;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 在线状态批量查询测试
+ * 验证去重保序、其他节点在线的用户一次查询得出、离线用户批量读取最后在线时间，以及迁移到其他节点的用户不推送下线
+ */
+class PresenceServiceTest {
+
+    private ImClusterRouter router;
+
+    private RedisUtil redisUtil;
+
+    private OnlineCountNotifier notifier;
+
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        router = mock(ImClusterRouter.class);
+        redisUtil = mock(RedisUtil.class);
+        notifier = mock(OnlineCountNotifier.class);
+        presenceService = new PresenceService();
+        ReflectionTestUtils.setField(presenceService, "imClusterRouter", router);
+        ReflectionTestUtils.setField(presenceService, "onlineCountNotifier", notifier);
+        ReflectionTestUtils.setField(presenceService, "redisUtil", redisUtil);
+    }
+
+    @Test
+    void presenceIsResolvedInBatches() {
+        long lastSeen = 1_790_000_000_000L;
+        when(router.onlineElsewhere(List.of("3", "1", "2"))).thenReturn(Set.of("1"));
+        when(redisUtil.hmultiGet(CacheConstants.IM_LAST_SEEN_KEY, List.of("3", "2")))
+                .thenReturn(Arrays.<Object>asList(lastSeen, null));
+
+        Map<Integer, PresenceVO> presence = presenceService.listPresence(Arrays.asList(3, 1, null, 2, 3));
+
+        assertEquals(List.of(3, 1, 2), List.copyOf(presence.keySet()));
+        assertTrue(presence.get(1).getOnline());
+        assertNull(presence.get(1).getLastSeenTime());
+        assertFalse(presence.get(3).getOnline());
+        assertEquals(LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSeen), ZoneId.systemDefault()), presence.get(3).getLastSeenTime());
+        assertFalse(presence.get(2).getOnline());
+        assertNull(presence.get(2).getLastSeenTime());
+        verify(redisUtil, times(1)).hmultiGet(anyString(), anyCollection());
+    }
+
+    @Test
+    void allOnlineSkipsLastSeenLookup() {
+        when(router.onlineElsewhere(List.of("5"))).thenReturn(Set.of("5"));
+
+        Map<Integer, PresenceVO> presence = presenceService.listPresence(List.of(5));
+
+        assertTrue(presence.get(5).getOnline());
+        verify(redisUtil, never()).hmultiGet(anyString(), anyCollection());
+    }
+
+    @Test
+    void lastLocalConnectionClosedMarksUserOffline() {
+        ChannelContext channelContext = mock(ChannelContext.class);
+        when(channelContext.getUserid()).thenReturn("6");
+        when(router.onlineElsewhere(List.of("6"))).thenReturn(Set.of());
+
+        try (MockedStatic<Tio> tio = mockStatic(Tio.class)) {
+            tio.when(() -> Tio.getByUserid(nullable(TioConfig.class), eq("6"))).thenReturn(null);
+            presenceService.disconnecting(channelContext);
+        }
+
+        verify(router).userUnbound("6");
+        verify(redisUtil).hset(eq(CacheConstants.IM_LAST_SEEN_KEY), eq("6"), anyLong());
+        verify(notifier).markGroups(channelContext, 6, false);
+    }
+
+    @Test
+    void userMovedToAnotherNodeIsNotMarkedOffline() {
+        ChannelContext channelContext = mock(ChannelContext.class);
+        when(channelContext.getUserid()).thenReturn("6");
+        // 用户已在另一节点重连，旧节点的连接随后才关闭
+        when(router.onlineElsewhere(List.of("6"))).thenReturn(Set.of("6"));
+
+        try (MockedStatic<Tio> tio = mockStatic(Tio.class)) {
+            tio.when(() -> Tio.getByUserid(nullable(TioConfig.class), eq("6"))).thenReturn(null);
+            presenceService.disconnecting(channelContext);
+        }
+
+        verify(router).userUnbound("6");
+        verify(redisUtil, never()).hset(anyString(), anyString(), any());
+        verify(notifier).markGroups(channelContext, null, false);
+    }
+}
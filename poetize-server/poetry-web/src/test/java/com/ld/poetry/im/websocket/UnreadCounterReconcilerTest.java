@@ -0,0 +1,70 @@
+package com.ld.poetry.im.websocket;
+
+import com.ld.poetry.config.ImUnreadPolicy;
+import com.ld.poetry.im.http.dao.ImChatLastReadMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 未读数后台校对测试
+ * 验证按ID区间分批覆盖全部会话、汇总修正数、未启用时不执行
+ */
+class UnreadCounterReconcilerTest {
+
+    private final ImChatLastReadMapper mapper = mock(ImChatLastReadMapper.class);
+
+    private final ImUnreadPolicy policy = new ImUnreadPolicy();
+
+    private final UnreadCounterReconciler reconciler = new UnreadCounterReconciler();
+
+    @BeforeEach
+    void setUp() {
+        policy.setBatchSize(500);
+        ReflectionTestUtils.setField(reconciler, "imChatLastReadMapper", mapper);
+        ReflectionTestUtils.setField(reconciler, "policy", policy);
+    }
+
+    @Test
+    void coversAllIdRangesInBatches() {
+        when(mapper.getMaxId()).thenReturn(1200);
+        when(mapper.reconcileFriendUnread(anyInt(), anyInt(), any(), any())).thenReturn(1);
+        when(mapper.reconcileGroupReadSeq(anyInt(), anyInt(), any(), any())).thenReturn(2);
+        LocalDateTime activeSince = LocalDateTime.of(2026, 10, 18, 12, 0);
+        LocalDateTime quietBefore = LocalDateTime.of(2026, 10, 19, 11, 59);
+
+        int[] corrected = reconciler.reconcile(activeSince, quietBefore);
+
+        verify(mapper).reconcileFriendUnread(0, 500, activeSince, quietBefore);
+        verify(mapper).reconcileFriendUnread(500, 1000, activeSince, quietBefore);
+        verify(mapper).reconcileFriendUnread(1000, 1200, activeSince, quietBefore);
+        verify(mapper).reconcileGroupReadSeq(eq(1000), eq(1200), any(), any());
+        verify(mapper, times(3)).reconcileGroupReadSeq(anyInt(), anyInt(), any(), any());
+        assertArrayEquals(new int[]{3, 6}, corrected);
+    }
+
+    @Test
+    void emptyTableRunsNoStatements() {
+        when(mapper.getMaxId()).thenReturn(0);
+
+        assertArrayEquals(new int[]{0, 0}, reconciler.reconcile(LocalDateTime.now(), LocalDateTime.now()));
+        verify(mapper, never()).reconcileFriendUnread(anyInt(), anyInt(), any(), any());
+    }
+
+    @Test
+    void disabledSkipsScheduledRun() {
+        policy.setReconcileEnabled(false);
+
+        reconciler.reconcile();
+
+        verifyNoInteractions(mapper);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.config.HistoryRetentionPolicy;
+import com.ld.poetry.entity.HistoryInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 访问记录归档测试
+ * 验证归档文件写入、原子提交和分批读取，以及分区上界解析
+ */
+public class HistoryArchiveServiceTest {
+
+    @TempDir
+    Path archiveDir;
+
+    private HistoryArchiveService historyArchiveService;
+
+    @BeforeEach
+    void setUp() {
+        HistoryRetentionPolicy policy = new HistoryRetentionPolicy();
+        policy.setArchiveDir(archiveDir.toString());
+        historyArchiveService = new HistoryArchiveService();
+        ReflectionTestUtils.setField(historyArchiveService, "historyRetentionPolicy", policy);
+    }
+
+    private HistoryInfo visit(int id, Integer userId) {
+        HistoryInfo info = new HistoryInfo();
+        info.setId(id);
+        info.setUserId(userId);
+        info.setIp("10.0.0." + id);
+        info.setNation("中国");
+        info.setProvince("广东");
+        info.setCity(null);
+        info.setCreateTime(LocalDateTime.of(2025, 9, 1, 8, 0).plusMinutes(id));
+        return info;
+    }
+
+    @Test
+    public void testWriteAndReadArchive() throws Exception {
+        try (HistoryArchiveService.ArchiveWriter writer = historyArchiveService.openWriter("p202509")) {
+            writer.write(List.of(visit(1, 7), visit(2, null)));
+            writer.write(List.of(visit(3, null)));
+            assertEquals(3, writer.getCount());
+            writer.commit();
+        }
+
+        List<Path> archives = historyArchiveService.listArchives();
+        assertEquals(1, archives.size());
+        assertEquals("history_info_p202509.ndjson.gz", archives.get(0).getFileName().toString());
+
+        List<Integer> batchSizes = new ArrayList<>();
+        List<HistoryInfo> rows = new ArrayList<>();
+        long count = historyArchiveService.readArchive(archives.get(0), 2, batch -> {
+            batchSizes.add(batch.size());
+            rows.addAll(batch);
+        });
+
+        assertEquals(3, count);
+        assertEquals(List.of(2, 1), batchSizes);
+        assertEquals(7, rows.get(0).getUserId());
+        assertNull(rows.get(1).getUserId());
+        assertNull(rows.get(2).getCity());
+        assertEquals(visit(3, null).getCreateTime(), rows.get(2).getCreateTime());
+    }
+
+    @Test
+    public void testUncommittedArchiveIsDiscarded() throws Exception {
+        try (HistoryArchiveService.ArchiveWriter writer = historyArchiveService.openWriter("p202510")) {
+            writer.write(List.of(visit(1, null)));
+        }
+
+        assertTrue(historyArchiveService.listArchives().isEmpty());
+        try (var files = Files.list(archiveDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testParsePartitionUpperBound() {
+        // TO_DAYS('2026-11-01') = 740286
+        assertEquals(LocalDate.of(2026, 11, 1), HistoryPartitionService.parseUpperBound("740286"));
+        assertNull(HistoryPartitionService.parseUpperBound("MAXVALUE"));
+        assertNull(HistoryPartitionService.parseUpperBound(null));
+    }
+}
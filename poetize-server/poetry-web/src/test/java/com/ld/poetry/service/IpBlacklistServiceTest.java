@@ -0,0 +1,128 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.utils.RedisUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * IP黑名单本地视图测试
+ * 验证正常IP不访问Redis、攻击次数本地聚合、pub/sub通知与对账
+ */
+public class IpBlacklistServiceTest {
+
+    private RedisUtil redisUtil;
+
+    private IpBlacklistService ipBlacklistService;
+
+    @BeforeEach
+    void setUp() {
+        redisUtil = mock(RedisUtil.class);
+        when(redisUtil.zRangeByScoreWithScores(anyString(), anyDouble())).thenReturn(new HashMap<>());
+        when(redisUtil.zAdd(anyString(), anyString(), anyDouble())).thenReturn(true);
+        ipBlacklistService = new IpBlacklistService();
+        ReflectionTestUtils.setField(ipBlacklistService, "redisUtil", redisUtil);
+        ipBlacklistService.init();
+        clearInvocations(redisUtil);
+    }
+
+    @Test
+    public void testCleanIpNeedsNoRedisCall() {
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(ipBlacklistService.isBlacklisted("8.8." + (i / 256) + "." + (i % 256)));
+        }
+        verifyNoInteractions(redisUtil);
+    }
+
+    @Test
+    public void testAttacksAggregatedLocally() {
+        ipBlacklistService.recordAttack("1.2.3.4");
+        ipBlacklistService.recordAttack("1.2.3.4");
+        ipBlacklistService.recordBlocked();
+        ipBlacklistService.recordBlocked();
+        verifyNoInteractions(redisUtil);
+
+        when(redisUtil.incr(anyString(), anyLong())).thenAnswer(invocation -> invocation.getArgument(1));
+        ipBlacklistService.flushAttackCounts();
+
+        verify(redisUtil).incr(CacheConstants.buildIpAttackKey("1.2.3.4"), 2);
+        verify(redisUtil).incr(CacheConstants.SECURITY_BLOCKED_TOTAL_KEY, 2);
+        assertFalse(ipBlacklistService.isBlacklisted("1.2.3.4"));
+    }
+
+    @Test
+    public void testThresholdInWindowBlacklistsImmediately() {
+        for (int i = 0; i < 3; i++) {
+            ipBlacklistService.recordAttack("5.6.7.8");
+        }
+
+        assertTrue(ipBlacklistService.isBlacklisted("5.6.7.8"));
+        verify(redisUtil).zAdd(eq(CacheConstants.IP_BLACKLIST_INDEX_KEY), eq("5.6.7.8"), anyDouble());
+        verify(redisUtil).publish(eq(CacheConstants.IP_BLACKLIST_CHANNEL), endsWith(" 5.6.7.8"));
+    }
+
+    @Test
+    public void testRemoteNotifications() {
+        long expireAt = System.currentTimeMillis() + 60_000;
+        ipBlacklistService.handleMessage("ADD " + expireAt + " 2408:8207::1");
+        assertTrue(ipBlacklistService.isBlacklisted("2408:8207::1"));
+
+        ipBlacklistService.handleMessage("DEL 0 2408:8207::1");
+        assertFalse(ipBlacklistService.isBlacklisted("2408:8207::1"));
+
+        // 已过期的拉黑不再生效
+        ipBlacklistService.handleMessage("ADD " + (System.currentTimeMillis() - 1) + " 9.9.9.9");
+        assertFalse(ipBlacklistService.isBlacklisted("9.9.9.9"));
+    }
+
+    @Test
+    public void testReconcileReplacesLocalView() {
+        ipBlacklistService.handleMessage("ADD " + (System.currentTimeMillis() + 60_000) + " 1.1.1.1");
+
+        Map<String, Double> index = new HashMap<>();
+        index.put("2.2.2.2", (double) (System.currentTimeMillis() + 60_000));
+        when(redisUtil.zRangeByScoreWithScores(anyString(), anyDouble())).thenReturn(index);
+        ipBlacklistService.reconcile();
+
+        assertFalse(ipBlacklistService.isBlacklisted("1.1.1.1"));
+        assertTrue(ipBlacklistService.isBlacklisted("2.2.2.2"));
+        assertEquals(1, ipBlacklistService.getLocalSize());
+    }
+
+    @Test
+    public void testReconcileDuringBlacklistKeepsEntry() {
+        // 对账在拉黑写入 Redis 之前读取了索引，写入完成后才轮到本地更新
+        when(redisUtil.zAdd(eq(CacheConstants.IP_BLACKLIST_INDEX_KEY), anyString(), anyDouble())).thenAnswer(invocation -> {
+            ipBlacklistService.reconcile();
+            return true;
+        });
+
+        ipBlacklistService.blacklist("3.3.3.3");
+
+        assertTrue(ipBlacklistService.isBlacklisted("3.3.3.3"));
+    }
+
+    @Test
+    public void testFailedIndexWriteRetriedOnReconcile() {
+        when(redisUtil.zAdd(anyString(), anyString(), anyDouble())).thenReturn(false);
+        ipBlacklistService.blacklist("4.4.4.4");
+        ipBlacklistService.reconcile();
+
+        // 写入失败的拉黑在对账重建后仍然生效，并在下次对账时重试写入
+        assertTrue(ipBlacklistService.isBlacklisted("4.4.4.4"));
+        verify(redisUtil, times(2)).zAdd(eq(CacheConstants.IP_BLACKLIST_INDEX_KEY), eq("4.4.4.4"), anyDouble());
+
+        when(redisUtil.zAdd(anyString(), anyString(), anyDouble())).thenReturn(true);
+        ipBlacklistService.reconcile();
+        ipBlacklistService.reconcile();
+        verify(redisUtil, times(3)).zAdd(eq(CacheConstants.IP_BLACKLIST_INDEX_KEY), eq("4.4.4.4"), anyDouble());
+    }
+}
@@ -0,0 +1,222 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.handle.PoetryBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 密码哈希线程池测试
+ * 验证队列满/单IP超限时快速拒绝、等待超时后单IP名额在哈希实际结束时才释放，以及登录洪峰时哈希只占用池内的平台线程
+ */
+public class PasswordHashExecutorTest {
+
+    private PasswordHashExecutor hashExecutor;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        callers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (hashExecutor != null) {
+            hashExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testQueueFullRejectsFast() throws Exception {
+        hashExecutor = newExecutor(2, 4, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Boolean>> blocked = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            blocked.add(callers.submit(() -> hashExecutor.execute(null, () -> release.await(10, TimeUnit.SECONDS))));
+        }
+        waitUntil(() -> hashExecutor.getQueueSize() == 4);
+
+        long start = System.nanoTime();
+        assertThrows(PoetryBusyException.class, () -> hashExecutor.execute(null, () -> true));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100), "队列已满时应立即拒绝");
+
+        release.countDown();
+        for (Future<Boolean> future : blocked) {
+            assertTrue(future.get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(hashExecutor.execute(null, () -> true));
+    }
+
+    @Test
+    public void testPerIpAdmission() throws Exception {
+        hashExecutor = newExecutor(4, 16, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Boolean>> blocked = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            blocked.add(callers.submit(() -> hashExecutor.execute("1.1.1.1", () -> release.await(10, TimeUnit.SECONDS))));
+        }
+        waitUntil(() -> hashExecutor.getQueueSize() == 0 && blocked.stream().noneMatch(Future::isDone)
+                && activeCount() == 2);
+
+        assertThrows(PoetryBusyException.class, () -> hashExecutor.execute("1.1.1.1", () -> true));
+        // 其他IP不受影响
+        assertTrue(hashExecutor.execute("2.2.2.2", () -> true));
+
+        release.countDown();
+        for (Future<Boolean> future : blocked) {
+            assertTrue(future.get(5, TimeUnit.SECONDS));
+        }
+        // 执行完成后释放名额
+        assertTrue(hashExecutor.execute("1.1.1.1", () -> true));
+    }
+
+    @Test
+    public void testTaskExceptionPropagated() {
+        hashExecutor = newExecutor(1, 1, 2);
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> hashExecutor.execute("1.1.1.1", () -> {
+                    throw new IllegalArgumentException("bad");
+                }));
+        assertEquals("bad", thrown.getMessage());
+        // 异常后同样释放IP名额
+        assertTrue(hashExecutor.execute("1.1.1.1", () -> true));
+        assertTrue(hashExecutor.execute("1.1.1.1", () -> true));
+    }
+
+    @Test
+    public void testTimedOutHashKeepsIpSlotUntilFinished() throws Exception {
+        hashExecutor = newExecutor(2, 4, 1);
+        ReflectionTestUtils.setField(hashExecutor, "timeoutMs", 50L);
+        CountDownLatch release = new CountDownLatch(1);
+        assertThrows(PoetryBusyException.class,
+                () -> hashExecutor.execute("1.1.1.1", () -> release.await(10, TimeUnit.SECONDS)));
+
+        // 超时的哈希仍在执行，名额未释放，新请求不会提交到线程池
+        AtomicInteger executed = new AtomicInteger();
+        assertThrows(PoetryBusyException.class, () -> hashExecutor.execute("1.1.1.1", executed::incrementAndGet));
+        assertEquals(0, executed.get());
+
+        release.countDown();
+        waitUntil(() -> inflightByIp().isEmpty());
+        assertTrue(hashExecutor.execute("1.1.1.1", () -> true));
+    }
+
+    @Test
+    public void testTimedOutQueuedTaskReleasesIpSlot() throws Exception {
+        hashExecutor = newExecutor(1, 4, 1);
+        ReflectionTestUtils.setField(hashExecutor, "timeoutMs", 50L);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Boolean> blocker = callers.submit(() -> hashExecutor.execute(null, () -> release.await(10, TimeUnit.SECONDS)));
+        waitUntil(() -> activeCount() == 1);
+
+        // 排队中超时的任务不再执行，名额立即释放
+        AtomicInteger executed = new AtomicInteger();
+        assertThrows(PoetryBusyException.class, () -> hashExecutor.execute("1.1.1.1", executed::incrementAndGet));
+        assertTrue(inflightByIp().isEmpty());
+
+        release.countDown();
+        assertTrue(blocker.get(5, TimeUnit.SECONDS));
+        assertTrue(hashExecutor.execute("1.1.1.1", () -> true));
+        assertEquals(0, executed.get());
+    }
+
+    /**
+     * 负载测试：模拟撞库洪峰（大量IP并发登录）时，超出队列容量的登录被快速拒绝；
+     * 哈希只在池内的平台线程上执行，同时执行的数量不超过线程数，不会占用运行其他请求的虚拟线程载体线程。
+     * 与机器速度无关，不测绝对耗时
+     */
+    @Test
+    public void testLoginFloodRejectsExcess() throws Exception {
+        hashExecutor = newExecutor(2, 32, 2);
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(10);
+        String encoded = encoder.encode("password");
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger hashing = new AtomicInteger();
+        AtomicInteger maxHashing = new AtomicInteger();
+        Set<String> hashThreads = ConcurrentHashMap.newKeySet();
+        AtomicInteger onVirtualThread = new AtomicInteger();
+        List<Future<?>> logins = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String ip = "10.0." + (i % 50) + ".1";
+            logins.add(callers.submit(() -> {
+                try {
+                    hashExecutor.execute(ip, () -> {
+                        Thread thread = Thread.currentThread();
+                        if (thread.isVirtual()) {
+                            onVirtualThread.incrementAndGet();
+                        }
+                        hashThreads.add(thread.getName());
+                        maxHashing.accumulateAndGet(hashing.incrementAndGet(), Math::max);
+                        try {
+                            return encoder.matches("wrong", encoded);
+                        } finally {
+                            hashing.decrementAndGet();
+                        }
+                    });
+                    succeeded.incrementAndGet();
+                } catch (PoetryBusyException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> login : logins) {
+            login.get(60, TimeUnit.SECONDS);
+        }
+
+        assertTrue(rejected.get() > 0, "洪峰超过队列容量时应快速拒绝部分登录");
+        assertTrue(succeeded.get() > 0);
+        assertTrue(inflightByIp().isEmpty());
+        assertEquals(0, onVirtualThread.get(), "哈希不应在虚拟线程（载体线程）上执行");
+        assertTrue(maxHashing.get() <= 2, "同时执行的哈希不应超过线程池的平台线程数");
+        assertTrue(hashThreads.size() <= 2);
+        assertTrue(hashThreads.stream().allMatch(name -> name.startsWith("password-hash-")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> inflightByIp() {
+        return (Map<String, Integer>) ReflectionTestUtils.getField(hashExecutor, "inflightByIp");
+    }
+
+    private int activeCount() {
+        return ((ThreadPoolExecutor) ReflectionTestUtils.getField(hashExecutor, "executor")).getActiveCount();
+    }
+
+    private static PasswordHashExecutor newExecutor(int poolSize, int queueCapacity, int perIpConcurrency) {
+        PasswordHashExecutor executor = new PasswordHashExecutor();
+        ReflectionTestUtils.setField(executor, "poolSize", poolSize);
+        ReflectionTestUtils.setField(executor, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(executor, "perIpConcurrency", perIpConcurrency);
+        executor.start();
+        return executor;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待条件超时");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.config.StatelessTokenPolicy;
+import com.ld.poetry.utils.RedisUtil;
+import com.ld.poetry.utils.SecureTokenGenerator;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无状态token本地验证基准：验签 + 吊销列表检查，不访问 Redis
+ * <p>
+ * 运行方式：mvn test-compile 后以测试类路径执行本类的 main 方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenRevocationBenchmark {
+
+    private TokenRevocationService revocationService;
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        SecureTokenGenerator.reloadKeys("k1:benchmark-secret");
+        revocationService = new TokenRevocationService();
+        ReflectionTestUtils.setField(revocationService, "redisUtil", Mockito.mock(RedisUtil.class));
+        ReflectionTestUtils.setField(revocationService, "statelessTokenPolicy", new StatelessTokenPolicy());
+        revocationService.init();
+        token = SecureTokenGenerator.generateUserToken(100, true);
+        // 吊销列表非空时同样只查本地布隆过滤器与精确集合
+        for (int i = 0; i < 1000; i++) {
+            revocationService.handleMessage("TOKEN " + (System.currentTimeMillis() + 3_600_000) + " jti-" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecureTokenGenerator.reloadKeys(null);
+    }
+
+    @Benchmark
+    public boolean validateAndCheckRevoked() {
+        return revocationService.isRevoked(SecureTokenGenerator.validateToken(token));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TokenRevocationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,214 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.config.StatelessTokenPolicy;
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.utils.RedisUtil;
+import com.ld.poetry.utils.SecureTokenGenerator;
+import com.ld.poetry.utils.SecureTokenGenerator.TokenValidationResult;
+import com.ld.poetry.utils.TokenValidationUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 无状态token与吊销列表测试
+ * 验证v2 token本地验签、密钥轮换、按token/按用户吊销及多节点通知，旧格式token不受影响
+ */
+public class TokenRevocationServiceTest {
+
+    private RedisUtil redisUtil;
+
+    private TokenRevocationService revocationService;
+
+    @BeforeEach
+    void setUp() {
+        SecureTokenGenerator.reloadKeys("k1:first-secret");
+        redisUtil = mock(RedisUtil.class);
+        when(redisUtil.zRangeByScoreWithScores(anyString(), anyDouble())).thenReturn(new HashMap<>());
+        when(redisUtil.zAdd(anyString(), anyString(), anyDouble())).thenReturn(true);
+        StatelessTokenPolicy policy = new StatelessTokenPolicy();
+        policy.setEnabled(true);
+        revocationService = new TokenRevocationService();
+        ReflectionTestUtils.setField(revocationService, "redisUtil", redisUtil);
+        ReflectionTestUtils.setField(revocationService, "statelessTokenPolicy", policy);
+        revocationService.init();
+        clearInvocations(redisUtil);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecureTokenGenerator.reloadKeys(null);
+    }
+
+    @Test
+    public void testStatelessTokenValidatedLocally() {
+        String userToken = SecureTokenGenerator.generateUserToken(7, true);
+        String adminToken = SecureTokenGenerator.generateAdminToken(1, true);
+        assertTrue(SecureTokenGenerator.isStatelessToken(userToken));
+        assertTrue(userToken.length() <= 250);
+
+        TokenValidationResult result = SecureTokenGenerator.validateToken(userToken);
+        assertTrue(result.isValid(), result.getErrorMessage());
+        assertEquals(7, result.getUserId());
+        assertTrue(result.isStateless());
+        assertTrue(TokenValidationUtil.isUserToken(userToken));
+        assertTrue(TokenValidationUtil.isAdminToken(adminToken));
+        assertEquals(1, TokenValidationUtil.extractUserId(adminToken));
+
+        // 篡改payload或替换前缀均验签失败
+        int payloadStart = userToken.indexOf("v2.") + 3;
+        char replaced = userToken.charAt(payloadStart) == 'A' ? 'B' : 'A';
+        String tampered = userToken.substring(0, payloadStart) + replaced + userToken.substring(payloadStart + 1);
+        assertFalse(SecureTokenGenerator.validateToken(tampered).isValid());
+        assertFalse(TokenValidationUtil.isValidToken(adminToken.replace("admin_access_token_", "user_access_token_")));
+        assertFalse(TokenValidationUtil.isValidToken(userToken.replace("user_access_token_", "admin_access_token_")));
+
+        // 验证不访问Redis
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(revocationService.isRevoked(SecureTokenGenerator.validateToken(userToken)));
+        }
+        verifyNoInteractions(redisUtil);
+    }
+
+    @Test
+    public void testLegacyTokensStillValid() {
+        String legacy = SecureTokenGenerator.generateUserToken(3);
+        assertFalse(SecureTokenGenerator.isStatelessToken(legacy));
+        TokenValidationResult result = SecureTokenGenerator.validateToken(legacy);
+        assertTrue(result.isValid());
+        assertFalse(result.isStateless());
+
+        // 旧格式token的注销走Redis会话，不写入吊销列表
+        revocationService.revoke(legacy);
+        verifyNoInteractions(redisUtil);
+    }
+
+    @Test
+    public void testKeyRotation() {
+        String oldToken = SecureTokenGenerator.generateUserToken(5, true);
+
+        // 新密钥放在首位，旧密钥保留用于验证
+        SecureTokenGenerator.reloadKeys("k2:second-secret,k1:first-secret");
+        String newToken = SecureTokenGenerator.generateUserToken(5, true);
+        assertTrue(SecureTokenGenerator.validateToken(oldToken).isValid());
+        assertTrue(SecureTokenGenerator.validateToken(newToken).isValid());
+
+        // 旧密钥移除后，用它签发的token失效
+        SecureTokenGenerator.reloadKeys("k2:second-secret");
+        assertFalse(SecureTokenGenerator.validateToken(oldToken).isValid());
+        assertTrue(SecureTokenGenerator.validateToken(newToken).isValid());
+
+        // 相同kid但密钥不同同样验签失败
+        SecureTokenGenerator.reloadKeys("k2:other-secret");
+        assertFalse(SecureTokenGenerator.validateToken(newToken).isValid());
+    }
+
+    @Test
+    public void testRevokeSingleToken() {
+        String revoked = SecureTokenGenerator.generateUserToken(9, true);
+        String other = SecureTokenGenerator.generateUserToken(9, true);
+
+        revocationService.revoke(revoked);
+
+        assertTrue(revocationService.isRevoked(SecureTokenGenerator.validateToken(revoked)));
+        assertFalse(revocationService.isRevoked(SecureTokenGenerator.validateToken(other)));
+        long expiresAt = SecureTokenGenerator.validateToken(revoked).getExpiresAt();
+        verify(redisUtil).zAdd(CacheConstants.TOKEN_REVOKED_INDEX_KEY, SecureTokenGenerator.validateToken(revoked).getNonce(), expiresAt);
+        verify(redisUtil).publish(eq(CacheConstants.TOKEN_REVOKE_CHANNEL), startsWith("TOKEN " + expiresAt + " "));
+    }
+
+    @Test
+    public void testRevokeUserInvalidatesEarlierTokens() throws Exception {
+        String before = SecureTokenGenerator.generateAdminToken(2, true);
+        String otherUser = SecureTokenGenerator.generateAdminToken(4, true);
+        TimeUnit.MILLISECONDS.sleep(2);
+
+        revocationService.revokeUser(2);
+        TimeUnit.MILLISECONDS.sleep(2);
+        String after = SecureTokenGenerator.generateAdminToken(2, true);
+
+        assertTrue(revocationService.isRevoked(SecureTokenGenerator.validateToken(before)));
+        assertFalse(revocationService.isRevoked(SecureTokenGenerator.validateToken(after)));
+        assertFalse(revocationService.isRevoked(SecureTokenGenerator.validateToken(otherUser)));
+        verify(redisUtil).zAdd(eq(CacheConstants.TOKEN_USER_NOT_BEFORE_KEY), eq("2"), anyDouble());
+    }
+
+    @Test
+    public void testRemoteNotificationsAndReconcile() {
+        String token = SecureTokenGenerator.generateUserToken(11, true);
+        TokenValidationResult result = SecureTokenGenerator.validateToken(token);
+
+        revocationService.handleMessage("TOKEN " + result.getExpiresAt() + " " + result.getNonce());
+        assertTrue(revocationService.isRevoked(result));
+
+        // 对账以Redis索引为准重建本地视图
+        revocationService.reconcile();
+        assertFalse(revocationService.isRevoked(result));
+        assertEquals(0, revocationService.getLocalSize());
+
+        Map<String, Double> tokens = new HashMap<>();
+        tokens.put(result.getNonce(), result.getExpiresAt().doubleValue());
+        Map<String, Double> users = new HashMap<>();
+        users.put("12", (double) System.currentTimeMillis() + 1000);
+        when(redisUtil.zRangeByScoreWithScores(eq(CacheConstants.TOKEN_REVOKED_INDEX_KEY), anyDouble())).thenReturn(tokens);
+        when(redisUtil.zRangeByScoreWithScores(eq(CacheConstants.TOKEN_USER_NOT_BEFORE_KEY), anyDouble())).thenReturn(users);
+        revocationService.reconcile();
+
+        assertTrue(revocationService.isRevoked(result));
+        assertTrue(revocationService.isRevoked(SecureTokenGenerator.validateToken(SecureTokenGenerator.generateUserToken(12, true))));
+
+        revocationService.handleMessage("USER " + System.currentTimeMillis() + " 11");
+        revocationService.handleMessage("USER abc 11");
+        assertTrue(revocationService.isRevoked(result));
+    }
+
+    @Test
+    public void testReconcileDuringRevokeKeepsRevocation() {
+        String token = SecureTokenGenerator.generateUserToken(13, true);
+        TokenValidationResult result = SecureTokenGenerator.validateToken(token);
+        // 对账在吊销写入 Redis 之前读取了索引，写入完成后才轮到本地更新
+        when(redisUtil.zAdd(eq(CacheConstants.TOKEN_REVOKED_INDEX_KEY), anyString(), anyDouble())).thenAnswer(invocation -> {
+            revocationService.reconcile();
+            return true;
+        });
+
+        revocationService.revoke(token);
+
+        assertTrue(revocationService.isRevoked(result));
+    }
+
+    @Test
+    public void testFailedRedisWriteRetriedOnReconcile() {
+        String token = SecureTokenGenerator.generateUserToken(14, true);
+        TokenValidationResult result = SecureTokenGenerator.validateToken(token);
+        TokenValidationResult userResult = SecureTokenGenerator.validateToken(SecureTokenGenerator.generateUserToken(15, true));
+        when(redisUtil.zAdd(anyString(), anyString(), anyDouble())).thenReturn(false);
+
+        revocationService.revoke(token);
+        revocationService.revokeUser(15);
+        revocationService.reconcile();
+
+        // 写入失败的吊销在对账重建后仍然生效，并在下次对账时重试写入
+        assertTrue(revocationService.isRevoked(result));
+        assertTrue(revocationService.isRevoked(userResult));
+        verify(redisUtil, times(2)).zAdd(CacheConstants.TOKEN_REVOKED_INDEX_KEY, result.getNonce(), result.getExpiresAt());
+
+        when(redisUtil.zAdd(anyString(), anyString(), anyDouble())).thenReturn(true);
+        revocationService.reconcile();
+        verify(redisUtil, times(3)).zAdd(CacheConstants.TOKEN_REVOKED_INDEX_KEY, result.getNonce(), result.getExpiresAt());
+        verify(redisUtil, times(3)).zAdd(eq(CacheConstants.TOKEN_USER_NOT_BEFORE_KEY), eq("15"), anyDouble());
+
+        // 写入成功后不再重试
+        revocationService.reconcile();
+        verify(redisUtil, times(3)).zAdd(CacheConstants.TOKEN_REVOKED_INDEX_KEY, result.getNonce(), result.getExpiresAt());
+    }
+}
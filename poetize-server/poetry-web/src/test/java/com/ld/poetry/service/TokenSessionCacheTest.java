@@ -0,0 +1,227 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.aop.LoginCheck;
+import com.ld.poetry.aop.LoginCheckAspect;
+import com.ld.poetry.constants.CacheConstants;
+import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.entity.User;
+import com.ld.poetry.utils.LockManager;
+import com.ld.poetry.utils.PoetryUtil;
+import com.ld.poetry.utils.RedisUtil;
+import com.ld.poetry.utils.SecureTokenGenerator;
+import com.ld.poetry.utils.cache.UserCacheManager;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 请求级安全上下文与本地token缓存测试
+ * 验证同一请求只解析一次token、后续请求命中本地缓存（包括会话续期间隔标记）、注销/修改用户后各节点失效
+ */
+public class TokenSessionCacheTest {
+
+    private static final String TOKEN = SecureTokenGenerator.generateUserToken(1);
+
+    private RedisUtil redisUtil;
+
+    private CacheService cacheService;
+
+    private TokenSessionCache tokenSessionCache;
+
+    @BeforeEach
+    void setUp() {
+        redisUtil = mock(RedisUtil.class);
+        when(redisUtil.publish(anyString(), anyString())).thenReturn(true);
+        tokenSessionCache = new TokenSessionCache();
+        ReflectionTestUtils.setField(tokenSessionCache, "redisUtil", redisUtil);
+        tokenSessionCache.init();
+
+        cacheService = mock(CacheService.class);
+        when(cacheService.getUserIdFromSession(TOKEN)).thenReturn(1);
+        when(cacheService.getCachedUser(1)).thenAnswer(invocation -> user(1, "alice"));
+        when(cacheService.getCachedAdminUser()).thenAnswer(invocation -> user(1, "alice"));
+
+        UserCacheManager userCacheManager = new UserCacheManager();
+        ReflectionTestUtils.setField(userCacheManager, "cacheService", cacheService);
+        ReflectionTestUtils.setField(userCacheManager, "tokenSessionCache", tokenSessionCache);
+
+        PoetryUtil poetryUtil = new PoetryUtil();
+        ReflectionTestUtils.setField(poetryUtil, "userCacheManager", userCacheManager);
+        ReflectionTestUtils.setField(poetryUtil, "cacheService", cacheService);
+        ReflectionTestUtils.setField(poetryUtil, "tokenSessionCache", tokenSessionCache);
+        poetryUtil.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testTokenResolvedOncePerRequest() {
+        startRequest();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("alice", PoetryUtil.getCurrentUser().getUsername());
+            assertEquals(1, PoetryUtil.getUserId());
+            assertEquals("alice", PoetryUtil.getUsername());
+            assertEquals(1, PoetryUtil.getAdminUser().getId());
+        }
+        verify(cacheService, times(1)).getUserIdFromSession(TOKEN);
+        verify(cacheService, times(1)).getCachedUser(1);
+        verify(cacheService, times(1)).getCachedAdminUser();
+    }
+
+    @Test
+    public void testLaterRequestsServedLocally() {
+        startRequest();
+        PoetryUtil.getCurrentUser();
+        PoetryUtil.getAdminUser();
+        clearInvocations(cacheService);
+
+        startRequest();
+        assertEquals("alice", PoetryUtil.getCurrentUser().getUsername());
+        assertNotNull(PoetryUtil.getAdminUser());
+        verifyNoInteractions(cacheService);
+    }
+
+    @Test
+    public void testReturnedUserIsCopy() {
+        startRequest();
+        PoetryUtil.getCurrentUser().setUsername("mutated");
+
+        startRequest();
+        assertEquals("alice", PoetryUtil.getCurrentUser().getUsername());
+    }
+
+    @Test
+    public void testLogoutRevokesTokenEverywhere() {
+        startRequest();
+        assertNotNull(PoetryUtil.getCurrentUser());
+
+        tokenSessionCache.revokeToken(TOKEN);
+        verify(redisUtil).publish(CacheConstants.SESSION_REVOKE_CHANNEL, "TOKEN " + TOKEN);
+
+        when(cacheService.getUserIdFromSession(TOKEN)).thenReturn(null);
+        // 同一请求内注销后重新解析
+        assertNull(PoetryUtil.getCurrentUser());
+        startRequest();
+        assertNull(PoetryUtil.getCurrentUser());
+    }
+
+    @Test
+    public void testRemoteUserRevocation() {
+        startRequest();
+        PoetryUtil.getCurrentUser();
+        PoetryUtil.getAdminUser();
+
+        // 其他节点修改密码/踢下线
+        tokenSessionCache.handleMessage("USER 1");
+        when(cacheService.getCachedUser(1)).thenReturn(null);
+        when(cacheService.getCachedAdminUser()).thenReturn(null);
+
+        startRequest();
+        assertNull(PoetryUtil.getCurrentUser());
+        assertNull(PoetryUtil.getAdminUser());
+        verifyNoMoreInteractions(redisUtil);
+    }
+
+    @Test
+    public void testStaleLoadNotCached() {
+        long loadedAt = tokenSessionCache.loadStarted();
+        // 加载过程中收到失效通知，加载结果不应写入本地缓存
+        tokenSessionCache.handleMessage("TOKEN " + TOKEN);
+        tokenSessionCache.putUser(TOKEN, user(1, "alice"), loadedAt);
+        assertNull(tokenSessionCache.getUser(TOKEN));
+
+        loadedAt = tokenSessionCache.loadStarted();
+        tokenSessionCache.putUser(TOKEN, user(1, "alice"), loadedAt);
+        assertNotNull(tokenSessionCache.getUser(TOKEN));
+
+        tokenSessionCache.handleMessage("bogus");
+        tokenSessionCache.handleMessage("USER x");
+        assertNotNull(tokenSessionCache.getUser(TOKEN));
+    }
+
+    @Test
+    void intervalMarkerServedLocallyUntilLapsed() throws Throwable {
+        when(cacheService.getCachedUser(1)).thenAnswer(invocation -> {
+            User user = user(1, "alice");
+            user.setUserType(2);
+            return user;
+        });
+        LockManager lockManager = mock(LockManager.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(lockManager).executeWithLock(anyString(), any(Runnable.class));
+        LoginCheckAspect aspect = new LoginCheckAspect();
+        ReflectionTestUtils.setField(aspect, "cacheService", cacheService);
+        ReflectionTestUtils.setField(aspect, "lockManager", lockManager);
+        ReflectionTestUtils.setField(aspect, "tokenSessionCache", tokenSessionCache);
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        LoginCheck loginCheck = mock(LoginCheck.class);
+        when(loginCheck.value()).thenReturn(2);
+
+        // 首次请求：Redis 中没有标记，续期并在本地记下标记
+        startRequest();
+        aspect.around(joinPoint, loginCheck);
+        verify(cacheService).getTokenIntervalExpire(1, false);
+        verify(cacheService).cacheTokenInterval(1, false);
+        assertTrue(tokenSessionCache.isIntervalMarked(TOKEN));
+
+        // 后续请求：本地标记有效，不再读取 Redis
+        clearInvocations(cacheService);
+        for (int i = 0; i < 3; i++) {
+            startRequest();
+            aspect.around(joinPoint, loginCheck);
+        }
+        verifyNoInteractions(cacheService);
+        verify(joinPoint, times(4)).proceed();
+
+        // 用户失效后条目重新加载，标记随之失效，读取一次 Redis 剩余有效期
+        tokenSessionCache.handleMessage("USER 1");
+        when(cacheService.getTokenIntervalExpire(1, false)).thenReturn(600L);
+        startRequest();
+        aspect.around(joinPoint, loginCheck);
+        verify(cacheService).getTokenIntervalExpire(1, false);
+        verify(cacheService, never()).cacheTokenInterval(anyInt(), anyBoolean());
+        assertTrue(tokenSessionCache.isIntervalMarked(TOKEN));
+    }
+
+    @Test
+    void readThroughBackfillDoesNotRevoke() {
+        TokenSessionCache sessions = mock(TokenSessionCache.class);
+        CacheService realCacheService = new CacheService();
+        ReflectionTestUtils.setField(realCacheService, "redisUtil", redisUtil);
+        ReflectionTestUtils.setField(realCacheService, "tokenSessionCache", sessions);
+
+        realCacheService.cacheUser(user(1, "alice"));
+        verify(sessions, never()).revokeUser(anyInt());
+
+        realCacheService.refreshUser(user(1, "alice2"));
+        verify(sessions).revokeUser(1);
+        verify(redisUtil, times(2)).set(eq(CacheConstants.buildUserKey(1)), any(User.class), anyLong());
+    }
+
+    private static void startRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(CommonConst.TOKEN_HEADER, TOKEN);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static User user(int id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ld.poetry.service;
+
+import com.ld.poetry.entity.HistoryInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 访问统计单日聚合测试
+ * 验证按天重算时的访问次数、独立IP、小时/地区/用户拆分
+ */
+public class VisitRollupAggregateTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 18);
+
+    private HistoryInfo visit(String ip, Integer userId, String province, String city, LocalDateTime time) {
+        HistoryInfo info = new HistoryInfo();
+        info.setIp(ip);
+        info.setUserId(userId);
+        info.setNation("中国");
+        info.setProvince(province);
+        info.setCity(city);
+        info.setCreateTime(time);
+        return info;
+    }
+
+    @Test
+    public void testDayAggregate() {
+        List<HistoryInfo> rows = List.of(
+                visit("1.1.1.1", 1, "广东", "深圳", DAY.atTime(9, 5)),
+                visit("1.1.1.1", 1, "广东", "深圳", DAY.atTime(9, 40)),
+                visit("2.2.2.2", null, "广东", "广州", DAY.atTime(10, 0)),
+                visit("3.3.3.3", 2, "北京", "北京", DAY.atTime(23, 59)),
+                // 不属于统计日期的记录应被忽略
+                visit("4.4.4.4", 3, "上海", "上海", DAY.plusDays(1).atStartOfDay()));
+
+        VisitRollupService.DayAggregate aggregate = VisitRollupService.DayAggregate.of(DAY, rows);
+
+        assertEquals(4, aggregate.getVisits());
+        assertEquals(3, aggregate.getUniqueIps());
+
+        List<Map<String, Object>> hourly = aggregate.hourlyRows();
+        assertEquals(3, hourly.size());
+        Map<String, Object> nine = hourly.stream()
+                .filter(row -> DAY.atTime(9, 0).equals(row.get("statTime")))
+                .findFirst().orElseThrow();
+        assertEquals(2L, nine.get("visits"));
+        assertEquals(1L, nine.get("uniqueIps"));
+
+        long guangdongIps = aggregate.regionRows().stream()
+                .filter(row -> "广东".equals(row.get("province")))
+                .mapToLong(row -> (Long) row.get("uniqueIps"))
+                .sum();
+        assertEquals(2, guangdongIps);
+
+        List<Map<String, Object>> users = aggregate.userRows();
+        assertEquals(2, users.size());
+        assertEquals(2L, users.stream().filter(row -> Integer.valueOf(1).equals(row.get("userId")))
+                .findFirst().orElseThrow().get("visits"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.ld.poetry.service.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ip2region 内存映射查找测试
+ * 使用按 xdb 格式构造的小型缓冲区验证段索引二分查找和IP解析
+ */
+public class IpRegionEngineTest {
+
+    private static final int HEADER = 256;
+    private static final int VECTOR = 256 * 256 * 8;
+
+    /**
+     * 构造包含两个段的 xdb：1.0.0.0-1.0.0.255 和 1.0.1.0-1.0.255.255，向量索引 1.0 指向这两个段
+     */
+    private ByteBuffer buildXdb() {
+        byte[] first = "中国|0|广东省|深圳市|电信".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "美国|0|0|0|0".getBytes(StandardCharsets.UTF_8);
+        int segmentStart = HEADER + VECTOR;
+        int dataStart = segmentStart + 2 * 14;
+
+        ByteBuffer xdb = ByteBuffer.allocate(dataStart + first.length + second.length).order(ByteOrder.LITTLE_ENDIAN);
+        int vectorIdx = HEADER + (1 * 256 + 0) * 8;
+        xdb.putInt(vectorIdx, segmentStart);
+        xdb.putInt(vectorIdx + 4, segmentStart + 14);
+
+        writeSegment(xdb, segmentStart, IpRegionEngine.parseIpv4("1.0.0.0"), IpRegionEngine.parseIpv4("1.0.0.255"), first.length, dataStart);
+        writeSegment(xdb, segmentStart + 14, IpRegionEngine.parseIpv4("1.0.1.0"), IpRegionEngine.parseIpv4("1.0.255.255"), second.length, dataStart + first.length);
+        xdb.put(dataStart, first);
+        xdb.put(dataStart + first.length, second);
+        return xdb;
+    }
+
+    private void writeSegment(ByteBuffer xdb, int offset, long startIp, long endIp, int dataLen, int dataPtr) {
+        xdb.putInt(offset, (int) startIp);
+        xdb.putInt(offset + 4, (int) endIp);
+        xdb.putShort(offset + 8, (short) dataLen);
+        xdb.putInt(offset + 10, dataPtr);
+    }
+
+    @Test
+    public void testSearch() {
+        ByteBuffer xdb = buildXdb();
+
+        assertEquals("中国|0|广东省|深圳市|电信", IpRegionEngine.search(xdb, IpRegionEngine.parseIpv4("1.0.0.8")));
+        assertEquals("美国|0|0|0|0", IpRegionEngine.search(xdb, IpRegionEngine.parseIpv4("1.0.200.1")));
+        // 向量索引为空的网段
+        assertNull(IpRegionEngine.search(xdb, IpRegionEngine.parseIpv4("8.8.8.8")));
+    }
+
+    @Test
+    public void testParseIpv4() {
+        assertEquals(0x01000008L, IpRegionEngine.parseIpv4("1.0.0.8"));
+        assertEquals(0xFFFFFFFFL, IpRegionEngine.parseIpv4("255.255.255.255"));
+        assertEquals(-1, IpRegionEngine.parseIpv4("256.0.0.1"));
+        assertEquals(-1, IpRegionEngine.parseIpv4("1.2.3"));
+        assertEquals(-1, IpRegionEngine.parseIpv4("::1"));
+    }
+
+    @Test
+    public void testParseRegion() {
+        IpRegionEngine.IpRegion region = IpRegionEngine.IpRegion.parse("中国|0|广东省|深圳市|电信");
+        assertEquals("中国", region.nation());
+        assertNull(region.area());
+        assertEquals("广东省", region.province());
+        assertEquals("深圳市", region.city());
+        assertFalse(region.isUnknown());
+        assertTrue(IpRegionEngine.IpRegion.UNKNOWN.isUnknown());
+    }
+}
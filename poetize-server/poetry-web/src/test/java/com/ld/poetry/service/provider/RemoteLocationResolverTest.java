@@ -0,0 +1,146 @@
+package com.ld.poetry.service.provider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 远程IP异步解析测试
+ * 使用本地桩提供者验证请求合并、超时降级、限流和熔断
+ */
+public class RemoteLocationResolverTest {
+
+    private static final String IPV6 = "2408:8207:1234::1";
+
+    private final List<IpLocationProvider> providers = new ArrayList<>();
+
+    private RemoteLocationResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new RemoteLocationResolver() {
+            @Override
+            protected List<IpLocationProvider> remoteProviders(String ipAddress) {
+                return providers;
+            }
+        };
+        ReflectionTestUtils.setField(resolver, "batchWindowMs", 20L);
+        ReflectionTestUtils.setField(resolver, "timeoutMs", 200L);
+        resolver.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        resolver.stop();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneLookup() throws Exception {
+        StubIpLocationProvider tencent = new StubIpLocationProvider(IpLocationProvider.ProviderType.TENCENT_LBS)
+                .result(IPV6, "广东")
+                .latency(50);
+        providers.add(tencent);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(resolver.resolveAsync(IPV6));
+        }
+        assertSame(futures.get(0), resolver.getPending(IPV6));
+
+        for (CompletableFuture<String> future : futures) {
+            assertEquals("广东", future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, tencent.getCalls());
+        assertNull(resolver.getPending(IPV6));
+    }
+
+    @Test
+    public void testSlowProviderFallsBackToNext() throws Exception {
+        StubIpLocationProvider slow = new StubIpLocationProvider(IpLocationProvider.ProviderType.TENCENT_LBS)
+                .result("8.8.8.8", "美国")
+                .latency(2000);
+        StubIpLocationProvider fast = new StubIpLocationProvider(IpLocationProvider.ProviderType.TAOBAO_IP)
+                .result("8.8.8.8", "United States");
+        providers.add(slow);
+        providers.add(fast);
+
+        long start = System.nanoTime();
+        assertEquals("United States", resolver.resolveAsync("8.8.8.8").get(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000, "超时的提供者不应阻塞到其响应");
+        assertEquals(1, fast.getCalls());
+    }
+
+    @Test
+    public void testFailedLookupIsNotRetriedImmediately() throws Exception {
+        StubIpLocationProvider failing = new StubIpLocationProvider(IpLocationProvider.ProviderType.TAOBAO_IP)
+                .failWith(new IllegalStateException("boom"));
+        providers.add(failing);
+
+        assertEquals("未知", resolver.resolveAsync("1.1.1.1").get(5, TimeUnit.SECONDS));
+        assertEquals("未知", resolver.resolveAsync("1.1.1.1").get(5, TimeUnit.SECONDS));
+        assertEquals(1, failing.getCalls());
+    }
+
+    @Test
+    public void testRateLimitDefersLookup() throws Exception {
+        StubIpLocationProvider taobao = new StubIpLocationProvider(IpLocationProvider.ProviderType.TAOBAO_IP)
+                .result("1.0.0.1", "澳大利亚")
+                .result("1.0.0.2", "澳大利亚");
+        providers.add(taobao);
+
+        // 第一个IP耗尽令牌，第二个推迟到令牌恢复后
+        CompletableFuture<String> first = resolver.resolveAsync("1.0.0.1");
+        CompletableFuture<String> second = resolver.resolveAsync("1.0.0.2");
+        assertEquals("澳大利亚", first.get(5, TimeUnit.SECONDS));
+        assertEquals("澳大利亚", second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, taobao.getCalls());
+    }
+
+    @Test
+    public void testGuardRateLimit() {
+        AtomicLong now = new AtomicLong();
+        RemoteProviderGuard guard = new RemoteProviderGuard(2, 1, 3, 10, now::get);
+
+        assertEquals(RemoteProviderGuard.Permit.GRANTED, guard.tryAcquire());
+        assertEquals(RemoteProviderGuard.Permit.RATE_LIMITED, guard.tryAcquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(RemoteProviderGuard.Permit.GRANTED, guard.tryAcquire());
+    }
+
+    @Test
+    public void testGuardCircuitBreaker() {
+        AtomicLong now = new AtomicLong();
+        RemoteProviderGuard guard = new RemoteProviderGuard(1000, 100, 3, 10, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(RemoteProviderGuard.Permit.GRANTED, guard.tryAcquire());
+            guard.onFailure();
+        }
+        assertEquals(RemoteProviderGuard.State.OPEN, guard.getState());
+        assertEquals(RemoteProviderGuard.Permit.CIRCUIT_OPEN, guard.tryAcquire());
+
+        // 熔断期满后只放行一次试探调用
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(RemoteProviderGuard.Permit.GRANTED, guard.tryAcquire());
+        assertEquals(RemoteProviderGuard.Permit.CIRCUIT_OPEN, guard.tryAcquire());
+
+        guard.onFailure();
+        assertEquals(RemoteProviderGuard.State.OPEN, guard.getState());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(RemoteProviderGuard.Permit.GRANTED, guard.tryAcquire());
+        guard.onSuccess();
+        assertEquals(RemoteProviderGuard.State.CLOSED, guard.getState());
+        assertEquals(RemoteProviderGuard.Permit.GRANTED, guard.tryAcquire());
+    }
+}
@@ -0,0 +1,73 @@
+package com.ld.poetry.service.provider;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地桩提供者，用于在不访问外部服务的情况下测试远程解析流程
+ * 可配置固定结果、响应延迟和异常
+ */
+public class StubIpLocationProvider implements IpLocationProvider {
+
+    private final ProviderType providerType;
+    private final Map<String, String> results = new HashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile long latencyMs;
+    private volatile RuntimeException failure;
+
+    public StubIpLocationProvider(ProviderType providerType) {
+        this.providerType = providerType;
+    }
+
+    public StubIpLocationProvider result(String ipAddress, String location) {
+        results.put(ipAddress, location);
+        return this;
+    }
+
+    public StubIpLocationProvider latency(long latencyMs) {
+        this.latencyMs = latencyMs;
+        return this;
+    }
+
+    public StubIpLocationProvider failWith(RuntimeException failure) {
+        this.failure = failure;
+        return this;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public ProviderType getProviderType() {
+        return providerType;
+    }
+
+    @Override
+    public String resolveLocation(String ipAddress) {
+        calls.incrementAndGet();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "未知";
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results.getOrDefault(ipAddress, "未知");
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsIpType(String ipAddress) {
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+package com.ld.poetry.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.owasp.html.HtmlPolicyBuilder;
+import org.owasp.html.PolicyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XSS过滤基准：改造前每次直接调用OWASP vs 纯文本快速路径
+ * <p>
+ * 按评论常见长度（短评、普通评论、长评）与内容类型（纯文本、含全角标点与emoji、含HTML标签）组合。
+ * 运行方式：mvn test-compile 后以测试类路径执行本类的 main 方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XssFilterUtilBenchmark {
+
+    private static final PolicyFactory LEGACY_POLICY = new HtmlPolicyBuilder().toFactory();
+
+    @Param({"20", "200", "2000"})
+    public int length;
+
+    @Param({"plain", "punctuated", "html"})
+    public String kind;
+
+    private String content;
+
+    @Setup
+    public void setup() {
+        String unit = switch (kind) {
+            case "plain" -> "写得真好。支持一下 Nice post ";
+            case "punctuated" -> "写得真好，支持一下！😀 @博主 ";
+            default -> "<b>写得真好</b><script>alert(1)</script> ";
+        };
+        content = unit.repeat(length / unit.length() + 1).substring(0, length);
+    }
+
+    @Benchmark
+    public String legacySanitize() {
+        return LEGACY_POLICY.sanitize(content);
+    }
+
+    @Benchmark
+    public String clean() {
+        return XssFilterUtil.clean(content);
+    }
+
+    @Benchmark
+    public boolean legacyContainsXss() {
+        return !content.equals(LEGACY_POLICY.sanitize(content));
+    }
+
+    @Benchmark
+    public boolean containsXss() {
+        return XssFilterUtil.containsXss(content);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(XssFilterUtilBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
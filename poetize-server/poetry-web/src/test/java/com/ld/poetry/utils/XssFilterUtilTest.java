@@ -0,0 +1,99 @@
+package com.ld.poetry.utils;
+
+import org.junit.jupiter.api.Test;
+import org.owasp.html.HtmlPolicyBuilder;
+import org.owasp.html.PolicyFactory;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * XSS过滤测试
+ * 验证纯文本快速路径与直接调用OWASP的结果逐字节一致，攻击代码仍被清理
+ */
+public class XssFilterUtilTest {
+
+    /**
+     * 与 XssFilterUtil 严格模式相同的策略，直接调用OWASP作为对照
+     */
+    private static final PolicyFactory REFERENCE = new HtmlPolicyBuilder().toFactory();
+
+    static final List<String> SAMPLE_COMMENTS = List.of(
+            "写得真好，支持一下！",
+            "这篇文章讲得很清楚😀 期待下一篇～",
+            "Nice post, thanks for sharing.",
+            "请问 a=b+c 这种写法在 Java 里可以吗？@博主",
+            "引号\"测试\"和'单引号'以及`反引号`",
+            "换行\r\n第二行\t制表符",
+            "<script>alert('xss')</script>正文",
+            "<img src=x onerror=alert(1)>",
+            "<a href=\"javascript:alert(1)\">点我</a>",
+            "&lt;b&gt;已转义&lt;/b&gt; &amp; &#60;",
+            "{{constructor.constructor('alert(1)')()}}",
+            "javascript:alert(1)",
+            "1 > 0 && 0 < 1",
+            "\u0000\u0008控制字符\u007f\u0085",
+            "孤立代理项\uD83D结尾\uDE00",
+            "非字符￾￿与﷐",
+            "全角＜script＞",
+            "`");
+
+    @Test
+    public void testSameAsOwasp() {
+        for (String comment : SAMPLE_COMMENTS) {
+            assertEquals(REFERENCE.sanitize(comment), XssFilterUtil.clean(comment), comment);
+        }
+    }
+
+    @Test
+    public void testEveryBmpCharSameAsOwasp() {
+        for (int c = 0; c < 0x10000; c++) {
+            String content = "a" + (char) c + "b";
+            assertEquals(REFERENCE.sanitize(content), XssFilterUtil.clean(content), "U+" + Integer.toHexString(c));
+        }
+    }
+
+    @Test
+    public void testRandomInputSameAsOwasp() {
+        String alphabet = " \t\r\n;:/.,!?{}<>&=+@'\"`#，。！你好abc😀\uDE00\uD800￾<b>&amp;javascript:";
+        Random random = new Random(42);
+        StringBuilder reused = new StringBuilder();
+        for (int n = 0; n < 100000; n++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                builder.append(random.nextInt(3) == 0 ? (char) random.nextInt(0x10000) : alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String content = builder.toString();
+            if (content.isBlank()) {
+                continue;
+            }
+            String expected = REFERENCE.sanitize(content);
+            assertEquals(expected, XssFilterUtil.clean(content), content);
+            assertEquals(!content.equals(expected), XssFilterUtil.containsXss(content), content);
+
+            reused.setLength(0);
+            assertEquals(expected, XssFilterUtil.clean(content, reused.append("前缀")).substring(2), content);
+        }
+    }
+
+    @Test
+    public void testPlainTextReturnedAsIs() {
+        String comment = "写得真好。支持一下 Nice post";
+        assertSame(comment, XssFilterUtil.clean(comment));
+        assertFalse(XssFilterUtil.containsXss(comment));
+        assertSame(comment, XssFilterUtil.cleanWithBasicFormat(comment));
+        assertSame(comment, XssFilterUtil.cleanWithAllowedTags(comment));
+    }
+
+    @Test
+    public void testAttackStillCleaned() {
+        assertEquals("正文", XssFilterUtil.clean("<script>alert('xss')</script>正文"));
+        assertEquals("点我", XssFilterUtil.clean("<a href=\"javascript:alert(1)\">点我</a>"));
+        assertTrue(XssFilterUtil.containsXss("<img src=x onerror=alert(1)>"));
+        assertEquals("<b>粗体</b>", XssFilterUtil.cleanWithBasicFormat("<b onclick=\"x()\">粗体</b>"));
+        assertNull(XssFilterUtil.validateAndClean("<script>alert(1)</script>", 100));
+    }
+}
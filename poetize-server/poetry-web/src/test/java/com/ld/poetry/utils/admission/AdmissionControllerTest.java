@@ -0,0 +1,172 @@
+package com.ld.poetry.utils.admission;
+
+import com.ld.poetry.config.AdmissionPolicy;
+import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.utils.SecureTokenGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 准入控制测试
+ * 验证AIMD上限调整、按类别限流、连接池紧张时按优先级拒绝，以及请求类别识别
+ */
+public class AdmissionControllerTest {
+
+    private static final String BROWSER_UA = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 Chrome/120.0 Safari/537.36";
+
+    private AdmissionController controller;
+
+    @BeforeEach
+    void setUp() {
+        AdmissionPolicy policy = new AdmissionPolicy();
+        policy.setCrawler(new AdmissionPolicy.ClassLimit(2, 1, 10, 500, 0.6));
+        controller = new AdmissionController();
+        ReflectionTestUtils.setField(controller, "policy", policy);
+        controller.init();
+    }
+
+    @Test
+    public void testAimdIncreaseAndBackoff() {
+        AimdLimiter limiter = new AimdLimiter(10, 2, 12, 100);
+        long fast = TimeUnit.MILLISECONDS.toNanos(10);
+        long slow = TimeUnit.MILLISECONDS.toNanos(500);
+
+        // 空闲时不增长
+        assertTrue(limiter.tryAcquire());
+        limiter.release(fast, false);
+        assertEquals(10, limiter.getLimit());
+
+        // 并发用到一半以上时加一，且不超过上限
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                assertTrue(limiter.tryAcquire());
+            }
+            assertFalse(limiter.tryAcquire());
+            int inflight = limiter.getInflight();
+            for (int i = 0; i < inflight; i++) {
+                limiter.release(fast, false);
+            }
+        }
+        assertEquals(12, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+
+        // 超时与失败按比例降低，不低于下限
+        assertTrue(limiter.tryAcquire());
+        limiter.release(slow, false);
+        assertEquals(10, limiter.getLimit());
+        assertTrue(limiter.tryAcquire());
+        limiter.release(fast, true);
+        assertEquals(9, limiter.getLimit());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(slow, true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testRejectWhenLimitReached() {
+        AdmissionController.Permit first = controller.tryAcquire(RequestClass.CRAWLER);
+        AdmissionController.Permit second = controller.tryAcquire(RequestClass.CRAWLER);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(controller.tryAcquire(RequestClass.CRAWLER));
+        // 其他类别不受影响
+        assertNotNull(controller.tryAcquire(RequestClass.AUTHENTICATED));
+
+        // 重复释放只生效一次
+        first.release(false);
+        first.release(false);
+        assertEquals(1, controller.getLimiter(RequestClass.CRAWLER).getInflight());
+        assertNotNull(controller.tryAcquire(RequestClass.CRAWLER));
+    }
+
+    @Test
+    public void testShedByPriorityWhenPoolBusy() {
+        controller.setPoolUsage(0.65);
+        assertNull(controller.tryAcquire(RequestClass.CRAWLER));
+        assertNotNull(controller.tryAcquire(RequestClass.ANONYMOUS_SEARCH));
+
+        controller.setPoolUsage(0.8);
+        assertNull(controller.tryAcquire(RequestClass.ANONYMOUS_SEARCH));
+        assertNotNull(controller.tryAcquire(RequestClass.ANONYMOUS_PAGE));
+
+        controller.setPoolUsage(1.0);
+        assertNull(controller.tryAcquire(RequestClass.ANONYMOUS_PAGE));
+        assertNotNull(controller.tryAcquire(RequestClass.AUTHENTICATED));
+        assertNotNull(controller.tryAcquire(RequestClass.ADMIN));
+
+        controller.setPoolUsage(0.1);
+        assertNotNull(controller.tryAcquire(RequestClass.CRAWLER));
+    }
+
+    @Test
+    public void testClassify() {
+        assertEquals(RequestClass.ANONYMOUS_PAGE, controller.classify(request("/article/getArticleById", null, BROWSER_UA, null)));
+        assertEquals(RequestClass.CRAWLER, controller.classify(request("/article/getArticleById", null, "Googlebot/2.1", null)));
+        assertEquals(RequestClass.CRAWLER, controller.classify(request("/article/getArticleById", null, null, null)));
+        assertEquals(RequestClass.ANONYMOUS_SEARCH, controller.classify(request("/article/listArticle", null, BROWSER_UA, null)));
+        assertEquals(RequestClass.ANONYMOUS_SEARCH, controller.classify(request("/webInfo/list", "current=1&searchKey=java", BROWSER_UA, null)));
+        // 空值或前缀相同的参数不算搜索
+        assertEquals(RequestClass.ANONYMOUS_PAGE, controller.classify(request("/webInfo/list", "searchKey=&current=1", BROWSER_UA, null)));
+        assertEquals(RequestClass.ANONYMOUS_PAGE, controller.classify(request("/webInfo/list", "xsearchKey=java", BROWSER_UA, null)));
+
+        String userToken = SecureTokenGenerator.generateUserToken(7);
+        String adminToken = SecureTokenGenerator.generateAdminToken(1);
+        // 有效token优先于爬虫与搜索识别
+        assertEquals(RequestClass.AUTHENTICATED, controller.classify(request("/article/listArticle", null, "curl/8.0", userToken)));
+        assertEquals(RequestClass.ADMIN, controller.classify(request("/admin/article", null, BROWSER_UA, "Bearer " + adminToken)));
+        // 伪造的token按匿名处理
+        assertEquals(RequestClass.CRAWLER, controller.classify(request("/article/getArticleById", null, "curl/8.0", userToken + "x")));
+    }
+
+    @Test
+    public void testCrawlerFloodDoesNotStarveAuthenticated() {
+        // 模拟爬虫洪峰占满连接池：爬虫先被限流，连接池紧张后全部拒绝，登录用户始终可以进入
+        List<AdmissionController.Permit> held = new ArrayList<>();
+        int crawlerAdmitted = 0;
+        for (int i = 0; i < 1000; i++) {
+            AdmissionController.Permit permit = controller.tryAcquire(RequestClass.CRAWLER);
+            if (permit != null) {
+                crawlerAdmitted++;
+                held.add(permit);
+            }
+        }
+        assertEquals(2, crawlerAdmitted);
+
+        controller.setPoolUsage(1.0);
+        held.forEach(permit -> permit.release(true));
+        assertNull(controller.tryAcquire(RequestClass.CRAWLER));
+
+        int authenticatedAdmitted = 0;
+        for (int i = 0; i < 50; i++) {
+            AdmissionController.Permit permit = controller.tryAcquire(RequestClass.AUTHENTICATED);
+            if (permit != null) {
+                authenticatedAdmitted++;
+                permit.release(false);
+            }
+        }
+        assertEquals(50, authenticatedAdmitted);
+        assertEquals(1, controller.getLimiter(RequestClass.CRAWLER).getLimit());
+    }
+
+    private MockHttpServletRequest request(String uri, String query, String userAgent, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setQueryString(query);
+        if (userAgent != null) {
+            request.addHeader("User-Agent", userAgent);
+        }
+        if (token != null) {
+            request.addHeader(CommonConst.TOKEN_HEADER, token);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,47 @@
+package com.ld.poetry.utils.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 布隆过滤器测试
+ * 验证无漏判以及误判率在预期范围内
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("10.0." + (i / 256) + "." + (i % 256));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("10.0." + (i / 256) + "." + (i % 256)));
+        }
+        assertTrue(filter.mightContain("10.0.0.0"));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("10.0." + (i / 256) + "." + (i % 256));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("192.168." + (i / 256) + "." + (i % 256) + ":" + i)) {
+                falsePositives++;
+            }
+        }
+        // 期望误判率1%，留出余量
+        assertTrue(falsePositives < 2000, "误判次数过多: " + falsePositives);
+    }
+
+    @Test
+    public void testEmptyFilter() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        assertFalse(filter.mightContain("8.8.8.8"));
+        assertFalse(filter.mightContain("2408:8207::1"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.ld.poetry.utils.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 有界TTL LRU缓存测试
+ * 验证容量淘汰、过期、负缓存和命中统计
+ */
+public class BoundedTtlCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private BoundedTtlCache<String, String> newCache(int maxSize) {
+        return new BoundedTtlCache<>(maxSize, 60, 5, "未知"::equals, now::get);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        BoundedTtlCache<String, String> cache = newCache(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // 访问a后，b成为最久未使用
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testNegativeEntriesExpireEarlier() {
+        BoundedTtlCache<String, String> cache = newCache(10);
+        cache.put("ok", "广东");
+        cache.put("bad", "未知");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertNull(cache.get("bad"));
+        assertEquals("广东", cache.get("ok"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertNull(cache.get("ok"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLoaderAndHitRate() {
+        BoundedTtlCache<String, String> cache = newCache(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("v", cache.get("k", key -> {
+                loads.incrementAndGet();
+                return "v";
+            }));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.75, cache.getHitRate(), 1e-9);
+    }
+}
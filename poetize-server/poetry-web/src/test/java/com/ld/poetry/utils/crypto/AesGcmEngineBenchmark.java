@@ -0,0 +1,82 @@
+package com.ld.poetry.utils.crypto;
+
+import com.ld.poetry.constants.CommonConst;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-GCM 加解密基准：改造前每次新建 Cipher vs 复用 Cipher 的 {@link AesGcmEngine}
+ * <p>
+ * 64字节约为视频地址、API密钥，4096字节约为验证码等加密响应。
+ * 运行方式：mvn test-compile 后以测试类路径执行本类的 main 方法；输出的一致性由 AesGcmEngineTest 验证
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AesGcmEngineBenchmark {
+
+    private static final byte[] KEY = CommonConst.CRYPOTJS_KEY.getBytes(StandardCharsets.UTF_8);
+
+    @Param({"64", "4096"})
+    public int size;
+
+    private AesGcmEngine engine;
+
+    private String plaintext;
+
+    private String ciphertext;
+
+    @Setup
+    public void setup() throws Exception {
+        engine = new AesGcmEngine(KEY);
+        plaintext = "x".repeat(size);
+        ciphertext = LegacyCrypto.encrypt(KEY, plaintext);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        return LegacyCrypto.encrypt(KEY, plaintext);
+    }
+
+    @Benchmark
+    public String engineEncrypt() throws Exception {
+        return engine.encryptToBase64(plaintext);
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        return LegacyCrypto.decrypt(KEY, ciphertext);
+    }
+
+    @Benchmark
+    public String engineDecrypt() throws Exception {
+        return engine.decryptFromBase64(ciphertext);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AesGcmEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
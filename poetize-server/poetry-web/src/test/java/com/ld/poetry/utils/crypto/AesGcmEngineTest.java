@@ -0,0 +1,120 @@
+package com.ld.poetry.utils.crypto;
+
+import com.ld.poetry.constants.CommonConst;
+import com.ld.poetry.utils.AESCryptoUtil;
+import com.ld.poetry.utils.CryptoUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AES-GCM 引擎测试
+ * 验证与改造前实现输出逐字节一致、互相可解密，流式接口与并发复用 Cipher 的正确性
+ */
+public class AesGcmEngineTest {
+
+    private static final byte[] KEY = CommonConst.CRYPOTJS_KEY.getBytes(StandardCharsets.UTF_8);
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testByteIdenticalToLegacy() throws Exception {
+        AesGcmEngine engine = new AesGcmEngine(KEY);
+        for (int size : new int[]{0, 1, 15, 16, 17, 255, 4096, 100_000}) {
+            String data = randomText(size);
+            byte[] iv = new byte[AesGcmEngine.IV_LENGTH];
+            random.nextBytes(iv);
+
+            String expected = LegacyCrypto.encrypt(KEY, data, iv);
+            String actual = Base64.getEncoder().encodeToString(engine.encrypt(data.getBytes(StandardCharsets.UTF_8), iv));
+            assertEquals(expected, actual, "密文不一致, size=" + size);
+        }
+    }
+
+    @Test
+    public void testInteroperableWithLegacy() throws Exception {
+        String data = "https://example.com/video/测试视频.mp4?t=" + System.nanoTime();
+
+        assertEquals(data, CryptoUtil.decrypt(LegacyCrypto.encrypt(KEY, data)));
+        assertEquals(data, LegacyCrypto.decrypt(KEY, CryptoUtil.encrypt(data)));
+
+        // 前端可能以URL安全编码、去掉填充后回传
+        String urlSafe = CryptoUtil.encrypt(data).replace('+', '-').replace('/', '_').replace("=", "");
+        assertEquals(data, CryptoUtil.decrypt(urlSafe));
+
+        // 篡改或过短的密文解密失败返回null
+        byte[] tampered = Base64.getDecoder().decode(CryptoUtil.encrypt(data));
+        tampered[tampered.length - 1] ^= 1;
+        assertNull(CryptoUtil.decrypt(Base64.getEncoder().encodeToString(tampered)));
+        assertNull(CryptoUtil.decrypt("AAAA"));
+    }
+
+    @Test
+    public void testAesCryptoUtilCompatible() throws Exception {
+        AESCryptoUtil aesCryptoUtil = new AESCryptoUtil();
+        ReflectionTestUtils.setField(aesCryptoUtil, "secretKey", "short-key");
+        byte[] paddedKey = new byte[16];
+        System.arraycopy("short-key".getBytes(StandardCharsets.UTF_8), 0, paddedKey, 0, "short-key".length());
+
+        String apiKey = "sk-" + randomText(48);
+        String encrypted = aesCryptoUtil.encrypt(apiKey);
+        assertEquals(apiKey, LegacyCrypto.decrypt(paddedKey, encrypted));
+        assertEquals(apiKey, aesCryptoUtil.decrypt(LegacyCrypto.encrypt(paddedKey, apiKey)));
+        assertEquals("", aesCryptoUtil.encrypt(""));
+        assertTrue(aesCryptoUtil.testEncryption());
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        AesGcmEngine engine = new AesGcmEngine(KEY);
+        byte[] payload = new byte[1024 * 1024 + 123];
+        random.nextBytes(payload);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        engine.encrypt(new ByteArrayInputStream(payload), encrypted);
+        assertEquals(payload.length + AesGcmEngine.IV_LENGTH + AesGcmEngine.TAG_LENGTH, encrypted.size());
+        assertArrayEquals(payload, engine.decrypt(encrypted.toByteArray()));
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        engine.decrypt(new ByteArrayInputStream(engine.encrypt(payload)), decrypted);
+        assertArrayEquals(payload, decrypted.toByteArray());
+    }
+
+    @Test
+    public void testConcurrentReuse() throws Exception {
+        AesGcmEngine engine = new AesGcmEngine(KEY, 8);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String data = "payload-" + i;
+            results.add(executor.submit(() -> data.equals(engine.decryptFromBase64(engine.encryptToBase64(data)))));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertTrue(engine.getPooledCount() <= 8);
+        assertTrue(engine.getPooledCount() > 0);
+    }
+
+    private String randomText(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+}
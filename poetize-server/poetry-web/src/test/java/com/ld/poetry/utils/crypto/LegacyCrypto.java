@@ -0,0 +1,59 @@
+package com.ld.poetry.utils.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 改造前 CryptoUtil/AESCryptoUtil 的加解密实现（每次调用新建 Cipher、密钥与中间数组），
+ * 仅用于验证 {@link AesGcmEngine} 输出逐字节一致以及基准对比
+ */
+final class LegacyCrypto {
+
+    private LegacyCrypto() {
+    }
+
+    static String encrypt(byte[] key, String data) throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        return encrypt(key, data, iv);
+    }
+
+    static String encrypt(byte[] key, String data, byte[] iv) throws Exception {
+        SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
+        cipher.init(Cipher.ENCRYPT_MODE, keySpec, gcmSpec);
+
+        byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    static String decrypt(byte[] key, String encryptedData) throws Exception {
+        SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+
+        String urlSafeEncoded = encryptedData.replace('-', '+').replace('_', '/');
+        int padding = urlSafeEncoded.length() % 4;
+        if (padding > 0) {
+            urlSafeEncoded += "===".substring(0, 4 - padding);
+        }
+        byte[] decoded = Base64.getDecoder().decode(urlSafeEncoded);
+
+        byte[] iv = new byte[12];
+        System.arraycopy(decoded, 0, iv, 0, iv.length);
+        byte[] encrypted = new byte[decoded.length - iv.length];
+        System.arraycopy(decoded, iv.length, encrypted, 0, encrypted.length);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        GCMParameterSpec gcmSpec = new GCMParameterSpec(128, iv);
+        cipher.init(Cipher.DECRYPT_MODE, keySpec, gcmSpec);
+        return new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
+    }
+}
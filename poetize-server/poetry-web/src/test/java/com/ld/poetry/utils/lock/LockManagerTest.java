@@ -0,0 +1,124 @@
+package com.ld.poetry.utils.lock;
+
+import com.ld.poetry.utils.LockManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 锁管理测试
+ * 验证按key引用计数的锁在释放后回收、互斥正确，分段锁分布均匀，以及竞争计数
+ */
+public class LockManagerTest {
+
+    @Test
+    public void testKeyedLocksReclaimedAfterRelease() {
+        LockManager lockManager = new LockManager();
+        for (int i = 0; i < 100_000; i++) {
+            lockManager.executeWithLock("saveHistory:10.0." + (i / 256) + "." + (i % 256) + "_" + i, () -> { });
+        }
+        assertEquals(0, lockManager.getLockCount());
+    }
+
+    @Test
+    public void testKeyedLockMutualExclusion() throws Exception {
+        LockManager lockManager = new LockManager();
+        int threads = 16;
+        int rounds = 2000;
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    lockManager.executeWithLock("refreshToken:1", () -> counter[0]++);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(threads * rounds, counter[0]);
+        assertEquals(0, lockManager.getLockCount());
+    }
+
+    @Test
+    public void testKeyedLockReentrantAndTryLock() throws Exception {
+        KeyedLocks keyedLocks = new KeyedLocks();
+        Lock lock = keyedLocks.get("key");
+        lock.lock();
+        lock.lock();
+        assertEquals(1, keyedLocks.size());
+
+        // 其他线程tryLock失败后不应残留引用
+        Thread other = new Thread(() -> assertFalse(keyedLocks.get("key").tryLock()));
+        other.start();
+        other.join();
+
+        lock.unlock();
+        assertEquals(1, keyedLocks.size());
+        lock.unlock();
+        assertEquals(0, keyedLocks.size());
+        assertThrows(IllegalMonitorStateException.class, lock::unlock);
+    }
+
+    @Test
+    public void testStripesDistribution() {
+        LockStripes<Lock> stripes = new LockStripes<>(100, ReentrantLock::new);
+        assertEquals(128, stripes.size());
+        assertSame(stripes.get("cache:admire"), stripes.get("cache:admire"));
+
+        int[] hits = new int[stripes.size()];
+        for (int i = 0; i < 128_000; i++) {
+            hits[stripes.indexFor("saveHistory:192.168.1." + (i % 256) + "_" + i)]++;
+        }
+        for (int count : hits) {
+            // 均值1000，允许±30%
+            assertTrue(count > 700 && count < 1300, "分段分布不均: " + count);
+        }
+
+        Set<Object> distinct = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            distinct.add(stripes.get("cache:userArticleList:" + i));
+        }
+        assertEquals(stripes.size(), distinct.size());
+    }
+
+    @Test
+    public void testContentionCounted() throws Exception {
+        LockManager lockManager = new LockManager();
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> lockManager.executeWithWriteLock("cache:sortArticleList", () -> {
+            held.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(held.await(10, TimeUnit.SECONDS));
+        assertEquals(0, lockManager.getContendedCount());
+
+        Thread waiter = new Thread(() -> lockManager.executeWithWriteLock("cache:sortArticleList", () -> { }));
+        waiter.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (lockManager.getContendedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        holder.join();
+        waiter.join();
+        assertEquals(1, lockManager.getContendedCount());
+    }
+}
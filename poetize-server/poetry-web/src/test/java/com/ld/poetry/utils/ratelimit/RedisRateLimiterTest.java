@@ -0,0 +1,142 @@
+package com.ld.poetry.utils.ratelimit;
+
+import com.ld.poetry.aop.RateLimit;
+import com.ld.poetry.aop.SaveCheck;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redis限流器测试
+ * 验证单次脚本调用的参数与结果解析、本地预检、Redis异常时放行以及注解规则解析
+ */
+public class RedisRateLimiterTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private RedisRateLimiter redisRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        redisRateLimiter = new RedisRateLimiter();
+        ReflectionTestUtils.setField(redisRateLimiter, "stringRedisTemplate", stringRedisTemplate);
+        redisRateLimiter.init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenScriptResult(List<Long> result) {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any())).thenReturn(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void verifyScriptCalls(int times) {
+        verify(stringRedisTemplate, times(times)).execute(any(RedisScript.class), anyList(), any(), any(), any());
+    }
+
+    @Test
+    public void testScriptsOnClasspath() {
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            assertTrue(new ClassPathResource(algorithm.getScript()).exists(), algorithm.getScript());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSingleAtomicCall() {
+        givenScriptResult(List.of(1L, 99L, 86_399_500L, 0L));
+        RateLimitRule rule = RateLimitRule.slidingWindow("save", 100, 86400);
+
+        RateLimitResult result = redisRateLimiter.acquire(rule, RateLimitKey.IP.of("1.2.3.4"));
+
+        assertTrue(result.allowed());
+        assertEquals(99, result.remaining());
+        assertEquals(1, result.used());
+        assertEquals(86400, result.resetSeconds());
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of("poetize:ratelimit:save:ip:1.2.3.4")),
+                eq("100"), eq("86400000"), eq("1"));
+        verifyNoMoreInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    public void testLocalPreCheckSkipsRedisWhileDenied() {
+        givenScriptResult(List.of(0L, 0L, 30_000L, 5_000L));
+        RateLimitRule rule = RateLimitRule.slidingWindow("upload", 10, 60).withLocalPreCheck();
+
+        RateLimitResult first = redisRateLimiter.acquire(rule, "ip:5.6.7.8");
+        RateLimitResult second = redisRateLimiter.acquire(rule, "ip:5.6.7.8");
+
+        assertFalse(first.allowed());
+        assertEquals(5, first.retryAfterSeconds());
+        assertFalse(second.allowed());
+        assertTrue(second.retryAfterSeconds() > 0 && second.retryAfterSeconds() <= 5);
+        verifyScriptCalls(1);
+
+        // 清除后重新询问Redis
+        redisRateLimiter.reset(rule, "ip:5.6.7.8");
+        redisRateLimiter.acquire(rule, "ip:5.6.7.8");
+        verifyScriptCalls(2);
+    }
+
+    @Test
+    public void testWithoutLocalPreCheckAlwaysAsksRedis() {
+        givenScriptResult(List.of(0L, 0L, 30_000L, 5_000L));
+        RateLimitRule rule = RateLimitRule.tokenBucket("api", 10, 60);
+
+        redisRateLimiter.acquire(rule, "ip:5.6.7.8");
+        redisRateLimiter.acquire(rule, "ip:5.6.7.8");
+        verifyScriptCalls(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisFailureAllows() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("connection refused"));
+        RateLimitRule rule = RateLimitRule.slidingWindow("login-failure", 5, 3600);
+
+        RateLimitResult result = redisRateLimiter.acquire(rule, "admin");
+
+        assertTrue(result.allowed());
+        assertEquals(0, result.used());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPeekConsumesNothing() {
+        givenScriptResult(List.of(1L, 12L, 120_000L, 0L));
+        RateLimitRule rule = RateLimitRule.slidingWindow("captcha-verify", 15, 300).withLocalPreCheck();
+
+        assertEquals(3, redisRateLimiter.peek(rule, "ip:1.1.1.1").used());
+        verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(), eq("15"), eq("300000"), eq("0"));
+    }
+
+    @Test
+    public void testSaveCheckDeclaresRules() throws NoSuchMethodException {
+        Set<RateLimit> limits = AnnotatedElementUtils.findMergedRepeatableAnnotations(
+                SampleController.class.getDeclaredMethod("save"), RateLimit.class);
+
+        assertEquals(2, limits.size());
+        assertTrue(limits.stream().allMatch(RateLimit::exemptAdmin));
+        assertTrue(limits.stream().anyMatch(limit -> limit.key()[0] == RateLimitKey.USER && limit.limit() == 100));
+        assertTrue(limits.stream().anyMatch(limit -> limit.key()[0] == RateLimitKey.IP && limit.limit() == 101));
+    }
+
+    static class SampleController {
+
+        @SaveCheck
+        void save() {
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.ld.poetry.utils.route;
+
+import org.springframework.util.AntPathMatcher;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * 改造前各过滤器中的路由判断逻辑（SecurityFilter、PoetryFilter、FileFilter），
+ * 仅用于验证 {@link RouteClassifier} 的分类结果与原逻辑一致以及基准对比
+ */
+final class LegacyRouteRules {
+
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+    private static final Set<String> MALICIOUS_PATHS = Set.of(
+        "/.env", "/.env.local", "/.env.production", "/.git", "/.git/config", "/phpmyadmin", "/pma",
+        "/wp-admin", "/wp-login.php", "/wp-config.php", "/config.php", "/database.php", "/xmlrpc.php",
+        "/.aws", "/.docker", "/docker-compose.yml", "/Dockerfile", "/.DS_Store", "/admin.php",
+        "/admin/login.php", "/administrator.php", "/manager.php", "/console.php", "/debug.php",
+        "/test.php", "/info.php", "/phpinfo.php", "/sql.php", "/backup.sql", "/database.sql",
+        "/.htaccess", "/.htpasswd", "/web.config", "/server.xml", "/application.properties",
+        "/application.yml", "/build.sh", "/index.html", "/translation/test-summary",
+        "/translation/definite_notexist_path", "/definite_notexist_path"
+    );
+
+    private LegacyRouteRules() {
+    }
+
+    /**
+     * @return 攻击类型，非恶意请求返回null
+     */
+    static String attackType(String requestURI) {
+        if (MALICIOUS_PATHS.contains(requestURI)) {
+            return "恶意路径扫描";
+        }
+        if (containsMaliciousPattern(requestURI)) {
+            return "可疑请求特征";
+        }
+        return null;
+    }
+
+    static boolean isUpload(String requestURI) {
+        return MATCHER.match("/resource/upload", requestURI);
+    }
+
+    static boolean containsMaliciousPattern(String requestURI) {
+        try {
+            String decodedURI = URLDecoder.decode(requestURI, StandardCharsets.UTF_8);
+            String lowerURI = decodedURI.toLowerCase();
+
+            if (decodedURI.contains("..") || decodedURI.contains("./")) {
+                return true;
+            }
+
+            if (decodedURI.endsWith(".sql") || decodedURI.endsWith(".bak") ||
+                decodedURI.endsWith(".backup") || decodedURI.endsWith(".old") ||
+                decodedURI.endsWith(".tmp") || decodedURI.endsWith(".log")) {
+                return true;
+            }
+
+            if (lowerURI.contains("/wp-") || lowerURI.contains(".php.") ||
+                lowerURI.contains("admin.php") || lowerURI.contains("login.php") ||
+                lowerURI.contains("config.php") || lowerURI.contains("phpinfo")) {
+                return true;
+            }
+
+            if (lowerURI.equals("/translation/test-summary") || lowerURI.equals("/translation/definite_notexist_path")) {
+                return true;
+            }
+
+            if (lowerURI.contains("notexist") ||
+                lowerURI.contains("test-") ||
+                lowerURI.contains("scanner") ||
+                lowerURI.contains("scan") ||
+                lowerURI.contains("probe")) {
+                return true;
+            }
+
+            Set<String> commonCmsPatterns = Set.of(
+                "/wp-", "/wordpress", "/drupal", "/joomla", "/magento",
+                "/administrator", "/admin/login", "/phpmyadmin", "/xmlrpc",
+                "/blog/wp-", "/cms/", "/old/", "/new/", "/backup/", "/bak/",
+                "/beta/", "/temp/", "/dev/"
+            );
+
+            for (String pattern : commonCmsPatterns) {
+                if (lowerURI.contains(pattern)) {
+                    return true;
+                }
+            }
+
+            if (lowerURI.contains("<script") || lowerURI.contains("javascript:") ||
+                lowerURI.contains("eval(") || lowerURI.contains("base64_decode")) {
+                return true;
+            }
+
+            return lowerURI.contains("union") && lowerURI.contains("select") ||
+                lowerURI.contains("drop") && lowerURI.contains("table") ||
+                lowerURI.contains("insert") && lowerURI.contains("into") ||
+                lowerURI.contains("delete") && lowerURI.contains("from") ||
+                lowerURI.contains("update") && lowerURI.contains("set") ||
+                lowerURI.contains("select") && lowerURI.contains("from");
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    static boolean isPageVisit(String requestURI) {
+        if (requestURI.startsWith("/api/")) {
+            return false;
+        }
+
+        if (requestURI.startsWith("/imChatUserMessage") ||
+            requestURI.startsWith("/imChatGroup") ||
+            requestURI.startsWith("/imChatUserFriend") ||
+            requestURI.startsWith("/imChatGroupUser") ||
+            requestURI.startsWith("/webInfo") ||
+            requestURI.startsWith("/sysConfig") ||
+            requestURI.startsWith("/resource") ||
+            requestURI.startsWith("/imageCompress")) {
+            return false;
+        }
+
+        if (requestURI.matches("/user/[^/]+") ||
+            requestURI.matches("/article/[^/]+") ||
+            requestURI.matches("/weiYan/[^/]+") ||
+            requestURI.matches("/treeHole/[^/]+") ||
+            requestURI.matches("/comment/[^/]+") ||
+            requestURI.matches("/sort/[^/]+") ||
+            requestURI.matches("/label/[^/]+") ||
+            requestURI.matches("/admin/[^/]+")) {
+            return false;
+        }
+
+        if (requestURI.startsWith("/static/") ||
+            requestURI.startsWith("/css/") ||
+            requestURI.startsWith("/js/") ||
+            requestURI.startsWith("/images/") ||
+            requestURI.startsWith("/favicon.ico")) {
+            return false;
+        }
+
+        if (requestURI.startsWith("/seo/") || requestURI.startsWith("/translation/")) {
+            return false;
+        }
+
+        return !(requestURI.contains("/upload/") ||
+            requestURI.contains("/download/") ||
+            requestURI.endsWith(".jpg") ||
+            requestURI.endsWith(".png") ||
+            requestURI.endsWith(".gif") ||
+            requestURI.endsWith(".ico") ||
+            requestURI.endsWith(".css") ||
+            requestURI.endsWith(".js") ||
+            requestURI.endsWith(".map"));
+    }
+}
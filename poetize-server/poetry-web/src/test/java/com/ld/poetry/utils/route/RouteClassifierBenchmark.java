@@ -0,0 +1,68 @@
+package com.ld.poetry.utils.route;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由分类基准：改造前各过滤器逐条判断 vs 编译后的前缀树 + Aho-Corasick 自动机
+ * <p>
+ * 运行方式：mvn test-compile 后以测试类路径执行本类的 main 方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteClassifierBenchmark {
+
+    private RouteClassifier classifier;
+
+    private String[] uris;
+
+    @Setup
+    public void setup() {
+        classifier = new RouteClassifier();
+        uris = RouteClassifierTest.SAMPLE_URIS.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void legacyRules(Blackhole blackhole) {
+        for (String uri : uris) {
+            String attackType = LegacyRouteRules.attackType(uri);
+            blackhole.consume(attackType);
+            if (attackType == null) {
+                blackhole.consume(LegacyRouteRules.isPageVisit(uri));
+                blackhole.consume(LegacyRouteRules.isUpload(uri));
+            }
+        }
+    }
+
+    @Benchmark
+    public void compiledClassifier(Blackhole blackhole) {
+        for (String uri : uris) {
+            blackhole.consume(classifier.classify(uri, false));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RouteClassifierBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package com.ld.poetry.utils.route;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 路由分类器测试
+ * 验证编译后的规则与改造前各过滤器的判断结果一致
+ */
+public class RouteClassifierTest {
+
+    static final List<String> SAMPLE_URIS = List.of(
+        "/", "/index", "/article/12", "/article/12/comments", "/user/login", "/user/", "/user/a/b",
+        "/admin/getAdminConfig", "/admin/user/list", "/admin/login.php", "/admin.php", "/Admin.PHP",
+        "/api/article/list", "/imChatGroupUser/list", "/webInfo/getWebInfo", "/resource/upload",
+        "/resource/upload/", "/resource//upload", "//resource/upload", "/resource/getResourceList", "/static/js/app.js", "/css/main.css",
+        "/favicon.ico", "/favicon.ico.bak", "/seo/sitemap.xml", "/translation/translate",
+        "/translation/test-summary", "/translation/Test-Summary", "/definite_notexist_path",
+        "/.env", "/.git/config", "/.git/HEAD", "/wp-admin", "/WP-LOGIN.php", "/blog/wp-content",
+        "/backup.sql", "/backup.SQL", "/dump.sql", "/logs/app.log", "/logs/app.LOG",
+        "/sort/1", "/label/2", "/weiYan/list", "/treeHole/x", "/comment/saveComment",
+        "/home/upload/a.txt", "/Upload/a.txt", "/download/file", "/img/a.png", "/img/a.PNG",
+        "/bundle.js.map", "/data.json", "/about", "/travel", "/love",
+        "/search?q=1", "/a%2e%2e/etc/passwd", "/a%2E%2E/x", "/%zz", "/a+b", "/a%20b",
+        "/x?union=1&select=2", "/UNION/SELECT", "/article/selectfrom", "/setting/update",
+        "/<script>alert(1)</script>", "/javascript:alert(1)", "/eval(1)", "/base64_decode",
+        "/scan", "/probe", "/SCANNER", "/new/", "/dev/", "/cms/", "/temp/x",
+        "/%2Fupload%2Fx", "/a/%2e./b", "/static/%75pload/a.jpg", "/x.php.bak", "/x.php.txt",
+        "/config.php", "/a/config.php", "/phpinfo", "/info.php", "/test.php", "/test-page",
+        "", "/中文页面", "/%E4%B8%AD%E6%96%87", "/Dockerfile", "/dockerfile", "/.DS_Store"
+    );
+
+    private final RouteClassifier classifier = new RouteClassifier();
+
+    @Test
+    public void testParityWithLegacyRules() {
+        for (String uri : SAMPLE_URIS) {
+            assertParity(uri);
+        }
+    }
+
+    @Test
+    public void testParityWithRandomUris() {
+        String[] fragments = {
+            "/", "/user", "/article", "/admin", "/api", "/resource", "/upload", "/static", "/css",
+            "/js", ".js", ".map", ".png", ".sql", ".log", "..", ".", "%2e", "%2F", "%", "+",
+            "union", "SELECT", "from", "set", "Up", "date", "a", "b1", "wp-", "php", "scan", "test",
+            "-", "/seo", "/translation", "/imChatGroup", "/webInfo", "/label", "?", "=", "中"
+        };
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder uri = new StringBuilder();
+            int parts = 1 + random.nextInt(6);
+            for (int j = 0; j < parts; j++) {
+                uri.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertParity(uri.toString());
+        }
+    }
+
+    @Test
+    public void testClassificationTypes() {
+        assertEquals(RouteType.PAGE_VISIT, classifier.classify("/article/12/comments", false).type());
+        assertEquals(RouteType.API, classifier.classify("/user/login", false).type());
+        assertEquals(RouteType.API, classifier.classify("/api/article/list", false).type());
+        assertEquals(RouteType.STATIC, classifier.classify("/static/js/app.js", false).type());
+        assertEquals(RouteType.STATIC, classifier.classify("/img/a.png", false).type());
+        assertEquals(RouteType.UPLOAD, classifier.classify("/resource/upload", false).type());
+        assertEquals(RouteType.MALICIOUS, classifier.classify("/.env", false).type());
+        assertEquals("恶意路径扫描", classifier.classify("/.env", false).attackType());
+        assertEquals("可疑请求特征", classifier.classify("/%zz", false).attackType());
+        assertTrue(classifier.classify("/article/12", true).internal());
+    }
+
+    @Test
+    public void testRequestAttributeCache() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/resource/upload");
+        request.addHeader(RouteClassifier.INTERNAL_SERVICE_HEADER, "poetize-python");
+        RouteClassification first = classifier.classify(request);
+        assertTrue(first.isUpload());
+        assertTrue(first.internal());
+        assertSame(first, request.getAttribute(RouteClassifier.REQUEST_ATTRIBUTE));
+
+        // 后续过滤器直接复用已缓存的结果
+        request.setRequestURI("/.env");
+        assertSame(first, classifier.classify(request));
+
+        MockHttpServletRequest forged = new MockHttpServletRequest("GET", "/about");
+        forged.addHeader(RouteClassifier.INTERNAL_SERVICE_HEADER, "unknown-service");
+        assertFalse(classifier.classify(forged).internal());
+        assertTrue(classifier.classify(forged).isPageVisit());
+    }
+
+    private void assertParity(String uri) {
+        RouteClassification classification = classifier.classify(uri, false);
+        String legacyAttack = LegacyRouteRules.attackType(uri);
+        assertEquals(legacyAttack, classification.attackType(), "攻击类型不一致: " + uri);
+        if (legacyAttack == null) {
+            boolean upload = LegacyRouteRules.isUpload(uri);
+            assertEquals(upload, classification.isUpload(), "上传路径判断不一致: " + uri);
+            // 原逻辑会把 //resource/upload 同时记为页面访问，新分类中上传请求不再计入页面访问
+            if (!upload) {
+                assertEquals(LegacyRouteRules.isPageVisit(uri), classification.isPageVisit(), "页面访问判断不一致: " + uri);
+            }
+        }
+    }
+}
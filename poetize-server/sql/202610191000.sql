@@ -0,0 +1,91 @@
+-- ============================================================
+-- 功能说明：访问统计预聚合汇总表
+-- 变更内容：
+--   1. 创建小时/每日/每日省份城市/每日用户汇总表
+--   2. 创建IP累计、省份累计、全站累计汇总表（含增量汇总检查点）
+--   3. 为 history_info.create_time 添加索引，按天重算汇总时走范围扫描
+-- 说明：
+--   历史数据由应用启动时自动回填（visit_stats_total 无数据时触发），
+--   也可由管理员调用 POST /webInfo/backfillVisitRollup 手动重新回填
+-- 日期：2026-10-19
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS `poetize`.`visit_stats_hourly` (
+  `stat_time` datetime NOT NULL COMMENT '统计小时（整点）',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+  `unique_ips` int NOT NULL DEFAULT 0 COMMENT '独立IP数',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+
+  PRIMARY KEY (`stat_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-小时汇总';
+
+CREATE TABLE IF NOT EXISTS `poetize`.`visit_stats_daily` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+  `unique_ips` int NOT NULL DEFAULT 0 COMMENT '独立IP数',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+
+  PRIMARY KEY (`stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-每日汇总';
+
+CREATE TABLE IF NOT EXISTS `poetize`.`visit_stats_daily_region` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `nation` varchar(64) NOT NULL DEFAULT '' COMMENT '国家',
+  `province` varchar(64) NOT NULL DEFAULT '' COMMENT '省份',
+  `city` varchar(64) NOT NULL DEFAULT '' COMMENT '城市',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+  `unique_ips` int NOT NULL DEFAULT 0 COMMENT '独立IP数',
+
+  PRIMARY KEY (`stat_date`, `nation`, `province`, `city`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-每日省份城市汇总';
+
+CREATE TABLE IF NOT EXISTS `poetize`.`visit_stats_daily_user` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `user_id` int NOT NULL COMMENT '用户ID',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+
+  PRIMARY KEY (`stat_date`, `user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-每日登录用户汇总';
+
+CREATE TABLE IF NOT EXISTS `poetize`.`visit_ip_summary` (
+  `ip` varchar(128) NOT NULL COMMENT 'ip',
+  `nation` varchar(64) DEFAULT NULL COMMENT '国家',
+  `province` varchar(64) DEFAULT NULL COMMENT '省份',
+  `city` varchar(64) DEFAULT NULL COMMENT '城市',
+  `visits` bigint NOT NULL DEFAULT 0 COMMENT '累计访问次数',
+  `first_visit_time` datetime DEFAULT NULL COMMENT '首次访问时间',
+  `last_visit_time` datetime DEFAULT NULL COMMENT '最后访问时间',
+
+  PRIMARY KEY (`ip`),
+  KEY `idx_visits` (`visits`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-IP累计汇总';
+
+CREATE TABLE IF NOT EXISTS `poetize`.`visit_stats_province_total` (
+  `nation` varchar(64) NOT NULL COMMENT '国家',
+  `province` varchar(64) NOT NULL COMMENT '省份',
+  `visits` bigint NOT NULL DEFAULT 0 COMMENT '累计访问次数',
+  `unique_ips` bigint NOT NULL DEFAULT 0 COMMENT '累计独立IP数',
+
+  PRIMARY KEY (`nation`, `province`),
+  KEY `idx_unique_ips` (`unique_ips`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-省份累计汇总';
+
+CREATE TABLE IF NOT EXISTS `poetize`.`visit_stats_total` (
+  `id` tinyint NOT NULL COMMENT '固定为1',
+  `visits` bigint NOT NULL DEFAULT 0 COMMENT '累计访问次数',
+  `unique_ips` bigint NOT NULL DEFAULT 0 COMMENT '累计独立IP数',
+  `last_history_id` int NOT NULL DEFAULT 0 COMMENT '已汇总的最大history_info.id（增量汇总检查点）',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-全站累计汇总及检查点';
+
+-- history_info 按时间范围查询索引（如果不存在）
+SET @index_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='history_info' AND INDEX_NAME='idx_create_time');
+SET @sql = IF(@index_exists = 0,
+    'ALTER TABLE `poetize`.`history_info` ADD INDEX `idx_create_time` (`create_time`)',
+    'SELECT ''Index idx_create_time already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
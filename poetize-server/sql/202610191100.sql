@@ -0,0 +1,35 @@
+-- ============================================================
+-- 功能说明：history_info 按月分区
+-- 变更内容：
+--   1. create_time 改为非空，主键调整为 (id, create_time)（分区列必须包含在所有唯一键中）
+--   2. 按 TO_DAYS(create_time) 做 RANGE 分区：当月之前的数据放入 p_base，之后放入 pmax
+-- 说明：
+--   应用启动及每天 00:30 会拆分 pmax 创建未来月份分区（pYYYYMM），
+--   并按 poetize.history.retention-months 归档、删除超过保留期的分区。
+--   已分区的表会跳过本脚本的全部变更。
+-- 日期：2026-10-19
+-- ============================================================
+
+SET @partitioned = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.PARTITIONS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='history_info' AND PARTITION_NAME IS NOT NULL);
+
+-- 1. 补齐缺失的创建时间，避免修改为非空时失败
+UPDATE `poetize`.`history_info` SET `create_time` = '1970-01-01 00:00:00' WHERE `create_time` IS NULL AND @partitioned = 0;
+
+-- 2. 调整主键
+SET @sql = IF(@partitioned = 0,
+    'ALTER TABLE `poetize`.`history_info` MODIFY `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT ''创建时间'', DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `create_time`)',
+    'SELECT ''history_info already partitioned'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 3. 按月分区（当月之前的历史数据统一放入 p_base，超过保留期后整体归档删除）
+SET @sql = IF(@partitioned = 0,
+    CONCAT('ALTER TABLE `poetize`.`history_info` PARTITION BY RANGE (TO_DAYS(`create_time`)) (',
+           'PARTITION p_base VALUES LESS THAN (TO_DAYS(''', DATE_FORMAT(CURDATE(), '%Y-%m-01'), ''')), ',
+           'PARTITION pmax VALUES LESS THAN MAXVALUE)'),
+    'SELECT ''history_info already partitioned'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
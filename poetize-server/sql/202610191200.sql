@@ -0,0 +1,129 @@
+-- ============================================================
+-- 功能说明：IM会话投影（聊天列表、最后一条消息、未读数）
+-- 变更内容：
+--   1. im_chat_last_read 增加私聊最后一条消息、私聊未读数、群聊已读序号
+--   2. im_chat_group 增加群最后一条消息与消息序号（群消息总数）
+--   3. 为好友表、群成员表添加按用户查询的索引
+--   4. 由现有聊天记录回填以上字段（仅在首次添加字段时执行）
+-- 说明：
+--   之后由消息写入数据库时同步维护：私聊未读数 = unread_count，
+--   群聊未读数 = im_chat_group.message_seq - im_chat_last_read.read_seq。
+--   连接时一次查询即可得到完整聊天列表、最后一条消息和未读数。
+-- 日期：2026-10-19
+-- ============================================================
+
+USE `poetize`;
+
+SET @backfill = (SELECT COUNT(*) = 0 FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_last_read' AND COLUMN_NAME='unread_count');
+
+-- 1. im_chat_last_read 增加会话字段
+SET @sql = IF(@backfill = 1,
+    'ALTER TABLE `im_chat_last_read`
+       ADD COLUMN `last_message_id` bigint DEFAULT NULL COMMENT ''私聊最后一条消息ID'' AFTER `is_hidden`,
+       ADD COLUMN `last_message_content` varchar(1024) DEFAULT NULL COMMENT ''私聊最后一条消息内容'' AFTER `last_message_id`,
+       ADD COLUMN `last_message_time` datetime DEFAULT NULL COMMENT ''私聊最后一条消息时间'' AFTER `last_message_content`,
+       ADD COLUMN `unread_count` int NOT NULL DEFAULT 0 COMMENT ''私聊未读数'' AFTER `last_message_time`,
+       ADD COLUMN `read_seq` bigint NOT NULL DEFAULT 0 COMMENT ''群聊已读到的消息序号'' AFTER `unread_count`',
+    'SELECT ''im_chat_last_read conversation columns already exist'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. im_chat_group 增加最后一条消息与消息序号
+SET @column_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_group' AND COLUMN_NAME='message_seq');
+SET @sql = IF(@column_exists = 0,
+    'ALTER TABLE `im_chat_group`
+       ADD COLUMN `last_message_id` bigint DEFAULT NULL COMMENT ''最后一条消息ID'' AFTER `group_type`,
+       ADD COLUMN `last_message_content` varchar(1024) DEFAULT NULL COMMENT ''最后一条消息内容'' AFTER `last_message_id`,
+       ADD COLUMN `last_message_time` datetime DEFAULT NULL COMMENT ''最后一条消息时间'' AFTER `last_message_content`,
+       ADD COLUMN `message_seq` bigint NOT NULL DEFAULT 0 COMMENT ''消息序号（群消息总数）'' AFTER `last_message_time`',
+    'SELECT ''im_chat_group conversation columns already exist'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 3. 按用户查询好友、群成员的索引
+SET @index_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_user_friend' AND INDEX_NAME='idx_user_status');
+SET @sql = IF(@index_exists = 0,
+    'ALTER TABLE `im_chat_user_friend` ADD KEY `idx_user_status` (`user_id`, `friend_status`)',
+    'SELECT ''Index idx_user_status already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @index_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_group_user' AND INDEX_NAME='idx_user_status');
+SET @sql = IF(@index_exists = 0,
+    'ALTER TABLE `im_chat_group_user` ADD KEY `idx_user_status` (`user_id`, `user_status`)',
+    'SELECT ''Index idx_user_status already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 4. 回填（新建的记录查看时间为1970-01-01，与原来没有记录时的排序、未读规则一致）
+
+-- 4.1 私聊：双方各一条会话记录，指向最后一条消息
+INSERT INTO `im_chat_last_read` (`user_id`, `chat_type`, `chat_id`, `last_read_time`, `last_message_id`)
+SELECT t.user_id, 1, t.chat_id, '1970-01-01', MAX(t.id)
+FROM (
+    SELECT `to_id` AS user_id, `from_id` AS chat_id, `id` FROM `im_chat_user_message` WHERE `from_id` != -1
+    UNION ALL
+    SELECT `from_id` AS user_id, `to_id` AS chat_id, `id` FROM `im_chat_user_message` WHERE `from_id` != -1
+) t
+WHERE @backfill = 1
+GROUP BY t.user_id, t.chat_id
+ON DUPLICATE KEY UPDATE `last_message_id` = VALUES(`last_message_id`);
+
+UPDATE `im_chat_last_read` lr
+JOIN `im_chat_user_message` m ON m.`id` = lr.`last_message_id`
+SET lr.`last_message_content` = m.`content`, lr.`last_message_time` = m.`create_time`
+WHERE @backfill = 1 AND lr.`chat_type` = 1;
+
+-- 4.2 私聊未读数：最后查看时间之后好友发来的消息
+UPDATE `im_chat_last_read` lr
+JOIN (
+    SELECT lr2.`id`, COUNT(m.`id`) AS cnt
+    FROM `im_chat_last_read` lr2
+    JOIN `im_chat_user_message` m ON m.`from_id` = lr2.`chat_id` AND m.`to_id` = lr2.`user_id`
+        AND m.`create_time` > lr2.`last_read_time`
+    WHERE lr2.`chat_type` = 1
+    GROUP BY lr2.`id`
+) c ON c.`id` = lr.`id`
+SET lr.`unread_count` = c.cnt
+WHERE @backfill = 1;
+
+-- 4.3 群：消息序号与最后一条消息
+UPDATE `im_chat_group` g
+JOIN (
+    SELECT `group_id`, COUNT(*) AS cnt, MAX(`id`) AS max_id FROM `im_chat_user_group_message` GROUP BY `group_id`
+) s ON s.`group_id` = g.`id`
+SET g.`message_seq` = s.cnt, g.`last_message_id` = s.max_id
+WHERE @backfill = 1;
+
+UPDATE `im_chat_group` g
+JOIN `im_chat_user_group_message` m ON m.`id` = g.`last_message_id`
+SET g.`last_message_content` = m.`content`, g.`last_message_time` = m.`create_time`
+WHERE @backfill = 1;
+
+-- 4.4 群已读序号：群消息总数减去最后查看时间之后他人发送的消息数
+INSERT INTO `im_chat_last_read` (`user_id`, `chat_type`, `chat_id`, `last_read_time`)
+SELECT gu.`user_id`, 2, gu.`group_id`, '1970-01-01'
+FROM `im_chat_group_user` gu
+WHERE @backfill = 1 AND gu.`user_status` IN (1, 2)
+ON DUPLICATE KEY UPDATE `chat_id` = `chat_id`;
+
+UPDATE `im_chat_last_read` lr
+JOIN `im_chat_group` g ON g.`id` = lr.`chat_id`
+LEFT JOIN (
+    SELECT lr2.`id`, COUNT(m.`id`) AS cnt
+    FROM `im_chat_last_read` lr2
+    JOIN `im_chat_user_group_message` m ON m.`group_id` = lr2.`chat_id`
+        AND m.`create_time` > lr2.`last_read_time` AND m.`from_id` != lr2.`user_id`
+    WHERE lr2.`chat_type` = 2
+    GROUP BY lr2.`id`
+) c ON c.`id` = lr.`id`
+SET lr.`read_seq` = g.`message_seq` - COALESCE(c.cnt, 0)
+WHERE @backfill = 1 AND lr.`chat_type` = 2;
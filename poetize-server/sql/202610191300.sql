@@ -0,0 +1,19 @@
+-- ============================================================
+-- 功能说明：群聊记录按群、时间查询的索引
+-- 变更内容：
+--   1. im_chat_user_group_message 添加 (group_id, create_time) 索引
+-- 说明：
+--   未读数后台校对按群统计查看时间之后的消息数，原表只有主键，需全表扫描
+-- 日期：2026-10-19
+-- ============================================================
+
+USE `poetize`;
+
+SET @index_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_user_group_message' AND INDEX_NAME='idx_group_time');
+SET @sql = IF(@index_exists = 0,
+    'ALTER TABLE `im_chat_user_group_message` ADD KEY `idx_group_time` (`group_id`, `create_time`)',
+    'SELECT ''Index idx_group_time already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
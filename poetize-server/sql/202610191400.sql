@@ -0,0 +1,41 @@
+-- ============================================================
+-- 功能说明：IM聊天记录按会话键游标分页
+-- 变更内容：
+--   1. im_chat_user_message 增加会话键 conversation_key 及 (conversation_key, create_time, id) 索引
+--   2. 回填已有单聊记录的会话键
+-- 说明：
+--   会话键 = LEAST(from_id, to_id) * 2^32 + GREATEST(from_id, to_id)，双方发送的消息键相同。
+--   原来按 (from_id=a AND to_id=b) OR (from_id=b AND to_id=a) 加 OFFSET 分页，无法走单个索引，
+--   聊天越长越慢；现在以已加载的最早一条消息为游标，按 (create_time, id) 倒序取更早的一页，只扫描一个索引区间。
+--   消息先写入日志再批量入库，自增ID是入库顺序而不是发送顺序，所以按发送时填写的 create_time 排序，
+--   同一秒内的消息再按ID排序。
+--   群聊记录使用已有的 idx_group_time (group_id, create_time) 索引（二级索引末尾隐含主键ID）。
+-- 日期：2026-10-19
+-- ============================================================
+
+USE `poetize`;
+
+-- 1. 单聊会话键
+SET @column_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_user_message' AND COLUMN_NAME='conversation_key');
+SET @sql = IF(@column_exists = 0,
+    'ALTER TABLE `im_chat_user_message`
+       ADD COLUMN `conversation_key` bigint DEFAULT NULL COMMENT ''会话键[LEAST(from_id, to_id) * 2^32 + GREATEST(from_id, to_id)]'' AFTER `message_status`',
+    'SELECT ''Column conversation_key already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. 回填（可重复执行，只处理尚未填写的记录）
+UPDATE `im_chat_user_message`
+SET `conversation_key` = LEAST(`from_id`, `to_id`) * 4294967296 + GREATEST(`from_id`, `to_id`)
+WHERE `conversation_key` IS NULL;
+
+SET @index_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_user_message' AND INDEX_NAME='idx_conversation');
+SET @sql = IF(@index_exists = 0,
+    'ALTER TABLE `im_chat_user_message` ADD KEY `idx_conversation` (`conversation_key`, `create_time`, `id`)',
+    'SELECT ''Index idx_conversation already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,37 @@
+-- ============================================================
+-- 功能说明：IM聊天记录消息键（预写日志重放幂等）
+-- 变更内容：
+--   1. im_chat_user_message 增加消息键 msg_key 及唯一索引 uk_msg_key
+--   2. im_chat_user_group_message 增加消息键 msg_key 及唯一索引 uk_msg_key
+-- 说明：
+--   消息写入预写日志前生成消息键，日志记录携带该键。写入数据库后检查点落盘前崩溃、
+--   或检查点写入失败时同一批记录会被重放，唯一索引使重复插入失败，重放时逐条跳过已写入的消息。
+--   升级前的记录及旧格式日志记录没有消息键（NULL），唯一索引不限制多个NULL。
+-- 日期：2026-10-19
+-- ============================================================
+
+USE `poetize`;
+
+-- 1. 单聊消息键
+SET @column_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_user_message' AND COLUMN_NAME='msg_key');
+SET @sql = IF(@column_exists = 0,
+    'ALTER TABLE `im_chat_user_message`
+       ADD COLUMN `msg_key` varchar(32) DEFAULT NULL COMMENT ''消息键'' AFTER `conversation_key`,
+       ADD UNIQUE KEY `uk_msg_key` (`msg_key`)',
+    'SELECT ''Column msg_key already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. 群聊消息键
+SET @column_exists = (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE TABLE_SCHEMA='poetize' AND TABLE_NAME='im_chat_user_group_message' AND COLUMN_NAME='msg_key');
+SET @sql = IF(@column_exists = 0,
+    'ALTER TABLE `im_chat_user_group_message`
+       ADD COLUMN `msg_key` varchar(32) DEFAULT NULL COMMENT ''消息键'' AFTER `content`,
+       ADD UNIQUE KEY `uk_msg_key` (`msg_key`)',
+    'SELECT ''Column msg_key already exists'' as message');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
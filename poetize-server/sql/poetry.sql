@@ -214,9 +214,13 @@ CREATE TABLE `poetize`.`history_info` (
   `nation` varchar(64) DEFAULT NULL COMMENT '国家',
   `province` varchar(64) DEFAULT NULL COMMENT '省份',
   `city` varchar(64) DEFAULT NULL COMMENT '城市',
-  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
-  PRIMARY KEY (`id`)
-) ENGINE=RocksDB DEFAULT CHARSET=utf8mb4 COMMENT='历史信息';
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`, `create_time`)
+) ENGINE=RocksDB DEFAULT CHARSET=utf8mb4 COMMENT='历史信息'
+-- 按月分区，由应用拆分 pmax 创建 pYYYYMM 分区并按保留策略归档删除
+PARTITION BY RANGE (TO_DAYS(`create_time`)) (
+  PARTITION pmax VALUES LESS THAN MAXVALUE
+);
 
 DROP TABLE IF EXISTS `poetize`.`sys_config`;
 
@@ -352,7 +356,8 @@ CREATE TABLE `poetize`.`im_chat_user_friend` (
 
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
 
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_user_status` (`user_id`, `friend_status`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='好友';
 
 DROP TABLE IF EXISTS `poetize`.`im_chat_group`;
@@ -366,6 +371,10 @@ CREATE TABLE `poetize`.`im_chat_group` (
   `notice` varchar(1024) DEFAULT NULL COMMENT '公告',
   `in_type` tinyint(1) NOT NULL DEFAULT 1 COMMENT '进入方式[0:无需验证，1:需要群主或管理员同意]',
   `group_type` tinyint(2) NOT NULL DEFAULT 1 COMMENT '类型[1:聊天群，2:话题]',
+  `last_message_id` bigint DEFAULT NULL COMMENT '最后一条消息ID',
+  `last_message_content` varchar(1024) DEFAULT NULL COMMENT '最后一条消息内容',
+  `last_message_time` datetime DEFAULT NULL COMMENT '最后一条消息时间',
+  `message_seq` bigint NOT NULL DEFAULT 0 COMMENT '消息序号（群消息总数）',
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
 
   PRIMARY KEY (`id`)
@@ -384,7 +393,8 @@ CREATE TABLE `poetize`.`im_chat_group_user` (
 
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
 
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_user_status` (`user_id`, `user_status`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聊天群成员';
 
 DROP TABLE IF EXISTS `poetize`.`im_chat_user_message`;
@@ -395,11 +405,15 @@ CREATE TABLE `poetize`.`im_chat_user_message` (
   `to_id` int NOT NULL COMMENT '接收ID',
   `content` varchar(1024) NOT NULL COMMENT '内容',
   `message_status` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否已读[0:未读，1:已读]',
+  `conversation_key` bigint DEFAULT NULL COMMENT '会话键[LEAST(from_id, to_id) * 2^32 + GREATEST(from_id, to_id)]',
+  `msg_key` varchar(32) DEFAULT NULL COMMENT '消息键',
 
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
 
   PRIMARY KEY (`id`),
-  KEY `union_index` (`to_id`,`message_status`)
+  KEY `union_index` (`to_id`,`message_status`),
+  KEY `idx_conversation` (`conversation_key`, `create_time`, `id`),
+  UNIQUE KEY `uk_msg_key` (`msg_key`)
 ) ENGINE=RocksDB DEFAULT CHARSET=utf8mb4 COMMENT='单聊记录';
 
 DROP TABLE IF EXISTS `poetize`.`im_chat_user_group_message`;
@@ -410,10 +424,13 @@ CREATE TABLE `poetize`.`im_chat_user_group_message` (
   `from_id` int NOT NULL COMMENT '发送ID',
   `to_id` int DEFAULT NULL COMMENT '接收ID',
   `content` varchar(1024) NOT NULL COMMENT '内容',
+  `msg_key` varchar(32) DEFAULT NULL COMMENT '消息键',
 
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
 
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_group_time` (`group_id`, `create_time`),
+  UNIQUE KEY `uk_msg_key` (`msg_key`)
 ) ENGINE=RocksDB DEFAULT CHARSET=utf8mb4 COMMENT='群聊记录';
 
 DROP TABLE IF EXISTS `poetize`.`im_chat_last_read`;
@@ -425,6 +442,11 @@ CREATE TABLE `poetize`.`im_chat_last_read` (
   `chat_id` int NOT NULL COMMENT '聊天ID（私聊为friendId，群聊为groupId）',
   `last_read_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '最后查看时间',
   `is_hidden` tinyint NOT NULL DEFAULT 0 COMMENT '是否隐藏[0:否，1:是]',
+  `last_message_id` bigint DEFAULT NULL COMMENT '私聊最后一条消息ID',
+  `last_message_content` varchar(1024) DEFAULT NULL COMMENT '私聊最后一条消息内容',
+  `last_message_time` datetime DEFAULT NULL COMMENT '私聊最后一条消息时间',
+  `unread_count` int NOT NULL DEFAULT 0 COMMENT '私聊未读数',
+  `read_seq` bigint NOT NULL DEFAULT 0 COMMENT '群聊已读到的消息序号',
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
 
@@ -435,6 +457,90 @@ CREATE TABLE `poetize`.`im_chat_last_read` (
   KEY `idx_hidden` (`user_id`, `is_hidden`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聊天最后查看时间（私聊+群聊）';
 
+DROP TABLE IF EXISTS `poetize`.`visit_stats_hourly`;
+
+CREATE TABLE `poetize`.`visit_stats_hourly` (
+  `stat_time` datetime NOT NULL COMMENT '统计小时（整点）',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+  `unique_ips` int NOT NULL DEFAULT 0 COMMENT '独立IP数',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+
+  PRIMARY KEY (`stat_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-小时汇总';
+
+DROP TABLE IF EXISTS `poetize`.`visit_stats_daily`;
+
+CREATE TABLE `poetize`.`visit_stats_daily` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+  `unique_ips` int NOT NULL DEFAULT 0 COMMENT '独立IP数',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+
+  PRIMARY KEY (`stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-每日汇总';
+
+DROP TABLE IF EXISTS `poetize`.`visit_stats_daily_region`;
+
+CREATE TABLE `poetize`.`visit_stats_daily_region` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `nation` varchar(64) NOT NULL DEFAULT '' COMMENT '国家',
+  `province` varchar(64) NOT NULL DEFAULT '' COMMENT '省份',
+  `city` varchar(64) NOT NULL DEFAULT '' COMMENT '城市',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+  `unique_ips` int NOT NULL DEFAULT 0 COMMENT '独立IP数',
+
+  PRIMARY KEY (`stat_date`, `nation`, `province`, `city`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-每日省份城市汇总';
+
+DROP TABLE IF EXISTS `poetize`.`visit_stats_daily_user`;
+
+CREATE TABLE `poetize`.`visit_stats_daily_user` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `user_id` int NOT NULL COMMENT '用户ID',
+  `visits` int NOT NULL DEFAULT 0 COMMENT '访问次数',
+
+  PRIMARY KEY (`stat_date`, `user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-每日登录用户汇总';
+
+DROP TABLE IF EXISTS `poetize`.`visit_ip_summary`;
+
+CREATE TABLE `poetize`.`visit_ip_summary` (
+  `ip` varchar(128) NOT NULL COMMENT 'ip',
+  `nation` varchar(64) DEFAULT NULL COMMENT '国家',
+  `province` varchar(64) DEFAULT NULL COMMENT '省份',
+  `city` varchar(64) DEFAULT NULL COMMENT '城市',
+  `visits` bigint NOT NULL DEFAULT 0 COMMENT '累计访问次数',
+  `first_visit_time` datetime DEFAULT NULL COMMENT '首次访问时间',
+  `last_visit_time` datetime DEFAULT NULL COMMENT '最后访问时间',
+
+  PRIMARY KEY (`ip`),
+  KEY `idx_visits` (`visits`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-IP累计汇总';
+
+DROP TABLE IF EXISTS `poetize`.`visit_stats_province_total`;
+
+CREATE TABLE `poetize`.`visit_stats_province_total` (
+  `nation` varchar(64) NOT NULL COMMENT '国家',
+  `province` varchar(64) NOT NULL COMMENT '省份',
+  `visits` bigint NOT NULL DEFAULT 0 COMMENT '累计访问次数',
+  `unique_ips` bigint NOT NULL DEFAULT 0 COMMENT '累计独立IP数',
+
+  PRIMARY KEY (`nation`, `province`),
+  KEY `idx_unique_ips` (`unique_ips`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-省份累计汇总';
+
+DROP TABLE IF EXISTS `poetize`.`visit_stats_total`;
+
+CREATE TABLE `poetize`.`visit_stats_total` (
+  `id` tinyint NOT NULL COMMENT '固定为1',
+  `visits` bigint NOT NULL DEFAULT 0 COMMENT '累计访问次数',
+  `unique_ips` bigint NOT NULL DEFAULT 0 COMMENT '累计独立IP数',
+  `last_history_id` int NOT NULL DEFAULT 0 COMMENT '已汇总的最大history_info.id（增量汇总检查点）',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问统计-全站累计汇总及检查点';
+
 DROP TABLE IF EXISTS `poetize`.`article_translation`;
 
 CREATE TABLE `poetize`.`article_translation` (
@@ -913,4 +1019,8 @@ ALTER TABLE `poetize`.`wei_yan` ADD INDEX `idx_public_create` (`is_public`, `cre
 
 -- 优化 `resource` 表
 -- 为 `user_id` 和 `type` 添加复合索引，加速查询某个用户的特定类型资源
-ALTER TABLE `poetize`.`resource` ADD INDEX `idx_user_type` (`user_id`, `type`);
\ No newline at end of file
+ALTER TABLE `poetize`.`resource` ADD INDEX `idx_user_type` (`user_id`, `type`);
+
+-- 优化 `history_info` 表
+-- 为创建时间添加索引，按天重算访问统计汇总时走范围扫描
+ALTER TABLE `poetize`.`history_info` ADD INDEX `idx_create_time` (`create_time`);